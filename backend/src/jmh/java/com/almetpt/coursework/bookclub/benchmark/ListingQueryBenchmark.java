@@ -0,0 +1,137 @@
+package com.almetpt.coursework.bookclub.benchmark;
+
+import com.almetpt.coursework.CourseworkApplication;
+import com.almetpt.coursework.bookclub.model.Book;
+import com.almetpt.coursework.bookclub.model.BookGenre;
+import com.almetpt.coursework.bookclub.model.Product;
+import com.almetpt.coursework.bookclub.model.ProductCategory;
+import com.almetpt.coursework.bookclub.repository.BookRepository;
+import com.almetpt.coursework.bookclub.repository.ProductRepository;
+import com.almetpt.coursework.bookclub.service.BookService;
+import com.almetpt.coursework.bookclub.service.ProductService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение страниц каталога: сущности + ModelMapper против проекций.
+ * <p>
+ * Одна операция - одна строка страницы, поэтому ops/s означает строк в
+ * секунду. Профилировщик gc (включен в профиле benchmark) показывает
+ * скорость выделения памяти: {@code gc.alloc.rate.norm} - байт на строку.
+ * Контекст поднимается на H2 из профиля test. Каждый вызов выполняется в
+ * транзакции только для чтения - так же, как запрос с открытой сессией
+ * (open-in-view), иначе маппинг сущностей не может читать ленивые связи.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListingQueryBenchmark {
+
+    private static final int ROWS = 2_000;
+    private static final int PAGE_SIZE = 50;
+
+    private ConfigurableApplicationContext context;
+    private ProductService productService;
+    private BookService bookService;
+    private Pageable pageable;
+    private TransactionTemplate readOnly;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(CourseworkApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .properties("spring.jpa.show-sql=false",
+                        "logging.level.org.hibernate.SQL=WARN",
+                        "logging.level.org.hibernate.type.descriptor.sql=WARN",
+                        "logging.level.com.almetpt.coursework.bookclub=WARN")
+                .run();
+        productService = context.getBean(ProductService.class);
+        bookService = context.getBean(BookService.class);
+        pageable = PageRequest.of(0, PAGE_SIZE, Sort.by("id"));
+        readOnly = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnly.setReadOnly(true);
+
+        List<Product> products = new ArrayList<>();
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            Product product = new Product();
+            product.setName("Продукт " + i);
+            product.setDescription("Описание продукта " + i);
+            product.setPrice(BigDecimal.valueOf(100 + i % 900));
+            product.setCategory(ProductCategory.values()[i % ProductCategory.values().length]);
+            product.setCoverImageFilename(i % 2 == 0 ? "cover-" + i + ".jpg" : null);
+            product.setCreatedWhen(LocalDateTime.now());
+            products.add(product);
+
+            Book book = new Book();
+            book.setTitle("Книга " + i);
+            book.setAuthor("Автор " + i % 100);
+            book.setDescription("Описание книги " + i);
+            book.setGenres(Set.of(BookGenre.values()[i % BookGenre.values().length]));
+            book.setCreatedWhen(LocalDateTime.now());
+            books.add(book);
+        }
+        context.getBean(ProductRepository.class).saveAll(products);
+        context.getBean(BookRepository.class).saveAll(books);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public Page<?> productsEntityMapping() {
+        return readOnly.execute(status -> productService.searchProducts("", null, pageable));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public Page<?> productsProjection() {
+        return readOnly.execute(status -> productService.searchProductListing("", null, pageable));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public Page<?> booksEntityMapping() {
+        return readOnly.execute(status -> bookService.listAllNotDeleted(pageable));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public Page<?> booksProjection() {
+        return readOnly.execute(status -> bookService.searchBookListing(null, null, null, pageable));
+    }
+}
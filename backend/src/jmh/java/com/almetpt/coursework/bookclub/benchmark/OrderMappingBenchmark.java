@@ -0,0 +1,92 @@
+package com.almetpt.coursework.bookclub.benchmark;
+
+import com.almetpt.coursework.bookclub.dto.OrderDTO;
+import com.almetpt.coursework.bookclub.mapper.ModelMapperBaseline;
+import com.almetpt.coursework.bookclub.mapper.OrderMapper;
+import com.almetpt.coursework.bookclub.mapper.ProductMapper;
+import com.almetpt.coursework.bookclub.model.Order;
+import com.almetpt.coursework.bookclub.model.OrderStatus;
+import com.almetpt.coursework.bookclub.model.Product;
+import com.almetpt.coursework.bookclub.model.ProductCategory;
+import com.almetpt.coursework.bookclub.model.User;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Маппинг заказа с 20 продуктами в {@link OrderDTO}: ручной
+ * {@link OrderMapper} против прежней настройки ModelMapper.
+ * <p>
+ * Контекст Spring не нужен: репозитории используются только при обратном
+ * маппинге, поэтому маппер создается напрямую.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderMappingBenchmark {
+
+    private static final int PRODUCTS = 20;
+
+    private Order order;
+    private OrderMapper orderMapper;
+    private ModelMapper modelMapper;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        orderMapper = new OrderMapper(null, null, new ProductMapper());
+        modelMapper = ModelMapperBaseline.create();
+
+        User user = new User();
+        user.setId(1L);
+        user.setEmail("reader@example.com");
+
+        List<Product> products = new ArrayList<>(PRODUCTS);
+        for (int i = 0; i < PRODUCTS; i++) {
+            Product product = new Product();
+            product.setId((long) i);
+            product.setName("Продукт " + i);
+            product.setDescription("Описание продукта " + i);
+            product.setPrice(BigDecimal.valueOf(100 + i));
+            product.setCategory(ProductCategory.values()[i % ProductCategory.values().length]);
+            product.setCoverImageFilename("cover-" + i + ".jpg");
+            product.setCreatedWhen(LocalDateTime.now());
+            products.add(product);
+        }
+
+        order = new Order();
+        order.setId(1L);
+        order.setUser(user);
+        order.setStatus(OrderStatus.PENDING);
+        order.setTotal(BigDecimal.valueOf(2_000));
+        order.setProducts(products);
+        order.setCreatedWhen(LocalDateTime.now());
+    }
+
+    @Benchmark
+    public OrderDTO handWritten() {
+        return orderMapper.toDTO(order);
+    }
+
+    @Benchmark
+    public OrderDTO modelMapper() {
+        return modelMapper.map(order, OrderDTO.class);
+    }
+}
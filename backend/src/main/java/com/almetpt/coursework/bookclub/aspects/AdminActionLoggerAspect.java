@@ -1,10 +1,8 @@
 package com.almetpt.coursework.bookclub.aspects;
 
 import com.almetpt.coursework.bookclub.annotations.AdminAction;
-import com.almetpt.coursework.bookclub.model.AuditEntry;
-import com.almetpt.coursework.bookclub.model.Cart;
-import com.almetpt.coursework.bookclub.repository.AuditRepository;
-import com.almetpt.coursework.bookclub.repository.CartRepository;
+import com.almetpt.coursework.bookclub.service.AuditLogWriter;
+import com.almetpt.coursework.bookclub.service.AuditLogWriter.AuditEvent;
 import com.almetpt.coursework.bookclub.service.userdetails.CustomUserDetails;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
@@ -16,24 +14,18 @@ import org.springframework.core.annotation.Order;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.time.LocalDateTime;
-import java.util.Optional;
 
 @Aspect
 @Component
 @Order(1)
 public class AdminActionLoggerAspect {
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
-    private final AuditRepository auditRepository;
-    private final CartRepository cartRepository;
+    private final AuditLogWriter auditLogWriter;
 
-    public AdminActionLoggerAspect(AuditRepository auditRepository, CartRepository cartRepository) {
-        this.auditRepository = auditRepository;
-        this.cartRepository = cartRepository;
+    public AdminActionLoggerAspect(AuditLogWriter auditLogWriter) {
+        this.auditLogWriter = auditLogWriter;
     }
 
     @Around("@annotation(adminAction)")
@@ -45,6 +37,7 @@ public class AdminActionLoggerAspect {
 
         String actualUserEmail = authentication.getName();
         String loggingUserIdentifier;
+        Integer actualUserId = null;
         boolean isActualAdminRole = authentication.getAuthorities().stream()
                 .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
         
@@ -52,6 +45,7 @@ public class AdminActionLoggerAspect {
             loggingUserIdentifier = "ADMIN_ROLE";
         } else if (authentication.getPrincipal() instanceof CustomUserDetails) {
             CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+            actualUserId = userDetails.getUserId();
             if (userDetails.getUserId() != null) {
                 loggingUserIdentifier = "USER_ID:" + userDetails.getUserId().toString();
             } else {
@@ -74,18 +68,7 @@ public class AdminActionLoggerAspect {
                     paramsWithNames.append(", ");
                 }
                 paramsWithNames.append(parameterNames[i]).append("=");
-                if (args[i] != null) {
-                    String argValue = args[i].toString();
-                    if (args[i] instanceof MultipartFile) {
-                        argValue = "MultipartFile[" + ((MultipartFile) args[i]).getOriginalFilename() + "]";
-                    }
-                    if (argValue.length() > 50) {
-                        argValue = argValue.substring(0, 47) + "...";
-                    }
-                    paramsWithNames.append(argValue);
-                } else {
-                    paramsWithNames.append("null");
-                }
+                AuditDetails.appendValue(paramsWithNames, args[i]);
             }
         }
 
@@ -106,68 +89,35 @@ public class AdminActionLoggerAspect {
         logger.info("[ADMIN ACTION SUCCEEDED] UserEmail: {} (Identifier: {}) | Class: {} | Method: {} | Params: {} | Time: {}ms | Timestamp: {}",
                 actualUserEmail, loggingUserIdentifier, className, methodName, paramsWithNames.toString(), elapsedTime, now);
         
-        if (shouldLogActionToDb(methodName, className, joinPoint, isActualAdminRole, actualUserEmail)) {
-            try {
-                saveAuditEntry(methodName, className, joinPoint, loggingUserIdentifier, actualUserEmail, paramsWithNames.toString(), elapsedTime, now, args);
-            } catch (Exception e) {
-                logger.error("Failed to save audit entry: {}", e.getMessage(), e);
-                // Не прерываем основной поток выполнения из-за ошибки логирования
-            }
+        if (shouldLogActionToDb(methodName, className, result, isActualAdminRole, actualUserId)) {
+            String detailsText = "Performed by: " + loggingUserIdentifier + ". Class: " + className
+                    + ", Method: " + methodName + ", Params: " + paramsWithNames + ", ExecTime: " + elapsedTime + "ms";
+            // Запись в БД выполняет фоновый поток, ошибки записи не влияют на ответ
+            auditLogWriter.enqueue(new AuditEvent(
+                    getActionTypeForMethod(methodName, className),
+                    extractResourceType(className),
+                    AuditDetails.firstLongArg(args),
+                    actualUserEmail,
+                    now,
+                    detailsText));
         }
 
         return result;
     }
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    protected void saveAuditEntry(String methodName, String className, ProceedingJoinPoint joinPoint, 
-                                String loggingUserIdentifier, String actualUserEmail, String paramsWithNames, 
-                                long elapsedTime, LocalDateTime now, Object[] args) {
-        String determinedActionType = getActionTypeForMethod(methodName, className, joinPoint);
-        if (determinedActionType != null) {
-            String detailsText = "Performed by: %s. Class: %s, Method: %s, Params: %s, ExecTime: %dms".formatted(
-                    loggingUserIdentifier, className, methodName, paramsWithNames, elapsedTime);
-            
-            if (detailsText.length() > 990) {
-                detailsText = detailsText.substring(0, 987) + "...";
-            }
-
-            AuditEntry auditEntry = AuditEntry.builder()
-                    .actionType(determinedActionType)
-                    .userEmail(actualUserEmail)
-                    .resourceType(extractResourceType(className))
-                    .resourceId(extractResourceId(args))
-                    .timestamp(now)
-                    .details(detailsText)
-                    .build();
-            
-            try {
-                auditRepository.save(auditEntry);
-            } catch (Exception e) {
-                logger.error("AdminActionLoggerAspect: Failed to save audit entry to DB. Entry: {}, Error: {}", auditEntry.toString(), e.getMessage(), e);
-            }
-        }
-    }
-
-    private boolean shouldLogActionToDb(String methodName, String className, ProceedingJoinPoint joinPoint, boolean isActualAdminRole, String currentUserEmail) {
+    private boolean shouldLogActionToDb(String methodName, String className, Object result, boolean isActualAdminRole, Integer currentUserId) {
         if (isActualAdminRole) {
             return true;
         }
 
         if ("CartController".equals(className) && "getById".equals(methodName)) {
-            Object[] args = joinPoint.getArgs();
-            if (args.length > 0 && args[0] instanceof Long) {
-                Long cartId = (Long) args[0];
-                Optional<Cart> cartOptional = cartRepository.findById(cartId);
-                if (cartOptional.isPresent() && cartOptional.get().getUser().getEmail().equals(currentUserEmail) && !isActualAdminRole) {
-                    return false;
-                }
-            }
+            return !AuditDetails.isOwnCart(result, currentUserId);
         }
         
         return true;
     }
 
-    private String getActionTypeForMethod(String methodName, String className, ProceedingJoinPoint joinPoint) {
+    private String getActionTypeForMethod(String methodName, String className) {
         String resourceType = extractResourceType(className).toUpperCase();
         
         if (methodName.startsWith("create") || methodName.contains("Create") || methodName.startsWith("add")) {
@@ -220,13 +170,4 @@ public class AdminActionLoggerAspect {
         
         return className;
     }
-
-    private Long extractResourceId(Object[] args) {
-        if (args != null && args.length > 0) {
-            if (args[0] instanceof Long) {
-                return (Long) args[0];
-            }
-        }
-        return null;
-    }
 }
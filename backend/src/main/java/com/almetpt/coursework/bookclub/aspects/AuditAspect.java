@@ -1,9 +1,7 @@
 package com.almetpt.coursework.bookclub.aspects;
 
-import com.almetpt.coursework.bookclub.model.AuditEntry;
-import com.almetpt.coursework.bookclub.model.Cart;
-import com.almetpt.coursework.bookclub.repository.AuditRepository;
-import com.almetpt.coursework.bookclub.repository.CartRepository;
+import com.almetpt.coursework.bookclub.service.AuditLogWriter;
+import com.almetpt.coursework.bookclub.service.AuditLogWriter.AuditEvent;
 import com.almetpt.coursework.bookclub.service.userdetails.CustomUserDetails;
 import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.annotation.AfterReturning;
@@ -14,12 +12,8 @@ import org.springframework.core.annotation.Order;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.time.LocalDateTime;
-import java.util.Arrays;
-import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Aspect
 @Component
@@ -27,12 +21,10 @@ import java.util.stream.Collectors;
 public class AuditAspect {
 
     private static final Logger log = LoggerFactory.getLogger(AuditAspect.class);
-    private final AuditRepository auditRepository;
-    private final CartRepository cartRepository;
+    private final AuditLogWriter auditLogWriter;
 
-    public AuditAspect(AuditRepository auditRepository, CartRepository cartRepository) {
-        this.auditRepository = auditRepository;
-        this.cartRepository = cartRepository;
+    public AuditAspect(AuditLogWriter auditLogWriter) {
+        this.auditLogWriter = auditLogWriter;
     }
 
     private String determineActionType(String methodName, String className) {
@@ -91,12 +83,13 @@ public class AuditAspect {
         }
 
         String userEmail;
+        Integer userId = null;
         boolean isAdmin = authentication.getAuthorities().stream()
                 .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
 
-        if (authentication.getPrincipal() instanceof CustomUserDetails) {
-            CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+        if (authentication.getPrincipal() instanceof CustomUserDetails userDetails) {
             userEmail = userDetails.getUsername(); // email
+            userId = userDetails.getUserId();
         } else {
             userEmail = authentication.getName();
         }
@@ -104,74 +97,41 @@ public class AuditAspect {
         String methodName = joinPoint.getSignature().getName();
         String className = joinPoint.getTarget().getClass().getSimpleName();
 
-        if (!shouldLogAction(methodName, className, joinPoint, isAdmin, userEmail)) {
+        if (!shouldLogAction(methodName, className, result, isAdmin, userEmail, userId)) {
             log.trace("AuditAspect: Action for method {} in {} by user {} not logged due to shouldLogAction rules.", methodName, className, userEmail);
             return;
         }
 
-        String actionTypeString = determineActionType(methodName, className);
-        String resourceTypeString = extractResourceType(className);
-
-        Long resourceId = null;
         Object[] args = joinPoint.getArgs();
-        if (args != null && args.length > 0) {
-            // Try to find an ID if it's the first argument and a Long
-            if (args[0] instanceof Long) {
-                resourceId = (Long) args[0];
-            }
-        }
-
-
-        String resultStr = result != null ? result.toString() : "null";
-        if (resultStr.length() > 250) {
-            resultStr = resultStr.substring(0, 247) + "...";
-        }
-        
-        String argsString = Arrays.stream(args)
-                                  .map(arg -> {
-                                      if (arg instanceof MultipartFile) {
-                                          return "MultipartFile[" + ((MultipartFile) arg).getOriginalFilename() + "]";
-                                      }
-                                      return arg != null ? arg.toString() : "null";
-                                  })
-                                  .map(s -> s.length() > 50 ? s.substring(0, 47) + "..." : s)
-                                  .collect(Collectors.joining(", "));
-
-        String details = String.format("Class: %s, Method: %s, Args: [%s], Result: %s", className, methodName, argsString, resultStr);
-        if (details.length() > 990) {
-            details = details.substring(0, 987) + "...";
-        }
-
-        AuditEntry auditEntry = AuditEntry.builder()
-                .actionType(actionTypeString)
-                .userEmail(userEmail)
-                .resourceType(resourceTypeString)
-                .resourceId(resourceId)
-                .timestamp(LocalDateTime.now())
-                .details(details)
-                .build();
-        try {
-            auditRepository.save(auditEntry);
-            log.debug("AuditAspect: Saved audit entry: {}", auditEntry);
-        } catch (Exception e) {
-            log.error("AuditAspect: Failed to save audit entry. Entry: {}, Error: {}", auditEntry, e.getMessage(), e);
-        }
+        StringBuilder details = new StringBuilder(128)
+                .append("Class: ").append(className)
+                .append(", Method: ").append(methodName)
+                .append(", Args: [");
+        AuditDetails.appendArgs(details, args);
+        details.append("], Result: ");
+        AuditDetails.appendValue(details, result);
+
+        // Запись в БД выполняет фоновый поток, запрос ее не ждет
+        auditLogWriter.enqueue(new AuditEvent(
+                determineActionType(methodName, className),
+                extractResourceType(className),
+                AuditDetails.firstLongArg(args),
+                userEmail,
+                LocalDateTime.now(),
+                details.toString()));
     }
 
-    private boolean shouldLogAction(String methodName, String className, JoinPoint joinPoint, boolean isAdmin, String currentUserEmail) {
+    private boolean shouldLogAction(String methodName, String className, Object result, boolean isAdmin,
+                                    String currentUserEmail, Integer currentUserId) {
         if (isAdmin && !"ADMIN".equalsIgnoreCase(currentUserEmail)) {
              log.trace("AuditAspect: Admin action by {} is being logged.", currentUserEmail);
             return true;
         }
         
         if ("CartController".equals(className) && "getById".equals(methodName)) {
-            if (joinPoint.getArgs().length > 0 && joinPoint.getArgs()[0] instanceof Long) {
-                Long cartId = (Long) joinPoint.getArgs()[0];
-                Optional<Cart> cartOptional = cartRepository.findById(cartId);
-                if (cartOptional.isPresent() && cartOptional.get().getUser().getEmail().equals(currentUserEmail)) {
-                    log.trace("AuditAspect: Skipping log for user {} viewing their own cart id {}.", currentUserEmail, cartId);
-                    return false; 
-                }
+            if (AuditDetails.isOwnCart(result, currentUserId)) {
+                log.trace("AuditAspect: Skipping log for user {} viewing their own cart.", currentUserEmail);
+                return false; 
             }
         }
         
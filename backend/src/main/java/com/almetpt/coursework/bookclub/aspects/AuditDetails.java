@@ -0,0 +1,85 @@
+package com.almetpt.coursework.bookclub.aspects;
+
+import com.almetpt.coursework.bookclub.dto.CartDTO;
+import com.almetpt.coursework.bookclub.dto.GenericDTO;
+import org.springframework.data.domain.Page;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.time.temporal.Temporal;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Краткое описание аргументов и результата метода для журнала аудита.
+ * <p>
+ * {@code toString()} вызывается только у простых значений. Для DTO
+ * пишется тип и id, для коллекций и страниц - размер, поэтому описание
+ * не обходит вложенные объекты и ленивые связи.
+ */
+final class AuditDetails {
+
+    private static final int MAX_VALUE_LENGTH = 50;
+
+    private AuditDetails() {
+    }
+
+    static void appendValue(StringBuilder target, Object value) {
+        if (value == null) {
+            target.append("null");
+        } else if (value instanceof CharSequence || value instanceof Number || value instanceof Boolean
+                || value instanceof Enum<?> || value instanceof Temporal) {
+            String text = value.toString();
+            if (text.length() > MAX_VALUE_LENGTH) {
+                target.append(text, 0, MAX_VALUE_LENGTH - 3).append("...");
+            } else {
+                target.append(text);
+            }
+        } else if (value instanceof MultipartFile file) {
+            target.append("MultipartFile[").append(file.getOriginalFilename()).append(']');
+        } else if (value instanceof ResponseEntity<?> response) {
+            target.append("ResponseEntity[").append(response.getStatusCode().value());
+            if (response.getBody() != null) {
+                target.append(", ");
+                appendValue(target, response.getBody());
+            }
+            target.append(']');
+        } else if (value instanceof GenericDTO dto) {
+            target.append(value.getClass().getSimpleName()).append("[id=").append(dto.getId()).append(']');
+        } else if (value instanceof Page<?> page) {
+            target.append("Page[").append(page.getNumberOfElements())
+                    .append(" of ").append(page.getTotalElements()).append(']');
+        } else if (value instanceof Collection<?> collection) {
+            target.append(value.getClass().getSimpleName()).append("[size=").append(collection.size()).append(']');
+        } else if (value instanceof Map<?, ?> map) {
+            target.append("Map[size=").append(map.size()).append(']');
+        } else {
+            target.append(value.getClass().getSimpleName());
+        }
+    }
+
+    static void appendArgs(StringBuilder target, Object[] args) {
+        if (args == null) {
+            return;
+        }
+        for (int i = 0; i < args.length; i++) {
+            if (i > 0) {
+                target.append(", ");
+            }
+            appendValue(target, args[i]);
+        }
+    }
+
+    static Long firstLongArg(Object[] args) {
+        return args != null && args.length > 0 && args[0] instanceof Long id ? id : null;
+    }
+
+    // Пользователь смотрит свою корзину: владелец берется из ответа, без запроса к БД
+    static boolean isOwnCart(Object result, Integer currentUserId) {
+        Object body = result instanceof ResponseEntity<?> response ? response.getBody() : result;
+        return currentUserId != null
+                && body instanceof CartDTO cart
+                && cart.getUserId() != null
+                && cart.getUserId() == currentUserId.longValue();
+    }
+}
@@ -0,0 +1,59 @@
+package com.almetpt.coursework.bookclub.config;
+
+import com.almetpt.coursework.bookclub.model.JobTrigger;
+import com.almetpt.coursework.bookclub.service.AuditPartitionService;
+import com.almetpt.coursework.bookclub.service.JobCoordinator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Обслуживание таблицы журнала аудита.
+ * <p>
+ * При старте таблица переводится в секционированную и получает секции на
+ * ближайшие месяцы. Ночной запуск создает секции наперед и удаляет месяцы
+ * старше срока хранения (с выгрузкой, если она настроена). Оба запуска идут
+ * через {@link JobCoordinator}, поэтому секции создает и удаляет только
+ * один экземпляр приложения.
+ */
+@Component
+@Slf4j
+public class AuditPartitionMaintenance implements ApplicationRunner {
+
+    public static final String JOB_NAME = "audit-maintenance";
+
+    private final AuditPartitionService auditPartitionService;
+    private final JobCoordinator jobCoordinator;
+
+    public AuditPartitionMaintenance(AuditPartitionService auditPartitionService, JobCoordinator jobCoordinator,
+                                     @Value("${audit.retention.timeout-ms:1800000}") long timeoutMillis) {
+        this.auditPartitionService = auditPartitionService;
+        this.jobCoordinator = jobCoordinator;
+        jobCoordinator.register(JOB_NAME, timeoutMillis, this::maintainPartitions);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            jobCoordinator.runAndWait(JOB_NAME, JobTrigger.SCHEDULED, null);
+        } catch (RuntimeException e) {
+            // Не мешаем запуску: таблица остается обычной, попытка повторится при следующем старте
+            log.error("Ошибка подготовки секций журнала аудита", e);
+        }
+    }
+
+    @Scheduled(cron = "${audit.retention.cron:0 0 4 * * *}")
+    public void maintain() {
+        jobCoordinator.trigger(JOB_NAME, JobTrigger.SCHEDULED, null);
+    }
+
+    private Map<String, Object> maintainPartitions() {
+        auditPartitionService.preparePartitions();
+        return auditPartitionService.applyRetention();
+    }
+}
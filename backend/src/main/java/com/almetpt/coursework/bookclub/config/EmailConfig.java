@@ -19,6 +19,15 @@ public class EmailConfig {
     private String mailServerUserName;
     @Value("${spring.mail.password}")
     private String mailServerPassword;
+    @Value("${spring.mail.properties.mail.smtp.ssl.enable:true}")
+    private boolean sslEnabled;
+    // Обработчики очереди почты не должны зависать на медленном SMTP-сервере
+    @Value("${spring.mail.properties.mail.smtp.connectiontimeout:5000}")
+    private int connectionTimeout;
+    @Value("${spring.mail.properties.mail.smtp.timeout:5000}")
+    private int timeout;
+    @Value("${spring.mail.properties.mail.smtp.writetimeout:5000}")
+    private int writeTimeout;
 
     @Bean
     JavaMailSender getJavaMailSender() {
@@ -32,8 +41,11 @@ public class EmailConfig {
         properties.put("mail.smtp.auth", "true");
         properties.put("mail.smtp.starttls.enable", "false");
         properties.put("mail.smtp.ssl.protocols", "TLSv1.2");
-        properties.put("mail.smtp.ssl.enable", "true");
+        properties.put("mail.smtp.ssl.enable", String.valueOf(sslEnabled));
         properties.put("mail.smtp.ssl.trust", "smtp.mail.ru");
+        properties.put("mail.smtp.connectiontimeout", String.valueOf(connectionTimeout));
+        properties.put("mail.smtp.timeout", String.valueOf(timeout));
+        properties.put("mail.smtp.writetimeout", String.valueOf(writeTimeout));
 
         return mailSender;
     }
@@ -0,0 +1,139 @@
+package com.almetpt.coursework.bookclub.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Удаление повторных заявок одного пользователя на одно мероприятие перед
+ * созданием {@code uk_event_applications_user_event}.
+ * <p>
+ * Раньше после отмены заявки можно было подать новую, и в таблице
+ * оставалось несколько строк на пару (user_id, event_id). Схему обновляет
+ * Hibernate ({@code ddl-auto=update}) при создании EntityManagerFactory; с
+ * дубликатами ограничение не создается, ошибка только пишется в журнал, и
+ * гонка повторных заявок остается открытой. Поэтому очистка выполняется до
+ * EntityManagerFactory, обычным JDBC. Из каждой группы остается одна
+ * строка: действующая заявка, затем одобренная, затем самая новая. Записи
+ * листа ожидания удаленных заявок удаляются вместе с ними.
+ */
+@Component
+@Slf4j
+public class EventApplicationDeduplication implements InitializingBean {
+
+    private record ApplicationRow(long id, long userId, long eventId, boolean deleted, String status) {
+    }
+
+    // Сначала строка, которая останется
+    private static final Comparator<ApplicationRow> KEEP_ORDER = Comparator
+            .comparing(ApplicationRow::deleted)
+            .thenComparing(row -> !"APPROVED".equals(row.status()))
+            .thenComparing(Comparator.comparingLong(ApplicationRow::id).reversed());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${events.applications.deduplicate-on-startup:true}")
+    private boolean enabled = true;
+
+    public EventApplicationDeduplication(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            deduplicate();
+        } catch (RuntimeException e) {
+            // Не мешаем запуску: Hibernate сообщит, что ограничение не создано
+            log.error("Ошибка удаления повторных заявок на мероприятия", e);
+        }
+    }
+
+    /**
+     * @return число удаленных заявок
+     */
+    public int deduplicate() {
+        if (!tableExists("event_applications")) {
+            return 0;
+        }
+        Integer removed = transactionTemplate.execute(status -> {
+            List<ApplicationRow> rows = jdbcTemplate.query("""
+                    SELECT id, user_id, event_id, is_deleted, status FROM event_applications
+                    WHERE (user_id, event_id) IN (
+                        SELECT user_id, event_id FROM event_applications
+                        GROUP BY user_id, event_id HAVING COUNT(*) > 1)
+                    """,
+                    (rs, rowNum) -> new ApplicationRow(rs.getLong("id"), rs.getLong("user_id"),
+                            rs.getLong("event_id"), rs.getBoolean("is_deleted"), rs.getString("status")));
+
+            Map<List<Long>, List<ApplicationRow>> groups = new LinkedHashMap<>();
+            for (ApplicationRow row : rows) {
+                groups.computeIfAbsent(List.of(row.userId(), row.eventId()), key -> new ArrayList<>()).add(row);
+            }
+            List<Object[]> duplicates = new ArrayList<>();
+            for (List<ApplicationRow> group : groups.values()) {
+                group.sort(KEEP_ORDER);
+                group.subList(1, group.size()).forEach(row -> duplicates.add(new Object[] { row.id() }));
+            }
+            if (duplicates.isEmpty()) {
+                return 0;
+            }
+            if (tableExists("event_waitlist")) {
+                jdbcTemplate.batchUpdate("DELETE FROM event_waitlist WHERE application_id = ?", duplicates);
+            }
+            jdbcTemplate.batchUpdate("DELETE FROM event_applications WHERE id = ?", duplicates);
+            log.info("Удалено {} повторных заявок в {} парах пользователь-мероприятие",
+                    duplicates.size(), groups.size());
+            return duplicates.size();
+        });
+        return removed != null ? removed : 0;
+    }
+
+    // Регистр имен зависит от СУБД
+    private boolean tableExists(String table) {
+        Boolean exists = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            for (String name : List.of(table, table.toUpperCase(Locale.ROOT))) {
+                try (ResultSet tables = metaData.getTables(null, null, name, null)) {
+                    if (tables.next()) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        });
+        return Boolean.TRUE.equals(exists);
+    }
+
+    /**
+     * Очистка выполняется до EntityManagerFactory, которая обновляет схему.
+     */
+    @Component
+    static class EntityManagerFactoryDependency extends EntityManagerFactoryDependsOnPostProcessor {
+
+        EntityManagerFactoryDependency() {
+            super(EventApplicationDeduplication.class);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.almetpt.coursework.bookclub.config;
+
+import com.almetpt.coursework.bookclub.model.ImageBlob;
+import com.almetpt.coursework.bookclub.repository.ImageBlobRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Blob;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Перенос изображений из старых колонок {@code *_image_data} в таблицу
+ * {@code image_blobs}.
+ * <p>
+ * Раньше байты обложек хранились прямо в строках книг, продуктов и слайдов.
+ * Схема обновляется Hibernate ({@code ddl-auto=update}), который не удаляет
+ * колонки, поэтому при старте данные из оставшихся колонок переносятся
+ * порциями: создается блоб, владельцу проставляется ссылка, старое значение
+ * обнуляется. Каждая порция - отдельная транзакция, так что прерванный
+ * перенос продолжается при следующем запуске. Если колонки нет (новая БД),
+ * таблица пропускается.
+ */
+@Component
+@Slf4j
+public class ImageBlobMigration implements ApplicationRunner {
+
+    private record LegacyColumn(String table, String dataColumn, String blobColumn) {
+    }
+
+    private record LegacyRow(Long id, byte[] data, Long largeObjectId) {
+    }
+
+    private static final List<LegacyColumn> LEGACY_COLUMNS = List.of(
+            new LegacyColumn("books", "cover_image_data", "cover_image_blob_id"),
+            new LegacyColumn("products", "cover_image_data", "cover_image_blob_id"),
+            new LegacyColumn("slider_books", "background_image_data", "background_image_blob_id"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ImageBlobRepository imageBlobRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${image.blob.migration.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${image.blob.migration.batch-size:50}")
+    private int batchSize = 50;
+
+    public ImageBlobMigration(JdbcTemplate jdbcTemplate,
+                              ImageBlobRepository imageBlobRepository,
+                              PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.imageBlobRepository = imageBlobRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            migrate();
+        } catch (RuntimeException e) {
+            // Не мешаем запуску: необработанные строки будут перенесены при следующем старте
+            log.error("Ошибка переноса изображений в таблицу image_blobs", e);
+        }
+    }
+
+    /**
+     * Переносит данные из всех старых колонок.
+     *
+     * @return число перенесенных изображений
+     */
+    public int migrate() {
+        int total = 0;
+        for (LegacyColumn column : LEGACY_COLUMNS) {
+            String typeName = findColumnType(column.table(), column.dataColumn());
+            if (typeName == null) {
+                continue;
+            }
+            int migrated = migrate(column, "oid".equalsIgnoreCase(typeName));
+            if (migrated > 0) {
+                log.info("Перенесено {} изображений из {}.{} в image_blobs",
+                        migrated, column.table(), column.dataColumn());
+            }
+            total += migrated;
+        }
+        return total;
+    }
+
+    private int migrate(LegacyColumn column, boolean largeObject) {
+        int total = 0;
+        int migrated;
+        do {
+            Integer batch = transactionTemplate.execute(status -> migrateBatch(column, largeObject));
+            migrated = batch != null ? batch : 0;
+            total += migrated;
+        } while (migrated > 0);
+        return total;
+    }
+
+    private int migrateBatch(LegacyColumn column, boolean largeObject) {
+        // Имена таблиц и колонок - константы класса, а не пользовательский ввод
+        List<LegacyRow> rows = jdbcTemplate.query(
+                "SELECT id, " + column.dataColumn() + " FROM " + column.table()
+                        + " WHERE " + column.dataColumn() + " IS NOT NULL ORDER BY id FETCH FIRST "
+                        + batchSize + " ROWS ONLY",
+                (rs, rowNum) -> readRow(rs, column.dataColumn(), largeObject));
+
+        for (LegacyRow row : rows) {
+            ImageBlob blob = ImageBlob.of(row.data());
+            Long blobId = blob != null ? imageBlobRepository.saveAndFlush(blob).getId() : null;
+            jdbcTemplate.update("UPDATE " + column.table() + " SET " + column.blobColumn() + " = ?, "
+                    + column.dataColumn() + " = NULL WHERE id = ?", blobId, row.id());
+            if (largeObject && row.largeObjectId() != null) {
+                // В PostgreSQL данные @Lob лежат в pg_largeobject и сами не удаляются
+                jdbcTemplate.queryForObject("SELECT lo_unlink(?)", Integer.class, row.largeObjectId());
+            }
+        }
+        return rows.size();
+    }
+
+    private static LegacyRow readRow(ResultSet rs, String dataColumn, boolean largeObject) throws SQLException {
+        long id = rs.getLong("id");
+        if (!largeObject) {
+            return new LegacyRow(id, rs.getBytes(dataColumn), null);
+        }
+        Blob blob = rs.getBlob(dataColumn);
+        try {
+            return new LegacyRow(id, blob.getBytes(1, (int) blob.length()), rs.getLong(dataColumn));
+        } finally {
+            blob.free();
+        }
+    }
+
+    // Тип колонки или null, если колонки нет. Регистр имен зависит от СУБД
+    private String findColumnType(String table, String column) {
+        return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            for (String name : List.of(table, table.toUpperCase(Locale.ROOT))) {
+                try (ResultSet columns = metaData.getColumns(null, null, name, null)) {
+                    while (columns.next()) {
+                        if (column.equalsIgnoreCase(columns.getString("COLUMN_NAME"))) {
+                            return columns.getString("TYPE_NAME");
+                        }
+                    }
+                }
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,54 @@
+package com.almetpt.coursework.bookclub.config;
+
+import com.almetpt.coursework.bookclub.service.MailOutboxService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Периодический разбор очереди исходящей почты и очистка доставленных писем.
+ * <p>
+ * Следующий опрос начинается только после завершения предыдущего, поэтому
+ * одно письмо не отправляется дважды из одного экземпляра приложения; между
+ * экземплярами письма делятся меткой захвата.
+ */
+@Component
+@Slf4j
+public class MailOutboxDispatcher {
+
+    private final MailOutboxService mailOutboxService;
+
+    @Value("${mail.outbox.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${mail.outbox.retention-days:30}")
+    private int retentionDays = 30;
+
+    public MailOutboxDispatcher(MailOutboxService mailOutboxService) {
+        this.mailOutboxService = mailOutboxService;
+    }
+
+    @Scheduled(fixedDelayString = "${mail.outbox.poll-interval-ms:1000}", initialDelayString = "${mail.outbox.poll-interval-ms:1000}")
+    public void dispatch() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            mailOutboxService.processDue();
+        } catch (RuntimeException e) {
+            log.error("Ошибка разбора очереди почты", e);
+        }
+    }
+
+    @Scheduled(cron = "${mail.outbox.purge-cron:0 30 4 * * *}")
+    public void purge() {
+        try {
+            mailOutboxService.purgeSent(LocalDateTime.now().minusDays(retentionDays));
+        } catch (RuntimeException e) {
+            log.error("Ошибка очистки очереди почты", e);
+        }
+    }
+}
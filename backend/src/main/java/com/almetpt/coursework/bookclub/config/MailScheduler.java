@@ -1,42 +1,59 @@
 package com.almetpt.coursework.bookclub.config;
 
+import com.almetpt.coursework.bookclub.model.JobTrigger;
+import com.almetpt.coursework.bookclub.service.JobCoordinator;
+import com.almetpt.coursework.bookclub.service.MailOutboxService;
+import com.almetpt.coursework.bookclub.service.MailTemplateService;
 import com.almetpt.coursework.bookclub.service.UserService;
-import com.almetpt.coursework.bookclub.utils.MailUtils;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.Map;
 
 @Component
 @Slf4j
 public class MailScheduler {
 
+    public static final String DEBTORS_JOB_NAME = "debtor-reminders";
+
     private final UserService userService;
-    private final JavaMailSender javaMailSender;
+    private final MailOutboxService mailOutboxService;
+    private final MailTemplateService mailTemplateService;
+    private final JobCoordinator jobCoordinator;
 
-    public MailScheduler(UserService userService, JavaMailSender javaMailSender) {
+    public MailScheduler(UserService userService, MailOutboxService mailOutboxService,
+                         MailTemplateService mailTemplateService, JobCoordinator jobCoordinator,
+                         @Value("${mail.debtors.timeout-ms:600000}") long timeoutMillis) {
         this.userService = userService;
-        this.javaMailSender = javaMailSender;
+        this.mailOutboxService = mailOutboxService;
+        this.mailTemplateService = mailTemplateService;
+        this.jobCoordinator = jobCoordinator;
+        jobCoordinator.register(DEBTORS_JOB_NAME, timeoutMillis, this::enqueueDebtorReminders);
     }
 
     // Крон на каждую минуту: "0 0/1 * 1/1 * *"
     // Каждый день в 6 утра: "0 0 6 * * ?"
+    // При нескольких экземплярах письма ставит в очередь только получивший аренду
     @Scheduled(cron = "0 0 6 * * ?")
     public void sentMailsToDebtors() {
+        jobCoordinator.trigger(DEBTORS_JOB_NAME, JobTrigger.SCHEDULED, null);
+    }
+
+    private int enqueueDebtorReminders() {
         log.info("Запуск планировщика по проверки должников…");
         List<String> emails = userService.getUserEmailsWithDelayedRentDate();
 
         if (!emails.isEmpty()) {
-            SimpleMailMessage simpleMailMessage = MailUtils.createMailMessage(
+            mailOutboxService.enqueue(
                     emails,
                     "Напоминание о просрочке возврата книг(и)",
-                    "Вы - злостный нарушитель!!! Верните книгу!!"
+                    mailTemplateService.render(MailTemplateService.DEBTORS, Map.of())
             );
-            javaMailSender.send(simpleMailMessage);
         }
+        return emails.size();
     }
 }
 
@@ -0,0 +1,62 @@
+package com.almetpt.coursework.bookclub.config;
+
+import com.almetpt.coursework.bookclub.model.JobTrigger;
+import com.almetpt.coursework.bookclub.service.JobCoordinator;
+import com.almetpt.coursework.bookclub.service.MetricsRollupService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Заполнение и сверка счетчиков панели администратора.
+ * <p>
+ * При старте пустая таблица счетчиков заполняется по существующим данным.
+ * Ночной пересчет убирает расхождения, накопленные мимо слушателя Hibernate
+ * (массовые запросы, ручные правки БД, сбой записи счетчика). Пересчет идет
+ * через {@link JobCoordinator}: одновременные пересчеты на нескольких
+ * экземплярах столкнулись бы на уникальном ключе корзины и потеряли бы
+ * живые приращения. Вне расписания пересчет запускается как задача
+ * {@value #JOB_NAME} через {@code POST /api/rest/admin/jobs/metrics-rollup/trigger}.
+ */
+@Component
+@Slf4j
+public class MetricsRollupBackfill implements ApplicationRunner {
+
+    public static final String JOB_NAME = "metrics-rollup";
+
+    private final MetricsRollupService metricsRollupService;
+    private final JobCoordinator jobCoordinator;
+
+    @Value("${metrics.rollup.backfill-on-startup:true}")
+    private boolean backfillOnStartup = true;
+
+    public MetricsRollupBackfill(MetricsRollupService metricsRollupService, JobCoordinator jobCoordinator,
+                                 @Value("${metrics.rollup.timeout-ms:1800000}") long timeoutMillis) {
+        this.metricsRollupService = metricsRollupService;
+        this.jobCoordinator = jobCoordinator;
+        jobCoordinator.register(JOB_NAME, timeoutMillis, metricsRollupService::rebuild);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!backfillOnStartup) {
+            return;
+        }
+        try {
+            if (metricsRollupService.isEmpty()) {
+                jobCoordinator.runAndWait(JOB_NAME, JobTrigger.SCHEDULED, null);
+            }
+        } catch (RuntimeException e) {
+            // Не мешаем запуску: счетчики будут пересчитаны по расписанию
+            log.error("Ошибка первоначального заполнения счетчиков", e);
+        }
+    }
+
+    @Scheduled(cron = "${metrics.rollup.reconcile-cron:0 30 3 * * *}")
+    public void reconcile() {
+        jobCoordinator.trigger(JOB_NAME, JobTrigger.SCHEDULED, null);
+    }
+}
@@ -0,0 +1,106 @@
+package com.almetpt.coursework.bookclub.config;
+
+import com.almetpt.coursework.bookclub.model.Metric;
+import com.almetpt.coursework.bookclub.service.MetricsRollupService;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Передает в {@link MetricsRollupService} вставки, удаления и изменения
+ * признака удаления пользователей, книг, заказов и мероприятий.
+ * <p>
+ * Слушатель зарегистрирован в Hibernate, поэтому видит любые пути записи
+ * через JPA: сервисы, репозитории, каскады. Массовые JPQL/SQL-операции его
+ * обходят - такие расхождения исправляет пересчет счетчиков.
+ */
+@Component
+public class MetricsRollupListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private static final String DELETED_PROPERTY = "isDeleted";
+    private static final String CREATED_PROPERTY = "createdWhen";
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final MetricsRollupService metricsRollupService;
+
+    @Value("${metrics.rollup.enabled:true}")
+    private boolean enabled = true;
+
+    public MetricsRollupListener(EntityManagerFactory entityManagerFactory, MetricsRollupService metricsRollupService) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.metricsRollupService = metricsRollupService;
+    }
+
+    @PostConstruct
+    void register() {
+        if (!enabled) {
+            return;
+        }
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        Metric metric = Metric.forEntity(event.getEntity().getClass());
+        if (metric != null) {
+            EntityPersister persister = event.getPersister();
+            Object[] state = event.getState();
+            metricsRollupService.recordChange(metric, false, null, counted(persister, state), createdWhen(persister, state));
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        Metric metric = Metric.forEntity(event.getEntity().getClass());
+        // Без старого состояния (обновление отсоединенной сущности) дельту не вычислить
+        if (metric != null && event.getOldState() != null) {
+            EntityPersister persister = event.getPersister();
+            Object[] oldState = event.getOldState();
+            Object[] state = event.getState();
+            metricsRollupService.recordChange(metric,
+                    counted(persister, oldState), createdWhen(persister, oldState),
+                    counted(persister, state), createdWhen(persister, state));
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        Metric metric = Metric.forEntity(event.getEntity().getClass());
+        if (metric != null) {
+            EntityPersister persister = event.getPersister();
+            Object[] state = event.getDeletedState();
+            metricsRollupService.recordChange(metric, counted(persister, state), createdWhen(persister, state), false, null);
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    private static boolean counted(EntityPersister persister, Object[] state) {
+        return !Boolean.TRUE.equals(state[persister.getPropertyIndex(DELETED_PROPERTY)]);
+    }
+
+    private static LocalDateTime createdWhen(EntityPersister persister, Object[] state) {
+        return (LocalDateTime) state[persister.getPropertyIndex(CREATED_PROPERTY)];
+    }
+}
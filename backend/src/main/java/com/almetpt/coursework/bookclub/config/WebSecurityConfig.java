@@ -62,6 +62,8 @@ public class WebSecurityConfig {
                                                 .requestMatchers(HttpMethod.GET,
                                                                 "/api/rest/event-applications/paginated")
                                                 .hasAnyRole(ADMIN, ORGANIZER)
+                                                .requestMatchers(HttpMethod.POST, "/api/rest/events/*/check-in")
+                                                .hasAnyRole(ADMIN, ORGANIZER)
                                                 // фвыа
                                                 .requestMatchers(PUBLIC_GET_LIST.toArray(String[]::new)).permitAll()
                                                 .requestMatchers("/swagger-ui/**", "/v3/api-docs/**").permitAll()
@@ -1,14 +1,20 @@
 package com.almetpt.coursework.bookclub.config.jwt;
 
+import com.almetpt.coursework.bookclub.service.userdetails.CustomUserDetails;
 import com.almetpt.coursework.bookclub.service.userdetails.CustomUserDetailsService;
+import com.almetpt.coursework.bookclub.service.userdetails.UserPrincipalCache;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -18,16 +24,29 @@ import java.io.IOException;
 
 /**
  * Фильтр для проверки JWT токена в cookie
+ * <p>
+ * Токен разбирается один раз. Пользователь берется из {@link UserPrincipalCache}
+ * и принимается, только если версия токенов в cookie совпадает с версией в БД,
+ * так что БД читается лишь при промахе кеша. При {@code jwt.trust-claims=true}
+ * пользователь восстанавливается прямо из подписанных claims без кеша и БД;
+ * тогда смена пароля или роли вступает в силу только после истечения токена.
  */
 @Component
 public class JWTCookieFilter extends OncePerRequestFilter {
 
     private final JWTTokenUtil jwtTokenUtil;
     private final CustomUserDetailsService userDetailsService;
+    private final UserPrincipalCache userPrincipalCache;
+    private final boolean trustClaims;
 
-    public JWTCookieFilter(JWTTokenUtil jwtTokenUtil, CustomUserDetailsService userDetailsService) {
+    public JWTCookieFilter(JWTTokenUtil jwtTokenUtil,
+                           CustomUserDetailsService userDetailsService,
+                           UserPrincipalCache userPrincipalCache,
+                           @Value("${jwt.trust-claims:false}") boolean trustClaims) {
         this.jwtTokenUtil = jwtTokenUtil;
         this.userDetailsService = userDetailsService;
+        this.userPrincipalCache = userPrincipalCache;
+        this.trustClaims = trustClaims;
     }
 
     @Override
@@ -40,16 +59,15 @@ public class JWTCookieFilter extends OncePerRequestFilter {
             // Получаем JWT токен из cookie
             String jwt = extractJwtFromCookies(request);
 
-            if (jwt != null) {
-                // Получаем имя пользователя из токена
-                String username = jwtTokenUtil.getUsernameFromToken(jwt);
+            if (jwt != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+                // Подпись и срок проверяются при разборе
+                Claims claims = jwtTokenUtil.parseClaims(jwt);
+                String username = claims.getSubject();
 
-                if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                    // Загружаем данные пользователя
-                    UserDetails userDetails = userDetailsService.loadUserByEmail(username);
+                if (username != null) {
+                    UserDetails userDetails = resolvePrincipal(claims, username);
 
-                    // Проверяем валидность токена
-                    if (jwtTokenUtil.validateToken(jwt, userDetails)) {
+                    if (userDetails != null) {
                         // Создаем объект аутентификации
                         UsernamePasswordAuthenticationToken authToken =
                                 new UsernamePasswordAuthenticationToken(
@@ -65,6 +83,8 @@ public class JWTCookieFilter extends OncePerRequestFilter {
                     }
                 }
             }
+        } catch (JwtException e) {
+            logger.debug("Rejected JWT: " + e.getMessage());
         } catch (Exception e) {
             logger.error("Cannot set user authentication: {}", e);
         }
@@ -72,6 +92,39 @@ public class JWTCookieFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * @return пользователь или {@code null}, если токен отозван
+     */
+    private UserDetails resolvePrincipal(Claims claims, String username) {
+        Integer userId = claims.get(JWTTokenUtil.USER_ID_CLAIM, Integer.class);
+        if (userId == null) {
+            // Администратор из настроек: не хранится в БД
+            return userDetailsService.loadUserByEmail(username);
+        }
+        if (trustClaims) {
+            return jwtTokenUtil.principalFromClaims(claims);
+        }
+        CustomUserDetails principal = userPrincipalCache.get(userId, () -> loadPrincipal(userId));
+        if (principal == null
+                || principal.getTokenVersion() != jwtTokenUtil.getTokenVersion(claims)
+                || !principal.getUsername().equals(username)) {
+            return null;
+        }
+        return principal;
+    }
+
+    /**
+     * @return пользователь без пароля или {@code null}, если он удален
+     */
+    private CustomUserDetails loadPrincipal(Integer userId) {
+        try {
+            return userDetailsService.loadUserById(userId).withoutPassword();
+        } catch (UsernameNotFoundException e) {
+            logger.debug("JWT user not found: " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Извлекает JWT токен из cookie
      */
@@ -2,30 +2,52 @@ package com.almetpt.coursework.bookclub.config.jwt;
 
 import com.almetpt.coursework.bookclub.service.userdetails.CustomUserDetails; // Убедитесь, что импорт есть
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.Cookie;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.GrantedAuthority; // Для извлечения роли
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
 @Component
 public class JWTTokenUtil {
 
+    public static final String USER_ID_CLAIM = "userId";
+    public static final String USER_ROLE_CLAIM = "userRole";
+    // Версия токенов пользователя на момент выдачи, см. User.tokenVersion
+    public static final String TOKEN_VERSION_CLAIM = "tokenVersion";
+
     @Value("${jwt.secret}")
     private String secret;
 
     @Value("${jwt.expiration}")
     private Long expiration; // в секундах
 
+    // Ключ и парсер потокобезопасны, создаются один раз
+    private Key signingKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+        parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+    }
+
     public String getUsernameFromToken(String token) {
         return getClaimFromToken(token, Claims::getSubject);
     }
@@ -36,11 +58,11 @@ public class JWTTokenUtil {
 
     // Методы для извлечения пользовательских claims из токена (если потребуется на бэкенде)
     public Integer getUserIdFromToken(String token) {
-        return getClaimFromToken(token, claims -> claims.get("userId", Integer.class));
+        return getClaimFromToken(token, claims -> claims.get(USER_ID_CLAIM, Integer.class));
     }
 
     public String getUserRoleFromToken(String token) {
-        return getClaimFromToken(token, claims -> claims.get("userRole", String.class));
+        return getClaimFromToken(token, claims -> claims.get(USER_ROLE_CLAIM, String.class));
     }
 
     public <T> T getClaimFromToken(String token, Function<Claims, T> claimsResolver) {
@@ -48,35 +70,61 @@ public class JWTTokenUtil {
         return claimsResolver.apply(claims);
     }
 
-    private Claims getAllClaimsFromToken(String token) {
-        // Jwts.parserBuilder() автоматически обрабатывает ExpiredJwtException, MalformedJwtException и т.д.
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    /**
+     * Проверяет подпись и срок действия и возвращает claims.
+     *
+     * @throws io.jsonwebtoken.JwtException если токен поврежден, подделан или истек
+     */
+    public Claims parseClaims(String token) {
+        return parser.parseClaimsJws(token).getBody();
     }
 
-    private Boolean isTokenExpired(String token) {
-        try {
-            final Date expirationDate = getExpirationDateFromToken(token);
-            return expirationDate.before(new Date());
-        } catch (io.jsonwebtoken.ExpiredJwtException e) {
-            return true; // Если сам парсинг токена вызвал исключение истечения срока
-        }
+    /**
+     * Версия токенов из claims; у токенов, выданных до ее появления, считается нулевой.
+     */
+    public int getTokenVersion(Claims claims) {
+        Integer version = claims.get(TOKEN_VERSION_CLAIM, Integer.class);
+        return version != null ? version : 0;
+    }
+
+    /**
+     * Пользователь, восстановленный только из подписанных claims, без обращения к БД.
+     * Пароль не заполняется.
+     */
+    public CustomUserDetails principalFromClaims(Claims claims) {
+        String role = claims.get(USER_ROLE_CLAIM, String.class);
+        return new CustomUserDetails(claims.get(USER_ID_CLAIM, Integer.class), claims.getSubject(), null,
+                List.of(new SimpleGrantedAuthority("ROLE_" + (role != null ? role : "USER"))),
+                getTokenVersion(claims));
+    }
+
+    public Cookie createJwtCookie(String token) {
+        Cookie jwtCookie = new Cookie("jwt", token);
+        jwtCookie.setHttpOnly(true);
+        jwtCookie.setSecure(false); // false for localhost development, true for production with HTTPS
+        jwtCookie.setPath("/");
+        jwtCookie.setMaxAge(expiration.intValue()); // в секундах
+        jwtCookie.setAttribute("SameSite", "Lax"); // Or "Strict" or "None" (if Secure is true)
+        return jwtCookie;
+    }
+
+    private Claims getAllClaimsFromToken(String token) {
+        // parser автоматически обрабатывает ExpiredJwtException, MalformedJwtException и т.д.
+        return parseClaims(token);
     }
 
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
         if (userDetails instanceof CustomUserDetails customUserDetails) {
-            claims.put("userId", customUserDetails.getUserId()); // userId уже Integer в CustomUserDetails
+            claims.put(USER_ID_CLAIM, customUserDetails.getUserId()); // userId уже Integer в CustomUserDetails
             // Извлекаем строку роли, например, "USER", "ADMIN"
             String role = customUserDetails.getAuthorities().stream()
                     .map(GrantedAuthority::getAuthority)
                     .map(auth -> auth.startsWith("ROLE_") ? auth.substring(5) : auth) // Убираем префикс "ROLE_"
                     .findFirst() // Предполагаем одну основную роль для простоты в этом claim
                     .orElse("USER"); // Значение по умолчанию или обработка по необходимости
-            claims.put("userRole", role);
+            claims.put(USER_ROLE_CLAIM, role);
+            claims.put(TOKEN_VERSION_CLAIM, customUserDetails.getTokenVersion());
         }
         return createToken(claims, userDetails.getUsername()); // userDetails.getUsername() это email
     }
@@ -87,22 +135,19 @@ public class JWTTokenUtil {
                 .setSubject(subject)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + expiration * 1000))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
     public Boolean validateToken(String token, UserDetails userDetails) {
         try {
-            final String username = getUsernameFromToken(token);
-            return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+            // Истекший токен не проходит разбор, поэтому отдельная проверка срока не нужна
+            final Claims claims = parseClaims(token);
+            return claims.getSubject().equals(userDetails.getUsername())
+                    && claims.getExpiration().after(new Date());
         } catch (io.jsonwebtoken.JwtException e) { // Ловим общие JWT исключения (Expired, Malformed, etc.)
             // logger.warn("Token validation error: {}", e.getMessage()); // Если есть logger
             return false;
         }
     }
-
-    private Key getSigningKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secret);
-        return Keys.hmacShaKeyFor(keyBytes);
-    }
 }
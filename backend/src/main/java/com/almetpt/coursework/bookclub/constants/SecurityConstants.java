@@ -53,6 +53,7 @@ public interface SecurityConstants {
                 "/products/all",
                 "/products/categories",
                 "/products/*/cover",
+                "/products/*/download-signed",
                 "/products/categories/with-descriptions",
                 "/events",
                 "/events/*");
@@ -117,14 +118,16 @@ public interface SecurityConstants {
                 "/events/create",
                 "/events/*/update",
                 "/events/*/cancel",
-                "/events/*/reschedule");
+                "/events/*/reschedule",
+                "/events/*/notifications");
 
         // Права для управления мероприятиями (для организатора)
         List<String> EVENTS_ORGANIZER_MANAGEMENT_LIST = prefixPaths(
                 "/events/create",
                 "/events/*/update",
                 "/events/*/cancel",
-                "/events/*/reschedule");
+                "/events/*/reschedule",
+                "/events/*/notifications");
 
         // Права для управления заявками на мероприятия (для админа)
         List<String> EVENT_APPLICATIONS_ADMIN_LIST = prefixPaths(
@@ -218,9 +221,12 @@ public interface SecurityConstants {
                 "/profile/**",
                 "/users/profile",
                 "/users/profile/avatar-upload",
+                "/users/profile/password",
                 "/event-applications/create",
                 "/event-applications/my",
-                "/event-applications/{id}/cancel");
+                "/event-applications/{id}/cancel",
+                "/event-applications/{id}/waitlist-position",
+                "/event-applications/{id}/ticket");
 
         // Объединение всех прав администратора
         List<String> ADMIN_PERMISSIONS_LIST = Stream.of(
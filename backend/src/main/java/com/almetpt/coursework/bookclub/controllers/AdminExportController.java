@@ -0,0 +1,84 @@
+package com.almetpt.coursework.bookclub.controllers;
+
+import com.almetpt.coursework.bookclub.service.DataExportService;
+import com.almetpt.coursework.bookclub.service.DataExportService.ExportFormat;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Выгрузки для сверки данных. Ответ пишется потоком по мере чтения из БД
+ * ({@link StreamingResponseBody}), без сборки всего результата в памяти.
+ */
+@RestController
+@RequestMapping("/api/rest/admin/export")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminExportController {
+
+    private final DataExportService dataExportService;
+
+    public AdminExportController(DataExportService dataExportService) {
+        this.dataExportService = dataExportService;
+    }
+
+    @GetMapping("/audit")
+    @Operation(summary = "Выгрузить журнал аудита", description = "Выгружает записи аудита за [dateFrom, dateTo) в формате NDJSON или CSV")
+    public ResponseEntity<StreamingResponseBody> exportAudit(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateTo) {
+        LocalDateTime to = dateTo != null ? dateTo : LocalDateTime.now();
+        ExportFormat exportFormat;
+        try {
+            exportFormat = ExportFormat.fromParam(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (dateFrom.isAfter(to)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return stream("audit", exportFormat, out -> dataExportService.exportAudit(dateFrom, to, exportFormat, out));
+    }
+
+    @GetMapping("/orders")
+    @Operation(summary = "Выгрузить заказы", description = "Выгружает заказы вместе с товарами в формате NDJSON или CSV")
+    public ResponseEntity<StreamingResponseBody> exportOrders(@RequestParam(defaultValue = "ndjson") String format) {
+        try {
+            ExportFormat exportFormat = ExportFormat.fromParam(format);
+            return stream("orders", exportFormat, out -> dataExportService.exportOrders(exportFormat, out));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/users")
+    @Operation(summary = "Выгрузить пользователей", description = "Выгружает пользователей в формате NDJSON или CSV")
+    public ResponseEntity<StreamingResponseBody> exportUsers(@RequestParam(defaultValue = "ndjson") String format) {
+        try {
+            ExportFormat exportFormat = ExportFormat.fromParam(format);
+            return stream("users", exportFormat, out -> dataExportService.exportUsers(exportFormat, out));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    private static ResponseEntity<StreamingResponseBody> stream(String name, ExportFormat format, StreamingResponseBody body) {
+        String filename = name + "-" + LocalDate.now() + "." + format.getExtension();
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                .body(body);
+    }
+}
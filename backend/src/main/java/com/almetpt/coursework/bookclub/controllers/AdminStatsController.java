@@ -1,101 +1,171 @@
 package com.almetpt.coursework.bookclub.controllers;
 
-import com.almetpt.coursework.bookclub.repository.BookRepository;
-import com.almetpt.coursework.bookclub.repository.EventRepository;
-import com.almetpt.coursework.bookclub.repository.OrderRepository;
-import com.almetpt.coursework.bookclub.repository.UserRepository;
-import com.almetpt.coursework.bookclub.model.Event;
+import com.almetpt.coursework.bookclub.dto.ChartDataDTO;
+import com.almetpt.coursework.bookclub.dto.EventStatisticsDTO;
+import com.almetpt.coursework.bookclub.model.Metric;
+import com.almetpt.coursework.bookclub.model.MetricGranularity;
+import com.almetpt.coursework.bookclub.service.AuditLogWriter;
+import com.almetpt.coursework.bookclub.service.CoverImageCache;
+import com.almetpt.coursework.bookclub.service.EventAttendanceScheduler;
+import com.almetpt.coursework.bookclub.service.EventCheckInService;
+import com.almetpt.coursework.bookclub.service.EventReminderService;
+import com.almetpt.coursework.bookclub.service.EventUpdateBroadcaster;
+import com.almetpt.coursework.bookclub.service.ExternalImageFetchService;
+import com.almetpt.coursework.bookclub.service.MailOutboxService;
+import com.almetpt.coursework.bookclub.service.StatisticsService;
+import com.almetpt.coursework.bookclub.service.userdetails.UserPrincipalCache;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-// import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/rest/admin")
 @PreAuthorize("hasRole('ADMIN')")
 public class AdminStatsController {
 
-    private final UserRepository userRepository;
-    private final BookRepository bookRepository;
-    private final OrderRepository orderRepository;
-    private final EventRepository eventRepository;
-
-    public AdminStatsController(UserRepository userRepository, 
-                               BookRepository bookRepository, 
-                               OrderRepository orderRepository,
-                               EventRepository eventRepository) {
-        this.userRepository = userRepository;
-        this.bookRepository = bookRepository;
-        this.orderRepository = orderRepository;
-        this.eventRepository = eventRepository;
+    private final CoverImageCache coverImageCache;
+    private final ExternalImageFetchService externalImageFetchService;
+    private final StatisticsService statisticsService;
+    private final AuditLogWriter auditLogWriter;
+    private final MailOutboxService mailOutboxService;
+    private final EventAttendanceScheduler eventAttendanceScheduler;
+    private final UserPrincipalCache userPrincipalCache;
+    private final EventUpdateBroadcaster eventUpdateBroadcaster;
+    private final EventCheckInService eventCheckInService;
+    private final EventReminderService eventReminderService;
+
+    public AdminStatsController(CoverImageCache coverImageCache,
+                               ExternalImageFetchService externalImageFetchService,
+                               StatisticsService statisticsService,
+                               AuditLogWriter auditLogWriter,
+                               MailOutboxService mailOutboxService,
+                               EventAttendanceScheduler eventAttendanceScheduler,
+                               UserPrincipalCache userPrincipalCache,
+                               EventUpdateBroadcaster eventUpdateBroadcaster,
+                               EventCheckInService eventCheckInService,
+                               EventReminderService eventReminderService) {
+        this.coverImageCache = coverImageCache;
+        this.externalImageFetchService = externalImageFetchService;
+        this.statisticsService = statisticsService;
+        this.auditLogWriter = auditLogWriter;
+        this.mailOutboxService = mailOutboxService;
+        this.eventAttendanceScheduler = eventAttendanceScheduler;
+        this.userPrincipalCache = userPrincipalCache;
+        this.eventUpdateBroadcaster = eventUpdateBroadcaster;
+        this.eventCheckInService = eventCheckInService;
+        this.eventReminderService = eventReminderService;
     }
 
+    // Итоги читаются из счетчиков, а не четырьмя COUNT по таблицам
     @GetMapping("/stats")
     public ResponseEntity<Map<String, Object>> getGeneralStats() {
+        Map<Metric, Long> totals = statisticsService.getTotals();
         Map<String, Object> stats = new HashMap<>();
-        stats.put("users", userRepository.countByIsDeletedFalse());
-        stats.put("books", bookRepository.countByIsDeletedFalse());
-        stats.put("orders", orderRepository.countByIsDeletedFalse());
-        stats.put("events", eventRepository.countByIsDeletedFalse());
+        stats.put("users", totals.get(Metric.USERS));
+        stats.put("books", totals.get(Metric.BOOKS));
+        stats.put("orders", totals.get(Metric.ORDERS));
+        stats.put("events", totals.get(Metric.EVENTS));
         return ResponseEntity.ok(stats);
     }
 
+    // Попадания, промахи и вытеснения кеша обложек
+    @GetMapping("/stats/cover-cache")
+    public ResponseEntity<Map<String, Object>> getCoverCacheStats() {
+        return ResponseEntity.ok(coverImageCache.getStats());
+    }
+
+    // Очередь и счетчики загрузки внешних изображений
+    @GetMapping("/stats/image-fetch")
+    public ResponseEntity<Map<String, Object>> getImageFetchStats() {
+        return ResponseEntity.ok(externalImageFetchService.getStats());
+    }
+
+    // Очередь и счетчики фоновой записи журнала аудита
+    @GetMapping("/stats/audit-writer")
+    public ResponseEntity<Map<String, Object>> getAuditWriterStats() {
+        return ResponseEntity.ok(auditLogWriter.getStats());
+    }
+
+    // Очередь исходящей почты: письма по статусам и счетчики доставки
+    @GetMapping("/stats/mail-outbox")
+    public ResponseEntity<Map<String, Object>> getMailOutboxStats() {
+        return ResponseEntity.ok(mailOutboxService.getStats());
+    }
+
+    // Позиция и счетчики ночной отметки неявок на мероприятия
+    @GetMapping("/stats/event-attendance")
+    public ResponseEntity<Map<String, Object>> getEventAttendanceStats() {
+        return ResponseEntity.ok(eventAttendanceScheduler.getStats());
+    }
+
+    // Попадания и промахи кеша пользователей при проверке JWT
+    @GetMapping("/stats/principal-cache")
+    public ResponseEntity<Map<String, Object>> getPrincipalCacheStats() {
+        return ResponseEntity.ok(userPrincipalCache.getStats());
+    }
+
+    // Подписчики потока мероприятий, отключенные медленные клиенты и схлопнутые изменения
+    @GetMapping("/stats/event-stream")
+    public ResponseEntity<Map<String, Object>> getEventStreamStats() {
+        return ResponseEntity.ok(eventUpdateBroadcaster.getStats());
+    }
+
+    // Проходы по билетам: пропущено, повторы, отклонено и ожидающие записи отметки
+    @GetMapping("/stats/check-in")
+    public ResponseEntity<Map<String, Object>> getCheckInStats() {
+        return ResponseEntity.ok(eventCheckInService.getStats());
+    }
+
+    // Таймеры напоминаний в колесе, позиция загрузки и отправленные напоминания
+    @GetMapping("/stats/event-reminders")
+    public ResponseEntity<Map<String, Object>> getEventReminderStats() {
+        return ResponseEntity.ok(eventReminderService.getStats());
+    }
+
     @GetMapping("/stats/users-chart")
-    public ResponseEntity<Map<String, Object>> getUsersChart() {
-        // Здесь должна быть логика для получения данных о регистрациях пользователей
-        // Пример заглушки:
-        Map<String, Object> chartData = new HashMap<>();
-        chartData.put("labels", Arrays.asList("Янв", "Фев", "Мар", "Апр", "Май"));
-        chartData.put("data", Arrays.asList(5, 8, 12, 7, 10));
-        return ResponseEntity.ok(chartData);
+    public ResponseEntity<ChartDataDTO> getUsersChart(
+            @RequestParam(defaultValue = "MONTH") MetricGranularity granularity,
+            @RequestParam(defaultValue = "12") int buckets) {
+        try {
+            return ResponseEntity.ok(statisticsService.getUsersRegistrationChart(granularity, buckets));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     @GetMapping("/stats/orders-chart")
-    public ResponseEntity<Map<String, Object>> getOrdersChart() {
-        // Здесь должна быть логика для получения данных о заказах
-        // Пример заглушки:
-        Map<String, Object> chartData = new HashMap<>();
-        chartData.put("labels", Arrays.asList("Янв", "Фев", "Мар", "Апр", "Май"));
-        chartData.put("data", Arrays.asList(10, 15, 8, 12, 20));
-        return ResponseEntity.ok(chartData);
+    public ResponseEntity<ChartDataDTO> getOrdersChart(
+            @RequestParam(defaultValue = "MONTH") MetricGranularity granularity,
+            @RequestParam(defaultValue = "12") int buckets) {
+        try {
+            return ResponseEntity.ok(statisticsService.getOrdersChart(granularity, buckets));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
+    // Заполненность мероприятий: один агрегирующий запрос на страницу
     @GetMapping("/stats/events")
-    public ResponseEntity<List<Map<String, Object>>> getEventStats() {
+    public ResponseEntity<Page<EventStatisticsDTO>> getEventStats(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateTo,
+            @RequestParam(defaultValue = "false") boolean includeCancelled,
+            @PageableDefault(size = 20, sort = "date", direction = Sort.Direction.DESC) Pageable pageable) {
         try {
-            List<Event> events = eventRepository.findByIsDeletedFalseAndIsCancelledFalse();
-            
-            List<Map<String, Object>> eventStats = events.stream()
-                .map(event -> {
-                    Map<String, Object> eventStat = new HashMap<>();
-                    eventStat.put("id", event.getId());
-                    eventStat.put("title", event.getTitle());
-                    eventStat.put("eventType", event.getEventType());
-                    eventStat.put("date", event.getDate().format(DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm")));
-                    eventStat.put("maxParticipants", event.getMaxParticipants());
-                    
-                    int approvedApplications = eventRepository.countApprovedApplications(event.getId());
-                    eventStat.put("approvedApplications", approvedApplications);
-                    
-                    double fillPercentage = event.getMaxParticipants() > 0 
-                        ? (approvedApplications * 100.0) / event.getMaxParticipants() 
-                        : 0;
-                    eventStat.put("fillPercentage", fillPercentage);
-                    
-                    return eventStat;
-                })
-                .collect(Collectors.toList());
-            
-            return ResponseEntity.ok(eventStats);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.internalServerError().build();
+            return ResponseEntity.ok(statisticsService.getEventsStatistics(dateFrom, dateTo, includeCancelled, pageable));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         }
     }
 }
@@ -17,7 +17,6 @@ import jakarta.validation.Valid; // For DTO validation
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j; // Added for logging
 
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -32,8 +31,6 @@ import org.springframework.web.bind.annotation.*;
 @Tag(name = "Аутентификация", description = "Контроллер для аутентификации, регистрации и восстановления пароля")
 public class AuthController {
 
-    @Value("${jwt.expiration}")
-    private int jwtExpiration; // Assuming this is in seconds
     private final AuthenticationManager authenticationManager;
     private final JWTTokenUtil jwtTokenUtil;
     private final CustomUserDetailsService userDetailsService;
@@ -152,12 +149,6 @@ public ResponseEntity<?> logout(HttpServletRequest request, HttpServletResponse
     }
 
     private void addJwtCookie(HttpServletResponse response, String token) {
-        Cookie jwtCookie = new Cookie("jwt", token);
-        jwtCookie.setHttpOnly(true);
-        jwtCookie.setSecure(false); // false for localhost development, true for production with HTTPS
-        jwtCookie.setPath("/");
-        jwtCookie.setMaxAge(jwtExpiration); // jwtExpiration is in seconds
-        jwtCookie.setAttribute("SameSite", "Lax"); // Or "Strict" or "None" (if Secure is true)
-        response.addCookie(jwtCookie);
+        response.addCookie(jwtTokenUtil.createJwtCookie(token));
     }
 }
@@ -3,35 +3,41 @@ package com.almetpt.coursework.bookclub.controllers;
 import com.almetpt.coursework.bookclub.dto.BookDTO;
 import com.almetpt.coursework.bookclub.dto.BookImageDTO;
 import com.almetpt.coursework.bookclub.dto.BookImageUploadDTO;
+import com.almetpt.coursework.bookclub.dto.BookListingDTO;
 import com.almetpt.coursework.bookclub.model.Book;
 import com.almetpt.coursework.bookclub.model.BookGenre;
 import com.almetpt.coursework.bookclub.service.BookImageService;
 import com.almetpt.coursework.bookclub.service.BookService;
+import com.almetpt.coursework.bookclub.service.CoverImageCache;
+import com.almetpt.coursework.bookclub.service.FileDownloadService;
+import com.almetpt.coursework.bookclub.service.ImageProcessingService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.http.converter.ByteArrayHttpMessageConverter;
+import org.webjars.NotFoundException;
 
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -42,11 +48,14 @@ public class BookController extends GenericController<Book, BookDTO> {
     private static final Logger log = LoggerFactory.getLogger(BookController.class);
     private final BookService bookService;
     private final BookImageService bookImageService;
+    private final FileDownloadService fileDownloadService;
 
-    public BookController(BookService bookService, BookImageService bookImageService) {
+    public BookController(BookService bookService, BookImageService bookImageService,
+            FileDownloadService fileDownloadService) {
         super(bookService);
         this.bookService = bookService;
         this.bookImageService = bookImageService;
+        this.fileDownloadService = fileDownloadService;
     }
 
     @Operation(summary = "Получить все доступные жанры книг")
@@ -77,6 +86,20 @@ public class BookController extends GenericController<Book, BookDTO> {
         return ResponseEntity.ok(books);
     }
 
+    @Operation(summary = "Список книг для каталога", description = "Возвращает страницу активных книг с полями карточки, без жанров и связей")
+    @GetMapping("/listing")
+    public ResponseEntity<Page<BookListingDTO>> getBookListing(
+            @Parameter(description = "Название книги") @RequestParam(required = false) String title,
+            @Parameter(description = "Автор") @RequestParam(required = false) String author,
+            @Parameter(description = "Жанр (значение BookGenre)") @RequestParam(required = false) String genre,
+            Pageable pageable) {
+        try {
+            return ResponseEntity.ok(bookService.searchBookListing(title, author, genre, pageable));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     // Если нужен эндпоинт для всех книг (включая удаленные) с пагинацией:
     @Operation(summary = "Получить страницу всех книг (включая удаленные, только для админа)", description = "Возвращает страницу всех книг с пагинацией")
     @GetMapping("/all/paginated")
@@ -163,87 +186,35 @@ public class BookController extends GenericController<Book, BookDTO> {
         return ResponseEntity.ok(result);
     }
 
+    @Operation(summary = "Получить обложку книги", description = "Отдает обложку книги; size=thumb|small|web уменьшает ее для сеток и карточек")
     @GetMapping("/{id}/cover")
-    public ResponseEntity<byte[]> getBookCover(@PathVariable Long id) {
+    public ResponseEntity<Resource> getBookCover(
+            @PathVariable Long id,
+            @Parameter(description = "Размер: thumb, small, web или original (по умолчанию)") @RequestParam(required = false) String size,
+            WebRequest request) {
+        ImageProcessingService.ImageSize imageSize;
         try {
-            BookDTO book = bookService.getOne(id);
-
-            // Если нет данных об обложке
-            if (book == null || (book.getCoverImageUrl() == null && book.getCoverImageFilename() == null)) {
+            imageSize = ImageProcessingService.ImageSize.fromParam(size);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            // Обложка берется из кеша в памяти; при промахе - из файла, БД или по внешнему URL
+            CoverImageCache.CachedCover cover = bookImageService.getBookCover(id, imageSize);
+            if (cover == null) {
                 return ResponseEntity.notFound().build();
             }
-
-            byte[] imageData;
-
-            // Если есть внешний URL - загружаем через прокси
-            if (book.getCoverImageUrl() != null && !book.getCoverImageUrl().isEmpty()) {
-                try {
-                    log.info("Загрузка изображения с внешнего URL: {}", book.getCoverImageUrl());
-                    imageData = downloadExternalImage(book.getCoverImageUrl());
-
-                    // Опционально: сохраняем загруженное изображение для будущего использования
-                    bookImageService.saveDownloadedImage(id, imageData);
-
-                    return ResponseEntity.ok()
-                            .contentType(MediaType.IMAGE_JPEG)
-                            .cacheControl(CacheControl.maxAge(7, TimeUnit.DAYS))
-                            .body(imageData);
-                } catch (Exception e) {
-                    log.error("Ошибка загрузки внешнего изображения: {}", book.getCoverImageUrl(), e);
-
-                    // Если есть локальный файл - используем его как запасной вариант
-                    if (book.getCoverImageFilename() != null) {
-                        imageData = bookImageService.getBookCoverImageData(id);
-                        return ResponseEntity.ok()
-                                .contentType(
-                                        MediaType.parseMediaType(determineContentType(book.getCoverImageFilename())))
-                                .cacheControl(CacheControl.maxAge(30, TimeUnit.DAYS))
-                                .body(imageData);
-                    }
-
-                    // Если нет локального файла - возвращаем 404
-                    return ResponseEntity.notFound().build();
-                }
-            }
-
-            // Если есть локальный файл
-            if (book.getCoverImageFilename() != null) {
-                imageData = bookImageService.getBookCoverImageData(id);
-                return ResponseEntity.ok()
-                        .contentType(MediaType.parseMediaType(determineContentType(book.getCoverImageFilename())))
-                        .cacheControl(CacheControl.maxAge(30, TimeUnit.DAYS))
-                        .body(imageData);
-            }
-
+            return fileDownloadService.serveCover(cover, CacheControl.maxAge(30, TimeUnit.DAYS), request);
+        } catch (NotFoundException e) {
             return ResponseEntity.notFound().build();
+        } catch (RejectedExecutionException e) {
+            // Очередь загрузки внешних обложек переполнена - клиенту стоит повторить позже
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .build();
         } catch (Exception e) {
             log.error("Ошибка при получении обложки книги с id={}", id, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
-
-    private byte[] downloadExternalImage(String url) {
-        RestTemplate restTemplate = new RestTemplate();
-        restTemplate.getMessageConverters().add(new ByteArrayHttpMessageConverter());
-        try {
-            log.info("Загрузка изображения с URL: {}", url);
-            byte[] imageData = restTemplate.getForObject(url, byte[].class);
-            log.info("Изображение успешно загружено, размер: {} байт", imageData != null ? imageData.length : 0);
-            return imageData;
-        } catch (RestClientException e) {
-            log.error("Не удалось загрузить изображение с URL: {}", url, e);
-            throw e;
-        }
-    }
-
-    // Определение типа контента по расширению файла
-    private String determineContentType(String filename) {
-        if (filename.endsWith(".webp"))
-            return "image/webp";
-        if (filename.endsWith(".jpg") || filename.endsWith(".jpeg"))
-            return "image/jpeg";
-        if (filename.endsWith(".png"))
-            return "image/png";
-        return "application/octet-stream";
-    }
-}
\ No newline at end of file
+}
@@ -1,32 +1,39 @@
 package com.almetpt.coursework.bookclub.controllers;
 
 import com.almetpt.coursework.bookclub.dto.ContactDTO;
+import com.almetpt.coursework.bookclub.service.MailOutboxService;
+import com.almetpt.coursework.bookclub.service.MailTemplateService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/rest/contact")
 public class ContactController {
 
     @Autowired
-    private JavaMailSender mailSender;
+    private MailOutboxService mailOutboxService;
+
+    @Autowired
+    private MailTemplateService mailTemplateService;
 
     // Замените на почту администратора
     private static final String ADMIN_EMAIL = "admin@example.com";
 
     @PostMapping
     public void sendContactMessage(@RequestBody ContactDTO contactDTO) {
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setTo(ADMIN_EMAIL);
-        message.setSubject("Новое сообщение с формы обратной связи");
-        message.setText(
-            "Имя: " + contactDTO.getName() + "\n" +
-            "Email: " + contactDTO.getFromEmail() + "\n" +
-            "Телефон: " + contactDTO.getPhone() + "\n" +
-            "Сообщение:\n" + contactDTO.getBody()
+        // Поля формы могут быть пустыми, а Map.of не принимает null
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("name", contactDTO.getName());
+        variables.put("fromEmail", contactDTO.getFromEmail());
+        variables.put("phone", contactDTO.getPhone());
+        variables.put("body", contactDTO.getBody());
+        mailOutboxService.enqueue(
+            ADMIN_EMAIL,
+            "Новое сообщение с формы обратной связи",
+            mailTemplateService.render(MailTemplateService.CONTACT, variables)
         );
-        mailSender.send(message);
     }
 }
@@ -5,6 +5,7 @@ import com.almetpt.coursework.bookclub.model.EventApplication;
 import com.almetpt.coursework.bookclub.model.User;
 import com.almetpt.coursework.bookclub.repository.UserRepository;
 import com.almetpt.coursework.bookclub.service.EventApplicationService;
+import com.almetpt.coursework.bookclub.service.userdetails.CustomUserDetails;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.data.domain.Page;
@@ -19,6 +20,7 @@ import org.springframework.web.bind.annotation.*;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/rest/event-applications")
@@ -120,6 +122,46 @@ public class EventApplicationController extends GenericController<EventApplicati
         return ResponseEntity.ok(applicationsPage);
     }
 
+    @Operation(summary = "Место в листе ожидания",
+            description = "Для частого опроса: две выборки по ключу без подсчета очереди; 404, если заявки нет в очереди")
+    @GetMapping("/{id}/waitlist-position")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<Map<String, Object>> getWaitlistPosition(@PathVariable Long id,
+                                                                   Authentication authentication) {
+        Long userId = authentication.getPrincipal() instanceof CustomUserDetails details && details.getUserId() != null
+                ? details.getUserId().longValue()
+                : null;
+        if (userId == null) {
+            User currentUser = userRepository.findUserByEmailAndIsDeletedFalse(authentication.getName());
+            if (currentUser == null) {
+                return ResponseEntity.notFound().build();
+            }
+            userId = currentUser.getId();
+        }
+        return eventApplicationService.getWaitlistPosition(id, userId)
+                .map(position -> ResponseEntity.ok(Map.<String, Object>of("applicationId", id, "position", position)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @Operation(summary = "Билет на мероприятие", description = "Подписанный билет одобренной заявки текущего пользователя для QR-кода")
+    @GetMapping("/{id}/ticket")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<Map<String, Object>> getTicket(@PathVariable Long id, Authentication authentication) {
+        Long userId = authentication.getPrincipal() instanceof CustomUserDetails details && details.getUserId() != null
+                ? details.getUserId().longValue()
+                : null;
+        if (userId == null) {
+            User currentUser = userRepository.findUserByEmailAndIsDeletedFalse(authentication.getName());
+            if (currentUser == null) {
+                return ResponseEntity.notFound().build();
+            }
+            userId = currentUser.getId();
+        }
+        return eventApplicationService.getTicket(id, userId)
+                .map(ticket -> ResponseEntity.ok(Map.<String, Object>of("applicationId", id, "ticket", ticket)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
     @PutMapping("/{id}/cancel")
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<?> cancelEventApplication(@PathVariable Long id) {
@@ -2,9 +2,13 @@ package com.almetpt.coursework.bookclub.controllers;
 
 import com.almetpt.coursework.bookclub.annotations.AdminAction;
 import com.almetpt.coursework.bookclub.dto.EventDTO;
+import com.almetpt.coursework.bookclub.dto.EventListingDTO;
 import com.almetpt.coursework.bookclub.model.Event;
 import com.almetpt.coursework.bookclub.model.RescheduleRequest;
+import com.almetpt.coursework.bookclub.service.EventCheckInService;
 import com.almetpt.coursework.bookclub.service.EventService;
+import com.almetpt.coursework.bookclub.service.EventUpdateBroadcaster;
+import com.almetpt.coursework.bookclub.service.userdetails.CustomUserDetails;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -15,11 +19,16 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/rest/events")
@@ -27,10 +36,16 @@ import org.springframework.web.bind.annotation.*;
 public class EventController extends GenericController<Event, EventDTO> {
 
     private final EventService eventService;
+    private final EventUpdateBroadcaster eventUpdateBroadcaster;
+    private final EventCheckInService eventCheckInService;
 
-    public EventController(EventService eventService) {
+    public EventController(EventService eventService,
+                           EventUpdateBroadcaster eventUpdateBroadcaster,
+                           EventCheckInService eventCheckInService) {
         super(eventService);
         this.eventService = eventService;
+        this.eventUpdateBroadcaster = eventUpdateBroadcaster;
+        this.eventCheckInService = eventCheckInService;
     }
 
     // Новый метод для обработки пагинированного запроса
@@ -51,6 +66,33 @@ public class EventController extends GenericController<Event, EventDTO> {
         return ResponseEntity.ok(eventPage);
     }
 
+    @Operation(summary = "Список мероприятий", description = "Возвращает страницу неудаленных мероприятий без заявок и данных книги")
+    @GetMapping("/listing")
+    public ResponseEntity<Page<EventListingDTO>> getEventListing(
+            @Parameter(description = "Номер страницы (начиная с 0)") @RequestParam(defaultValue = "0") int page,
+            @Parameter(description = "Размер страницы") @RequestParam(defaultValue = "100") int size,
+            @Parameter(description = "Поле для сортировки") @RequestParam(defaultValue = "id") String sortBy,
+            @Parameter(description = "Направление сортировки (ASC или DESC)") @RequestParam(defaultValue = "ASC") String direction) {
+        Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.fromString(direction), sortBy));
+        return ResponseEntity.ok(eventService.listListing(pageable));
+    }
+
+    @Operation(summary = "Поток изменений мероприятий", description = "Server-Sent Events: сразу текущие места выбранных мероприятий (событие seats), затем их изменения. Вошедший пользователь также получает статусы своих заявок на эти мероприятия (событие application).")
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamUpdates(
+            @Parameter(description = "ID мероприятий") @RequestParam List<Long> ids,
+            Authentication authentication) {
+        Long userId = authentication != null && authentication.getPrincipal() instanceof CustomUserDetails details
+                && details.getUserId() != null
+                ? details.getUserId().longValue()
+                : null;
+        try {
+            return ResponseEntity.ok(eventUpdateBroadcaster.subscribe(ids, userId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @Operation(summary = "Отменить мероприятие", description = "Позволяет отменить мероприятие с указанием причины отмены. Доступно администраторам и организаторам.")
     @PostMapping("/{eventId}/cancel")
     @PreAuthorize("hasRole('ADMIN') or hasRole('ORGANIZER')")
@@ -73,6 +115,29 @@ public class EventController extends GenericController<Event, EventDTO> {
         return ResponseEntity.ok().build();
     }
 
+    @Operation(summary = "Проход по билету", description = "Проверяет подписанный билет из QR-кода и отмечает участника. 200 - проход разрешен, 409 - билет уже использован, 400 - билет недействителен. Доступно администраторам и организаторам.")
+    @PostMapping("/{eventId}/check-in")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('ORGANIZER')")
+    public ResponseEntity<EventCheckInService.CheckIn> checkIn(
+            @Parameter(description = "ID мероприятия") @PathVariable Long eventId,
+            @Parameter(description = "Билет из QR-кода") @RequestParam String ticket) {
+        EventCheckInService.CheckIn result = eventCheckInService.checkIn(eventId, ticket);
+        HttpStatus status = switch (result.result()) {
+            case ADMITTED -> HttpStatus.OK;
+            case ALREADY_CHECKED_IN -> HttpStatus.CONFLICT;
+            default -> HttpStatus.BAD_REQUEST;
+        };
+        return ResponseEntity.status(status).body(result);
+    }
+
+    @Operation(summary = "Ход рассылки по мероприятию", description = "Число писем об отмене и переносе мероприятия по статусам доставки. Доступно администраторам и организаторам.")
+    @GetMapping("/{eventId}/notifications")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('ORGANIZER')")
+    public ResponseEntity<Map<String, Map<String, Long>>> getNotificationProgress(
+            @Parameter(description = "ID мероприятия") @PathVariable Long eventId) {
+        return ResponseEntity.ok(eventService.getNotificationProgress(eventId));
+    }
+
     @Override
     @PostMapping
     @PreAuthorize("hasRole('ADMIN') or hasRole('ORGANIZER')")
@@ -0,0 +1,62 @@
+package com.almetpt.coursework.bookclub.controllers;
+
+import com.almetpt.coursework.bookclub.model.JobRun;
+import com.almetpt.coursework.bookclub.model.JobTrigger;
+import com.almetpt.coursework.bookclub.service.JobCoordinator;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import org.webjars.NotFoundException;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/rest/admin/jobs")
+@PreAuthorize("hasRole('ADMIN')")
+@Tag(name = "Фоновые задачи", description = "Состояние, история и ручной запуск фоновых задач")
+public class JobController {
+
+    private static final int MAX_RUNS = 100;
+
+    private final JobCoordinator jobCoordinator;
+
+    public JobController(JobCoordinator jobCoordinator) {
+        this.jobCoordinator = jobCoordinator;
+    }
+
+    @Operation(summary = "Состояние задач", description = "Аренда, таймаут и последний запуск каждой задачи")
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getJobs() {
+        return ResponseEntity.ok(Map.of(
+                "instanceId", jobCoordinator.getInstanceId(),
+                "jobs", jobCoordinator.getStatus()));
+    }
+
+    @Operation(summary = "История запусков задачи", description = "Последние запуски, от новых к старым")
+    @GetMapping("/{name}/runs")
+    public ResponseEntity<List<JobRun>> getRuns(@PathVariable String name,
+                                                @RequestParam(defaultValue = "20") int limit) {
+        try {
+            return ResponseEntity.ok(jobCoordinator.getRuns(name, Math.max(1, Math.min(limit, MAX_RUNS))));
+        } catch (NotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @Operation(summary = "Запустить задачу вручную", description = "409, если задача уже выполняется на любом экземпляре")
+    @PostMapping("/{name}/trigger")
+    public ResponseEntity<JobRun> trigger(@PathVariable String name, Authentication authentication) {
+        try {
+            return jobCoordinator.trigger(name, JobTrigger.MANUAL, authentication.getName())
+                    .map(run -> ResponseEntity.status(HttpStatus.ACCEPTED).body(run))
+                    .orElseGet(() -> ResponseEntity.status(HttpStatus.CONFLICT).build());
+        } catch (NotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.almetpt.coursework.bookclub.controllers;
+
+import com.almetpt.coursework.bookclub.service.MailOutboxService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/rest/admin/mail-outbox")
+@PreAuthorize("hasRole('ADMIN')")
+@Tag(name = "Очередь почты", description = "Управление очередью исходящих писем")
+public class MailOutboxController {
+
+    private final MailOutboxService mailOutboxService;
+
+    public MailOutboxController(MailOutboxService mailOutboxService) {
+        this.mailOutboxService = mailOutboxService;
+    }
+
+    @Operation(summary = "Повторить недоставленные письма",
+            description = "Возвращает в очередь письма, исчерпавшие попытки, со сброшенным счетчиком попыток")
+    @PostMapping("/requeue-dead")
+    public ResponseEntity<Map<String, Object>> requeueDead() {
+        return ResponseEntity.ok(Map.of("requeued", mailOutboxService.requeueDead()));
+    }
+}
@@ -11,7 +11,6 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
-import jakarta.mail.MessagingException;
 
 @RestController
 @RequestMapping("/api/rest/orders")
@@ -33,7 +32,7 @@ public class OrderController extends GenericController<Order, OrderDTO> {
 
     @PostMapping("/create")
     @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<OrderDTO> createOrderFromCart() throws MessagingException {
+    public ResponseEntity<OrderDTO> createOrderFromCart() {
         return ResponseEntity.status(HttpStatus.CREATED).body(orderService.createOrderFromCart());
     }
 
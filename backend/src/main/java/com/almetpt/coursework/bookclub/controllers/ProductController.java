@@ -1,8 +1,14 @@
 package com.almetpt.coursework.bookclub.controllers;
 
 import com.almetpt.coursework.bookclub.dto.ProductDTO;
+import com.almetpt.coursework.bookclub.dto.ProductListingDTO;
 import com.almetpt.coursework.bookclub.model.Product;
 import com.almetpt.coursework.bookclub.model.ProductCategory;
+import com.almetpt.coursework.bookclub.service.CoverImageCache;
+import com.almetpt.coursework.bookclub.service.DownloadLinkService;
+import com.almetpt.coursework.bookclub.service.FileDownloadService;
+import com.almetpt.coursework.bookclub.service.ImageProcessingService;
+import com.almetpt.coursework.bookclub.service.ProductImageService;
 import com.almetpt.coursework.bookclub.service.ProductService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -12,18 +18,22 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.http.HttpHeaders;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import org.webjars.NotFoundException;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.Map;
 import java.util.HashMap;
@@ -34,10 +44,17 @@ import java.util.HashMap;
 public class ProductController extends GenericController<Product, ProductDTO> {
 
     private final ProductService productService;
+    private final ProductImageService productImageService;
+    private final FileDownloadService fileDownloadService;
+    private final DownloadLinkService downloadLinkService;
 
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService, ProductImageService productImageService,
+            FileDownloadService fileDownloadService, DownloadLinkService downloadLinkService) {
         super(productService); // Pass productService to GenericController
         this.productService = productService;
+        this.productImageService = productImageService;
+        this.fileDownloadService = fileDownloadService;
+        this.downloadLinkService = downloadLinkService;
     }
 
     @Operation(summary = "Создать новый продукт с файлами", description = "Создает продукт с возможностью загрузки обложки и электронного файла")
@@ -81,20 +98,23 @@ public class ProductController extends GenericController<Product, ProductDTO> {
     @GetMapping("/{id}/download-electronic")
     @PreAuthorize("isAuthenticated()") // Consider more specific authorization (e.g., user purchased this)
     public ResponseEntity<Resource> downloadElectronicProduct(
-            @Parameter(description = "ID продукта", required = true) @PathVariable Long id) {
+            @Parameter(description = "ID продукта", required = true) @PathVariable Long id,
+            WebRequest request) {
         try {
             Product product = productService.getProductForDownload(id); // Get product to access original filename
             if (product.getElectronicProductFilename() == null
                     || product.getOriginalElectronicProductFilename() == null) {
                 return ResponseEntity.notFound().build();
             }
-            Resource resource = productService.getElectronicProductResource(id);
-            HttpHeaders headers = new HttpHeaders();
-            headers.add(HttpHeaders.CONTENT_DISPOSITION,
-                    "attachment; filename=\"" + product.getOriginalElectronicProductFilename() + "\"");
-            // You might want to determine content type more dynamically if needed
-            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-            return ResponseEntity.ok().headers(headers).body(resource);
+            // Supports resuming interrupted downloads via Range and revalidation via ETag
+            return fileDownloadService.serveStoredFile(
+                    product.getElectronicProductFilename(),
+                    MediaType.APPLICATION_OCTET_STREAM,
+                    CacheControl.noCache().cachePrivate(),
+                    ContentDisposition.attachment()
+                            .filename(product.getOriginalElectronicProductFilename(), StandardCharsets.UTF_8)
+                            .build(),
+                    request);
         } catch (NotFoundException e) {
             return ResponseEntity.notFound().build();
         } catch (Exception e) {
@@ -103,6 +123,45 @@ public class ProductController extends GenericController<Product, ProductDTO> {
         }
     }
 
+    @Operation(summary = "Скачать электронный продукт по ссылке из письма", description = "Не требует входа: доступ подтверждается подписью ссылки из письма о заказе, ссылка ограничена по времени")
+    @GetMapping("/{id}/download-signed")
+    public ResponseEntity<Resource> downloadElectronicProductBySignedLink(
+            @Parameter(description = "ID продукта", required = true) @PathVariable Long id,
+            @Parameter(description = "ID заказа", required = true) @RequestParam("order") Long orderId,
+            @Parameter(description = "Срок действия ссылки, секунды Unix", required = true) @RequestParam long expires,
+            @Parameter(description = "Подпись ссылки", required = true) @RequestParam String signature,
+            WebRequest request) {
+        if (!downloadLinkService.isValid(id, orderId, expires, signature)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return downloadElectronicProduct(id, request);
+    }
+
+    @Operation(summary = "Получить обложку продукта", description = "Отдает загруженную обложку продукта из кеша обложек; size=thumb|small|web уменьшает ее")
+    @GetMapping("/{id}/cover")
+    public ResponseEntity<Resource> getProductCover(
+            @Parameter(description = "ID продукта", required = true) @PathVariable Long id,
+            @Parameter(description = "Размер: thumb, small, web или original (по умолчанию)") @RequestParam(required = false) String size,
+            WebRequest request) {
+        ImageProcessingService.ImageSize imageSize;
+        try {
+            imageSize = ImageProcessingService.ImageSize.fromParam(size);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            CoverImageCache.CachedCover cover = productImageService.getProductCover(id, imageSize);
+            if (cover == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return fileDownloadService.serveCover(cover, CacheControl.maxAge(30, TimeUnit.DAYS), request);
+        } catch (NotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     @GetMapping("/categories/all-with-descriptions") // Changed the mapping to make it unique
     public ResponseEntity<List<Map<String, String>>> getAllCategoriesWithDescriptions() {
         List<Map<String, String>> categoryInfos = Arrays.stream(ProductCategory.values())
@@ -138,6 +197,15 @@ public class ProductController extends GenericController<Product, ProductDTO> {
         return productService.searchProducts(name, category, pageable);
     }
 
+    @Operation(summary = "Каталог продуктов", description = "Поиск продуктов по названию или категории; возвращает только поля карточки")
+    @GetMapping("/listing")
+    public Page<ProductListingDTO> getProductListing(
+            @Parameter(description = "Название продукта") @RequestParam(required = false) String name,
+            @Parameter(description = "Категория продукта") @RequestParam(required = false) String category,
+            Pageable pageable) {
+        return productService.searchProductListing(name, category, pageable);
+    }
+
     @Operation(description = "Создать продукт с изображением", method = "create")
     @PostMapping(value = "/create-with-image", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     @PreAuthorize("hasRole('ADMIN') or hasRole('ORGANIZER')")
@@ -1,14 +1,17 @@
 package com.almetpt.coursework.bookclub.controllers;
 
 import com.almetpt.coursework.bookclub.annotations.AdminAction;
+import com.almetpt.coursework.bookclub.config.jwt.JWTTokenUtil;
 import com.almetpt.coursework.bookclub.dto.ChangePasswordDTO;
 import com.almetpt.coursework.bookclub.dto.RegisterDTO;
 import com.almetpt.coursework.bookclub.dto.UserDTO;
 import com.almetpt.coursework.bookclub.model.User;
 import com.almetpt.coursework.bookclub.service.UserService;
+import com.almetpt.coursework.bookclub.service.userdetails.CustomUserDetailsService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Map;
@@ -35,10 +38,16 @@ import org.springframework.web.multipart.MultipartFile;
 public class UserController extends GenericController<User, UserDTO> {
 
     private final UserService userService;
+    private final CustomUserDetailsService userDetailsService;
+    private final JWTTokenUtil jwtTokenUtil;
 
-    public UserController(UserService userService) {
+    public UserController(UserService userService,
+                          CustomUserDetailsService userDetailsService,
+                          JWTTokenUtil jwtTokenUtil) {
         super(userService);
         this.userService = userService;
+        this.userDetailsService = userDetailsService;
+        this.jwtTokenUtil = jwtTokenUtil;
     }
 
     @Operation(summary = "Получить страницу активных пользователей", description = "Возвращает страницу активных пользователей с пагинацией")
@@ -105,12 +114,15 @@ public class UserController extends GenericController<User, UserDTO> {
     @PutMapping("/profile/password")
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<?> updateUserPassword(@RequestBody ChangePasswordDTO changePasswordDTO,
-            Authentication authentication) {
+            Authentication authentication, HttpServletResponse response) {
         UserDetails userDetails = (UserDetails) authentication.getPrincipal();
         String email = userDetails.getUsername();
         try {
             userService.changePasswordForAuthenticatedUser(email, changePasswordDTO.getOldPassword(),
                     changePasswordDTO.getNewPassword());
+            // Смена пароля отзывает прежние токены, текущей сессии выдается новый
+            response.addCookie(jwtTokenUtil.createJwtCookie(
+                    jwtTokenUtil.generateToken(userDetailsService.loadUserByEmail(email))));
             return ResponseEntity.ok().body(Map.of("message", "Пароль успешно изменен"));
         } catch (BadCredentialsException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("message", "Неверный старый пароль"));
@@ -0,0 +1,20 @@
+package com.almetpt.coursework.bookclub.dto;
+
+import com.almetpt.coursework.bookclub.model.AuditEntry;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Страница журнала аудита при постраничном выводе по курсору.
+ * {@code nextCursor} передается в следующий запрос, пока {@code hasNext}.
+ */
+@Getter
+@AllArgsConstructor
+public class AuditPageDTO {
+    private List<AuditEntry> content;
+    private int size;
+    private boolean hasNext;
+    private String nextCursor;
+}
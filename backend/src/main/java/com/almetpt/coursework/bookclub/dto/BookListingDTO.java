@@ -0,0 +1,23 @@
+package com.almetpt.coursework.bookclub.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Строка списка книг. Заполняется проекцией прямо из запроса, без
+ * загрузки сущности, жанров, мероприятий и данных обложки.
+ * Имена полей совпадают с {@link BookDTO}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookListingDTO {
+    private Long id;
+    private String title;
+    private String author;
+    private boolean isReading;
+    private String coverImageUrl;
+    private String coverImageFilename;
+    private boolean hasLocalImage;
+}
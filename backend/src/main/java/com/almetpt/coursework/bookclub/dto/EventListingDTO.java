@@ -0,0 +1,29 @@
+package com.almetpt.coursework.bookclub.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Строка списка мероприятий. Заполняется проекцией прямо из запроса,
+ * без загрузки заявок и книги (берется только ее id).
+ * Имена полей совпадают с {@link EventDTO}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventListingDTO {
+    private Long id;
+    private String title;
+    private String eventType;
+    private Long bookId;
+    @JsonFormat(pattern = "dd.MM.yyyy HH:mm")
+    private LocalDateTime date;
+    private String description;
+    private Integer maxParticipants;
+    private boolean isCancelled;
+    private String cancellationReason;
+}
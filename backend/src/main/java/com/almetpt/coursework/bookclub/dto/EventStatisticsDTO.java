@@ -1,10 +1,13 @@
 package com.almetpt.coursework.bookclub.dto;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.time.LocalDateTime;
+
 @Getter
 @Setter
 @NoArgsConstructor
@@ -13,8 +16,25 @@ public class EventStatisticsDTO {
     private Long eventId;
     private String title;
     private String eventType;
+    @JsonFormat(pattern = "dd.MM.yyyy HH:mm")
+    private LocalDateTime date;
     private int maxParticipants;
     private int approvedApplications;
     private int totalApplications;
     private double fillPercentage; // Процент заполненности
+
+    // Для JPQL-агрегата: COUNT и SUM возвращают Long, SUM по пустой группе - null
+    public EventStatisticsDTO(Long eventId, String title, String eventType, LocalDateTime date,
+                              Integer maxParticipants, Long approvedApplications, Long totalApplications) {
+        this.eventId = eventId;
+        this.title = title;
+        this.eventType = eventType;
+        this.date = date;
+        this.maxParticipants = maxParticipants != null ? maxParticipants : 0;
+        this.approvedApplications = approvedApplications != null ? approvedApplications.intValue() : 0;
+        this.totalApplications = totalApplications != null ? totalApplications.intValue() : 0;
+        this.fillPercentage = this.maxParticipants > 0
+                ? this.approvedApplications * 100.0 / this.maxParticipants
+                : 0;
+    }
 }
@@ -0,0 +1,42 @@
+package com.almetpt.coursework.bookclub.dto;
+
+import com.almetpt.coursework.bookclub.model.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Заказ в выгрузке NDJSON: собирается из подряд идущих {@link OrderExportRow}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderExportDTO {
+    private Long id;
+    private Long userId;
+    private String userEmail;
+    private BigDecimal total;
+    private OrderStatus status;
+    private LocalDateTime createdWhen;
+    private boolean deleted;
+    private List<Item> products = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private Long id;
+        private String name;
+        private BigDecimal price;
+    }
+
+    public static OrderExportDTO from(OrderExportRow row) {
+        return new OrderExportDTO(row.getOrderId(), row.getUserId(), row.getUserEmail(), row.getTotal(),
+                row.getStatus(), row.getCreatedWhen(), row.isDeleted(), new ArrayList<>());
+    }
+}
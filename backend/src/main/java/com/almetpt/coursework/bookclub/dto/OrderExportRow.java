@@ -0,0 +1,29 @@
+package com.almetpt.coursework.bookclub.dto;
+
+import com.almetpt.coursework.bookclub.model.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Строка выгрузки заказов: заказ и один его товар (или null-товар, если
+ * товаров нет). Строки одного заказа идут подряд.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderExportRow {
+    private Long orderId;
+    private Long userId;
+    private String userEmail;
+    private BigDecimal total;
+    private OrderStatus status;
+    private LocalDateTime createdWhen;
+    private boolean deleted;
+    private Long productId;
+    private String productName;
+    private BigDecimal productPrice;
+}
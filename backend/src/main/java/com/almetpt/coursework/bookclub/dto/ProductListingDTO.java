@@ -0,0 +1,27 @@
+package com.almetpt.coursework.bookclub.dto;
+
+import com.almetpt.coursework.bookclub.model.ProductCategory;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Строка каталога продуктов. Заполняется проекцией прямо из запроса,
+ * без загрузки сущности, ее связей и данных обложки.
+ * Имена полей совпадают с {@link ProductDTO}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductListingDTO {
+    private Long id;
+    private String name;
+    private String description;
+    private BigDecimal price;
+    private ProductCategory category;
+    private String coverImageUrl;
+    private String originalCoverImageFilename;
+    private boolean hasLocalImage;
+}
@@ -0,0 +1,29 @@
+package com.almetpt.coursework.bookclub.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Строка выгрузки пользователей. Заполняется проекцией, поэтому не
+ * подгружает корзину, заказы и заявки; пароль и токены не выгружаются.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserExportRow {
+    private Long id;
+    private String email;
+    private String firstName;
+    private String lastName;
+    private String patronymic;
+    private String phone;
+    private String address;
+    private LocalDate birthDate;
+    private String role;
+    private LocalDateTime createdWhen;
+    private boolean deleted;
+}
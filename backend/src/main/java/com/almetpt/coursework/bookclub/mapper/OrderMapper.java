@@ -1,7 +1,7 @@
 package com.almetpt.coursework.bookclub.mapper;
 
 import com.almetpt.coursework.bookclub.dto.OrderDTO;
-import com.almetpt.coursework.bookclub.dto.ProductDTO; // Убедитесь, что ProductDTO импортирован
+import com.almetpt.coursework.bookclub.dto.ProductDTO;
 import com.almetpt.coursework.bookclub.model.Order;
 import com.almetpt.coursework.bookclub.model.OrderStatus;
 import com.almetpt.coursework.bookclub.model.Product;
@@ -10,14 +10,16 @@ import com.almetpt.coursework.bookclub.repository.ProductRepository;
 import com.almetpt.coursework.bookclub.repository.UserRepository;
 
 import lombok.extern.slf4j.Slf4j;
-import jakarta.annotation.PostConstruct;
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Component;
 import org.webjars.NotFoundException;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 @Component
@@ -25,86 +27,47 @@ public class OrderMapper extends GenericMapper<Order, OrderDTO> {
 
     private final UserRepository userRepository;
     private final ProductRepository productRepository;
-    private final ProductMapper productMapper; // Добавляем ProductMapper для корректного маппинга продуктов
+    private final ProductMapper productMapper;
 
-    public OrderMapper(ModelMapper mapper, UserRepository userRepository, ProductRepository productRepository, ProductMapper productMapper) {
-        super(Order.class, OrderDTO.class, mapper);
+    public OrderMapper(UserRepository userRepository, ProductRepository productRepository, ProductMapper productMapper) {
         this.userRepository = userRepository;
         this.productRepository = productRepository;
-        this.productMapper = productMapper; // Инициализируем
+        this.productMapper = productMapper;
     }
 
-    @PostConstruct
     @Override
-    protected void setupMapper() {
-        modelMapper.createTypeMap(Order.class, OrderDTO.class)
-                .addMappings(mapper -> {
-                    mapper.using(ctx -> {
-                        Order source = (Order) ctx.getSource();
-                        return source.getUser() != null ? source.getUser().getId() : null;
-                    }).map(src -> src, OrderDTO::setUserId);
-                    
-                    mapper.using(ctx -> { // Маппинг userEmail
-                        Order source = (Order) ctx.getSource();
-                        return source.getUser() != null ? source.getUser().getEmail() : null;
-                    }).map(src -> src, OrderDTO::setUserEmail);
-
-                    mapper.using(ctx -> {
-                        Order source = (Order) ctx.getSource();
-                        return source.getStatus() != null ? source.getStatus().name() : null;
-                    }).map(src -> src, OrderDTO::setOrderStatus);
-                })
-                .setPostConverter(context -> {
-                    Order source = context.getSource();
-                    OrderDTO destination = context.getDestination();
-
-                    // GenericDTO уже должен смапить id, createdWhen и т.д.
-                    // if (destination.getId() == null && source.getId() != null) {
-                    //     destination.setId(source.getId());
-                    // }
-                    // if (destination.getCreatedWhen() == null && source.getCreatedWhen() != null) {
-                    //     destination.setCreatedWhen(source.getCreatedWhen());
-                    // }
-
-                    if (destination.getTotal() == null && source.getTotal() != null) {
-                        destination.setTotal(source.getTotal());
-                    }
-
-                    if (source.getProducts() != null) {
-                        // Используем ProductMapper для маппинга списка продуктов
-                        List<ProductDTO> productDTOs = source.getProducts().stream()
-                                .map(productMapper::toDTO) // Используем productMapper
-                                .collect(Collectors.toList());
-                        destination.setProducts(productDTOs);
-                    } else {
-                        destination.setProducts(Collections.emptyList());
-                    }
-
-                    return destination;
-                });
-
-        modelMapper.createTypeMap(OrderDTO.class, Order.class)
-                .addMappings(mapper -> {
-                    mapper.skip(Order::setUser); // Будет установлено в mapSpecificFields
-                    mapper.skip(Order::setStatus); // Будет установлено в mapSpecificFields
-                    mapper.skip(Order::setProducts); // Будет установлено в mapSpecificFields
-                })
-                .setPostConverter(toEntityConverter()); // Общий конвертер из GenericMapper
+    protected OrderDTO mapToDTO(Order source) {
+        OrderDTO destination = new OrderDTO();
+        copyToDTO(source, destination);
+        User user = source.getUser();
+        if (user != null) {
+            destination.setUserId(user.getId());
+            destination.setUserEmail(user.getEmail());
+        }
+        destination.setTotal(source.getTotal());
+        destination.setOrderStatus(source.getStatus() != null ? source.getStatus().name() : null);
+        destination.setProducts(source.getProducts() != null
+                ? productMapper.toDTOs(source.getProducts())
+                : Collections.emptyList());
+        return destination;
     }
 
     @Override
-    protected void mapSpecificFields(OrderDTO source, Order destination) { // DTO -> Entity
+    protected Order mapToEntity(OrderDTO source) {
+        Order destination = new Order();
+        copyToEntity(source, destination);
+        destination.setTotal(source.getTotal());
+
         if (source.getUserId() != null) {
             User user = userRepository.findById(source.getUserId())
                     .orElseThrow(() -> new NotFoundException("User not found with id: " + source.getUserId()));
             destination.setUser(user);
         } else if (source.getUserEmail() != null) { // Если userId нет, но есть email (маловероятно для создания)
-             User user = userRepository.findByEmail(source.getUserEmail())
+            User user = userRepository.findByEmail(source.getUserEmail())
                     .orElseThrow(() -> new NotFoundException("User not found with email: " + source.getUserEmail()));
             destination.setUser(user);
         }
 
-
         if (source.getOrderStatus() != null) {
             try {
                 destination.setStatus(OrderStatus.valueOf(source.getOrderStatus().toUpperCase()));
@@ -115,23 +78,36 @@ public class OrderMapper extends GenericMapper<Order, OrderDTO> {
         }
 
         if (source.getProducts() != null) {
-            List<Product> products = source.getProducts().stream()
-                    .map(productDTO -> {
-                        if (productDTO.getId() == null) {
-                             throw new IllegalArgumentException("Product DTO in Order must have an ID");
-                        }
-                        return productRepository.findById(productDTO.getId())
-                            .orElseThrow(() -> new NotFoundException("Product not found with id: " + productDTO.getId()));
-                    })
-                    .collect(Collectors.toList());
-            destination.setProducts(products);
+            destination.setProducts(resolveProducts(source.getProducts()));
         } else {
             destination.setProducts(Collections.emptyList());
         }
+        return destination;
     }
 
-    @Override
-    protected List<Long> getIds(Order entity) { // Не используется для Order обычно
-        return Collections.emptyList();
+    // Все продукты заказа одним запросом; порядок и повторы из DTO сохраняются
+    private List<Product> resolveProducts(List<ProductDTO> productDTOs) {
+        Set<Long> ids = new HashSet<>();
+        for (ProductDTO productDTO : productDTOs) {
+            if (productDTO.getId() == null) {
+                throw new IllegalArgumentException("Product DTO in Order must have an ID");
+            }
+            ids.add(productDTO.getId());
+        }
+
+        Map<Long, Product> found = new HashMap<>();
+        for (Product product : productRepository.findAllById(ids)) {
+            found.put(product.getId(), product);
+        }
+
+        List<Product> products = new ArrayList<>(productDTOs.size());
+        for (ProductDTO productDTO : productDTOs) {
+            Product product = found.get(productDTO.getId());
+            if (product == null) {
+                throw new NotFoundException("Product not found with id: " + productDTO.getId());
+            }
+            products.add(product);
+        }
+        return products;
     }
 }
@@ -1,35 +1,52 @@
 package com.almetpt.coursework.bookclub.mapper;
 
+import com.almetpt.coursework.bookclub.dto.RoleDTO;
 import com.almetpt.coursework.bookclub.dto.UserDTO;
-
+import com.almetpt.coursework.bookclub.model.Role;
 import com.almetpt.coursework.bookclub.model.User;
-
-import jakarta.annotation.PostConstruct;
-import org.modelmapper.ModelMapper;
-
 import org.springframework.stereotype.Component;
 
-import java.util.Collections;
-import java.util.List;
-
 @Component
 public class UserMapper extends GenericMapper<User, UserDTO> {
 
-    public UserMapper(ModelMapper modelMapper) {
-        super(User.class, UserDTO.class, modelMapper);
-    }
-
-    @PostConstruct
     @Override
-    protected void setupMapper() {
-        modelMapper.createTypeMap(User.class, UserDTO.class)
-                .setPostConverter(toDTOConverter());
-        modelMapper.createTypeMap(UserDTO.class, User.class)
-                .setPostConverter(toEntityConverter());
+    protected UserDTO mapToDTO(User source) {
+        UserDTO destination = new UserDTO();
+        copyToDTO(source, destination);
+        destination.setEmail(source.getEmail());
+        destination.setFirstName(source.getFirstName());
+        destination.setLastName(source.getLastName());
+        destination.setPatronymic(source.getPatronymic());
+        destination.setPhone(source.getPhone());
+        destination.setAddress(source.getAddress());
+        destination.setBirthDate(source.getBirthDate());
+        if (source.getRole() != null) {
+            // У роли в DTO поле title, у сущности - name: совпадает только id
+            RoleDTO role = new RoleDTO();
+            role.setId(source.getRole().getId());
+            destination.setRole(role);
+        }
+        destination.setChangePasswordToken(source.getChangePasswordToken());
+        return destination;
     }
 
     @Override
-    protected List<Long> getIds(User entity) {
-        return Collections.emptyList();
+    protected User mapToEntity(UserDTO source) {
+        User destination = new User();
+        copyToEntity(source, destination);
+        destination.setEmail(source.getEmail());
+        destination.setFirstName(source.getFirstName());
+        destination.setLastName(source.getLastName());
+        destination.setPatronymic(source.getPatronymic());
+        destination.setPhone(source.getPhone());
+        destination.setAddress(source.getAddress());
+        destination.setBirthDate(source.getBirthDate());
+        if (source.getRole() != null) {
+            Role role = new Role();
+            role.setId(source.getRole().getId());
+            destination.setRole(role);
+        }
+        destination.setChangePasswordToken(source.getChangePasswordToken());
+        return destination;
     }
 }
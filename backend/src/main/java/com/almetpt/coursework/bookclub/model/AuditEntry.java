@@ -11,7 +11,7 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "audit_entries", indexes = {
-    @Index(name = "idx_audit_timestamp", columnList = "timestamp"),
+    @Index(name = "idx_audit_timestamp_id", columnList = "timestamp, id"),
     @Index(name = "idx_audit_action_type", columnList = "action_type"),
     @Index(name = "idx_audit_user_email", columnList = "user_email"),
     @Index(name = "idx_audit_resource", columnList = "resource_type, resource_id")
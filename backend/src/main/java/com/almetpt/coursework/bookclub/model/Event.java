@@ -10,7 +10,8 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "events")
+// Индекс по (дата, id) держит постраничный обход мероприятий по дате в фоновых задачах
+@Table(name = "events", indexes = @Index(name = "idx_events_date_id", columnList = "date, id"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -33,6 +34,24 @@ public class Event extends GenericModel {
     @Column(name = "max_participants")
     private Integer maxParticipants;
 
+    // Занятые места; меняется только запросами EventSeatService, NULL - пересчитать при следующей заявке
+    @Column(name = "reserved_seats", insertable = false, updatable = false)
+    private Integer reservedSeats;
+
+    // Номер последней заявки, прошедшей через лист ожидания, и последней вставшей в него
+    @Column(name = "waitlist_head", insertable = false, updatable = false, columnDefinition = "bigint default 0")
+    private Long waitlistHead;
+
+    @Column(name = "waitlist_tail", insertable = false, updatable = false, columnDefinition = "bigint default 0")
+    private Long waitlistTail;
+
+    // Дата мероприятия, о которой уже отправлены напоминания; меняется только EventReminderService
+    @Column(name = "day_reminder_for", insertable = false, updatable = false)
+    private LocalDateTime dayReminderFor;
+
+    @Column(name = "hour_reminder_for", insertable = false, updatable = false)
+    private LocalDateTime hourReminderFor;
+
     @Column(name = "cancellation_reason")
     private String cancellationReason;
 
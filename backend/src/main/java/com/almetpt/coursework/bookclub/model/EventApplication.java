@@ -7,7 +7,9 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 @Entity
-@Table(name = "event_applications")
+@Table(name = "event_applications",
+        uniqueConstraints = @UniqueConstraint(name = "uk_event_applications_user_event",
+                columnNames = {"user_id", "event_id"}))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -28,6 +30,10 @@ public class EventApplication extends GenericModel {
     @Column(name = "attended")
     private boolean attended;
 
+    // Участник одобрен, но не пришел; выставляется ночной задачей после мероприятия
+    @Column(name = "missed", nullable = false, columnDefinition = "boolean default false")
+    private boolean missed;
+
     @Column(name = "qr_code", columnDefinition = "TEXT")
     private String qrCode;
 
@@ -0,0 +1,40 @@
+package com.almetpt.coursework.bookclub.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Заявка в листе ожидания мероприятия.
+ * <p>
+ * Номера {@code ticket} в очереди мероприятия идут подряд от
+ * {@code events.waitlist_head + 1} до {@code events.waitlist_tail}, поэтому
+ * место в очереди - это разность номера и головы, без подсчета строк.
+ */
+@Entity
+@Table(name = "event_waitlist",
+        indexes = @Index(name = "idx_event_waitlist_event_ticket", columnList = "event_id, ticket"))
+@Getter
+@Setter
+@NoArgsConstructor
+public class EventWaitlistEntry {
+
+    @Id
+    @Column(name = "application_id")
+    private Long applicationId;
+
+    @Column(name = "event_id", nullable = false)
+    private Long eventId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "ticket", nullable = false)
+    private long ticket;
+
+    @Column(name = "created_when", nullable = false)
+    private LocalDateTime createdWhen;
+}
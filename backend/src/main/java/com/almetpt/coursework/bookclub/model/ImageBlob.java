@@ -0,0 +1,56 @@
+package com.almetpt.coursework.bookclub.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Двоичные данные изображения, хранящиеся в БД.
+ * <p>
+ * Вынесены из строк книг, продуктов и слайдов в отдельную таблицу: владельцы
+ * ссылаются на блоб ленивой связью, поэтому списки и поиск не читают байты
+ * картинок. Данные загружаются только при отдаче самой обложки.
+ */
+@Entity
+@Table(name = "image_blobs")
+@Getter
+@Setter
+@NoArgsConstructor
+@SequenceGenerator(name = "image_blob_generator", sequenceName = "image_blobs_seq", allocationSize = 1)
+public class ImageBlob {
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "image_blob_generator")
+    private Long id;
+
+    @Lob
+    @Column(name = "data", nullable = false)
+    private byte[] data;
+
+    @Column(name = "size_bytes", nullable = false)
+    private long sizeBytes;
+
+    @Column(name = "created_when")
+    private LocalDateTime createdWhen;
+
+    public ImageBlob(byte[] data) {
+        this.data = data;
+        this.sizeBytes = data.length;
+        this.createdWhen = LocalDateTime.now();
+    }
+
+    /**
+     * Блоб для новых данных изображения. Старый блоб не изменяется, а
+     * заменяется новым (и удаляется владельцем как сирота), чтобы не читать
+     * его содержимое ради перезаписи.
+     *
+     * @return новый блоб или {@code null}, если данных нет
+     */
+    public static ImageBlob of(byte[] data) {
+        return data != null && data.length > 0 ? new ImageBlob(data) : null;
+    }
+}
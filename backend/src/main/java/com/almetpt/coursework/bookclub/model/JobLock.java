@@ -0,0 +1,40 @@
+package com.almetpt.coursework.bookclub.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Аренда фоновой задачи между экземплярами приложения.
+ * <p>
+ * Задачу выполняет тот экземпляр, чье обновление строки прошло первым, пока
+ * не истек срок {@code locked_until}. Если экземпляр упал, не отпустив
+ * аренду, она освобождается сама по истечении срока.
+ */
+@Entity
+@Table(name = "job_locks")
+@Getter
+@Setter
+@NoArgsConstructor
+public class JobLock {
+
+    @Id
+    @Column(name = "job_name", length = 100)
+    private String jobName;
+
+    @Column(name = "locked_until", nullable = false)
+    private LocalDateTime lockedUntil;
+
+    @Column(name = "locked_at", nullable = false)
+    private LocalDateTime lockedAt;
+
+    @Column(name = "locked_by", nullable = false)
+    private String lockedBy;
+
+    // Метка конкретного захвата: отпустить аренду может только ее владелец
+    @Column(name = "lock_token", nullable = false, length = 36)
+    private String lockToken;
+}
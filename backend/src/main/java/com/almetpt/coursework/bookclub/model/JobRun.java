@@ -0,0 +1,60 @@
+package com.almetpt.coursework.bookclub.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Запись истории запуска фоновой задачи: кто и когда ее выполнял и чем
+ * закончилось. Запуски, пропущенные из-за аренды у другого экземпляра,
+ * не записываются.
+ */
+@Entity
+@Table(name = "job_runs",
+        indexes = @Index(name = "idx_job_runs_job_started", columnList = "job_name, started_when"))
+@Getter
+@Setter
+@NoArgsConstructor
+@SequenceGenerator(name = "job_run_generator", sequenceName = "job_runs_seq", allocationSize = 1)
+public class JobRun {
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "job_run_generator")
+    private Long id;
+
+    @Column(name = "job_name", nullable = false, length = 100)
+    private String jobName;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "run_trigger", nullable = false, length = 20)
+    private JobTrigger trigger;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private JobRunStatus status;
+
+    @Column(name = "instance_id", nullable = false)
+    private String instanceId;
+
+    @Column(name = "triggered_by")
+    private String triggeredBy;
+
+    @Column(name = "started_when", nullable = false)
+    private LocalDateTime startedWhen;
+
+    @Column(name = "finished_when")
+    private LocalDateTime finishedWhen;
+
+    @Column(name = "duration_ms")
+    private Long durationMs;
+
+    @Column(name = "result", length = 1000)
+    private String result;
+
+    @Column(name = "error", length = 1000)
+    private String error;
+}
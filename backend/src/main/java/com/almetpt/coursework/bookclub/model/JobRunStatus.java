@@ -0,0 +1,18 @@
+package com.almetpt.coursework.bookclub.model;
+
+import lombok.Getter;
+
+@Getter
+public enum JobRunStatus {
+    RUNNING("Выполняется"),
+    SUCCEEDED("Завершено"),
+    FAILED("Ошибка"),
+    TIMED_OUT("Превышено время выполнения"),
+    ABANDONED("Прервано");
+
+    private final String description;
+
+    JobRunStatus(String description) {
+        this.description = description;
+    }
+}
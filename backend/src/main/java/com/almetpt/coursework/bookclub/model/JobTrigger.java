@@ -0,0 +1,15 @@
+package com.almetpt.coursework.bookclub.model;
+
+import lombok.Getter;
+
+@Getter
+public enum JobTrigger {
+    SCHEDULED("По расписанию"),
+    MANUAL("Вручную");
+
+    private final String description;
+
+    JobTrigger(String description) {
+        this.description = description;
+    }
+}
@@ -0,0 +1,40 @@
+package com.almetpt.coursework.bookclub.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Позиция, до которой фоновая задача уже обработала данные.
+ * <p>
+ * Обновляется в той же транзакции, что и обработанная пачка, поэтому после
+ * сбоя задача продолжает с последней зафиксированной пачки и не проходит
+ * всю историю заново.
+ */
+@Entity
+@Table(name = "job_watermarks")
+@Getter
+@Setter
+@NoArgsConstructor
+public class JobWatermark {
+
+    @Id
+    @Column(name = "job_name", length = 100)
+    private String jobName;
+
+    @Column(name = "position_time")
+    private LocalDateTime positionTime;
+
+    @Column(name = "position_id")
+    private Long positionId;
+
+    @Column(name = "updated_when")
+    private LocalDateTime updatedWhen;
+
+    public JobWatermark(String jobName) {
+        this.jobName = jobName;
+    }
+}
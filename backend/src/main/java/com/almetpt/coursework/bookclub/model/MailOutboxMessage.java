@@ -0,0 +1,80 @@
+package com.almetpt.coursework.bookclub.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Исходящее письмо в очереди отправки (transactional outbox).
+ * <p>
+ * Строка пишется в той же транзакции, что и бизнес-изменение, поэтому
+ * письмо уходит только после фиксации и не держит соединение с БД на время
+ * обмена с SMTP. Фоновые обработчики забирают строку, помечая ее меткой
+ * захвата, и переводят в SENT, обратно в PENDING с новым временем попытки
+ * или в DEAD после исчерпания попыток. Вложения хранятся ссылками на файлы
+ * хранилища и читаются в момент отправки.
+ */
+@Entity
+@Table(name = "mail_outbox", indexes = {
+    @Index(name = "idx_mail_outbox_status_next", columnList = "status, next_attempt_at"),
+    @Index(name = "idx_mail_outbox_claim_token", columnList = "claim_token"),
+    @Index(name = "idx_mail_outbox_group_key", columnList = "group_key")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+// Шаг 50: рассылка на сотни адресов не делает запрос к последовательности на каждое письмо
+@SequenceGenerator(name = "mail_outbox_generator", sequenceName = "mail_outbox_seq", allocationSize = 50)
+public class MailOutboxMessage {
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "mail_outbox_generator")
+    private Long id;
+
+    // Адреса через запятую
+    @Column(name = "recipients", nullable = false, columnDefinition = "TEXT")
+    private String recipients;
+
+    @Column(name = "subject", nullable = false, length = 500)
+    private String subject;
+
+    @Column(name = "body", nullable = false, columnDefinition = "TEXT")
+    private String body;
+
+    // Рассылка, к которой относится письмо, например "event-cancelled:42"
+    @Column(name = "group_key", length = 100)
+    private String groupKey;
+
+    // Строки "имя в хранилище<TAB>имя вложения"
+    @Column(name = "attachments", columnDefinition = "TEXT")
+    private String attachments;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 10)
+    private MailOutboxStatus status;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "claim_token", length = 36)
+    private String claimToken;
+
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "created_when", nullable = false)
+    private LocalDateTime createdWhen;
+
+    @Column(name = "sent_when")
+    private LocalDateTime sentWhen;
+}
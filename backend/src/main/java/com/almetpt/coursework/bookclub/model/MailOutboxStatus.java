@@ -0,0 +1,17 @@
+package com.almetpt.coursework.bookclub.model;
+
+import lombok.Getter;
+
+@Getter
+public enum MailOutboxStatus {
+    PENDING("Ожидает отправки"),
+    SENDING("Отправляется"),
+    SENT("Отправлено"),
+    DEAD("Не доставлено");
+
+    private final String description;
+
+    MailOutboxStatus(String description) {
+        this.description = description;
+    }
+}
@@ -0,0 +1,36 @@
+package com.almetpt.coursework.bookclub.model;
+
+import lombok.Getter;
+
+/**
+ * Показатели панели администратора, которые хранятся в виде счетчиков
+ * {@link MetricCounter}. Каждый показатель считает неудаленные записи своей
+ * таблицы по дате создания.
+ */
+@Getter
+public enum Metric {
+    USERS(User.class, "users"),
+    BOOKS(Book.class, "books"),
+    ORDERS(Order.class, "orders"),
+    EVENTS(Event.class, "events");
+
+    private final Class<? extends GenericModel> entityClass;
+    private final String table;
+
+    Metric(Class<? extends GenericModel> entityClass, String table) {
+        this.entityClass = entityClass;
+        this.table = table;
+    }
+
+    /**
+     * Показатель для класса сущности или null, если сущность не учитывается.
+     */
+    public static Metric forEntity(Class<?> entityClass) {
+        for (Metric metric : values()) {
+            if (metric.entityClass == entityClass) {
+                return metric;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,53 @@
+package com.almetpt.coursework.bookclub.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+/**
+ * Предварительно агрегированный счетчик панели администратора: число
+ * неудаленных записей показателя, созданных в корзине (день, месяц или всего).
+ * <p>
+ * Счетчики меняются на дельту при вставке, удалении и смене признака удаления
+ * сущности, поэтому графики и общая статистика читают несколько строк вместо
+ * агрегирования исходных таблиц.
+ */
+@Entity
+@Table(name = "metric_counters",
+        uniqueConstraints = @UniqueConstraint(name = "uk_metric_counters_bucket",
+                columnNames = { "metric", "granularity", "bucket_start" }))
+@Getter
+@Setter
+@NoArgsConstructor
+@SequenceGenerator(name = "metric_counter_generator", sequenceName = "metric_counters_seq", allocationSize = 1)
+public class MetricCounter {
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "metric_counter_generator")
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "metric", nullable = false, length = 20)
+    private Metric metric;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "granularity", nullable = false, length = 10)
+    private MetricGranularity granularity;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDate bucketStart;
+
+    @Column(name = "counter_value", nullable = false)
+    private long value;
+
+    public MetricCounter(Metric metric, MetricGranularity granularity, LocalDate bucketStart, long value) {
+        this.metric = metric;
+        this.granularity = granularity;
+        this.bucketStart = bucketStart;
+        this.value = value;
+    }
+}
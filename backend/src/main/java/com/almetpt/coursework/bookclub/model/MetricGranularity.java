@@ -0,0 +1,37 @@
+package com.almetpt.coursework.bookclub.model;
+
+import java.time.LocalDate;
+
+/**
+ * Размер корзины счетчика. TOTAL - одна корзина на весь показатель.
+ */
+public enum MetricGranularity {
+    DAY,
+    MONTH,
+    TOTAL;
+
+    // Дата единственной корзины TOTAL
+    public static final LocalDate TOTAL_BUCKET = LocalDate.of(1970, 1, 1);
+
+    /**
+     * Начало корзины, в которую попадает дата.
+     */
+    public LocalDate bucketStart(LocalDate date) {
+        return switch (this) {
+            case DAY -> date;
+            case MONTH -> date.withDayOfMonth(1);
+            case TOTAL -> TOTAL_BUCKET;
+        };
+    }
+
+    /**
+     * Начало корзины, отстоящей от данной на {@code amount} корзин.
+     */
+    public LocalDate plus(LocalDate bucketStart, long amount) {
+        return switch (this) {
+            case DAY -> bucketStart.plusDays(amount);
+            case MONTH -> bucketStart.plusMonths(amount);
+            case TOTAL -> TOTAL_BUCKET;
+        };
+    }
+}
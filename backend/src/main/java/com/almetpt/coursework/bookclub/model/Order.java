@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.BatchSize;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -28,7 +29,10 @@ public class Order extends GenericModel {
     @Enumerated(EnumType.STRING)
     private OrderStatus status;
 
+    // Для общих списков заказов (listAll и т.п.) коллекции подгружаются
+    // пачками через IN, а не отдельным запросом на каждый заказ
     @ManyToMany
+    @BatchSize(size = 50)
     @JoinTable(
             name = "order_products",
             joinColumns = @JoinColumn(name = "order_id"),
@@ -36,9 +36,10 @@ public class Product extends GenericModel {
     @Column(name = "cover_image_filename")
     private String coverImageFilename;
 
-    @Lob
-    @Column(name = "cover_image_data")
-    private byte[] coverImageData;
+    // Данные изображения в отдельной таблице, загружаются только по требованию
+    @OneToOne(fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
+    @JoinColumn(name = "cover_image_blob_id")
+    private ImageBlob coverImageBlob;
         
     @Column(name = "original_cover_image_filename")
     private String originalCoverImageFilename;
@@ -53,7 +54,16 @@ public class Product extends GenericModel {
     @Transient
     public boolean hasLocalImage() {
         return (coverImageFilename != null && !coverImageFilename.isBlank()) 
-               || (coverImageData != null && coverImageData.length > 0);
+               || coverImageBlob != null;
+    }
+
+    // Байты обложки из БД. Обращение загружает блоб, поэтому в списках не используется
+    public byte[] getCoverImageData() {
+        return coverImageBlob != null ? coverImageBlob.getData() : null;
+    }
+
+    public void setCoverImageData(byte[] coverImageData) {
+        this.coverImageBlob = ImageBlob.of(coverImageData);
     }
 
     @Transient
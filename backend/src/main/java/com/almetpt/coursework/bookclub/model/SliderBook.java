@@ -31,14 +31,15 @@ public class SliderBook extends GenericModel {
     @Column(name = "background_image_filename")
     private String backgroundImageFilename;
 
-    @Lob
-    @Column(name = "background_image_data")
-    private byte[] backgroundImageData;
+    // Данные изображения в отдельной таблице, загружаются только по требованию
+    @OneToOne(fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
+    @JoinColumn(name = "background_image_blob_id")
+    private ImageBlob backgroundImageBlob;
 
     // Вспомогательный метод для определения наличия локального фонового изображения
     public boolean hasLocalBackgroundImage() {
         return (backgroundImageFilename != null && !backgroundImageFilename.isBlank())
-                || (backgroundImageData != null && backgroundImageData.length > 0);
+                || backgroundImageBlob != null;
     }
 
     // Метод получения итогового описания (кастомное или стандартное от книги)
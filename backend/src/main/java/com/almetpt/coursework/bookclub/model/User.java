@@ -46,6 +46,10 @@ public class User extends GenericModel {
     @Column(name = "avatar_url")
     private String avatarUrl;
 
+    // Увеличивается при смене пароля, роли или email; токены со старой версией не принимаются
+    @Column(name = "token_version", nullable = false, columnDefinition = "integer default 0")
+    private int tokenVersion;
+
     @ManyToOne
     @JoinColumn(name = "role_id")
     private Role role;
@@ -1,30 +1,22 @@
 package com.almetpt.coursework.bookclub.repository;
 
 import com.almetpt.coursework.bookclub.model.AuditEntry;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.stream.Stream;
 
 @Repository
-public interface AuditRepository extends JpaRepository<AuditEntry, Long> {
-    
-    // Оптимизированный запрос с динамическими условиями
-    @Query("SELECT a FROM AuditEntry a WHERE " +
-           "(:actionType IS NULL OR a.actionType = :actionType) AND " +
-           "(:userEmail IS NULL OR a.userEmail = :userEmail) AND " +
-           "(:dateFrom IS NULL OR a.timestamp >= :dateFrom) AND " +
-           "(:dateTo IS NULL OR a.timestamp <= :dateTo)")
-    Page<AuditEntry> findByFilters(
-            @Param("actionType") String actionType,
-            @Param("userEmail") String userEmail,
-            @Param("dateFrom") LocalDateTime dateFrom,
-            @Param("dateTo") LocalDateTime dateTo,
-            Pageable pageable);
+public interface AuditRepository extends JpaRepository<AuditEntry, Long>, JpaSpecificationExecutor<AuditEntry> {
     
     // Дополнительные оптимизированные запросы для частых сценариев
     Page<AuditEntry> findByActionType(String actionType, Pageable pageable);
@@ -34,4 +26,12 @@ public interface AuditRepository extends JpaRepository<AuditEntry, Long> {
     Page<AuditEntry> findByTimestampBetween(LocalDateTime dateFrom, LocalDateTime dateTo, Pageable pageable);
     
     Page<AuditEntry> findByActionTypeAndUserEmail(String actionType, String userEmail, Pageable pageable);
+
+    // Выгрузка курсором: строки читаются порциями по fetch size, а не всем результатом сразу
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT a FROM AuditEntry a WHERE a.timestamp >= :from AND a.timestamp < :to ORDER BY a.timestamp, a.id")
+    Stream<AuditEntry> streamByTimestampRange(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
 }
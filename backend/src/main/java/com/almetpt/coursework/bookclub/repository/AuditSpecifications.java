@@ -0,0 +1,48 @@
+package com.almetpt.coursework.bookclub.repository;
+
+import com.almetpt.coursework.bookclub.model.AuditEntry;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Условия выборки журнала аудита.
+ * <p>
+ * В запрос попадают только заданные фильтры, без конструкций
+ * {@code :x IS NULL OR ...}, поэтому планировщик может использовать индексы.
+ */
+public final class AuditSpecifications {
+
+    private AuditSpecifications() {
+    }
+
+    public static Specification<AuditEntry> filter(String actionType, String userEmail,
+                                                   LocalDateTime dateFrom, LocalDateTime dateTo) {
+        List<Specification<AuditEntry>> conditions = new ArrayList<>(4);
+        if (actionType != null && !actionType.isBlank()) {
+            conditions.add((root, query, cb) -> cb.equal(root.get("actionType"), actionType));
+        }
+        if (userEmail != null && !userEmail.isBlank()) {
+            conditions.add((root, query, cb) -> cb.equal(root.get("userEmail"), userEmail));
+        }
+        if (dateFrom != null) {
+            conditions.add((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("timestamp"), dateFrom));
+        }
+        if (dateTo != null) {
+            conditions.add((root, query, cb) -> cb.lessThanOrEqualTo(root.get("timestamp"), dateTo));
+        }
+        return Specification.allOf(conditions);
+    }
+
+    /**
+     * Записи строго после курсора в порядке {@code timestamp DESC, id DESC}:
+     * {@code timestamp < :ts OR (timestamp = :ts AND id < :id)}.
+     */
+    public static Specification<AuditEntry> before(LocalDateTime timestamp, Long id) {
+        return (root, query, cb) -> cb.or(
+                cb.lessThan(root.get("timestamp"), timestamp),
+                cb.and(cb.equal(root.get("timestamp"), timestamp), cb.lessThan(root.get("id"), id)));
+    }
+}
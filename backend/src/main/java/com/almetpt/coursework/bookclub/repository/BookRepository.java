@@ -1,8 +1,11 @@
 package com.almetpt.coursework.bookclub.repository;
 
+import com.almetpt.coursework.bookclub.dto.BookListingDTO;
 import com.almetpt.coursework.bookclub.model.Book;
+import com.almetpt.coursework.bookclub.model.BookGenre;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -24,6 +27,23 @@ public interface BookRepository extends GenericRepository<Book> {
             @Param("genre") String genre,
             Pageable pageable);
 
+    // Проекция для списка книг: только колонки карточки, без жанров, связей и данных обложки
+    @Query("""
+            SELECT new com.almetpt.coursework.bookclub.dto.BookListingDTO(
+                   b.id, b.title, b.author, b.reading, b.coverImageUrl, b.coverImageFilename,
+                   CASE WHEN TRIM(b.coverImageFilename) <> '' OR b.coverImageBlob IS NOT NULL THEN true ELSE false END)
+            FROM Book b
+            WHERE b.isDeleted = false
+            AND (CAST(:title AS string) = '' OR LOWER(b.title) LIKE LOWER(CONCAT('%', :title, '%')))
+            AND (CAST(:author AS string) = '' OR LOWER(b.author) LIKE LOWER(CONCAT('%', :author, '%')))
+            AND (:genre IS NULL OR :genre MEMBER OF b.genres)
+            """)
+    Page<BookListingDTO> findListingByTitleAndAuthorAndGenre(
+            @Param("title") String title,
+            @Param("author") String author,
+            @Param("genre") BookGenre genre,
+            Pageable pageable);
+
     @Query("""
             select case when count(e) > 0 then false else true end
             from Event e
@@ -31,6 +51,14 @@ public interface BookRepository extends GenericRepository<Book> {
             """)
     boolean isBookCanBeDeleted(@Param("id") Long id);
 
+    // Ссылка на локальную копию внешней обложки; книгу, чью обложку за время загрузки сменили, не трогает
+    @Modifying
+    @Query("""
+            UPDATE Book b SET b.coverImageFilename = :filename
+            WHERE b.id = :id AND b.coverImageFilename IS NULL AND b.coverImageUrl = :url
+            """)
+    int setDownloadedCover(@Param("id") Long id, @Param("url") String url, @Param("filename") String filename);
+
     // Найти книги с reading=true - исправленная версия с Pageable
     List<Book> findByReadingTrueOrderByCreatedWhenDesc(Pageable pageable);
 
@@ -39,4 +67,6 @@ public interface BookRepository extends GenericRepository<Book> {
 
     long countByIsDeletedFalse();
 
+    boolean existsByCoverImageFilename(String coverImageFilename);
+
 }
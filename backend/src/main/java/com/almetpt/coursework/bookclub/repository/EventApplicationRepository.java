@@ -1,13 +1,18 @@
 package com.almetpt.coursework.bookclub.repository;
 
+import com.almetpt.coursework.bookclub.model.ApplicationStatus;
 import com.almetpt.coursework.bookclub.model.EventApplication;
 // Убедитесь, что GenericRepository импортирован, если он в другом пакете, или удалите этот импорт, если он не нужен явно
 // import com.almetpt.coursework.bookclub.repository.GenericRepository; // Этот импорт может быть излишен, если он в том же пакете или уже доступен
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 // ИЗМЕНЕНИЕ: Заменяем JpaRepository на GenericRepository
@@ -16,15 +21,86 @@ public interface EventApplicationRepository extends GenericRepository<EventAppli
     @Query("SELECT COUNT(ea) FROM EventApplication ea WHERE ea.event.id = :eventId AND ea.status = 'APPROVED'")
     int countApprovedApplicationsForEvent(@Param("eventId") Long eventId);
 
-    @Query("SELECT ea FROM EventApplication ea WHERE ea.event.id = :eventId AND ea.status = 'APPROVED'")
-    List<EventApplication> findApprovedApplicationsForEvent(@Param("eventId") Long eventId);
+    @Query("""
+        SELECT ea.user.email FROM EventApplication ea
+        WHERE ea.event.id = :eventId
+        AND ea.status = com.almetpt.coursework.bookclub.model.ApplicationStatus.APPROVED
+        AND ea.isDeleted = false
+        """)
+    List<String> findActiveApprovedApplicantEmails(@Param("eventId") Long eventId);
+
+    // Отклонение всех одобренных заявок мероприятия одним запросом
+    @Modifying
+    @Query("""
+        UPDATE EventApplication ea
+        SET ea.status = com.almetpt.coursework.bookclub.model.ApplicationStatus.REJECTED, ea.rejectionReason = :reason
+        WHERE ea.event.id = :eventId AND ea.status = 'APPROVED' AND ea.isDeleted = false
+        """)
+    int rejectApprovedForEvent(@Param("eventId") Long eventId,
+                               @Param("reason") EventApplication.RejectionReason reason);
 
     @Query("SELECT ea FROM EventApplication ea JOIN FETCH ea.user JOIN FETCH ea.event WHERE ea.user.id = :userId AND ea.isDeleted = false")
     List<EventApplication> findByUser_IdAndIsDeletedFalse(@Param("userId") Long userId);
 
-    // Добавляем новый метод для проверки существующих заявок
-    List<EventApplication> findByUser_IdAndEvent_IdAndIsDeletedFalse(Long userId, Long eventId);
+    Optional<EventApplication> findByUser_IdAndEvent_Id(Long userId, Long eventId);
+
+    @Query("SELECT ea.event.id FROM EventApplication ea WHERE ea.id = :id")
+    Optional<Long> findEventIdById(@Param("id") Long id);
+
+    /**
+     * Повторная заявка после отмены: строка пользователя и мероприятия одна
+     * (уникальный ключ), поэтому отмененная заявка восстанавливается.
+     */
+    @Modifying
+    @Query("""
+        UPDATE EventApplication ea
+        SET ea.isDeleted = false, ea.deletedWhen = null, ea.deletedBy = null,
+            ea.status = :status, ea.rejectionReason = :reason,
+            ea.attended = false, ea.missed = false, ea.qrCode = null,
+            ea.updatedWhen = :now, ea.updatedBy = :updatedBy
+        WHERE ea.user.id = :userId AND ea.event.id = :eventId AND ea.isDeleted = true
+        """)
+    int reviveCancelled(@Param("userId") Long userId,
+                        @Param("eventId") Long eventId,
+                        @Param("status") ApplicationStatus status,
+                        @Param("reason") EventApplication.RejectionReason reason,
+                        @Param("now") LocalDateTime now,
+                        @Param("updatedBy") String updatedBy);
+
+    interface CheckInRow {
+        Long getId();
+
+        Boolean getAttended();
+    }
+
+    // Одобренные заявки мероприятия для проверки билетов на входе, по возрастанию id
+    @Query("""
+        SELECT ea.id AS id, ea.attended AS attended
+        FROM EventApplication ea
+        WHERE ea.event.id = :eventId
+        AND ea.status = com.almetpt.coursework.bookclub.model.ApplicationStatus.APPROVED
+        AND ea.isDeleted = false
+        ORDER BY ea.id
+        """)
+    List<CheckInRow> findCheckInRows(@Param("eventId") Long eventId);
+
+    @Modifying
+    @Query("UPDATE EventApplication ea SET ea.attended = true WHERE ea.id IN :ids AND ea.attended = false")
+    int markAttended(@Param("ids") Collection<Long> ids);
+
+    // Билеты перевыпускаются при следующем запросе с новым сроком
+    @Modifying
+    @Query("UPDATE EventApplication ea SET ea.qrCode = null WHERE ea.event.id = :eventId")
+    int clearTickets(@Param("eventId") Long eventId);
 
-    @Query("SELECT ea FROM EventApplication ea WHERE ea.event.id = :eventId AND ea.status = 'APPROVED' AND ea.attended = false")
-    List<EventApplication> findApprovedNotAttendedApplicationsForEvent(@Param("eventId") Long eventId);
+    // Неявка по пачке прошедших мероприятий одним запросом; повторный запуск ничего не меняет
+    @Modifying
+    @Query("""
+        UPDATE EventApplication ea
+        SET ea.missed = true
+        WHERE ea.event.id IN :eventIds
+        AND ea.status = com.almetpt.coursework.bookclub.model.ApplicationStatus.APPROVED
+        AND ea.attended = false AND ea.missed = false AND ea.isDeleted = false
+        """)
+    int markMissedForEvents(@Param("eventIds") Collection<Long> eventIds);
 }
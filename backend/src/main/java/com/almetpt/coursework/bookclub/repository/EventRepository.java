@@ -1,14 +1,19 @@
 package com.almetpt.coursework.bookclub.repository;
 
+import com.almetpt.coursework.bookclub.dto.EventListingDTO;
+import com.almetpt.coursework.bookclub.dto.EventStatisticsDTO;
 import com.almetpt.coursework.bookclub.model.Event;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -32,29 +37,170 @@ public interface EventRepository extends GenericRepository<Event> {
             @Param("endDate") @DateTimeFormat(pattern = "dd.MM.yyyy HH:mm") LocalDateTime endDate,
             Pageable pageable);
 
-    // Подсчет количества одобренных заявок на мероприятие
+    /**
+     * Заявки по мероприятиям одним агрегирующим запросом вместо пары COUNT на
+     * каждое мероприятие. Границы окна дат включительные, null - без границы.
+     */
+    @Query(value = """
+        SELECT new com.almetpt.coursework.bookclub.dto.EventStatisticsDTO(
+               e.id, e.title, e.eventType, e.date, e.maxParticipants,
+               SUM(CASE WHEN a.status = com.almetpt.coursework.bookclub.model.ApplicationStatus.APPROVED
+                        THEN 1 ELSE 0 END),
+               COUNT(a.id))
+        FROM Event e
+        LEFT JOIN e.applications a ON a.isDeleted = false
+        WHERE e.isDeleted = false
+        AND (:includeCancelled = true OR e.isCancelled = false)
+        AND (:dateFrom IS NULL OR e.date >= :dateFrom)
+        AND (:dateTo IS NULL OR e.date <= :dateTo)
+        GROUP BY e.id, e.title, e.eventType, e.date, e.maxParticipants
+        """,
+        countQuery = """
+        SELECT COUNT(e)
+        FROM Event e
+        WHERE e.isDeleted = false
+        AND (:includeCancelled = true OR e.isCancelled = false)
+        AND (:dateFrom IS NULL OR e.date >= :dateFrom)
+        AND (:dateTo IS NULL OR e.date <= :dateTo)
+        """)
+    Page<EventStatisticsDTO> findEventStatistics(
+            @Param("includeCancelled") boolean includeCancelled,
+            @Param("dateFrom") LocalDateTime dateFrom,
+            @Param("dateTo") LocalDateTime dateTo,
+            Pageable pageable);
+
+    // Пересчет занятых мест, если счетчик сброшен; заблокированную строку ждет только при NULL
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        UPDATE events SET reserved_seats = (
+            SELECT COUNT(*) FROM event_applications a
+            WHERE a.event_id = :eventId AND a.status = 'APPROVED' AND a.is_deleted = false)
+        WHERE id = :eventId AND reserved_seats IS NULL
+        """)
+    int initReservedSeats(@Param("eventId") Long eventId);
+
+    // Занимает место, если оно есть: проверка и запись одним оператором
+    @Modifying
     @Query(nativeQuery = true, value = """
-        SELECT COUNT(*)
-        FROM event_applications ea
-        WHERE ea.event_id = :eventId
-        AND ea.status = 'APPROVED'
-        AND ea.is_deleted = false
+        UPDATE events SET reserved_seats = reserved_seats + 1
+        WHERE id = :eventId AND reserved_seats IS NOT NULL
+        AND (max_participants IS NULL OR reserved_seats < max_participants)
         """)
-    int countApprovedApplications(@Param("eventId") Long eventId);
+    int reserveSeat(@Param("eventId") Long eventId);
 
-    // Подсчет общего количества заявок на мероприятие
+    @Modifying
     @Query(nativeQuery = true, value = """
-        SELECT COUNT(*)
-        FROM event_applications ea
-        WHERE ea.event_id = :eventId
-        AND ea.is_deleted = false
+        UPDATE events SET reserved_seats = reserved_seats - 1
+        WHERE id = :eventId AND reserved_seats > 0
         """)
-    int countTotalApplications(@Param("eventId") Long eventId);
+    int releaseSeat(@Param("eventId") Long eventId);
+
+    @Modifying
+    @Query(nativeQuery = true, value = "UPDATE events SET reserved_seats = NULL WHERE id = :eventId")
+    int resetReservedSeats(@Param("eventId") Long eventId);
+
+    // Блокирует строку мероприятия до конца транзакции: очередь меняется по одному
+    @Modifying
+    @Query(nativeQuery = true, value = "UPDATE events SET waitlist_tail = waitlist_tail + :delta WHERE id = :eventId")
+    int addToWaitlistTail(@Param("eventId") Long eventId, @Param("delta") long delta);
+
+    @Modifying
+    @Query(nativeQuery = true, value = "UPDATE events SET waitlist_head = waitlist_head + 1 WHERE id = :eventId")
+    int advanceWaitlistHead(@Param("eventId") Long eventId);
+
+    @Modifying
+    @Query(nativeQuery = true, value = "UPDATE events SET waitlist_head = 0, waitlist_tail = 0 WHERE id = :eventId")
+    int resetWaitlist(@Param("eventId") Long eventId);
 
-    // SOFT DELETE
-    @Query("SELECT e FROM Event e WHERE e.date < :cutoffDate")
-    List<Event> findEventsBeforeDate(
-            @Param("cutoffDate") @DateTimeFormat(pattern = "dd.MM.yyyy HH:mm") LocalDateTime cutoffDate);
+    @Query(nativeQuery = true, value = "SELECT waitlist_head FROM events WHERE id = :eventId")
+    Long findWaitlistHead(@Param("eventId") Long eventId);
+
+    @Query(nativeQuery = true, value = "SELECT waitlist_tail FROM events WHERE id = :eventId")
+    Long findWaitlistTail(@Param("eventId") Long eventId);
+
+    interface EventSeats {
+        Long getId();
+
+        Integer getMaxParticipants();
+
+        Long getReservedSeats();
+
+        Boolean getCancelled();
+    }
+
+    // Места мероприятий для потока изменений; сброшенный счетчик досчитывается по заявкам
+    @Query(nativeQuery = true, value = """
+        SELECT e.id AS id, e.max_participants AS maxParticipants, e.is_cancelled AS cancelled,
+               COALESCE(e.reserved_seats, (
+                   SELECT COUNT(*) FROM event_applications a
+                   WHERE a.event_id = e.id AND a.status = 'APPROVED' AND a.is_deleted = false)) AS reservedSeats
+        FROM events e
+        WHERE e.id IN (:ids) AND e.is_deleted = false
+        """)
+    List<EventSeats> findSeats(@Param("ids") Collection<Long> ids);
+
+    // Напоминание о мероприятии с этой датой отправляет только захвативший его: 0 - уже
+    // отправлено, дата сменилась или мероприятие отменено
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        UPDATE events SET day_reminder_for = :date
+        WHERE id = :eventId AND date = :date AND is_cancelled = false AND is_deleted = false
+        AND (day_reminder_for IS NULL OR day_reminder_for <> :date)
+        """)
+    int claimDayReminder(@Param("eventId") Long eventId, @Param("date") LocalDateTime date);
+
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        UPDATE events SET hour_reminder_for = :date
+        WHERE id = :eventId AND date = :date AND is_cancelled = false AND is_deleted = false
+        AND (hour_reminder_for IS NULL OR hour_reminder_for <> :date)
+        """)
+    int claimHourReminder(@Param("eventId") Long eventId, @Param("date") LocalDateTime date);
+
+    interface EventPosition {
+        Long getId();
+
+        LocalDateTime getDate();
+    }
+
+    /**
+     * Первые прошедшие мероприятия в порядке (дата, id).
+     */
+    @Query("""
+        SELECT e.id AS id, e.date AS date
+        FROM Event e
+        WHERE e.date < :cutoffDate
+        ORDER BY e.date, e.id
+        """)
+    List<EventPosition> findFirstPositionsBefore(@Param("cutoffDate") LocalDateTime cutoffDate, Limit limit);
+
+    /**
+     * Следующие прошедшие мероприятия строго после позиции (дата, id) в том
+     * же порядке; сравнение кортежей идет по индексу {@code idx_events_date_id}.
+     */
+    @Query("""
+        SELECT e.id AS id, e.date AS date
+        FROM Event e
+        WHERE e.date < :cutoffDate AND (e.date, e.id) > (:afterDate, :afterId)
+        ORDER BY e.date, e.id
+        """)
+    List<EventPosition> findPositionsBefore(@Param("cutoffDate") LocalDateTime cutoffDate,
+                                            @Param("afterDate") LocalDateTime afterDate,
+                                            @Param("afterId") Long afterId,
+                                            Limit limit);
+
+    // То же для напоминаний: только действующие мероприятия, граница дат включительная
+    @Query("""
+        SELECT e.id AS id, e.date AS date
+        FROM Event e
+        WHERE e.date <= :untilDate AND e.isCancelled = false AND e.isDeleted = false
+        AND (e.date, e.id) > (:afterDate, :afterId)
+        ORDER BY e.date, e.id
+        """)
+    List<EventPosition> findUpcomingPositions(@Param("untilDate") LocalDateTime untilDate,
+                                              @Param("afterDate") LocalDateTime afterDate,
+                                              @Param("afterId") Long afterId,
+                                              Limit limit);
 
     @Query("""
         select case when count(e) > 0 then false else true end
@@ -64,6 +210,16 @@ public interface EventRepository extends GenericRepository<Event> {
     boolean isEventCanBeDeleted(@Param("id") Long id);            
     
     long countByIsDeletedFalse();
+
+    // Проекция для списка мероприятий: без заявок и книги (только внешний ключ)
+    @Query("""
+        SELECT new com.almetpt.coursework.bookclub.dto.EventListingDTO(
+               e.id, e.title, e.eventType, e.book.id, e.date, e.description,
+               e.maxParticipants, e.isCancelled, e.cancellationReason)
+        FROM Event e
+        WHERE e.isDeleted = false
+        """)
+    Page<EventListingDTO> findListingByIsDeletedFalse(Pageable pageable);
     
     List<Event> findByIsDeletedFalseAndIsCancelledFalse();
 }
@@ -0,0 +1,38 @@
+package com.almetpt.coursework.bookclub.repository;
+
+import com.almetpt.coursework.bookclub.model.EventWaitlistEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface EventWaitlistRepository extends JpaRepository<EventWaitlistEntry, Long> {
+
+    Optional<EventWaitlistEntry> findByEventIdAndTicket(Long eventId, long ticket);
+
+    boolean existsByEventId(Long eventId);
+
+    // Скалярные запросы читают БД, а не закешированную в сессии запись
+    @Query("SELECT e.eventId FROM EventWaitlistEntry e WHERE e.applicationId = :applicationId")
+    Optional<Long> findEventId(@Param("applicationId") Long applicationId);
+
+    @Query("SELECT e.ticket FROM EventWaitlistEntry e WHERE e.applicationId = :applicationId")
+    Optional<Long> findTicket(@Param("applicationId") Long applicationId);
+
+    @Modifying
+    @Query("DELETE FROM EventWaitlistEntry e WHERE e.applicationId = :applicationId")
+    int deleteEntry(@Param("applicationId") Long applicationId);
+
+    // Выход из середины очереди: номера следующих сдвигаются, чтобы идти подряд
+    @Modifying
+    @Query("UPDATE EventWaitlistEntry e SET e.ticket = e.ticket - 1 WHERE e.eventId = :eventId AND e.ticket > :ticket")
+    int shiftAfter(@Param("eventId") Long eventId, @Param("ticket") long ticket);
+
+    @Modifying
+    @Query("DELETE FROM EventWaitlistEntry e WHERE e.eventId = :eventId")
+    int deleteByEventId(@Param("eventId") Long eventId);
+}
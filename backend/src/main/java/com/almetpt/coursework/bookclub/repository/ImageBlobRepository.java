@@ -0,0 +1,26 @@
+package com.almetpt.coursework.bookclub.repository;
+
+import com.almetpt.coursework.bookclub.model.ImageBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ImageBlobRepository extends JpaRepository<ImageBlob, Long> {
+
+    // Только байты изображения, без загрузки сущности владельца
+    @Query("SELECT b.data FROM ImageBlob b WHERE b.id = :id")
+    Optional<byte[]> findDataById(@Param("id") Long id);
+
+    /**
+     * Читает данные блоба по ссылке владельца. Идентификатор берется из
+     * ленивого прокси без его инициализации, поэтому работает и вне сессии,
+     * в которой был загружен владелец.
+     */
+    default byte[] loadData(ImageBlob blob) {
+        return blob != null ? findDataById(blob.getId()).orElse(null) : null;
+    }
+}
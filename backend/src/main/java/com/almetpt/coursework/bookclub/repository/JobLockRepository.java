@@ -0,0 +1,52 @@
+package com.almetpt.coursework.bookclub.repository;
+
+import com.almetpt.coursework.bookclub.model.JobLock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface JobLockRepository extends JpaRepository<JobLock, String> {
+
+    // Захват истекшей аренды: строку получает только тот, чье обновление прошло первым
+    @Modifying
+    @Query("""
+        UPDATE JobLock l
+        SET l.lockedUntil = :until, l.lockedAt = :now, l.lockedBy = :owner, l.lockToken = :token
+        WHERE l.jobName = :jobName AND l.lockedUntil <= :now
+        """)
+    int acquireExpired(@Param("jobName") String jobName,
+                       @Param("until") LocalDateTime until,
+                       @Param("now") LocalDateTime now,
+                       @Param("owner") String owner,
+                       @Param("token") String token);
+
+    // Первый захват задачи; при одновременной вставке второй получит нарушение первичного ключа
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        INSERT INTO job_locks (job_name, locked_until, locked_at, locked_by, lock_token)
+        VALUES (:jobName, :until, :now, :owner, :token)
+        """)
+    int insertLock(@Param("jobName") String jobName,
+                   @Param("until") LocalDateTime until,
+                   @Param("now") LocalDateTime now,
+                   @Param("owner") String owner,
+                   @Param("token") String token);
+
+    // Продление аренды, пока задача выполняется; 0 - аренда уже перешла к другому
+    @Modifying
+    @Query("UPDATE JobLock l SET l.lockedUntil = :until WHERE l.jobName = :jobName AND l.lockToken = :token")
+    int extend(@Param("jobName") String jobName,
+               @Param("token") String token,
+               @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Query("UPDATE JobLock l SET l.lockedUntil = :until WHERE l.jobName = :jobName AND l.lockToken = :token")
+    int release(@Param("jobName") String jobName,
+                @Param("token") String token,
+                @Param("until") LocalDateTime until);
+}
@@ -0,0 +1,46 @@
+package com.almetpt.coursework.bookclub.repository;
+
+import com.almetpt.coursework.bookclub.model.JobRun;
+import com.almetpt.coursework.bookclub.model.JobRunStatus;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface JobRunRepository extends JpaRepository<JobRun, Long> {
+
+    List<JobRun> findByJobNameOrderByStartedWhenDescIdDesc(String jobName, Limit limit);
+
+    // Запуски, оставшиеся в статусе RUNNING после падения экземпляра
+    @Modifying
+    @Query("""
+        UPDATE JobRun r
+        SET r.status = com.almetpt.coursework.bookclub.model.JobRunStatus.ABANDONED, r.finishedWhen = :now
+        WHERE r.jobName = :jobName AND r.status = com.almetpt.coursework.bookclub.model.JobRunStatus.RUNNING
+        """)
+    int abandonRunning(@Param("jobName") String jobName, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("""
+        UPDATE JobRun r
+        SET r.status = :status, r.finishedWhen = :finishedWhen, r.durationMs = :durationMs,
+            r.result = :result, r.error = :error
+        WHERE r.id = :id
+        """)
+    int finish(@Param("id") Long id,
+               @Param("status") JobRunStatus status,
+               @Param("finishedWhen") LocalDateTime finishedWhen,
+               @Param("durationMs") long durationMs,
+               @Param("result") String result,
+               @Param("error") String error);
+
+    @Modifying
+    @Query("DELETE FROM JobRun r WHERE r.startedWhen < :cutoff")
+    int deleteStartedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
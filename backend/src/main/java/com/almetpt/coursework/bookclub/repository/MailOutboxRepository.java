@@ -0,0 +1,92 @@
+package com.almetpt.coursework.bookclub.repository;
+
+import com.almetpt.coursework.bookclub.model.MailOutboxMessage;
+import com.almetpt.coursework.bookclub.model.MailOutboxStatus;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface MailOutboxRepository extends JpaRepository<MailOutboxMessage, Long> {
+
+    @Query("""
+        SELECT m.id FROM MailOutboxMessage m
+        WHERE m.status = com.almetpt.coursework.bookclub.model.MailOutboxStatus.PENDING AND m.nextAttemptAt <= :now
+        ORDER BY m.nextAttemptAt, m.id
+        """)
+    List<Long> findDueIds(@Param("now") LocalDateTime now, Limit limit);
+
+    // Захват по метке: строку получает только тот, чье обновление прошло первым
+    @Modifying
+    @Query("""
+        UPDATE MailOutboxMessage m
+        SET m.status = com.almetpt.coursework.bookclub.model.MailOutboxStatus.SENDING,
+            m.claimToken = :token, m.claimedAt = :now
+        WHERE m.id IN :ids AND m.status = com.almetpt.coursework.bookclub.model.MailOutboxStatus.PENDING
+        """)
+    int claim(@Param("ids") Collection<Long> ids, @Param("token") String token, @Param("now") LocalDateTime now);
+
+    List<MailOutboxMessage> findByClaimToken(String claimToken);
+
+    // Возврат писем, обработчик которых завис или остановился посреди отправки
+    @Modifying
+    @Query("""
+        UPDATE MailOutboxMessage m
+        SET m.status = com.almetpt.coursework.bookclub.model.MailOutboxStatus.PENDING,
+            m.claimToken = null, m.claimedAt = null
+        WHERE m.status = com.almetpt.coursework.bookclub.model.MailOutboxStatus.SENDING AND m.claimedAt < :cutoff
+        """)
+    int releaseStale(@Param("cutoff") LocalDateTime cutoff);
+
+    @Modifying
+    @Query("""
+        UPDATE MailOutboxMessage m
+        SET m.status = com.almetpt.coursework.bookclub.model.MailOutboxStatus.SENT,
+            m.attempts = m.attempts + 1, m.sentWhen = :now, m.lastError = null,
+            m.claimToken = null, m.claimedAt = null
+        WHERE m.id IN :ids AND m.claimToken = :token
+        """)
+    int markSent(@Param("ids") Collection<Long> ids, @Param("token") String token, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("""
+        UPDATE MailOutboxMessage m
+        SET m.status = :status, m.attempts = m.attempts + 1, m.nextAttemptAt = :nextAttemptAt,
+            m.lastError = :error, m.claimToken = null, m.claimedAt = null
+        WHERE m.id = :id AND m.claimToken = :token
+        """)
+    int markFailed(@Param("id") Long id,
+                   @Param("token") String token,
+                   @Param("status") MailOutboxStatus status,
+                   @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                   @Param("error") String error);
+
+    @Modifying
+    @Query("""
+        UPDATE MailOutboxMessage m
+        SET m.status = com.almetpt.coursework.bookclub.model.MailOutboxStatus.PENDING,
+            m.attempts = 0, m.nextAttemptAt = :now
+        WHERE m.status = com.almetpt.coursework.bookclub.model.MailOutboxStatus.DEAD
+        """)
+    int requeueDead(@Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("""
+        DELETE FROM MailOutboxMessage m
+        WHERE m.status = com.almetpt.coursework.bookclub.model.MailOutboxStatus.SENT AND m.sentWhen < :cutoff
+        """)
+    int deleteSentBefore(@Param("cutoff") LocalDateTime cutoff);
+
+    @Query("SELECT m.status, COUNT(m) FROM MailOutboxMessage m GROUP BY m.status")
+    List<Object[]> countByStatus();
+
+    @Query("SELECT m.status, COUNT(m) FROM MailOutboxMessage m WHERE m.groupKey = :groupKey GROUP BY m.status")
+    List<Object[]> countByStatusForGroup(@Param("groupKey") String groupKey);
+}
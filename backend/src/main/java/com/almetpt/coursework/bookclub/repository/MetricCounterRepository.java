@@ -0,0 +1,37 @@
+package com.almetpt.coursework.bookclub.repository;
+
+import com.almetpt.coursework.bookclub.model.Metric;
+import com.almetpt.coursework.bookclub.model.MetricCounter;
+import com.almetpt.coursework.bookclub.model.MetricGranularity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface MetricCounterRepository extends JpaRepository<MetricCounter, Long> {
+
+    // Атомарное приращение на стороне БД; 0 - корзины еще нет
+    @Modifying
+    @Query("""
+        UPDATE MetricCounter c SET c.value = c.value + :delta
+        WHERE c.metric = :metric AND c.granularity = :granularity AND c.bucketStart = :bucketStart
+        """)
+    int increment(@Param("metric") Metric metric,
+                  @Param("granularity") MetricGranularity granularity,
+                  @Param("bucketStart") LocalDate bucketStart,
+                  @Param("delta") long delta);
+
+    List<MetricCounter> findByGranularity(MetricGranularity granularity);
+
+    List<MetricCounter> findByMetricAndGranularityAndBucketStartBetweenOrderByBucketStart(
+            Metric metric, MetricGranularity granularity, LocalDate from, LocalDate to);
+
+    @Modifying
+    @Query("DELETE FROM MetricCounter c WHERE c.metric = :metric")
+    int deleteByMetric(@Param("metric") Metric metric);
+}
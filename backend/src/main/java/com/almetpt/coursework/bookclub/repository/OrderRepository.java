@@ -1,16 +1,50 @@
 package com.almetpt.coursework.bookclub.repository;
 
+import com.almetpt.coursework.bookclub.dto.OrderExportRow;
 import com.almetpt.coursework.bookclub.model.Order;
 import com.almetpt.coursework.bookclub.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface OrderRepository extends GenericRepository<Order> {
+
+    // Коллекцию products здесь не подгружаем: join fetch коллекции вместе с
+    // limit/offset заставил бы Hibernate пагинировать в памяти
+    @EntityGraph(attributePaths = "user")
     Page<Order> findByUser(User user, Pageable pageable);
+
+    @EntityGraph(attributePaths = { "user", "products" })
     List<Order> findByUser(User user);
+
+    /**
+     * Заказы вместе с продуктами одним запросом - для страницы, уже
+     * выбранной {@link #findByUser(User, Pageable)}.
+     */
+    @Query("SELECT o FROM Order o LEFT JOIN FETCH o.products WHERE o.id IN :ids")
+    List<Order> findWithProductsByIdIn(@Param("ids") Collection<Long> ids);
+
     long countByIsDeletedFalse();
+
+    // Выгрузка курсором: строка на каждый товар заказа, строки одного заказа идут подряд
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("""
+            SELECT new com.almetpt.coursework.bookclub.dto.OrderExportRow(
+                   o.id, u.id, u.email, o.total, o.status, o.createdWhen, o.isDeleted,
+                   p.id, p.name, p.price)
+            FROM Order o JOIN o.user u LEFT JOIN o.products p
+            ORDER BY o.id
+            """)
+    Stream<OrderExportRow> streamExportRows();
 }
@@ -1,5 +1,6 @@
 package com.almetpt.coursework.bookclub.repository;
 
+import com.almetpt.coursework.bookclub.dto.ProductListingDTO;
 import com.almetpt.coursework.bookclub.model.Product;
 import com.almetpt.coursework.bookclub.model.ProductCategory;
 import org.springframework.data.domain.Page;
@@ -47,4 +48,23 @@ public interface ProductRepository extends GenericRepository<Product> {
       Pageable pageable);
 
   Page<Product> findAllByIsDeletedFalse(Pageable pageable);
+
+  // Проекция для каталога: только колонки карточки, без связей и данных обложки
+  @Query("""
+      SELECT new com.almetpt.coursework.bookclub.dto.ProductListingDTO(
+             p.id, p.name, p.description, p.price, p.category,
+             p.coverImageUrl, p.originalCoverImageFilename,
+             CASE WHEN TRIM(p.coverImageFilename) <> '' OR p.coverImageBlob IS NOT NULL THEN true ELSE false END)
+      FROM Product p
+      WHERE p.isDeleted = false
+      AND (CAST(:name AS string) = '' OR LOWER(p.name) LIKE LOWER(CONCAT('%', :name, '%')))
+      AND (:category IS NULL OR p.category = :category)
+      """)
+  Page<ProductListingDTO> findListingByNameAndCategory(
+      @Param("name") String name,
+      @Param("category") ProductCategory category,
+      Pageable pageable);
+
+  boolean existsByCoverImageFilenameOrElectronicProductFilename(String coverImageFilename,
+      String electronicProductFilename);
 }
@@ -1,13 +1,18 @@
 package com.almetpt.coursework.bookclub.repository;
 
+import com.almetpt.coursework.bookclub.dto.UserExportRow;
 import com.almetpt.coursework.bookclub.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends GenericRepository<User> {
@@ -41,4 +46,14 @@ public interface UserRepository extends GenericRepository<User> {
 
     long countByIsDeletedFalse();
 
-}
\ No newline at end of file
+    // Выгрузка курсором; проекция не загружает связанные корзину и заказы
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("""
+            SELECT new com.almetpt.coursework.bookclub.dto.UserExportRow(
+                   u.id, u.email, u.firstName, u.lastName, u.patronymic, u.phone, u.address,
+                   u.birthDate, r.name, u.createdWhen, u.isDeleted)
+            FROM User u LEFT JOIN u.role r
+            ORDER BY u.id
+            """)
+    Stream<UserExportRow> streamExportRows();
+}
@@ -0,0 +1,251 @@
+package com.almetpt.coursework.bookclub.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Асинхронная запись журнала аудита.
+ * <p>
+ * Аспекты и сервисы только кладут событие в ограниченную очередь, а
+ * фоновый поток {@code audit-writer} собирает их в пачки и вставляет в
+ * {@code audit_entries} одним JDBC batch. Пачка уходит, когда набрано
+ * {@code flush-size} событий или прошло {@code flush-interval-ms} с момента
+ * первого события в ней. При переполнении очереди событие отбрасывается
+ * (DROP) или вызывающий поток ждет место не дольше {@code block-timeout-ms}
+ * (BLOCK); отброшенные события учитываются в {@link #getStats()}.
+ * При остановке приложения очередь дописывается до конца.
+ */
+@Service
+@Slf4j
+public class AuditLogWriter {
+
+    public enum OverflowPolicy {
+        DROP,
+        BLOCK
+    }
+
+    /**
+     * Событие аудита. Поля уже приведены к строкам, чтобы фоновый поток не
+     * обращался к объектам запроса.
+     */
+    public record AuditEvent(String actionType,
+                             String resourceType,
+                             Long resourceId,
+                             String userEmail,
+                             LocalDateTime timestamp,
+                             String details) {
+    }
+
+    static final int MAX_DETAILS_LENGTH = 1000;
+
+    private static final String INSERT_SQL = "INSERT INTO audit_entries "
+            + "(action_type, resource_type, resource_id, user_email, timestamp, details) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlockingQueue<AuditEvent> queue;
+    private final int capacity;
+    private final int flushSize;
+    private final long flushIntervalMillis;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutMillis;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public AuditLogWriter(JdbcTemplate jdbcTemplate,
+                          @Value("${audit.writer.capacity:8192}") int capacity,
+                          @Value("${audit.writer.flush-size:200}") int flushSize,
+                          @Value("${audit.writer.flush-interval-ms:500}") long flushIntervalMillis,
+                          @Value("${audit.writer.overflow-policy:DROP}") String overflowPolicy,
+                          @Value("${audit.writer.block-timeout-ms:50}") long blockTimeoutMillis) {
+        if (capacity < 1 || flushSize < 1 || flushIntervalMillis < 1) {
+            throw new IllegalArgumentException("Размер очереди, пачки и интервал записи аудита должны быть положительными");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.flushSize = Math.min(flushSize, capacity);
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.overflowPolicy = OverflowPolicy.valueOf(overflowPolicy.trim().toUpperCase(Locale.ROOT));
+        this.blockTimeoutMillis = blockTimeoutMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        worker = new Thread(this::run, "audit-writer");
+        worker.setDaemon(true);
+        worker.start();
+        log.info("Запись аудита: очередь {}, пачка {}, интервал {} мс, переполнение {}",
+                capacity, flushSize, flushIntervalMillis, overflowPolicy);
+    }
+
+    /**
+     * Ставит событие в очередь на запись.
+     *
+     * @return false, если очередь переполнена и событие отброшено
+     */
+    public boolean enqueue(AuditEvent event) {
+        boolean accepted = overflowPolicy == OverflowPolicy.BLOCK ? offerBlocking(event) : queue.offer(event);
+        if (accepted) {
+            enqueued.increment();
+        } else {
+            dropped.increment();
+            log.debug("Очередь аудита переполнена, событие {} отброшено", event.actionType());
+        }
+        return accepted;
+    }
+
+    /**
+     * Записывает все события, которые сейчас в очереди, в вызывающем потоке.
+     *
+     * @return число записанных событий
+     */
+    public int flushPending() {
+        List<AuditEvent> batch = new ArrayList<>(flushSize);
+        int total = 0;
+        while (queue.drainTo(batch, flushSize) > 0) {
+            total += write(batch);
+            batch.clear();
+        }
+        return total;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("queued", queue.size());
+        result.put("capacity", capacity);
+        result.put("overflowPolicy", overflowPolicy.name());
+        result.put("enqueued", enqueued.sum());
+        result.put("written", written.sum());
+        result.put("dropped", dropped.sum());
+        result.put("failed", failed.sum());
+        result.put("batches", batches.sum());
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (worker != null) {
+            try {
+                // Поток просыпается не реже раза в интервал и дописывает очередь сам
+                worker.join(flushIntervalMillis + TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (worker.isAlive()) {
+                log.warn("Поток записи аудита не завершился, в очереди осталось {} событий", queue.size());
+                return;
+            }
+        }
+        flushPending();
+    }
+
+    private boolean offerBlocking(AuditEvent event) {
+        try {
+            return queue.offer(event, blockTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void run() {
+        List<AuditEvent> batch = new ArrayList<>(flushSize);
+        while (running) {
+            try {
+                AuditEvent first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                collect(batch);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                log.error("Ошибка в потоке записи аудита", e);
+            } finally {
+                batch.clear();
+            }
+        }
+        flushPending();
+    }
+
+    // Добирает пачку до flushSize, но не ждет дольше интервала с момента первого события
+    private void collect(List<AuditEvent> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        while (batch.size() < flushSize) {
+            queue.drainTo(batch, flushSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= flushSize || remaining <= 0) {
+                return;
+            }
+            AuditEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private int write(List<AuditEvent> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, event) -> {
+                ps.setString(1, event.actionType());
+                ps.setString(2, event.resourceType());
+                if (event.resourceId() != null) {
+                    ps.setLong(3, event.resourceId());
+                } else {
+                    ps.setNull(3, Types.BIGINT);
+                }
+                ps.setString(4, event.userEmail());
+                ps.setTimestamp(5, Timestamp.valueOf(event.timestamp() != null ? event.timestamp() : LocalDateTime.now()));
+                ps.setString(6, truncate(event.details()));
+            });
+            written.add(batch.size());
+            batches.increment();
+            return batch.size();
+        } catch (DataAccessException e) {
+            failed.add(batch.size());
+            log.error("Не удалось записать {} событий аудита: {}", batch.size(), e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    private static String truncate(String details) {
+        if (details == null || details.length() <= MAX_DETAILS_LENGTH) {
+            return details;
+        }
+        return details.substring(0, MAX_DETAILS_LENGTH - 3) + "...";
+    }
+}
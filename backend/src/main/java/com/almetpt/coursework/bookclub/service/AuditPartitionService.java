@@ -0,0 +1,306 @@
+package com.almetpt.coursework.bookclub.service;
+
+import com.almetpt.coursework.bookclub.utils.CsvWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Хранение журнала аудита по месяцам и удаление старых записей.
+ * <p>
+ * В PostgreSQL таблица {@code audit_entries} секционируется по
+ * {@code timestamp} (PARTITION BY RANGE): одна секция на месяц и секция
+ * DEFAULT для записей вне подготовленных диапазонов. Hibernate создает
+ * обычную таблицу, поэтому при первом запуске она переводится в
+ * секционированную с переносом данных, а затем секции создаются заранее на
+ * несколько месяцев вперед. Старый месяц удаляется целиком через
+ * {@code DROP TABLE} секции, без построчного DELETE и раздувания таблицы.
+ * <p>
+ * На других СУБД (H2 в тестах) таблица остается обычной, а старые месяцы
+ * удаляются запросом DELETE по диапазону. Перед удалением месяц может быть
+ * выгружен в {@code audit_entries_yyyy-MM.csv.gz}.
+ */
+@Service
+@Slf4j
+public class AuditPartitionService {
+
+    static final String TABLE = "audit_entries";
+
+    private static final String COLUMNS = "id, action_type, resource_type, resource_id, user_email, timestamp, details";
+    private static final Pattern PARTITION_NAME = Pattern.compile(TABLE + "_p(\\d{4})_(\\d{2})");
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final int EXPORT_FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate exportJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    @Value("${audit.partitioning.enabled:true}")
+    private boolean partitioningEnabled = true;
+
+    @Value("${audit.partitioning.months-ahead:3}")
+    private int monthsAhead = 3;
+
+    @Value("${audit.retention.months:12}")
+    private int retentionMonths = 12;
+
+    @Value("${audit.retention.archive-directory:}")
+    private String archiveDirectory = "";
+
+    private volatile Boolean postgres;
+
+    public AuditPartitionService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Отдельный шаблон с fetch size: выгрузка месяца читается курсором, а не целиком в память
+        this.exportJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.exportJdbcTemplate.setFetchSize(EXPORT_FETCH_SIZE);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Переводит таблицу в секционированную (если нужно) и создает секции на
+     * текущий и следующие месяцы. Вне PostgreSQL ничего не делает.
+     */
+    public void preparePartitions() {
+        if (!partitioningEnabled || !isPostgres()) {
+            return;
+        }
+        String kind = jdbcTemplate.queryForObject(
+                "SELECT c.relkind::text FROM pg_class c WHERE c.oid = to_regclass(?)", String.class, TABLE);
+        if (kind == null) {
+            log.warn("Таблица {} не найдена, секционирование журнала аудита пропущено", TABLE);
+            return;
+        }
+        if ("r".equals(kind)) {
+            convertToPartitioned();
+        }
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= monthsAhead; i++) {
+            createPartition(current.plusMonths(i));
+        }
+    }
+
+    public boolean isPartitioned() {
+        if (!isPostgres()) {
+            return false;
+        }
+        return "p".equals(jdbcTemplate.queryForObject(
+                "SELECT c.relkind::text FROM pg_class c WHERE c.oid = to_regclass(?)", String.class, TABLE));
+    }
+
+    /**
+     * Удаляет месяцы старше {@code audit.retention.months}, предварительно
+     * выгружая их, если задан {@code audit.retention.archive-directory}.
+     */
+    public Map<String, Object> applyRetention() {
+        if (retentionMonths <= 0) {
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("skipped", true);
+            return report;
+        }
+        Path archive = archiveDirectory == null || archiveDirectory.isBlank() ? null : Path.of(archiveDirectory);
+        return applyRetention(YearMonth.now().minusMonths(retentionMonths), archive);
+    }
+
+    /**
+     * Удаляет все месяцы раньше {@code cutoff}.
+     *
+     * @param archive каталог для выгрузки или null, чтобы удалить без выгрузки
+     * @return отчет: граница, обработанные месяцы, число удаленных записей
+     * @throws IllegalStateException если выгрузка не удалась; этот месяц и
+     *                               более поздние не удаляются
+     */
+    public Map<String, Object> applyRetention(YearMonth cutoff, Path archive) {
+        LocalDateTime cutoffStart = cutoff.atDay(1).atStartOfDay();
+        boolean partitioned = isPartitioned();
+
+        TreeSet<YearMonth> months = new TreeSet<>();
+        Timestamp oldest = jdbcTemplate.queryForObject(
+                "SELECT MIN(timestamp) FROM " + TABLE + " WHERE timestamp < ?", Timestamp.class,
+                Timestamp.valueOf(cutoffStart));
+        if (oldest != null) {
+            for (YearMonth month = YearMonth.from(oldest.toLocalDateTime()); month.isBefore(cutoff); month = month.plusMonths(1)) {
+                months.add(month);
+            }
+        }
+        List<YearMonth> partitions = partitioned ? listPartitionMonths() : List.of();
+        // Пустые старые секции тоже удаляются
+        partitions.stream().filter(month -> month.isBefore(cutoff)).forEach(months::add);
+
+        List<String> purged = new ArrayList<>();
+        long rows = 0;
+        for (YearMonth month : months) {
+            rows += purgeMonth(month, archive, partitions.contains(month));
+            purged.add(month.toString());
+        }
+        if (!purged.isEmpty()) {
+            log.info("Журнал аудита: удалены месяцы {} ({} записей), граница {}", purged, rows, cutoff);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("cutoff", cutoff.toString());
+        report.put("partitioned", partitioned);
+        report.put("months", purged);
+        report.put("rows", rows);
+        report.put("archived", archive != null);
+        return report;
+    }
+
+    private long purgeMonth(YearMonth month, Path archive, boolean dropPartition) {
+        Timestamp from = Timestamp.valueOf(month.atDay(1).atStartOfDay());
+        Timestamp to = Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+        if (archive != null) {
+            export(month, from, to, archive);
+        }
+        Long removed = transactionTemplate.execute(status -> {
+            if (dropPartition) {
+                String partition = partitionName(month);
+                Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + partition, Long.class);
+                jdbcTemplate.execute("DROP TABLE " + partition);
+                return count;
+            }
+            return (long) jdbcTemplate.update(
+                    "DELETE FROM " + TABLE + " WHERE timestamp >= ? AND timestamp < ?", from, to);
+        });
+        return removed != null ? removed : 0;
+    }
+
+    private void export(YearMonth month, Timestamp from, Timestamp to, Path archive) {
+        Path target = archive.resolve(TABLE + "_" + month + ".csv.gz");
+        Path temp = archive.resolve(target.getFileName() + ".part");
+        try {
+            Files.createDirectories(archive);
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(Files.newOutputStream(temp)), StandardCharsets.UTF_8))) {
+                CsvWriter csv = new CsvWriter(writer);
+                csv.writeRow((Object[]) COLUMNS.split(", "));
+                readOnlyTransactionTemplate.executeWithoutResult(status -> exportJdbcTemplate.query(
+                        "SELECT " + COLUMNS + " FROM " + TABLE + " WHERE timestamp >= ? AND timestamp < ? ORDER BY timestamp, id",
+                        (RowCallbackHandler) rs -> writeCsvRow(csv, rs), from, to));
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | UncheckedIOException e) {
+            throw new IllegalStateException("Не удалось выгрузить журнал аудита за " + month + " в " + target, e);
+        }
+    }
+
+    private static void writeCsvRow(CsvWriter csv, ResultSet rs) throws SQLException {
+        try {
+            csv.writeRow(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getObject(4), rs.getString(5),
+                    rs.getTimestamp(6).toLocalDateTime(), rs.getString(7));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void convertToPartitioned() {
+        String legacy = TABLE + "_unpartitioned";
+        log.info("Перевод таблицы {} в секционированную по месяцам", TABLE);
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " RENAME TO " + legacy);
+            // Последовательность identity принадлежит старой таблице и удалится вместе с ней
+            jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS " + TABLE + "_id_gen");
+            jdbcTemplate.queryForObject("SELECT setval('" + TABLE + "_id_gen', COALESCE((SELECT MAX(id) FROM "
+                    + legacy + "), 0) + 1, false)", Long.class);
+            jdbcTemplate.execute("CREATE TABLE " + TABLE + " ("
+                    + "id bigint NOT NULL DEFAULT nextval('" + TABLE + "_id_gen'), "
+                    + "action_type varchar(255) NOT NULL, "
+                    + "resource_type varchar(255), "
+                    + "resource_id bigint, "
+                    + "user_email varchar(255), "
+                    + "timestamp timestamp(6) NOT NULL, "
+                    + "details varchar(1000), "
+                    + "PRIMARY KEY (id, timestamp)"
+                    + ") PARTITION BY RANGE (timestamp)");
+            jdbcTemplate.execute("ALTER SEQUENCE " + TABLE + "_id_gen OWNED BY " + TABLE + ".id");
+            jdbcTemplate.execute("CREATE TABLE " + TABLE + "_default PARTITION OF " + TABLE + " DEFAULT");
+
+            Timestamp oldest = jdbcTemplate.queryForObject("SELECT MIN(timestamp) FROM " + legacy, Timestamp.class);
+            YearMonth last = YearMonth.now().plusMonths(monthsAhead);
+            YearMonth month = oldest != null ? YearMonth.from(oldest.toLocalDateTime()) : YearMonth.now();
+            for (; !month.isAfter(last); month = month.plusMonths(1)) {
+                createPartition(month);
+            }
+
+            int moved = jdbcTemplate.update("INSERT INTO " + TABLE + " (" + COLUMNS + ") SELECT " + COLUMNS + " FROM " + legacy);
+            jdbcTemplate.execute("DROP TABLE " + legacy);
+            // Имена совпадают с @Index в AuditEntry, чтобы ddl-auto=update не создавал дубликаты
+            jdbcTemplate.execute("CREATE INDEX idx_audit_timestamp_id ON " + TABLE + " (timestamp, id)");
+            jdbcTemplate.execute("CREATE INDEX idx_audit_action_type ON " + TABLE + " (action_type)");
+            jdbcTemplate.execute("CREATE INDEX idx_audit_user_email ON " + TABLE + " (user_email)");
+            jdbcTemplate.execute("CREATE INDEX idx_audit_resource ON " + TABLE + " (resource_type, resource_id)");
+            log.info("Таблица {} секционирована, перенесено {} записей", TABLE, moved);
+        });
+    }
+
+    private void createPartition(YearMonth month) {
+        try {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(month) + " PARTITION OF " + TABLE
+                    + " FOR VALUES FROM ('" + month.atDay(1).atStartOfDay() + "') TO ('"
+                    + month.plusMonths(1).atDay(1).atStartOfDay() + "')");
+        } catch (DataAccessException e) {
+            // Например, в секции DEFAULT уже есть записи этого месяца: они остаются там
+            log.error("Не удалось создать секцию журнала аудита за {}: {}", month, e.getMessage());
+        }
+    }
+
+    private List<YearMonth> listPartitionMonths() {
+        List<String> names = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                        + "WHERE i.inhparent = to_regclass(?)", String.class, TABLE);
+        List<YearMonth> months = new ArrayList<>(names.size());
+        for (String name : names) {
+            Matcher matcher = PARTITION_NAME.matcher(name);
+            if (matcher.matches()) {
+                months.add(YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))));
+            }
+        }
+        return months;
+    }
+
+    private static String partitionName(YearMonth month) {
+        return TABLE + "_p" + month.format(PARTITION_SUFFIX);
+    }
+
+    private boolean isPostgres() {
+        if (postgres == null) {
+            postgres = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                    connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("postgresql"));
+        }
+        return postgres;
+    }
+}
@@ -1,87 +1,122 @@
 package com.almetpt.coursework.bookclub.service;
 
+import com.almetpt.coursework.bookclub.dto.AuditPageDTO;
 import com.almetpt.coursework.bookclub.model.AuditEntry;
 import com.almetpt.coursework.bookclub.repository.AuditRepository;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.almetpt.coursework.bookclub.repository.AuditSpecifications;
+import com.almetpt.coursework.bookclub.service.AuditLogWriter.AuditEvent;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
 
-// import java.time.LocalDateTime;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
 
+/**
+ * Журнал аудита: явная запись действий из сервисов и чтение по курсору.
+ * <p>
+ * События уходят в {@link AuditLogWriter} и пишутся в БД фоновым потоком,
+ * поэтому не зависят от транзакции вызывающего кода. Чтение идет в порядке
+ * {@code timestamp DESC, id DESC}: следующая страница начинается после
+ * последней записи предыдущей (keyset), а не через OFFSET, поэтому глубокие
+ * страницы стоят столько же, сколько первая.
+ */
 @Service
 public class AuditService {
-    private static final Logger logger = LoggerFactory.getLogger(AuditService.class);
+    public static final int MAX_PAGE_SIZE = 200;
+
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Order.desc("timestamp"), Sort.Order.desc("id"));
+
+    private final AuditLogWriter auditLogWriter;
     private final AuditRepository auditRepository;
 
-    public AuditService(AuditRepository auditRepository) {
+    public AuditService(AuditLogWriter auditLogWriter, AuditRepository auditRepository) {
+        this.auditLogWriter = auditLogWriter;
         this.auditRepository = auditRepository;
     }
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    /**
+     * Страница журнала, начиная после курсора.
+     *
+     * @param cursor {@code nextCursor} предыдущей страницы или null для первой
+     * @throws IllegalArgumentException если курсор или размер страницы некорректны
+     */
+    public AuditPageDTO findEntries(String actionType, String userEmail,
+                                    LocalDateTime dateFrom, LocalDateTime dateTo,
+                                    String cursor, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        Specification<AuditEntry> specification = AuditSpecifications.filter(actionType, userEmail, dateFrom, dateTo);
+        if (cursor != null && !cursor.isBlank()) {
+            AuditEntry last = decodeCursor(cursor);
+            specification = specification.and(AuditSpecifications.before(last.getTimestamp(), last.getId()));
+        }
+
+        // Одна лишняя строка показывает, есть ли следующая страница, без COUNT
+        List<AuditEntry> rows = auditRepository.findBy(specification,
+                query -> query.sortBy(NEWEST_FIRST).limit(size + 1).all());
+        boolean hasNext = rows.size() > size;
+        List<AuditEntry> content = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = hasNext ? encodeCursor(content.get(content.size() - 1)) : null;
+        return new AuditPageDTO(content, size, hasNext, nextCursor);
+    }
+
     public void logAction(String actionType, String resourceType, Long resourceId, String details) {
-        try {
-            AuditEntry auditEntry = new AuditEntry();
-            auditEntry.setActionType(actionType);
-            auditEntry.setResourceType(resourceType);
-            auditEntry.setResourceId(resourceId);
-            auditEntry.setDetails(details);
-            
-            // Получаем текущего пользователя
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            if (authentication != null && authentication.isAuthenticated()) {
-                auditEntry.setUserEmail(authentication.getName());
-            }
-            
-            auditRepository.save(auditEntry);
-        } catch (Exception e) {
-            logger.error("Failed to log action: {}", e.getMessage(), e);
-            // Не прерываем основной поток выполнения из-за ошибки логирования
+        // Получаем текущего пользователя
+        String userEmail = null;
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()) {
+            userEmail = authentication.getName();
         }
+        auditLogWriter.enqueue(new AuditEvent(actionType, resourceType, resourceId, userEmail, LocalDateTime.now(), details));
     }
 
     // Методы для удобства использования
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void logCreate(String resourceType, Long resourceId, String details) {
         logAction("CREATE", resourceType, resourceId, details);
     }
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void logUpdate(String resourceType, Long resourceId, String details) {
         logAction("UPDATE", resourceType, resourceId, details);
     }
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void logDelete(String resourceType, Long resourceId, String details) {
         logAction("DELETE", resourceType, resourceId, details);
     }
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void logLogin(String userEmail) {
-        try {
-            AuditEntry auditEntry = new AuditEntry();
-            auditEntry.setActionType("LOGIN");
-            auditEntry.setUserEmail(userEmail);
-            auditRepository.save(auditEntry);
-        } catch (Exception e) {
-            logger.error("Failed to log login: {}", e.getMessage(), e);
-            // Не прерываем основной поток выполнения из-за ошибки логирования
-        }
+        auditLogWriter.enqueue(new AuditEvent("LOGIN", null, null, userEmail, LocalDateTime.now(), null));
     }
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void logLogout(String userEmail) {
+        auditLogWriter.enqueue(new AuditEvent("LOGOUT", null, null, userEmail, LocalDateTime.now(), null));
+    }
+
+    static String encodeCursor(AuditEntry entry) {
+        String value = entry.getTimestamp() + "|" + entry.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static AuditEntry decodeCursor(String cursor) {
         try {
-            AuditEntry auditEntry = new AuditEntry();
-            auditEntry.setActionType("LOGOUT");
-            auditEntry.setUserEmail(userEmail);
-            auditRepository.save(auditEntry);
-        } catch (Exception e) {
-            logger.error("Failed to log logout: {}", e.getMessage(), e);
-            // Не прерываем основной поток выполнения из-за ошибки логирования
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.indexOf('|');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Некорректный курсор журнала аудита");
+            }
+            return AuditEntry.builder()
+                    .timestamp(LocalDateTime.parse(value.substring(0, separator)))
+                    .id(Long.parseLong(value.substring(separator + 1)))
+                    .build();
+        } catch (DateTimeParseException e) {
+            // NumberFormatException и ошибка Base64 уже IllegalArgumentException
+            throw new IllegalArgumentException("Некорректный курсор журнала аудита", e);
         }
     }
 }
@@ -4,55 +4,83 @@ import com.almetpt.coursework.bookclub.dto.BookImageDTO;
 import com.almetpt.coursework.bookclub.dto.BookImageUploadDTO;
 import com.almetpt.coursework.bookclub.model.Book;
 import com.almetpt.coursework.bookclub.repository.BookRepository;
-import lombok.RequiredArgsConstructor;
+import com.almetpt.coursework.bookclub.repository.ImageBlobRepository;
+import com.almetpt.coursework.bookclub.utils.TransactionCallbacks;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.Resource;
-import org.springframework.http.converter.ByteArrayHttpMessageConverter;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import org.webjars.NotFoundException;
-import org.springframework.mock.web.MockMultipartFile;
 
 import java.io.IOException;
-import java.util.UUID;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class BookImageService {
 
     private final BookRepository bookRepository;
+    private final ImageBlobRepository imageBlobRepository;
     private final FileStorageService fileStorageService;
+    private final CoverImageCache coverImageCache;
+    private final ExternalImageFetchService externalImageFetchService;
+    private final ImageProcessingService imageProcessingService;
+    private final TransactionTemplate transactionTemplate;
+
+    public BookImageService(BookRepository bookRepository,
+                            ImageBlobRepository imageBlobRepository,
+                            FileStorageService fileStorageService,
+                            CoverImageCache coverImageCache,
+                            ExternalImageFetchService externalImageFetchService,
+                            ImageProcessingService imageProcessingService,
+                            PlatformTransactionManager transactionManager) {
+        this.bookRepository = bookRepository;
+        this.imageBlobRepository = imageBlobRepository;
+        this.fileStorageService = fileStorageService;
+        this.coverImageCache = coverImageCache;
+        this.externalImageFetchService = externalImageFetchService;
+        this.imageProcessingService = imageProcessingService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
 
-    @Transactional
     public BookImageDTO uploadImage(Long bookId, MultipartFile file) throws IOException {
         log.debug("Загрузка изображения для книги с ID: {}", bookId);
-        Book book = getBookById(bookId);
-
-        // Если у книги уже было загруженное изображение, удаляем его
-        if (book.getCoverImageFilename() != null) {
-            fileStorageService.deleteFile(book.getCoverImageFilename());
-        }
-
-        // Сохраняем новое изображение
+        // Файл и его уменьшенные копии готовим до транзакции: обработка изображения не держит соединение с БД
         String filename = fileStorageService.saveFile(file);
-        book.setCoverImageFilename(filename);
-        // Сохраняем оригинальное имя файла
-        book.setOriginalCoverImageFilename(file.getOriginalFilename());
-        // Если ранее была установлена URL-ссылка, удаляем её
-        book.setCoverImageUrl(null);
-        book.setCoverImageData(null);
-        bookRepository.save(book);
+        imageProcessingService.generateRenditions(filename);
 
-        return new BookImageDTO(
-                book.getId(),
-                book.getCoverImageUrl(),
-                book.getCoverImageFilename(),
-                book.hasLocalImage(),
-                book.getOriginalCoverImageFilename());
+        try {
+            return transactionTemplate.execute(status -> {
+                Book book = getBookById(bookId);
+                String previousFilename = book.getCoverImageFilename();
+                book.setCoverImageFilename(filename);
+                // Сохраняем оригинальное имя файла
+                book.setOriginalCoverImageFilename(file.getOriginalFilename());
+                // Если ранее была установлена URL-ссылка, удаляем её
+                book.setCoverImageUrl(null);
+                book.setCoverImageData(null);
+                bookRepository.save(book);
+                coverImageCache.invalidate(CoverImageCache.OwnerType.BOOK, bookId);
+
+                // Старый файл удаляем только после того, как книга перестала на него ссылаться
+                if (previousFilename != null && !previousFilename.equals(filename)) {
+                    fileStorageService.deleteFile(previousFilename);
+                }
+
+                return new BookImageDTO(
+                        book.getId(),
+                        book.getCoverImageUrl(),
+                        book.getCoverImageFilename(),
+                        book.hasLocalImage(),
+                        book.getOriginalCoverImageFilename());
+            });
+        } catch (RuntimeException e) {
+            // Обложка не сохранилась: новый файл никому не нужен (удаление проверяет ссылки на него)
+            fileStorageService.deleteFile(filename);
+            throw e;
+        }
     }
 
     @Transactional
@@ -60,22 +88,21 @@ public class BookImageService {
         log.info("Загрузка изображения по URL для книги с ID: {}", dto.getBookId());
         Book book = getBookById(dto.getBookId());
 
-        // Запускаем асинхронную загрузку изображения
-        processExternalImageAsync(dto.getImageUrl(), dto.getBookId());
-
         // Устанавливаем URL изображения
         book.setCoverImageUrl(dto.getImageUrl());
 
         // Если ранее было загруженное изображение, удаляем его
-        if (book.getCoverImageFilename() != null) {
-            fileStorageService.deleteFile(book.getCoverImageFilename());
-            book.setCoverImageFilename(null);
-        }
-
+        String previousFilename = book.getCoverImageFilename();
+        book.setCoverImageFilename(null);
         book.setCoverImageData(null);
         // Оригинального имени файла нет, так как загружаем по URL
         book.setOriginalCoverImageFilename(null);
         bookRepository.save(book);
+        coverImageCache.invalidate(CoverImageCache.OwnerType.BOOK, book.getId());
+        fileStorageService.deleteFile(previousFilename);
+
+        // Загружаем изображение после коммита, когда книга уже ссылается на новый URL
+        TransactionCallbacks.afterCommit(() -> processExternalImageAsync(dto.getImageUrl(), dto.getBookId()));
 
         return new BookImageDTO(
                 book.getId(),
@@ -85,53 +112,63 @@ public class BookImageService {
                 book.getOriginalCoverImageFilename());
     }
 
-    @Async
+    /**
+     * Ставит загрузку изображения в очередь {@link ExternalImageFetchService}
+     * и сохраняет его локально по завершении. Повторные запросы того же URL
+     * присоединяются к уже идущей загрузке.
+     */
     public void processExternalImageAsync(String url, Long bookId) {
+        log.info("Постановка в очередь загрузки изображения с URL: {}", url);
         try {
-            log.info("Начало асинхронной загрузки изображения с URL: {}", url);
-            byte[] imageData = downloadExternalImage(url);
-
-            if (imageData != null && imageData.length > 0) {
-                // Сохраняем загруженное изображение
-                saveDownloadedImage(bookId, imageData);
+            externalImageFetchService.fetch(url).whenComplete((imageData, error) -> {
+                if (error != null) {
+                    log.error("Ошибка при асинхронной загрузке изображения: {}", url, error);
+                    return;
+                }
+                saveDownloadedImage(bookId, url, imageData);
                 log.info("Изображение успешно загружено и сохранено для книги: {}", bookId);
-            } else {
-                log.warn("Загруженное изображение пустое или null");
-            }
-        } catch (Exception e) {
-            log.error("Ошибка при асинхронной загрузке изображения: {}", url, e);
+            });
+        } catch (IllegalArgumentException e) {
+            // Обложка останется внешней ссылкой, клиент загрузит ее сам
+            log.warn("Изображение не будет загружено: {}", e.getMessage());
         }
     }
 
-    @Transactional
-    public void saveDownloadedImage(Long bookId, byte[] imageData) {
+    /**
+     * Сохраняет загруженную обложку локально, если у книги нет своего файла и
+     * она все еще ссылается на {@code sourceUrl}. Метод вызывается изнутри
+     * сервиса, поэтому транзакцию не объявляет: файл пишется без нее, а
+     * ссылка ставится условным UPDATE, который не затрет обложку, загруженную
+     * за время скачивания.
+     */
+    public void saveDownloadedImage(Long bookId, String sourceUrl, byte[] imageData) {
         try {
+            // Предварительная проверка, чтобы не писать файл зря; окончательная - в UPDATE
             Book book = getBookById(bookId);
             // Если у книги уже есть локальный файл, не сохраняем
             if (book.getCoverImageFilename() != null) {
                 log.debug("У книги уже есть локальный файл, пропускаем сохранение");
                 return;
             }
+            // Пока шла загрузка, URL обложки могли сменить
+            if (!sourceUrl.equals(book.getCoverImageUrl())) {
+                log.debug("URL обложки книги с id={} изменился, загруженное изображение не сохраняется", bookId);
+                return;
+            }
 
-            // Генерируем уникальное имя файла
-            String extension = ".jpg"; // Предполагаем, что это JPEG
-            String filename = "book_" + bookId + "_" + UUID.randomUUID() + extension;
-
-            // Создаем MultipartFile из байтов
-            MockMultipartFile mockFile = new MockMultipartFile(
-                    "cover",
-                    filename,
-                    "image/jpeg",
-                    imageData);
-
-            // Сохраняем файл
-            String savedFilename = fileStorageService.saveFile(mockFile);
-
-            // Обновляем запись в БД
-            book.setCoverImageFilename(savedFilename);
-            // Оставляем URL для истории и в случае ошибки загрузки локального файла
-            // book.setCoverImageUrl(null);
-            bookRepository.save(book);
+            // Сохраняем файл (предполагаем, что это JPEG)
+            String savedFilename = fileStorageService.saveBytes(imageData, "jpg");
+            imageProcessingService.generateRenditions(savedFilename);
+
+            // URL оставляем для истории и в случае ошибки загрузки локального файла.
+            // Кеш обложек не сбрасываем: содержимое то же, что и по URL, и ETag совпадает
+            Integer updated = transactionTemplate.execute(status ->
+                    bookRepository.setDownloadedCover(bookId, sourceUrl, savedFilename));
+            if (updated == null || updated == 0) {
+                log.debug("Обложку книги с id={} сменили во время загрузки, файл не сохраняется", bookId);
+                fileStorageService.deleteFile(savedFilename);
+                return;
+            }
 
             log.info("Загруженное изображение сохранено локально: {}", savedFilename);
         } catch (Exception e) {
@@ -142,19 +179,19 @@ public class BookImageService {
     @Transactional
     public BookImageDTO uploadImageData(Long bookId, MultipartFile file) throws IOException {
         Book book = getBookById(bookId);
-
-        // Если у книги уже было загруженное файловое изображение, удаляем его
-        if (book.getCoverImageFilename() != null) {
-            fileStorageService.deleteFile(book.getCoverImageFilename());
-            book.setCoverImageFilename(null);
-        }
+        String previousFilename = book.getCoverImageFilename();
 
         // Сохраняем бинарные данные изображения
+        book.setCoverImageFilename(null);
         book.setCoverImageData(file.getBytes());
         book.setCoverImageUrl(null);
         // Сохраняем оригинальное имя файла
         book.setOriginalCoverImageFilename(file.getOriginalFilename());
         bookRepository.save(book);
+        coverImageCache.invalidate(CoverImageCache.OwnerType.BOOK, bookId);
+
+        // Если у книги уже было загруженное файловое изображение, удаляем его
+        fileStorageService.deleteFile(previousFilename);
 
         return new BookImageDTO(
                 book.getId(),
@@ -164,28 +201,19 @@ public class BookImageService {
                 book.getOriginalCoverImageFilename());
     }
 
-    public Resource getBookCoverImage(Long bookId) {
-        Book book = getBookById(bookId);
-        if (book.getCoverImageFilename() != null) {
-            return fileStorageService.loadAsResource(book.getCoverImageFilename());
-        }
-
-        return null;
+    /**
+     * Возвращает обложку книги нужного размера через кеш обложек.
+     *
+     * @return обложка или {@code null}, если у книги ее нет
+     */
+    public CoverImageCache.CachedCover getBookCover(Long bookId, ImageProcessingService.ImageSize size) {
+        return coverImageCache.get(CoverImageCache.OwnerType.BOOK, bookId, size, () -> loadBookCover(bookId, size));
     }
 
-    public byte[] getBookCoverImageData(Long bookId) throws IOException {
-        log.debug("Получение данных изображения для книги с ID: {}", bookId);
+    public Resource getBookCoverImage(Long bookId) {
         Book book = getBookById(bookId);
-
         if (book.getCoverImageFilename() != null) {
-            try {
-                // Логируем полный путь к файлу для отладки
-                log.info("Пытаемся загрузить файл: {}", book.getCoverImageFilename());
-                return fileStorageService.getFileData(book.getCoverImageFilename());
-            } catch (IOException e) {
-                log.error("Ошибка при чтении файла {}: {}", book.getCoverImageFilename(), e.getMessage());
-                throw e;
-            }
+            return fileStorageService.loadAsResource(book.getCoverImageFilename());
         }
 
         return null;
@@ -193,7 +221,7 @@ public class BookImageService {
 
     public byte[] getBookCoverImageDataFromDB(Long bookId) {
         Book book = getBookById(bookId);
-        return book.getCoverImageData();
+        return imageBlobRepository.loadData(book.getCoverImageBlob());
     }
 
     public BookImageDTO getBookImageInfo(Long bookId) {
@@ -206,28 +234,47 @@ public class BookImageService {
                 book.getOriginalCoverImageFilename());
     }
 
-    private Book getBookById(Long id) {
-        return bookRepository.findById(id)
-                .orElseThrow(() -> new NotFoundException("Книга с id " + id + " не найдена"));
-    }
-
-    private byte[] downloadExternalImage(String url) {
+    // Загрузка обложки при промахе кеша: локальный файл, данные из БД или внешний URL
+    private CoverImageCache.CachedCover loadBookCover(Long bookId, ImageProcessingService.ImageSize size) {
+        Book book = getBookById(bookId);
         try {
-            RestTemplate restTemplate = new RestTemplate();
-            restTemplate.getMessageConverters().add(new ByteArrayHttpMessageConverter());
-            byte[] imageData = restTemplate.getForObject(url, byte[].class);
-
-            if (imageData == null || imageData.length == 0) {
-                log.warn("Загружено пустое изображение с URL: {}", url);
-            } else {
-                log.info("Успешно загружено изображение размером {} байт с URL: {}",
-                        imageData.length, url);
+            if (book.getCoverImageFilename() != null) {
+                CoverImageCache.CachedCover cover = coverImageCache.fromStorage(book.getCoverImageFilename(), size);
+                if (cover != null) {
+                    return cover;
+                }
+                log.warn("Локальный файл обложки {} для книги с id={} не найден",
+                        book.getCoverImageFilename(), bookId);
             }
+        } catch (IOException e) {
+            log.error("Ошибка чтения файла обложки {} для книги с id={}", book.getCoverImageFilename(), bookId, e);
+        }
 
-            return imageData;
-        } catch (Exception e) {
-            log.error("Ошибка при загрузке изображения с URL: {}", url, e);
-            throw new RuntimeException("Не удалось загрузить изображение с URL: " + url, e);
+        byte[] coverImageData = imageBlobRepository.loadData(book.getCoverImageBlob());
+        if (coverImageData != null && coverImageData.length > 0) {
+            return coverImageCache.fromBytes(coverImageData, book.getOriginalCoverImageFilename(), size);
+        }
+
+        if (book.getCoverImageUrl() != null && !book.getCoverImageUrl().isBlank()) {
+            byte[] imageData;
+            try {
+                // Переполнение очереди (RejectedExecutionException) пробрасывается вызывающему
+                imageData = externalImageFetchService.fetchNow(book.getCoverImageUrl());
+            } catch (IOException | IllegalArgumentException e) {
+                log.error("Ошибка загрузки внешнего изображения: {}", book.getCoverImageUrl(), e);
+                // Не кешируем: при следующем запросе попробуем загрузить снова
+                throw new NotFoundException("Не удалось загрузить обложку книги с id " + bookId);
+            }
+            // Сохраняем локально, чтобы не загружать картинку повторно
+            saveDownloadedImage(bookId, book.getCoverImageUrl(), imageData);
+            return coverImageCache.fromBytes(imageData, "cover.jpg", size);
         }
+
+        return null;
+    }
+
+    private Book getBookById(Long id) {
+        return bookRepository.findById(id)
+                .orElseThrow(() -> new NotFoundException("Книга с id " + id + " не найдена"));
     }
 }
@@ -2,6 +2,7 @@ package com.almetpt.coursework.bookclub.service;
 
 import com.almetpt.coursework.bookclub.constants.Errors;
 import com.almetpt.coursework.bookclub.dto.BookDTO;
+import com.almetpt.coursework.bookclub.dto.BookListingDTO;
 import com.almetpt.coursework.bookclub.exception.MyDeleteException;
 import com.almetpt.coursework.bookclub.mapper.BookMapper;
 import com.almetpt.coursework.bookclub.model.Book;
@@ -23,12 +24,30 @@ public class BookService extends GenericService<Book, BookDTO> {
     private final BookRepository bookRepository;
     private final BookMapper bookMapper;
     private final AuditService auditService;
+    private final CoverImageCache coverImageCache;
 
-    public BookService(BookRepository bookRepository, BookMapper bookMapper, AuditService auditService) {
+    public BookService(BookRepository bookRepository, BookMapper bookMapper, AuditService auditService,
+            CoverImageCache coverImageCache) {
         super(bookRepository, bookMapper);
         this.bookRepository = bookRepository;
         this.auditService = auditService;
         this.bookMapper = bookMapper;
+        this.coverImageCache = coverImageCache;
+    }
+
+    @Override
+    public BookDTO update(BookDTO updatedObject) {
+        BookDTO result = super.update(updatedObject);
+        // DTO может менять URL или файл обложки, поэтому закешированная обложка сбрасывается
+        coverImageCache.invalidate(CoverImageCache.OwnerType.BOOK, result.getId());
+        return result;
+    }
+
+    @Override
+    public BookDTO partialUpdate(BookDTO patchObject) {
+        BookDTO result = super.partialUpdate(patchObject);
+        coverImageCache.invalidate(CoverImageCache.OwnerType.BOOK, result.getId());
+        return result;
     }
 
     public Book createBook(Book book) {
@@ -42,6 +61,20 @@ public class BookService extends GenericService<Book, BookDTO> {
         return books.map(bookMapper::toDTO);
     }
 
+    // Режим списка: строки читаются проекцией, сущности и маппер не используются
+    public Page<BookListingDTO> searchBookListing(String title, String author, String genre, Pageable pageable) {
+        BookGenre bookGenre = null;
+        if (genre != null && !genre.isBlank()) {
+            try {
+                bookGenre = BookGenre.valueOf(genre.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Неизвестный жанр: " + genre);
+            }
+        }
+        return bookRepository.findListingByTitleAndAuthorAndGenre(
+                title != null ? title : "", author != null ? author : "", bookGenre, pageable);
+    }
+
     @Override
     public void deleteSoft(final Long id) throws MyDeleteException {
         Book book = repository.findById(id).orElseThrow(
@@ -0,0 +1,210 @@
+package com.almetpt.coursework.bookclub.service;
+
+import com.almetpt.coursework.bookclub.utils.TransactionCallbacks;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Кеш обложек книг и продуктов в памяти приложения.
+ * <p>
+ * Ключ - тип владельца, его id, размер изображения и номер версии. При смене
+ * обложки владелец получает новую версию из общего счетчика (после коммита
+ * транзакции), и старая запись становится недостижимой. Версии хранятся для
+ * ограниченного числа владельцев. У остальных версия равна наибольшей из
+ * вытесненных, поэтому вытеснение версии сбрасывает их записи, но не делает
+ * устаревшие записи снова доступными. Емкость ограничена суммарным размером
+ * в байтах, вытеснение и допуск новых записей выполняет Caffeine (W-TinyLFU), поэтому
+ * разовые обращения к редким обложкам не вытесняют популярные.
+ */
+@Component
+@Slf4j
+public class CoverImageCache {
+
+    public enum OwnerType {
+        BOOK,
+        PRODUCT
+    }
+
+    /**
+     * Обложка, готовая к отдаче. Если файл больше лимита на одну запись,
+     * {@code data} равен {@code null} и файл отдается потоком по {@code storageKey}.
+     */
+    public record CachedCover(byte[] data, String storageKey, String contentType, String eTag, long lastModified) {
+
+        public boolean isInMemory() {
+            return data != null;
+        }
+    }
+
+    private record OwnerKey(OwnerType type, Long id) {
+    }
+
+    private record CacheKey(OwnerType type, Long id, ImageProcessingService.ImageSize size, long version) {
+    }
+
+    // Пустой результат кешируется, чтобы запросы к книгам без обложки не ходили в БД
+    private static final CachedCover MISSING = new CachedCover(null, null, null, null, -1);
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private final FileStorageService fileStorageService;
+    private final ImageProcessingService imageProcessingService;
+    private final Cache<CacheKey, CachedCover> cache;
+    private final Cache<OwnerKey, Long> versions;
+    private final AtomicLong versionClock = new AtomicLong();
+    // Наибольшая вытесненная версия; ее получают владельцы без своей версии
+    private final AtomicLong versionFloor = new AtomicLong();
+    private final long maxEntryBytes;
+
+    public CoverImageCache(FileStorageService fileStorageService,
+                           ImageProcessingService imageProcessingService,
+                           @Value("${cover.cache.max-bytes:67108864}") long maxBytes,
+                           @Value("${cover.cache.max-entry-bytes:1048576}") long maxEntryBytes,
+                           @Value("${cover.cache.max-versions:10000}") long maxVersions) {
+        this.fileStorageService = fileStorageService;
+        this.imageProcessingService = imageProcessingService;
+        this.maxEntryBytes = maxEntryBytes;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((CacheKey key, CachedCover cover) -> weigh(cover))
+                .recordStats()
+                .build();
+        // Слушатель вызывается до удаления записи, поэтому читатель без версии видит уже поднятый порог
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maxVersions)
+                .executor(Runnable::run)
+                .evictionListener((OwnerKey owner, Long version, RemovalCause cause) ->
+                        versionFloor.accumulateAndGet(version, Math::max))
+                .build();
+        log.info("Кеш обложек: емкость {} байт, максимальный размер записи {} байт", maxBytes, maxEntryBytes);
+    }
+
+    /**
+     * Возвращает обложку из кеша или загружает ее. Загрузчик выполняется вне
+     * блокировок кеша: загрузка внешней обложки может длиться секунды, а
+     * одновременные загрузки одного URL объединяет {@link ExternalImageFetchService}.
+     *
+     * @return обложка или {@code null}, если у владельца ее нет
+     */
+    public CachedCover get(OwnerType type, Long id, Supplier<CachedCover> loader) {
+        return get(type, id, ImageProcessingService.ImageSize.ORIGINAL, loader);
+    }
+
+    public CachedCover get(OwnerType type, Long id, ImageProcessingService.ImageSize size,
+                           Supplier<CachedCover> loader) {
+        CacheKey key = new CacheKey(type, id, size, currentVersion(type, id));
+        CachedCover cover = cache.getIfPresent(key);
+        if (cover == null) {
+            CachedCover loaded = loader.get();
+            // Версия взята до загрузки: если обложку сменили, запись под старой версией недостижима
+            cover = cache.asMap().merge(key, loaded != null ? loaded : MISSING, (current, ignored) -> current);
+        }
+        return cover == MISSING ? null : cover;
+    }
+
+    /**
+     * Готовит обложку из файла хранилища. Небольшие файлы читаются в память,
+     * большие остаются на диске и отдаются потоком.
+     *
+     * @return обложка или {@code null}, если файла нет
+     */
+    public CachedCover fromStorage(String storageKey) throws IOException {
+        Resource resource = fileStorageService.loadAsResource(storageKey);
+        if (resource == null) {
+            return null;
+        }
+        long size = resource.contentLength();
+        byte[] data = size <= maxEntryBytes ? resource.getContentAsByteArray() : null;
+        return new CachedCover(data, storageKey, guessContentType(storageKey),
+                FileDownloadService.computeETag(storageKey, resource), resource.lastModified());
+    }
+
+    /**
+     * Готовит обложку нужного размера из файла хранилища. Если файл не
+     * удалось обработать как изображение, используется исходный файл.
+     */
+    public CachedCover fromStorage(String storageKey, ImageProcessingService.ImageSize size) throws IOException {
+        String renditionKey = imageProcessingService.getOrCreateRendition(storageKey, size);
+        return fromStorage(renditionKey != null ? renditionKey : storageKey);
+    }
+
+    /**
+     * Готовит обложку нужного размера из данных в памяти. Уменьшенная копия
+     * в хранилище не сохраняется, ее держит только кеш.
+     */
+    public CachedCover fromBytes(byte[] data, String filename, ImageProcessingService.ImageSize size) {
+        byte[] resized = imageProcessingService.resize(data, size);
+        if (resized == null || resized == data) {
+            return fromBytes(data, filename);
+        }
+        return fromBytes(resized, "cover.jpg");
+    }
+
+    public CachedCover fromBytes(byte[] data, String filename) {
+        return new CachedCover(data, null, guessContentType(filename), FileDownloadService.computeETag(data), -1);
+    }
+
+    /**
+     * Сбрасывает обложку владельца. Внутри транзакции сброс выполняется
+     * после коммита, чтобы параллельный запрос не закешировал старые данные
+     * под новой версией.
+     */
+    public void invalidate(OwnerType type, Long id) {
+        if (id == null) {
+            return;
+        }
+        TransactionCallbacks.afterCommit(() -> bumpVersion(type, id));
+    }
+
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("entries", cache.estimatedSize());
+        result.put("versionEntries", versions.estimatedSize());
+        result.put("weightBytes", cache.policy().eviction().map(e -> e.weightedSize().orElse(0)).orElse(0L));
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("evictionWeightBytes", stats.evictionWeight());
+        return result;
+    }
+
+    private static String guessContentType(String filename) {
+        return MediaTypeFactory.getMediaType(filename)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM)
+                .toString();
+    }
+
+    private long currentVersion(OwnerType type, Long id) {
+        Long version = versions.getIfPresent(new OwnerKey(type, id));
+        return version != null ? version : versionFloor.get();
+    }
+
+    private void bumpVersion(OwnerType type, Long id) {
+        long previous = currentVersion(type, id);
+        versions.put(new OwnerKey(type, id), versionClock.incrementAndGet());
+        for (ImageProcessingService.ImageSize size : ImageProcessingService.ImageSize.values()) {
+            cache.invalidate(new CacheKey(type, id, size, previous));
+        }
+        log.debug("Кеш обложки сброшен: {} {}", type, id);
+    }
+
+    private static int weigh(CachedCover cover) {
+        long size = ENTRY_OVERHEAD_BYTES + (cover.data() != null ? cover.data().length : 0);
+        return (int) Math.min(Integer.MAX_VALUE, size);
+    }
+}
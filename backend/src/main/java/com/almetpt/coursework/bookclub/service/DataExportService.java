@@ -0,0 +1,241 @@
+package com.almetpt.coursework.bookclub.service;
+
+import com.almetpt.coursework.bookclub.dto.OrderExportDTO;
+import com.almetpt.coursework.bookclub.dto.OrderExportRow;
+import com.almetpt.coursework.bookclub.dto.UserExportRow;
+import com.almetpt.coursework.bookclub.model.AuditEntry;
+import com.almetpt.coursework.bookclub.repository.AuditRepository;
+import com.almetpt.coursework.bookclub.repository.OrderRepository;
+import com.almetpt.coursework.bookclub.repository.UserRepository;
+import com.almetpt.coursework.bookclub.utils.CsvWriter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Потоковая выгрузка журнала аудита, заказов и пользователей в NDJSON или CSV.
+ * <p>
+ * Строки читаются из {@code Stream} репозитория (курсор JDBC с fetch size)
+ * и сразу пишутся в выходной поток через буфер, поэтому память не зависит
+ * от объема выгрузки. Сущности аудита отсоединяются после записи, чтобы не
+ * копиться в контексте персистентности; заказы и пользователи читаются
+ * проекциями. Выходной поток не закрывается - это делает вызывающий код.
+ */
+@Service
+@Slf4j
+public class DataExportService {
+
+    @Getter
+    public enum ExportFormat {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        ExportFormat(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        /**
+         * @throws IllegalArgumentException если формат не поддерживается
+         */
+        public static ExportFormat fromParam(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Неизвестный формат выгрузки: " + value, e);
+            }
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final AuditRepository auditRepository;
+    private final OrderRepository orderRepository;
+    private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter rowWriter;
+    private final EntityManager entityManager;
+
+    public DataExportService(AuditRepository auditRepository,
+                             OrderRepository orderRepository,
+                             UserRepository userRepository,
+                             ObjectMapper objectMapper,
+                             EntityManager entityManager) {
+        this.auditRepository = auditRepository;
+        this.orderRepository = orderRepository;
+        this.userRepository = userRepository;
+        this.objectMapper = objectMapper;
+        // Сброс в сеть выполняет буфер, а не каждая строка
+        this.rowWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Выгружает журнал аудита за {@code [from, to)} по возрастанию времени.
+     *
+     * @return число выгруженных записей
+     */
+    @Transactional(readOnly = true)
+    public long exportAudit(LocalDateTime from, LocalDateTime to, ExportFormat format, OutputStream out) throws IOException {
+        try (Stream<AuditEntry> entries = auditRepository.streamByTimestampRange(from, to)) {
+            return write(format, out, "audit", sink -> {
+                if (format == ExportFormat.CSV) {
+                    sink.csv().writeRow("id", "action_type", "resource_type", "resource_id", "user_email", "timestamp", "details");
+                }
+                long count = 0;
+                for (Iterator<AuditEntry> it = entries.iterator(); it.hasNext(); count++) {
+                    AuditEntry entry = it.next();
+                    if (format == ExportFormat.CSV) {
+                        sink.csv().writeRow(entry.getId(), entry.getActionType(), entry.getResourceType(),
+                                entry.getResourceId(), entry.getUserEmail(), entry.getTimestamp(), entry.getDetails());
+                    } else {
+                        sink.json(entry);
+                    }
+                    entityManager.detach(entry);
+                }
+                return count;
+            });
+        }
+    }
+
+    /**
+     * Выгружает заказы с товарами. В NDJSON - объект на заказ со списком
+     * товаров, в CSV - строка на каждый товар заказа.
+     *
+     * @return число выгруженных заказов
+     */
+    @Transactional(readOnly = true)
+    public long exportOrders(ExportFormat format, OutputStream out) throws IOException {
+        try (Stream<OrderExportRow> rows = orderRepository.streamExportRows()) {
+            return write(format, out, "orders", sink -> {
+                if (format == ExportFormat.CSV) {
+                    sink.csv().writeRow("order_id", "user_id", "user_email", "total", "status", "created_when",
+                            "deleted", "product_id", "product_name", "product_price");
+                }
+                long count = 0;
+                OrderExportDTO current = null;
+                for (Iterator<OrderExportRow> it = rows.iterator(); it.hasNext(); ) {
+                    OrderExportRow row = it.next();
+                    if (current == null || !current.getId().equals(row.getOrderId())) {
+                        if (current != null && format == ExportFormat.NDJSON) {
+                            sink.json(current);
+                        }
+                        current = OrderExportDTO.from(row);
+                        count++;
+                    }
+                    if (format == ExportFormat.CSV) {
+                        sink.csv().writeRow(row.getOrderId(), row.getUserId(), row.getUserEmail(), row.getTotal(),
+                                row.getStatus(), row.getCreatedWhen(), row.isDeleted(), row.getProductId(),
+                                row.getProductName(), row.getProductPrice());
+                    } else if (row.getProductId() != null) {
+                        // В памяти только товары текущего заказа
+                        current.getProducts().add(new OrderExportDTO.Item(
+                                row.getProductId(), row.getProductName(), row.getProductPrice()));
+                    }
+                }
+                if (current != null && format == ExportFormat.NDJSON) {
+                    sink.json(current);
+                }
+                return count;
+            });
+        }
+    }
+
+    /**
+     * Выгружает пользователей без паролей и токенов.
+     *
+     * @return число выгруженных пользователей
+     */
+    @Transactional(readOnly = true)
+    public long exportUsers(ExportFormat format, OutputStream out) throws IOException {
+        try (Stream<UserExportRow> rows = userRepository.streamExportRows()) {
+            return write(format, out, "users", sink -> {
+                if (format == ExportFormat.CSV) {
+                    sink.csv().writeRow("id", "email", "first_name", "last_name", "patronymic", "phone", "address",
+                            "birth_date", "role", "created_when", "deleted");
+                }
+                long count = 0;
+                for (Iterator<UserExportRow> it = rows.iterator(); it.hasNext(); count++) {
+                    UserExportRow row = it.next();
+                    if (format == ExportFormat.CSV) {
+                        sink.csv().writeRow(row.getId(), row.getEmail(), row.getFirstName(), row.getLastName(),
+                                row.getPatronymic(), row.getPhone(), row.getAddress(), row.getBirthDate(),
+                                row.getRole(), row.getCreatedWhen(), row.isDeleted());
+                    } else {
+                        sink.json(row);
+                    }
+                }
+                return count;
+            });
+        }
+    }
+
+    @FunctionalInterface
+    private interface ExportBody {
+        long writeTo(Sink sink) throws IOException;
+    }
+
+    // Буферизованный приемник строк: CSV пишется в writer, NDJSON - через генератор Jackson поверх него
+    private final class Sink {
+        private final Writer writer;
+        private final CsvWriter csvWriter;
+        private JsonGenerator generator;
+
+        private Sink(Writer writer) {
+            this.writer = writer;
+            this.csvWriter = new CsvWriter(writer);
+        }
+
+        CsvWriter csv() {
+            return csvWriter;
+        }
+
+        void json(Object value) throws IOException {
+            if (generator == null) {
+                generator = objectMapper.getFactory().createGenerator(writer);
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                // Разделитель - перевод строки после каждого объекта, а не пробел между ними
+                generator.setRootValueSeparator(null);
+            }
+            rowWriter.writeValue(generator, value);
+            generator.writeRaw('\n');
+        }
+
+        void flush() throws IOException {
+            if (generator != null) {
+                generator.flush();
+            }
+            writer.flush();
+        }
+    }
+
+    private long write(ExportFormat format, OutputStream out, String name, ExportBody body) throws IOException {
+        long started = System.nanoTime();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        Sink sink = new Sink(writer);
+        long count = body.writeTo(sink);
+        sink.flush();
+        log.info("Выгрузка {} ({}): {} записей за {} мс", name, format, count, (System.nanoTime() - started) / 1_000_000);
+        return count;
+    }
+}
@@ -0,0 +1,61 @@
+package com.almetpt.coursework.bookclub.service;
+
+import com.almetpt.coursework.bookclub.utils.HmacSigner;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Подписанные ссылки на скачивание электронного товара из письма о заказе.
+ * <p>
+ * Ссылка содержит товар, заказ и срок действия, подписанные HMAC, поэтому
+ * скачивание по ней не требует входа и не обращается к БД для проверки.
+ * Без {@code mail.download-link.secret} ключ выводится из {@code jwt.secret}.
+ * Крупные файлы отправляются такими ссылками вместо вложений.
+ */
+@Service
+public class DownloadLinkService {
+
+    public record SignedLink(String url, LocalDateTime expiresAt) {
+    }
+
+    private final HmacSigner signer;
+    private final String baseUrl;
+    private final long ttlSeconds;
+
+    public DownloadLinkService(@Value("${mail.download-link.secret:}") String secret,
+                               @Value("${jwt.secret}") String jwtSecret,
+                               @Value("${mail.download-link.base-url:http://localhost:8080}") String baseUrl,
+                               @Value("${mail.download-link.ttl-hours:72}") long ttlHours) {
+        if (ttlHours < 1) {
+            throw new IllegalArgumentException("Срок действия ссылки должен быть положительным");
+        }
+        this.signer = HmacSigner.forPurpose(secret, jwtSecret, "download-link");
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.ttlSeconds = TimeUnit.HOURS.toSeconds(ttlHours);
+    }
+
+    public SignedLink create(Long productId, Long orderId) {
+        long expires = Instant.now().getEpochSecond() + ttlSeconds;
+        String signature = signer.sign(payload(productId, orderId, expires));
+        String url = baseUrl + "/api/rest/products/" + productId + "/download-signed"
+                + "?order=" + orderId + "&expires=" + expires + "&signature=" + signature;
+        return new SignedLink(url, LocalDateTime.ofInstant(Instant.ofEpochSecond(expires), ZoneId.systemDefault()));
+    }
+
+    /**
+     * @return true, если подпись верна и срок ссылки не истек
+     */
+    public boolean isValid(Long productId, Long orderId, long expires, String signature) {
+        return Instant.now().getEpochSecond() < expires
+                && signer.verify(payload(productId, orderId, expires), signature);
+    }
+
+    private static String payload(Long productId, Long orderId, long expires) {
+        return productId + ":" + orderId + ":" + expires;
+    }
+}
@@ -1,6 +1,7 @@
 package com.almetpt.coursework.bookclub.service;
 
 import com.almetpt.coursework.bookclub.dto.EventApplicationDTO;
+import com.almetpt.coursework.bookclub.exception.MyDeleteException;
 import com.almetpt.coursework.bookclub.mapper.EventApplicationMapper;
 import com.almetpt.coursework.bookclub.model.ApplicationStatus;
 import com.almetpt.coursework.bookclub.model.Event;
@@ -9,9 +10,7 @@ import com.almetpt.coursework.bookclub.model.User;
 import com.almetpt.coursework.bookclub.repository.EventApplicationRepository;
 import com.almetpt.coursework.bookclub.repository.EventRepository;
 import com.almetpt.coursework.bookclub.repository.UserRepository;
-import com.almetpt.coursework.bookclub.utils.MailUtils;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -20,7 +19,10 @@ import org.springframework.transaction.annotation.Transactional;
 import org.webjars.NotFoundException;
 import lombok.extern.slf4j.Slf4j;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,15 +30,27 @@ import java.util.stream.Collectors;
 public class EventApplicationService extends GenericService<EventApplication, EventApplicationDTO> {
 
     private final EventApplicationRepository eventApplicationRepository;
-    private final JavaMailSender javaMailSender;
+    private final MailOutboxService mailOutboxService;
+    private final MailTemplateService mailTemplateService;
     private final UserRepository userRepository;
     private final EventRepository eventRepository;
+    private final EventSeatService eventSeatService;
+    private final EventWaitlistService eventWaitlistService;
+    private final EventUpdateBroadcaster eventUpdateBroadcaster;
+    private final EventTicketService eventTicketService;
+    private final EventCheckInService eventCheckInService;
 
     public EventApplicationService(
             EventApplicationRepository eventApplicationRepository,
             UserRepository userRepository,
             EventRepository eventRepository,
-            JavaMailSender javaMailSender,
+            MailOutboxService mailOutboxService,
+            MailTemplateService mailTemplateService,
+            EventSeatService eventSeatService,
+            EventWaitlistService eventWaitlistService,
+            EventUpdateBroadcaster eventUpdateBroadcaster,
+            EventTicketService eventTicketService,
+            EventCheckInService eventCheckInService,
             EventApplicationMapper eventApplicationMapper) { // Убедитесь, что сюда передается именно
                                                              // EventApplicationMapper
         super(eventApplicationRepository, eventApplicationMapper); // Он сохранится в protected final GenericMapper<E,
@@ -44,7 +58,13 @@ public class EventApplicationService extends GenericService<EventApplication, Ev
         this.eventApplicationRepository = eventApplicationRepository;
         this.userRepository = userRepository;
         this.eventRepository = eventRepository;
-        this.javaMailSender = javaMailSender;
+        this.mailOutboxService = mailOutboxService;
+        this.mailTemplateService = mailTemplateService;
+        this.eventSeatService = eventSeatService;
+        this.eventWaitlistService = eventWaitlistService;
+        this.eventUpdateBroadcaster = eventUpdateBroadcaster;
+        this.eventTicketService = eventTicketService;
+        this.eventCheckInService = eventCheckInService;
     }
 
     @Transactional
@@ -69,54 +89,66 @@ public class EventApplicationService extends GenericService<EventApplication, Ev
                     return new NotFoundException("Event not found with id: " + dto.getEventId());
                 });
 
-        List<EventApplication> existingApplications = eventApplicationRepository
-                .findByUser_IdAndEvent_IdAndIsDeletedFalse(user.getId(), event.getId());
-        if (!existingApplications.isEmpty()) {
+        // Заявка, билет и письмо пишутся как для одобренной, а место занимается последним
+        // оператором транзакции: строка мероприятия блокируется только на время коммита.
+        // Повторная заявка отсекается уникальным ключом, откат транзакции вернет место
+        eventSeatService.initCounter(event.getId());
+        EventApplication savedApplication;
+        try {
+            int revived = eventApplicationRepository.reviveCancelled(user.getId(), event.getId(),
+                    ApplicationStatus.APPROVED, null, LocalDateTime.now(),
+                    SecurityContextHolder.getContext().getAuthentication().getName());
+            if (revived > 0) {
+                savedApplication = eventApplicationRepository.findByUser_IdAndEvent_Id(user.getId(), event.getId())
+                        .orElseThrow(() -> new IllegalStateException("Восстановленная заявка не найдена"));
+                log.info("Cancelled event application {} revived", savedApplication.getId());
+            } else {
+                EventApplication application = new EventApplication();
+                application.setUser(user);
+                application.setEvent(event);
+                application.setStatus(ApplicationStatus.APPROVED);
+                setAuditFields(application, true); // Устанавливает createdBy, createdWhen из GenericService
+
+                // Явно сохраняем перед тем, как использовать ID или другие поля
+                savedApplication = eventApplicationRepository.saveAndFlush(application); // Используем saveAndFlush
+                                                                                         // для немедленной записи в БД
+                log.info("Event application entity saved and flushed successfully with id: {}",
+                        savedApplication.getId());
+            }
+        } catch (DataIntegrityViolationException e) {
             log.warn("User {} already applied for event {}", user.getId(), event.getId());
             throw new IllegalStateException("Вы уже подали заявку на это мероприятие");
+        } catch (Exception e) {
+            log.error(
+                    "CRITICAL: Error during eventApplicationRepository.saveAndFlush(). Application before save: userId={}, eventId={}. Exception: {}",
+                    user.getId(), event.getId(), e.getMessage(), e);
+            throw e; // Откат транзакции
         }
 
-        EventApplication application = new EventApplication();
-        application.setUser(user);
-        application.setEvent(event);
-
-        int approvedCount = eventApplicationRepository.countApprovedApplicationsForEvent(event.getId());
-        log.debug("Approved applications count for event {}: {}", event.getId(), approvedCount);
-
-        if (approvedCount < event.getMaxParticipants()) {
-            application.setStatus(ApplicationStatus.APPROVED);
-            try {
-                SimpleMailMessage message = MailUtils.createMailMessage(
-                        user.getEmail(),
-                        "Заявка одобрена",
-                        "Ваша заявка на мероприятие '" + event.getTitle() + "' одобрена.");
-                javaMailSender.send(message);
-                log.info("Email sent successfully to user: {}", user.getEmail());
-            } catch (Exception e) {
-                log.error("Failed to send email to {}: {}", user.getEmail(), e.getMessage(), e);
-                // Не прерываем выполнение
-            }
-        } else {
-            application.setStatus(ApplicationStatus.REJECTED);
-            application.setRejectionReason(EventApplication.RejectionReason.NO_CAPACITY);
+        String approvalMail = mailTemplateService.render(MailTemplateService.APPLICATION_APPROVED,
+                Map.of("title", event.getTitle()));
+        Long approvalMailId = approve(savedApplication, approvalMail);
+        eventApplicationRepository.flush();
+
+        boolean seatReserved = eventSeatService.reserve(event.getId());
+        if (!seatReserved) {
+            // Неудачное бронирование строку не блокирует: заявка спокойно переводится в отклоненные
             log.info("Application rejected due to no capacity for event: {}", event.getId());
+            mailOutboxService.discard(approvalMailId);
+            savedApplication.setStatus(ApplicationStatus.REJECTED);
+            savedApplication.setRejectionReason(EventApplication.RejectionReason.NO_CAPACITY);
+            savedApplication.setQrCode(null);
+            eventApplicationRepository.saveAndFlush(savedApplication);
+            if (eventWaitlistService.isEnabled() && eventWaitlistService.joinOrTakeFreedSeat(savedApplication)) {
+                seatReserved = true;
+                approve(savedApplication, approvalMail);
+            }
         }
 
-        setAuditFields(application, true); // Устанавливает createdBy, createdWhen из GenericService
-
-        EventApplication savedApplication;
-        try {
-            // Явно сохраняем перед тем, как использовать ID или другие поля
-            savedApplication = eventApplicationRepository.saveAndFlush(application); // Используем saveAndFlush для
-                                                                                     // немедленной записи в БД
-            log.info("Event application entity saved and flushed successfully with id: {}", savedApplication.getId());
-        } catch (Exception e) {
-            log.error(
-                    "CRITICAL: Error during eventApplicationRepository.saveAndFlush(). Application before save: userId={}, eventId={}. Exception: {}",
-                    application.getUser() != null ? application.getUser().getId() : "null",
-                    application.getEvent() != null ? application.getEvent().getId() : "null",
-                    e.getMessage(), e);
-            throw e; // Откат транзакции
+        eventUpdateBroadcaster.applicationChanged(savedApplication.getId(), event.getId(), user.getId(),
+                savedApplication.getStatus().name());
+        if (seatReserved) {
+            eventCheckInService.applicationChanged(event.getId(), savedApplication.getId(), true);
         }
 
         EventApplicationDTO applicationDTO;
@@ -185,8 +217,97 @@ public class EventApplicationService extends GenericService<EventApplication, Ev
             return false;
         }
         application.setDeleted(true);
+        application.setQrCode(null);
         eventApplicationRepository.save(application);
+        eventCheckInService.applicationChanged(application.getEvent().getId(), applicationId, false);
+        if (application.getStatus() == ApplicationStatus.APPROVED) {
+            // Освободившееся место в этой же транзакции получает голова листа ожидания
+            eventSeatService.release(application.getEvent().getId());
+            eventWaitlistService.promote(application.getEvent().getId());
+        } else {
+            eventWaitlistService.leave(applicationId);
+        }
+        eventUpdateBroadcaster.applicationChanged(applicationId, application.getEvent().getId(), userId,
+                EventUpdateBroadcaster.CANCELLED_STATUS);
         return true;
     }
 
+    /**
+     * @return место заявки пользователя в листе ожидания, начиная с 1
+     */
+    public Optional<Long> getWaitlistPosition(Long applicationId, Long userId) {
+        return eventWaitlistService.getPosition(applicationId, userId);
+    }
+
+    /**
+     * Билет одобренной заявки пользователя; отсутствующий или сброшенный переносом выдается заново.
+     */
+    @Transactional
+    public Optional<String> getTicket(Long applicationId, Long userId) {
+        return eventApplicationRepository.findById(applicationId)
+                .filter(application -> !application.isDeleted()
+                        && application.getStatus() == ApplicationStatus.APPROVED
+                        && application.getUser().getId().equals(userId))
+                .map(application -> application.getQrCode() != null
+                        ? application.getQrCode()
+                        : eventTicketService.issue(application));
+    }
+
+    // Правка заявок администратором идет в обход бронирования: счетчик мест пересчитается,
+    // список входа мероприятия перечитается
+
+    @Override
+    @Transactional
+    public EventApplicationDTO update(EventApplicationDTO updatedObject) {
+        beforeAdminChange(updatedObject.getId());
+        return super.update(updatedObject);
+    }
+
+    @Override
+    @Transactional
+    public EventApplicationDTO partialUpdate(EventApplicationDTO patchObject) {
+        beforeAdminChange(patchObject.getId());
+        return super.partialUpdate(patchObject);
+    }
+
+    @Override
+    @Transactional
+    public void delete(final Long id) {
+        beforeAdminChange(id);
+        eventWaitlistService.leave(id);
+        super.delete(id);
+    }
+
+    @Override
+    @Transactional
+    public void deleteSoft(final Long id) throws MyDeleteException {
+        beforeAdminChange(id);
+        eventWaitlistService.leave(id);
+        super.deleteSoft(id);
+    }
+
+    @Override
+    @Transactional
+    public void restore(final Long id) {
+        beforeAdminChange(id);
+        super.restore(id);
+    }
+
+    /**
+     * Выдает билет и ставит письмо об одобрении в очередь.
+     *
+     * @return id письма в очереди
+     */
+    private Long approve(EventApplication application, String approvalMail) {
+        eventTicketService.issue(application);
+        return mailOutboxService.enqueue(application.getUser().getEmail(), "Заявка одобрена", approvalMail);
+    }
+
+    private void beforeAdminChange(Long applicationId) {
+        eventApplicationRepository.findEventIdById(applicationId).ifPresent(eventId -> {
+            eventSeatService.reset(eventId);
+            eventCheckInService.forget(eventId);
+        });
+    }
+
 }
@@ -1,51 +1,169 @@
 package com.almetpt.coursework.bookclub.service;
 
-import com.almetpt.coursework.bookclub.model.Event;
-import com.almetpt.coursework.bookclub.model.EventApplication;
+import com.almetpt.coursework.bookclub.model.JobTrigger;
+import com.almetpt.coursework.bookclub.model.JobWatermark;
 import com.almetpt.coursework.bookclub.repository.EventApplicationRepository;
 import com.almetpt.coursework.bookclub.repository.EventRepository;
+import com.almetpt.coursework.bookclub.repository.JobWatermarkRepository;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Отметка неявки на прошедшие мероприятия.
+ * <p>
+ * Задача идет по мероприятиям в порядке (дата, id) пачками с позиции из
+ * {@code job_watermarks}: на пачку - один запрос позиций и один UPDATE заявок,
+ * затем позиция сдвигается в той же транзакции. Поэтому ночной запуск
+ * обрабатывает только мероприятия, прошедшие с прошлого раза, а после сбоя
+ * продолжает с последней зафиксированной пачки. Мероприятия, заведенные
+ * задним числом раньше позиции, не обрабатываются.
+ * <p>
+ * Плановый запуск идет через {@link JobCoordinator}, поэтому при нескольких
+ * экземплярах приложения задачу выполняет только один из них.
+ */
 @Service
 @Slf4j
 public class EventAttendanceScheduler {
 
+    public static final String JOB_NAME = "event-attendance";
+
+    private record ChunkResult(int events, int applications) {
+    }
+
     private final EventApplicationRepository eventApplicationRepository;
     private final EventRepository eventRepository;
+    private final JobWatermarkRepository jobWatermarkRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final JobCoordinator jobCoordinator;
+
+    @Value("${events.attendance.chunk-size:500}")
+    private int chunkSize = 500;
+
+    // Отметка ставится не сразу: организатор успевает отметить пришедших
+    @Value("${events.attendance.grace-hours:24}")
+    private long graceHours = 24;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder chunks = new LongAdder();
+    private final LongAdder eventsProcessed = new LongAdder();
+    private final LongAdder applicationsMarked = new LongAdder();
+    private volatile LocalDateTime lastRunStarted;
+    private volatile long lastRunMillis;
+    private volatile int lastRunEvents;
+    private volatile int lastRunApplications;
 
     public EventAttendanceScheduler(EventApplicationRepository eventApplicationRepository,
-                                    EventRepository eventRepository) {
+                                    EventRepository eventRepository,
+                                    JobWatermarkRepository jobWatermarkRepository,
+                                    PlatformTransactionManager transactionManager,
+                                    JobCoordinator jobCoordinator,
+                                    @Value("${events.attendance.timeout-ms:1800000}") long timeoutMillis) {
         this.eventApplicationRepository = eventApplicationRepository;
         this.eventRepository = eventRepository;
+        this.jobWatermarkRepository = jobWatermarkRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jobCoordinator = jobCoordinator;
+        jobCoordinator.register(JOB_NAME, timeoutMillis,
+                () -> markMissedEvents(LocalDateTime.now().minusHours(graceHours)));
     }
 
     // Запускается каждый день в полночь
-    @Scheduled(cron = "0 0 0 * * *")
+    @Scheduled(cron = "${events.attendance.cron:0 0 0 * * *}")
     public void markMissedEvents() {
-        log.info("Запуск проверки непосещенных мероприятий");
-
-        // Находим все мероприятия, которые прошли более 24 часов назад
-        LocalDateTime cutoffTime = LocalDateTime.now().minusDays(1);
-        List<Event> pastEvents = eventRepository.findEventsBeforeDate(cutoffTime);
-
-        for (Event event : pastEvents) {
-            // Получаем все заявки на это мероприятие со статусом APPROVED, которые не отмечены как посещенные
-            List<EventApplication> applications = eventApplicationRepository
-                    .findApprovedNotAttendedApplicationsForEvent(event.getId());
-
-            for (EventApplication application : applications) {
-                // Отмечаем как непосещенные
-                application.setAttended(false);
-                eventApplicationRepository.save(application);
-                log.info("Мероприятие {} отмечено как непосещенное для пользователя {}",
-                        event.getTitle(), application.getUser().getEmail());
-            }
+        jobCoordinator.trigger(JOB_NAME, JobTrigger.SCHEDULED, null);
+    }
+
+    /**
+     * Обрабатывает мероприятия, прошедшие до {@code cutoff}, пачками до исчерпания.
+     *
+     * @return число заявок, отмеченных как неявка
+     */
+    public int markMissedEvents(LocalDateTime cutoff) {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Проверка непосещенных мероприятий уже выполняется, запуск пропущен");
+            return 0;
+        }
+        long started = System.nanoTime();
+        int events = 0;
+        int applications = 0;
+        try {
+            lastRunStarted = LocalDateTime.now();
+            log.info("Запуск проверки непосещенных мероприятий до {}", cutoff);
+            ChunkResult chunk;
+            do {
+                chunk = transactionTemplate.execute(status -> processChunk(cutoff));
+                events += chunk.events();
+                applications += chunk.applications();
+                if (chunk.events() > 0) {
+                    chunks.increment();
+                    log.debug("Пачка обработана: мероприятий {}, неявок {}", chunk.events(), chunk.applications());
+                }
+            } while (chunk.events() == chunkSize);
+            return applications;
+        } finally {
+            runs.increment();
+            eventsProcessed.add(events);
+            applicationsMarked.add(applications);
+            lastRunEvents = events;
+            lastRunApplications = applications;
+            lastRunMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            running.set(false);
+            log.info("Проверка непосещенных мероприятий завершена за {} мс: мероприятий {}, неявок {}",
+                    lastRunMillis, events, applications);
         }
     }
-}
 
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        JobWatermark watermark = jobWatermarkRepository.findById(JOB_NAME).orElse(null);
+        result.put("running", running.get());
+        result.put("chunkSize", chunkSize);
+        result.put("watermarkTime", watermark != null ? watermark.getPositionTime() : null);
+        result.put("watermarkEventId", watermark != null ? watermark.getPositionId() : null);
+        result.put("runs", runs.sum());
+        result.put("chunks", chunks.sum());
+        result.put("eventsProcessed", eventsProcessed.sum());
+        result.put("applicationsMarked", applicationsMarked.sum());
+        result.put("lastRunStarted", lastRunStarted);
+        result.put("lastRunMillis", lastRunMillis);
+        result.put("lastRunEvents", lastRunEvents);
+        result.put("lastRunApplications", lastRunApplications);
+        return result;
+    }
+
+    private ChunkResult processChunk(LocalDateTime cutoff) {
+        JobWatermark watermark = jobWatermarkRepository.findById(JOB_NAME)
+                .orElseGet(() -> new JobWatermark(JOB_NAME));
+        List<EventRepository.EventPosition> positions = watermark.getPositionTime() == null
+                ? eventRepository.findFirstPositionsBefore(cutoff, Limit.of(chunkSize))
+                : eventRepository.findPositionsBefore(cutoff, watermark.getPositionTime(),
+                        watermark.getPositionId(), Limit.of(chunkSize));
+        if (positions.isEmpty()) {
+            return new ChunkResult(0, 0);
+        }
+
+        int marked = eventApplicationRepository.markMissedForEvents(
+                positions.stream().map(EventRepository.EventPosition::getId).toList());
+
+        EventRepository.EventPosition last = positions.get(positions.size() - 1);
+        watermark.setPositionTime(last.getDate());
+        watermark.setPositionId(last.getId());
+        watermark.setUpdatedWhen(LocalDateTime.now());
+        jobWatermarkRepository.save(watermark);
+        return new ChunkResult(positions.size(), marked);
+    }
+}
@@ -0,0 +1,265 @@
+package com.almetpt.coursework.bookclub.service;
+
+import com.almetpt.coursework.bookclub.repository.EventApplicationRepository;
+import com.almetpt.coursework.bookclub.utils.TransactionCallbacks;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Проверка билетов на входе мероприятия.
+ * <p>
+ * Подпись и срок билета проверяются без БД. Одобренные заявки мероприятия
+ * читаются одним запросом при первом сканировании на этом экземпляре, а
+ * повторный проход отсекается битовой картой по номеру заявки в этом списке.
+ * Отметка {@code attended} копится в очереди и записывается пачками раз в
+ * {@code events.check-in.flush-ms}. Билет, одобренный после загрузки списка,
+ * перечитывает список не чаще раза в {@code events.check-in.reload-ms}.
+ * <p>
+ * Карта проходов своя у каждого экземпляра: при нескольких экземплярах
+ * сканеры одного мероприятия должны попадать на один из них.
+ */
+@Service
+@Slf4j
+public class EventCheckInService {
+
+    public enum Result {
+        ADMITTED,
+        ALREADY_CHECKED_IN,
+        INVALID,
+        EXPIRED,
+        WRONG_EVENT,
+        NOT_APPROVED
+    }
+
+    public record CheckIn(Result result, Long applicationId) {
+    }
+
+    private static final class EventState {
+        private final long[] applicationIds;
+        private final BitSet checked;
+        private final BitSet revoked = new BitSet();
+        private final long loadedAt = System.nanoTime();
+        private boolean retired;
+
+        private EventState(long[] applicationIds, BitSet checked) {
+            this.applicationIds = applicationIds;
+            this.checked = checked;
+        }
+
+        private int indexOf(long applicationId) {
+            int index = Arrays.binarySearch(applicationIds, applicationId);
+            return index >= 0 ? index : -1;
+        }
+    }
+
+    private final EventApplicationRepository eventApplicationRepository;
+    private final EventTicketService eventTicketService;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache<Long, EventState> states;
+    private final Queue<Long> pendingAttended = new ConcurrentLinkedQueue<>();
+
+    @Value("${events.check-in.batch-size:500}")
+    private int batchSize = 500;
+
+    @Value("${events.check-in.reload-ms:5000}")
+    private long reloadMillis = 5000;
+
+    private final LongAdder scans = new LongAdder();
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+
+    public EventCheckInService(EventApplicationRepository eventApplicationRepository,
+                               EventTicketService eventTicketService,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${events.check-in.state-ttl-hours:24}") long stateTtlHours) {
+        this.eventApplicationRepository = eventApplicationRepository;
+        this.eventTicketService = eventTicketService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.states = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofHours(stateTtlHours))
+                .build();
+    }
+
+    /**
+     * Пропускает участника по билету на мероприятие {@code eventId}.
+     */
+    public CheckIn checkIn(Long eventId, String ticketValue) {
+        scans.increment();
+        EventTicketService.Ticket ticket = eventTicketService.parse(ticketValue).orElse(null);
+        if (ticket == null) {
+            return reject(Result.INVALID, null);
+        }
+        if (!ticket.eventId().equals(eventId)) {
+            return reject(Result.WRONG_EVENT, ticket.applicationId());
+        }
+        if (eventTicketService.isExpired(ticket)) {
+            return reject(Result.EXPIRED, ticket.applicationId());
+        }
+
+        long applicationId = ticket.applicationId();
+        while (true) {
+            EventState state = states.get(eventId, this::load);
+            int index = state.indexOf(applicationId);
+            if (index < 0 && System.nanoTime() - state.loadedAt > Duration.ofMillis(reloadMillis).toNanos()) {
+                state = reload(eventId, state);
+                index = state.indexOf(applicationId);
+            }
+            synchronized (state) {
+                if (state.retired) {
+                    continue;
+                }
+                if (index < 0 || state.revoked.get(index)) {
+                    return reject(Result.NOT_APPROVED, applicationId);
+                }
+                if (state.checked.get(index)) {
+                    duplicates.increment();
+                    return new CheckIn(Result.ALREADY_CHECKED_IN, applicationId);
+                }
+                state.checked.set(index);
+            }
+            pendingAttended.add(applicationId);
+            admitted.increment();
+            return new CheckIn(Result.ADMITTED, applicationId);
+        }
+    }
+
+    /**
+     * Отзывает или возвращает заявку в загруженном списке; в транзакции - после коммита.
+     */
+    public void applicationChanged(Long eventId, Long applicationId, boolean approved) {
+        Runnable action = () -> {
+            EventState state = states.getIfPresent(eventId);
+            if (state == null) {
+                return;
+            }
+            synchronized (state) {
+                int index = state.indexOf(applicationId);
+                if (index >= 0) {
+                    state.revoked.set(index, !approved);
+                }
+            }
+        };
+        TransactionCallbacks.afterCommit(action);
+    }
+
+    /**
+     * Сбрасывает список мероприятия: следующее сканирование прочитает его заново.
+     */
+    public void forget(Long eventId) {
+        TransactionCallbacks.afterCommit(() -> states.invalidate(eventId));
+    }
+
+    /**
+     * Записывает накопленные проходы пачками.
+     *
+     * @return число записанных отметок
+     */
+    @Scheduled(fixedDelayString = "${events.check-in.flush-ms:2000}", initialDelayString = "${events.check-in.flush-ms:2000}")
+    public int flush() {
+        int total = 0;
+        List<Long> batch = new ArrayList<>(batchSize);
+        while (true) {
+            Long applicationId;
+            while (batch.size() < batchSize && (applicationId = pendingAttended.poll()) != null) {
+                batch.add(applicationId);
+            }
+            if (batch.isEmpty()) {
+                return total;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> eventApplicationRepository.markAttended(batch));
+            } catch (RuntimeException e) {
+                // Отметки вернутся в очередь и запишутся следующим запуском
+                pendingAttended.addAll(batch);
+                log.error("Не удалось записать отметки прохода: {}", batch.size(), e);
+                return total;
+            }
+            total += batch.size();
+            flushed.add(batch.size());
+            batch.clear();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("events", states.estimatedSize());
+        result.put("scans", scans.sum());
+        result.put("admitted", admitted.sum());
+        result.put("duplicates", duplicates.sum());
+        result.put("rejected", rejected.sum());
+        result.put("pending", pendingAttended.size());
+        result.put("flushed", flushed.sum());
+        result.put("loads", loads.sum());
+        return result;
+    }
+
+    private CheckIn reject(Result result, Long applicationId) {
+        rejected.increment();
+        return new CheckIn(result, applicationId);
+    }
+
+    private EventState load(Long eventId) {
+        loads.increment();
+        List<EventApplicationRepository.CheckInRow> rows = eventApplicationRepository.findCheckInRows(eventId);
+        // Проходы, еще не записанные в БД, тоже считаются
+        Set<Long> pending = new HashSet<>(pendingAttended);
+        long[] ids = new long[rows.size()];
+        BitSet checked = new BitSet(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            ids[i] = rows.get(i).getId();
+            if (Boolean.TRUE.equals(rows.get(i).getAttended()) || pending.contains(ids[i])) {
+                checked.set(i);
+            }
+        }
+        log.debug("Загружен список входа мероприятия {}: заявок {}", eventId, ids.length);
+        return new EventState(ids, checked);
+    }
+
+    // Новый список наследует проходы старого, еще не записанные в БД
+    private EventState reload(Long eventId, EventState current) {
+        return states.asMap().compute(eventId, (id, existing) -> {
+            if (existing != null && existing != current) {
+                return existing;
+            }
+            EventState fresh = load(id);
+            synchronized (current) {
+                for (int i = current.checked.nextSetBit(0); i >= 0; i = current.checked.nextSetBit(i + 1)) {
+                    int index = fresh.indexOf(current.applicationIds[i]);
+                    if (index >= 0) {
+                        fresh.checked.set(index);
+                    }
+                }
+                current.retired = true;
+            }
+            return fresh;
+        });
+    }
+}
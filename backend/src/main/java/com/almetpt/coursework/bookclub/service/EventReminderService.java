@@ -0,0 +1,310 @@
+package com.almetpt.coursework.bookclub.service;
+
+import com.almetpt.coursework.bookclub.model.Event;
+import com.almetpt.coursework.bookclub.repository.EventApplicationRepository;
+import com.almetpt.coursework.bookclub.repository.EventRepository;
+import com.almetpt.coursework.bookclub.utils.TimingWheel;
+import com.almetpt.coursework.bookclub.utils.TransactionCallbacks;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Напоминания участникам за сутки и за час до мероприятия.
+ * <p>
+ * Сроки напоминаний лежат в иерархическом колесе таймеров в памяти. Колесо
+ * пополняется пачками: раз в {@code events.reminders.load-ms} читаются
+ * мероприятия после загруженной позиции (дата, id) до горизонта
+ * {@code events.reminders.horizon-hours} по индексу {@code idx_events_date_id}.
+ * Так таблица мероприятий не просматривается целиком: каждое мероприятие
+ * читается один раз. Создание, перенос и отмена мероприятия меняют его
+ * таймеры сразу после коммита.
+ * <p>
+ * Перед отправкой напоминание захватывается условным UPDATE по дате
+ * мероприятия. Эти отметки в {@code events} и переживают перезапуск:
+ * таймер, устаревший из-за переноса или отмены, ничего не отправляет, а
+ * напоминание уходит один раз и после перезапуска, и при нескольких
+ * экземплярах. Позиция загрузки в БД не хранится: колесо живет в памяти, и
+ * после перезапуска его все равно нужно собрать заново из окна от текущего
+ * момента до горизонта, а общая позиция заставила бы экземпляр пропустить
+ * мероприятия, загруженные другим. Напоминание за сутки, опоздавшее к часу
+ * до начала, не отправляется.
+ */
+@Service
+@Slf4j
+public class EventReminderService {
+
+    public enum Kind {
+        DAY(Duration.ofHours(24)),
+        HOUR(Duration.ofHours(1));
+
+        private final Duration before;
+
+        Kind(Duration before) {
+            this.before = before;
+        }
+
+        public Duration getBefore() {
+            return before;
+        }
+
+        public String groupKey(Long eventId) {
+            return "event-reminder-" + name().toLowerCase() + ":" + eventId;
+        }
+    }
+
+    private record Reminder(Long eventId, LocalDateTime eventDate, Kind kind) {
+    }
+
+    private static final int WHEEL_SIZE = 64;
+    private static final int WHEEL_LEVELS = 4;
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
+
+    private final EventRepository eventRepository;
+    private final EventApplicationRepository eventApplicationRepository;
+    private final MailOutboxService mailOutboxService;
+    private final MailTemplateService mailTemplateService;
+    private final TransactionTemplate transactionTemplate;
+    private final long horizonHours;
+    private final TimingWheel<Reminder> wheel;
+    private final Map<Long, List<TimingWheel.Timer<Reminder>>> timersByEvent = new HashMap<>();
+
+    @Value("${events.reminders.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${events.reminders.chunk-size:500}")
+    private int chunkSize = 500;
+
+    // Мероприятия до этой позиции уже в колесе
+    private volatile LocalDateTime loadedDate;
+    private volatile long loadedId;
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder eventsLoaded = new LongAdder();
+    private final LongAdder fired = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder mails = new LongAdder();
+
+    public EventReminderService(EventRepository eventRepository,
+                                EventApplicationRepository eventApplicationRepository,
+                                MailOutboxService mailOutboxService,
+                                MailTemplateService mailTemplateService,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${events.reminders.tick-ms:1000}") long tickMillis,
+                                @Value("${events.reminders.horizon-hours:48}") long horizonHours) {
+        this.eventRepository = eventRepository;
+        this.eventApplicationRepository = eventApplicationRepository;
+        this.mailOutboxService = mailOutboxService;
+        this.mailTemplateService = mailTemplateService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.horizonHours = horizonHours;
+        this.wheel = new TimingWheel<>(tickMillis, WHEEL_SIZE, WHEEL_LEVELS, System.currentTimeMillis());
+        if (Duration.ofHours(horizonHours).toMillis() >= wheel.getSpanMillis()) {
+            throw new IllegalArgumentException("Горизонт напоминаний больше, чем вмещает колесо таймеров");
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${events.reminders.load-ms:60000}", initialDelayString = "${events.reminders.tick-ms:1000}")
+    public void loadScheduled() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            loadUpcoming(LocalDateTime.now());
+        } catch (RuntimeException e) {
+            log.error("Ошибка загрузки напоминаний о мероприятиях", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${events.reminders.tick-ms:1000}", initialDelayString = "${events.reminders.tick-ms:1000}")
+    public void tickScheduled() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            fireDue(System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            log.error("Ошибка отправки напоминаний о мероприятиях", e);
+        }
+    }
+
+    /**
+     * Добавляет в колесо мероприятия после загруженной позиции до горизонта.
+     *
+     * @return число прочитанных мероприятий
+     */
+    public synchronized int loadUpcoming(LocalDateTime now) {
+        if (loadedDate == null) {
+            // Колесо пусто: окно от текущего момента пересобирается, прошедшие мероприятия не читаются
+            loadedDate = now;
+            loadedId = 0;
+        }
+        LocalDateTime until = now.plusHours(horizonHours);
+        int total = 0;
+        List<EventRepository.EventPosition> positions;
+        do {
+            positions = eventRepository.findUpcomingPositions(until, loadedDate, loadedId, Limit.of(chunkSize));
+            synchronized (wheel) {
+                for (EventRepository.EventPosition position : positions) {
+                    schedule(position.getId(), position.getDate());
+                }
+            }
+            if (!positions.isEmpty()) {
+                EventRepository.EventPosition last = positions.get(positions.size() - 1);
+                loadedDate = last.getDate();
+                loadedId = last.getId();
+                total += positions.size();
+            }
+        } while (positions.size() == chunkSize);
+        loads.increment();
+        eventsLoaded.add(total);
+        if (total > 0) {
+            log.debug("В колесо напоминаний добавлено мероприятий: {}", total);
+        }
+        return total;
+    }
+
+    /**
+     * Отправляет наступившие напоминания.
+     *
+     * @return число отправленных напоминаний
+     */
+    public int fireDue(long nowMillis) {
+        List<Reminder> due = new ArrayList<>();
+        synchronized (wheel) {
+            wheel.advance(nowMillis, timer -> {
+                due.add(timer.getPayload());
+                forget(timer);
+            });
+        }
+        if (due.isEmpty()) {
+            return 0;
+        }
+        fired.add(due.size());
+        due.sort(Comparator.comparing(Reminder::eventDate).thenComparing(Reminder::eventId));
+        LocalDateTime now = LocalDateTime.ofInstant(Instant.ofEpochMilli(nowMillis), ZoneId.systemDefault());
+        int count = 0;
+        for (Reminder reminder : due) {
+            try {
+                if (Boolean.TRUE.equals(transactionTemplate.execute(status -> send(reminder, now)))) {
+                    count++;
+                } else {
+                    skipped.increment();
+                }
+            } catch (RuntimeException e) {
+                log.error("Не удалось отправить напоминание {} о мероприятии {}", reminder.kind(),
+                        reminder.eventId(), e);
+            }
+        }
+        sent.add(count);
+        return count;
+    }
+
+    /**
+     * Пересчитывает таймеры мероприятия после создания, переноса или отмены;
+     * в транзакции - после коммита.
+     */
+    public void eventChanged(Long eventId, LocalDateTime date, boolean active) {
+        Runnable action = () -> {
+            synchronized (wheel) {
+                List<TimingWheel.Timer<Reminder>> timers = timersByEvent.remove(eventId);
+                if (timers != null) {
+                    timers.forEach(wheel::cancel);
+                }
+                // Мероприятие после загруженной позиции добавит следующая загрузка
+                LocalDateTime loaded = loadedDate;
+                boolean inLoadedRange = loaded != null
+                        && (date.isBefore(loaded) || date.isEqual(loaded) && eventId <= loadedId);
+                if (active && inLoadedRange) {
+                    schedule(eventId, date);
+                }
+            }
+        };
+        TransactionCallbacks.afterCommit(action);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        synchronized (wheel) {
+            result.put("pending", wheel.getPending());
+            result.put("events", timersByEvent.size());
+        }
+        result.put("loadedDate", loadedDate);
+        result.put("loadedEventId", loadedId);
+        result.put("loads", loads.sum());
+        result.put("eventsLoaded", eventsLoaded.sum());
+        result.put("fired", fired.sum());
+        result.put("sent", sent.sum());
+        result.put("skipped", skipped.sum());
+        result.put("mails", mails.sum());
+        return result;
+    }
+
+    // Вызывается под блокировкой колеса
+    private void schedule(Long eventId, LocalDateTime date) {
+        long eventMillis = date.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        List<TimingWheel.Timer<Reminder>> timers = new ArrayList<>(Kind.values().length);
+        for (Kind kind : Kind.values()) {
+            timers.add(wheel.add(eventMillis - kind.getBefore().toMillis(), new Reminder(eventId, date, kind)));
+        }
+        List<TimingWheel.Timer<Reminder>> previous = timersByEvent.put(eventId, timers);
+        if (previous != null) {
+            previous.forEach(wheel::cancel);
+        }
+    }
+
+    private void forget(TimingWheel.Timer<Reminder> timer) {
+        Long eventId = timer.getPayload().eventId();
+        List<TimingWheel.Timer<Reminder>> timers = timersByEvent.get(eventId);
+        if (timers != null && timers.stream().allMatch(TimingWheel.Timer::isCancelled)) {
+            timersByEvent.remove(eventId);
+        }
+    }
+
+    private boolean send(Reminder reminder, LocalDateTime now) {
+        // Опоздавшее напоминание не отправляется, если уже подошло время следующего
+        Kind[] kinds = Kind.values();
+        int next = reminder.kind().ordinal() + 1;
+        LocalDateTime latest = next < kinds.length
+                ? reminder.eventDate().minus(kinds[next].getBefore())
+                : reminder.eventDate();
+        if (!now.isBefore(latest)) {
+            return false;
+        }
+        int claimed = reminder.kind() == Kind.DAY
+                ? eventRepository.claimDayReminder(reminder.eventId(), reminder.eventDate())
+                : eventRepository.claimHourReminder(reminder.eventId(), reminder.eventDate());
+        if (claimed == 0) {
+            return false;
+        }
+        List<String> recipients = eventApplicationRepository.findActiveApprovedApplicantEmails(reminder.eventId());
+        if (!recipients.isEmpty()) {
+            Event event = eventRepository.findById(reminder.eventId())
+                    .orElseThrow(() -> new IllegalStateException("Мероприятие " + reminder.eventId() + " не найдено"));
+            mails.add(mailOutboxService.enqueueAll(reminder.kind().groupKey(reminder.eventId()), recipients,
+                    "Напоминание о мероприятии",
+                    mailTemplateService.render(MailTemplateService.EVENT_REMINDER, Map.of(
+                            "title", event.getTitle(),
+                            "date", reminder.eventDate().format(DATE_FORMAT)))));
+        }
+        return true;
+    }
+}
@@ -0,0 +1,82 @@
+package com.almetpt.coursework.bookclub.service;
+
+import com.almetpt.coursework.bookclub.repository.EventRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Учет занятых мест мероприятия в {@code events.reserved_seats}.
+ * <p>
+ * Место занимается одним условным UPDATE: проверка наличия мест и запись
+ * выполняются атомарно, поэтому одновременные заявки не могут превысить
+ * {@code max_participants}. Этот UPDATE блокирует строку мероприятия до
+ * коммита заявки, поэтому {@link #reserve} вызывается последним оператором
+ * записи на мероприятие. Методы выполняются в транзакции вызывающего кода,
+ * и откат заявки освобождает место. Счетчик {@code NULL} пересчитывается по
+ * одобренным заявкам при следующем бронировании; так его сбрасывают редкие
+ * операции, меняющие заявки в обход бронирования.
+ */
+@Service
+@Slf4j
+public class EventSeatService {
+
+    private final EventRepository eventRepository;
+    private final EventUpdateBroadcaster eventUpdateBroadcaster;
+
+    public EventSeatService(EventRepository eventRepository,
+                            EventUpdateBroadcaster eventUpdateBroadcaster) {
+        this.eventRepository = eventRepository;
+        this.eventUpdateBroadcaster = eventUpdateBroadcaster;
+    }
+
+    /**
+     * @return {@code true}, если место занято; {@code false}, если мест нет
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean tryReserve(Long eventId) {
+        initCounter(eventId);
+        return reserve(eventId);
+    }
+
+    /**
+     * Пересчитывает сброшенный счетчик. Вызывается до записи заявки, которую
+     * бронирует {@link #reserve}, иначе пересчет учтет ее дважды.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void initCounter(Long eventId) {
+        eventRepository.initReservedSeats(eventId);
+    }
+
+    /**
+     * Занимает место без пересчета счетчика: сброшенный счетчик считается
+     * отсутствием мест. Блокирует строку мероприятия до коммита, только если
+     * место занято, поэтому вызывается последним оператором транзакции.
+     *
+     * @return {@code true}, если место занято; {@code false}, если мест нет
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean reserve(Long eventId) {
+        boolean reserved = eventRepository.reserveSeat(eventId) > 0;
+        if (reserved) {
+            eventUpdateBroadcaster.seatsChanged(eventId);
+        } else {
+            log.debug("Нет свободных мест на мероприятие {}", eventId);
+        }
+        return reserved;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void release(Long eventId) {
+        if (eventRepository.releaseSeat(eventId) > 0) {
+            eventUpdateBroadcaster.seatsChanged(eventId);
+        }
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void reset(Long eventId) {
+        eventRepository.resetReservedSeats(eventId);
+        eventUpdateBroadcaster.seatsChanged(eventId);
+    }
+}
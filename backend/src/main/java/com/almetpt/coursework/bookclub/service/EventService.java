@@ -2,19 +2,18 @@ package com.almetpt.coursework.bookclub.service;
 
 import com.almetpt.coursework.bookclub.constants.Errors;
 import com.almetpt.coursework.bookclub.dto.EventDTO;
+import com.almetpt.coursework.bookclub.dto.EventListingDTO;
 import com.almetpt.coursework.bookclub.exception.MyDeleteException;
 import com.almetpt.coursework.bookclub.mapper.EventMapper;
-import com.almetpt.coursework.bookclub.model.ApplicationStatus;
 import com.almetpt.coursework.bookclub.model.Event;
 import com.almetpt.coursework.bookclub.model.EventApplication;
 import com.almetpt.coursework.bookclub.repository.BookRepository;
 import com.almetpt.coursework.bookclub.repository.EventApplicationRepository;
 import com.almetpt.coursework.bookclub.repository.EventRepository;
-import com.almetpt.coursework.bookclub.utils.MailUtils;
 
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -24,25 +23,50 @@ import org.webjars.NotFoundException;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @Service
 public class EventService extends GenericService<Event, EventDTO> {
 
+    private static final String NOTIFICATION_CANCELLED = "cancelled";
+    private static final String NOTIFICATION_RESCHEDULED = "rescheduled";
+
     private final EventRepository eventRepository;
     private final EventApplicationRepository eventApplicationRepository;
-    private final JavaMailSender javaMailSender;
+    private final MailOutboxService mailOutboxService;
+    private final MailTemplateService mailTemplateService;
+    private final EventWaitlistService eventWaitlistService;
+    private final EventUpdateBroadcaster eventUpdateBroadcaster;
+    private final EventCheckInService eventCheckInService;
+    private final EventReminderService eventReminderService;
 
     public EventService(EventRepository eventRepository,
                         EventApplicationRepository eventApplicationRepository,
                         BookRepository bookRepository,
-                        JavaMailSender javaMailSender,
+                        MailOutboxService mailOutboxService,
+                        MailTemplateService mailTemplateService,
+                        EventWaitlistService eventWaitlistService,
+                        EventUpdateBroadcaster eventUpdateBroadcaster,
+                        EventCheckInService eventCheckInService,
+                        EventReminderService eventReminderService,
                         EventMapper eventMapper) {
         super(eventRepository, eventMapper);
         this.eventRepository = eventRepository;
         this.eventApplicationRepository = eventApplicationRepository;
-        this.javaMailSender = javaMailSender;
+        this.mailOutboxService = mailOutboxService;
+        this.mailTemplateService = mailTemplateService;
+        this.eventWaitlistService = eventWaitlistService;
+        this.eventUpdateBroadcaster = eventUpdateBroadcaster;
+        this.eventCheckInService = eventCheckInService;
+        this.eventReminderService = eventReminderService;
+    }
+
+    // Режим списка: строки читаются проекцией, сущности и маппер не используются
+    public Page<EventListingDTO> listListing(Pageable pageable) {
+        return eventRepository.findListingByIsDeletedFalse(pageable);
     }
 
     @Override
@@ -58,9 +82,21 @@ public class EventService extends GenericService<Event, EventDTO> {
         Event event = mapper.toEntity(dto);
         event.setCreatedWhen(LocalDateTime.now());
         event = eventRepository.save(event);
+        eventReminderService.eventChanged(event.getId(), event.getDate(), true);
         return mapper.toDTO(event);
     }
 
+    // При увеличении числа мест они сразу отдаются листу ожидания
+    @Override
+    @Transactional
+    public EventDTO update(EventDTO updatedObject) {
+        EventDTO updated = super.update(updatedObject);
+        eventWaitlistService.promote(updated.getId());
+        eventUpdateBroadcaster.seatsChanged(updated.getId());
+        eventReminderService.eventChanged(updated.getId(), updated.getDate(), !updated.isCancelled());
+        return updated;
+    }
+
     @Transactional
     public void cancelEvent(Long eventId, String cancellationReason) {
         Event event = eventRepository.findById(eventId)
@@ -88,18 +124,25 @@ public class EventService extends GenericService<Event, EventDTO> {
         Event savedEvent = eventRepository.save(event);
         log.debug("After update - isCancelled: {}", savedEvent.isCancelled());
         
-        List<EventApplication> applications = eventApplicationRepository.findApprovedApplicationsForEvent(eventId);
-        applications.forEach(app -> {
-            SimpleMailMessage message = MailUtils.createMailMessage(
-                    app.getUser().getEmail(),
-                    "Мероприятие отменено",
-                    "Мероприятие '" + event.getTitle() + "' отменено. Причина: " + cancellationReason);
-            javaMailSender.send(message);
-            
-            app.setStatus(ApplicationStatus.REJECTED);
-            app.setRejectionReason(EventApplication.RejectionReason.EVENT_CANCELLED);
-            eventApplicationRepository.save(app);
-        });
+        // Адреса читаются до отклонения заявок, сами заявки отклоняются одним UPDATE
+        List<String> recipients = eventApplicationRepository.findActiveApprovedApplicantEmails(eventId);
+        int rejected = eventApplicationRepository.rejectApprovedForEvent(
+                eventId, EventApplication.RejectionReason.EVENT_CANCELLED);
+        // Счетчик мест пересчитается по оставшимся заявкам
+        eventRepository.resetReservedSeats(eventId);
+        eventWaitlistService.clear(eventId);
+        eventApplicationRepository.clearTickets(eventId);
+        eventCheckInService.forget(eventId);
+        eventReminderService.eventChanged(eventId, event.getDate(), false);
+        eventUpdateBroadcaster.seatsChanged(eventId);
+        // Текст одинаков для всех участников и отрисовывается один раз
+        mailOutboxService.enqueueAll(
+                notificationGroupKey(NOTIFICATION_CANCELLED, eventId),
+                recipients,
+                "Мероприятие отменено",
+                mailTemplateService.render(MailTemplateService.EVENT_CANCELLED,
+                        Map.of("title", event.getTitle(), "reason", cancellationReason)));
+        log.info("Мероприятие {} отменено: отклонено заявок {}, писем в очереди {}", eventId, rejected, recipients.size());
     }
 
     @Transactional
@@ -129,18 +172,41 @@ public class EventService extends GenericService<Event, EventDTO> {
 
         event.setDate(newDate);
         eventRepository.save(event);
+        // Срок билетов и напоминания считаются от даты мероприятия
+        eventApplicationRepository.clearTickets(eventId);
+        eventReminderService.eventChanged(eventId, newDate, !event.isCancelled());
         
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
-        List<EventApplication> applications = eventApplicationRepository.findApprovedApplicationsForEvent(eventId);
-        
-        applications.forEach(app -> {
-            SimpleMailMessage message = MailUtils.createMailMessage(
-                    app.getUser().getEmail(),
-                    "Мероприятие перенесено",
-                    "Мероприятие '" + event.getTitle() + "' перенесено. Новая дата: " + newDate.format(formatter)
-                            + ". Причина: " + rescheduleMessage);
-            javaMailSender.send(message);
-        });
+        List<String> recipients = eventApplicationRepository.findActiveApprovedApplicantEmails(eventId);
+        mailOutboxService.enqueueAll(
+                notificationGroupKey(NOTIFICATION_RESCHEDULED, eventId),
+                recipients,
+                "Мероприятие перенесено",
+                mailTemplateService.render(MailTemplateService.EVENT_RESCHEDULED, Map.of(
+                        "title", event.getTitle(),
+                        "newDate", newDate.format(formatter),
+                        "reason", rescheduleMessage)));
+    }
+
+    /**
+     * Ход рассылок об отмене и переносе мероприятия: письма по статусам.
+     *
+     * @throws NotFoundException если мероприятия нет
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Map<String, Long>> getNotificationProgress(Long eventId) {
+        if (!eventRepository.existsById(eventId)) {
+            throw new NotFoundException("Мероприятие не найдено");
+        }
+        Map<String, Map<String, Long>> result = new LinkedHashMap<>();
+        for (String kind : List.of(NOTIFICATION_CANCELLED, NOTIFICATION_RESCHEDULED)) {
+            result.put(kind, mailOutboxService.getGroupProgress(notificationGroupKey(kind, eventId)));
+        }
+        return result;
+    }
+
+    private static String notificationGroupKey(String kind, Long eventId) {
+        return "event-" + kind + ":" + eventId;
     }
 
     @Override
@@ -0,0 +1,87 @@
+package com.almetpt.coursework.bookclub.service;
+
+import com.almetpt.coursework.bookclub.model.EventApplication;
+import com.almetpt.coursework.bookclub.utils.HmacSigner;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Билеты участников мероприятий для QR-кода.
+ * <p>
+ * Билет - строка {@code заявка.мероприятие.срок.подпись}, подписанная HMAC:
+ * на входе подлинность и срок проверяются без обращения к БД. Срок - начало
+ * мероприятия плюс {@code events.ticket.valid-hours}. Билет выдается при
+ * одобрении заявки и хранится в {@code event_applications.qr_code}. Без
+ * {@code events.ticket.secret} ключ выводится из {@code jwt.secret}.
+ */
+@Service
+public class EventTicketService {
+
+    public record Ticket(Long applicationId, Long eventId, long expires) {
+
+        public LocalDateTime expiresAt() {
+            return LocalDateTime.ofInstant(Instant.ofEpochSecond(expires), ZoneId.systemDefault());
+        }
+    }
+
+    private final HmacSigner signer;
+    private final long validSeconds;
+
+    public EventTicketService(@Value("${events.ticket.secret:}") String secret,
+                              @Value("${jwt.secret}") String jwtSecret,
+                              @Value("${events.ticket.valid-hours:12}") long validHours) {
+        if (validHours < 1) {
+            throw new IllegalArgumentException("Срок действия билета должен быть положительным");
+        }
+        this.signer = HmacSigner.forPurpose(secret, jwtSecret, "event-ticket");
+        this.validSeconds = TimeUnit.HOURS.toSeconds(validHours);
+    }
+
+    /**
+     * Выдает билет одобренной заявке и записывает его в заявку.
+     */
+    public String issue(EventApplication application) {
+        long expires = application.getEvent().getDate().atZone(ZoneId.systemDefault()).toEpochSecond()
+                + validSeconds;
+        String payload = application.getId() + "." + application.getEvent().getId() + "." + expires;
+        String ticket = payload + "." + signer.sign(payload);
+        application.setQrCode(ticket);
+        return ticket;
+    }
+
+    /**
+     * Разбирает билет и проверяет подпись; срок не проверяется.
+     *
+     * @return пусто, если билет поврежден или подделан
+     */
+    public Optional<Ticket> parse(String ticket) {
+        if (ticket == null) {
+            return Optional.empty();
+        }
+        int signatureStart = ticket.lastIndexOf('.');
+        if (signatureStart < 0) {
+            return Optional.empty();
+        }
+        String payload = ticket.substring(0, signatureStart);
+        String[] parts = payload.split("\\.");
+        if (parts.length != 3 || !signer.verify(payload, ticket.substring(signatureStart + 1))) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new Ticket(Long.parseLong(parts[0]), Long.parseLong(parts[1]),
+                    Long.parseLong(parts[2])));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    public boolean isExpired(Ticket ticket) {
+        return Instant.now().getEpochSecond() >= ticket.expires();
+    }
+}
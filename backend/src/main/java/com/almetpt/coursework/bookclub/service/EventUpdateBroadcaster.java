@@ -0,0 +1,442 @@
+package com.almetpt.coursework.bookclub.service;
+
+import com.almetpt.coursework.bookclub.repository.EventRepository;
+import com.almetpt.coursework.bookclub.utils.TransactionCallbacks;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Рассылка изменений мест и статусов заявок подписчикам SSE.
+ * <p>
+ * Изменения не отправляются сразу: после коммита мероприятие помечается
+ * измененным, а раз в {@code events.stream.flush-ms} места всех измененных
+ * мероприятий читаются одним запросом, и каждый подписчик получает не больше
+ * одного сообщения на мероприятие. Статусы заявок так же схлопываются до
+ * последнего. У каждого подписчика ограниченный буфер; подписчик, не
+ * успевающий его разбирать, отключается, а браузер переподключится сам и
+ * получит актуальный снимок. Снимок новым подписчикам тоже читается при
+ * рассылке, а не в запросе: иначе открытый на время запроса
+ * EntityManager держал бы соединение с БД, пока открыт поток.
+ * <p>
+ * Отправка в сокет блокирующая, поэтому каждая рассылка проверяет, не
+ * висит ли запись дольше {@code events.stream.send-timeout-ms}. Зависший
+ * подписчик отключается, а пул отправки получает поток на замену, пока
+ * зависшая запись не вернется: несколько оборванных клиентов не занимают
+ * все потоки и не переполняют буферы остальных.
+ */
+@Service
+@Slf4j
+public class EventUpdateBroadcaster {
+
+    public static final String SEATS_EVENT = "seats";
+    public static final String APPLICATION_EVENT = "application";
+    public static final String CANCELLED_STATUS = "CANCELLED";
+
+    private static final long RECONNECT_MILLIS = 3000;
+
+    private record StatusDelta(Long applicationId, Long eventId, Long userId, String status) {
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final Set<Long> eventIds;
+        private final Long userId;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> buffer;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean stalled = new AtomicBoolean();
+        private volatile boolean closed;
+        private volatile long sendStarted;
+        private volatile Thread sender;
+
+        private Subscriber(SseEmitter emitter, Set<Long> eventIds, Long userId, int bufferSize) {
+            this.emitter = emitter;
+            this.eventIds = eventIds;
+            this.userId = userId;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+    }
+
+    private final EventRepository eventRepository;
+    private final long timeoutMillis;
+    private final int maxEventsPerSubscriber;
+    private final long heartbeatMillis;
+    private final long sendTimeoutNanos;
+    private final int bufferSize;
+
+    private final Map<Long, Set<Subscriber>> subscribersByEvent = new ConcurrentHashMap<>();
+    private final Set<Long> dirtyEvents = ConcurrentHashMap.newKeySet();
+    private final Map<Long, StatusDelta> pendingStatuses = new ConcurrentHashMap<>();
+    private final Queue<Subscriber> pendingSnapshots = new ConcurrentLinkedQueue<>();
+    private final Set<Subscriber> sending = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService flusher;
+    private final ThreadPoolExecutor senders;
+    private volatile long lastHeartbeat = System.nanoTime();
+
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final LongAdder subscribed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder stalls = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public EventUpdateBroadcaster(EventRepository eventRepository,
+                                  @Value("${events.stream.buffer-size:32}") int bufferSize,
+                                  @Value("${events.stream.timeout-ms:1800000}") long timeoutMillis,
+                                  @Value("${events.stream.max-events:50}") int maxEventsPerSubscriber,
+                                  @Value("${events.stream.flush-ms:250}") long flushMillis,
+                                  @Value("${events.stream.heartbeat-ms:15000}") long heartbeatMillis,
+                                  @Value("${events.stream.sender-threads:4}") int senderThreads,
+                                  @Value("${events.stream.send-timeout-ms:5000}") long sendTimeoutMillis) {
+        this.eventRepository = eventRepository;
+        this.timeoutMillis = timeoutMillis;
+        this.maxEventsPerSubscriber = maxEventsPerSubscriber;
+        this.heartbeatMillis = heartbeatMillis;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+        this.bufferSize = bufferSize;
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-stream-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.senders = new ThreadPoolExecutor(senderThreads, senderThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "event-stream-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushSafely, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        log.info("Поток изменений мероприятий: рассылка раз в {} мс, буфер подписчика {} сообщений",
+                flushMillis, bufferSize);
+    }
+
+    /**
+     * Подписка на мероприятия. Первой рассылкой отправляет текущие места, дальше - изменения.
+     *
+     * @param userId получатель статусов своих заявок; {@code null} - только места
+     * @throws IllegalArgumentException если мероприятий нет или их больше допустимого
+     */
+    public SseEmitter subscribe(Collection<Long> eventIds, Long userId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        try {
+            // Отправляется вместе с заголовками ответа, не дожидаясь снимка
+            emitter.send(SseEmitter.event().reconnectTime(RECONNECT_MILLIS).comment("subscribed"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        register(emitter, eventIds, userId);
+        return emitter;
+    }
+
+    /**
+     * Подключает готовый emitter; отдельно от {@link #subscribe} для проверки медленных клиентов.
+     */
+    public void register(SseEmitter emitter, Collection<Long> eventIds, Long userId) {
+        if (eventIds == null || eventIds.isEmpty() || eventIds.size() > maxEventsPerSubscriber) {
+            throw new IllegalArgumentException(
+                    "Укажите от 1 до " + maxEventsPerSubscriber + " мероприятий для подписки");
+        }
+        Subscriber subscriber = new Subscriber(emitter, Set.copyOf(eventIds), userId, bufferSize);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(error -> remove(subscriber));
+        for (Long eventId : subscriber.eventIds) {
+            subscribersByEvent.computeIfAbsent(eventId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        }
+        subscribers.incrementAndGet();
+        subscribed.increment();
+        pendingSnapshots.add(subscriber);
+    }
+
+    /**
+     * Помечает места мероприятия измененными; в транзакции - после коммита.
+     */
+    public void seatsChanged(Long eventId) {
+        TransactionCallbacks.afterCommit(() -> {
+            if (!dirtyEvents.add(eventId)) {
+                coalesced.increment();
+            }
+        });
+    }
+
+    /**
+     * Статус заявки для ее владельца; в транзакции - после коммита.
+     */
+    public void applicationChanged(Long applicationId, Long eventId, Long userId, String status) {
+        TransactionCallbacks.afterCommit(() -> {
+            if (pendingStatuses.put(applicationId, new StatusDelta(applicationId, eventId, userId, status)) != null) {
+                coalesced.increment();
+            }
+        });
+    }
+
+    /**
+     * Рассылает накопленные изменения; вызывается планировщиком.
+     */
+    public void flush() {
+        flushes.increment();
+        dropStalled();
+        Set<Long> changed = new HashSet<>();
+        for (Long eventId : dirtyEvents) {
+            if (dirtyEvents.remove(eventId) && subscribersByEvent.containsKey(eventId)) {
+                changed.add(eventId);
+            }
+        }
+        // Новые подписчики получают снимок тем же запросом, что и изменения
+        Map<Long, List<Subscriber>> joined = new HashMap<>();
+        Subscriber subscriber;
+        while ((subscriber = pendingSnapshots.poll()) != null) {
+            for (Long eventId : subscriber.eventIds) {
+                if (!changed.contains(eventId)) {
+                    joined.computeIfAbsent(eventId, id -> new ArrayList<>()).add(subscriber);
+                }
+            }
+        }
+        Set<Long> eventIds = new HashSet<>(changed);
+        eventIds.addAll(joined.keySet());
+        if (!eventIds.isEmpty()) {
+            for (EventRepository.EventSeats seats : eventRepository.findSeats(eventIds)) {
+                Collection<Subscriber> targets = changed.contains(seats.getId())
+                        ? subscribersByEvent.get(seats.getId())
+                        : joined.get(seats.getId());
+                if (targets == null) {
+                    continue;
+                }
+                Map<String, Object> message = seatsMessage(seats);
+                for (Subscriber target : targets) {
+                    offer(target, message);
+                }
+            }
+        }
+
+        for (Long applicationId : pendingStatuses.keySet()) {
+            StatusDelta delta = pendingStatuses.remove(applicationId);
+            Set<Subscriber> targets = delta != null ? subscribersByEvent.get(delta.eventId()) : null;
+            if (targets == null) {
+                continue;
+            }
+            for (Subscriber target : targets) {
+                if (delta.userId().equals(target.userId)) {
+                    offer(target, APPLICATION_EVENT, Map.of(
+                            "applicationId", delta.applicationId(),
+                            "eventId", delta.eventId(),
+                            "status", delta.status()));
+                }
+            }
+        }
+
+        // Комментарий раз в интервал выявляет оборванные соединения
+        if (System.nanoTime() - lastHeartbeat > TimeUnit.MILLISECONDS.toNanos(heartbeatMillis)) {
+            lastHeartbeat = System.nanoTime();
+            subscribersByEvent.values().stream()
+                    .flatMap(Set::stream)
+                    .distinct()
+                    .forEach(target -> offer(target, SseEmitter.event().comment("ping")));
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("subscribers", subscribers.get());
+        result.put("events", subscribersByEvent.size());
+        result.put("bufferSize", bufferSize);
+        result.put("subscribed", subscribed.sum());
+        result.put("dropped", dropped.sum());
+        result.put("stalled", stalls.sum());
+        result.put("senderThreads", senders.getMaximumPoolSize());
+        result.put("flushes", flushes.sum());
+        result.put("sent", sent.sum());
+        result.put("coalesced", coalesced.sum());
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+        senders.shutdownNow();
+        subscribersByEvent.values().stream()
+                .flatMap(Set::stream)
+                .distinct()
+                .forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Ошибка рассылки изменений мероприятий", e);
+        }
+    }
+
+    private static Map<String, Object> seatsMessage(EventRepository.EventSeats seats) {
+        Map<String, Object> message = new LinkedHashMap<>();
+        Integer max = seats.getMaxParticipants();
+        long reserved = seats.getReservedSeats() != null ? seats.getReservedSeats() : 0;
+        message.put("eventId", seats.getId());
+        message.put("maxParticipants", max);
+        message.put("reservedSeats", reserved);
+        message.put("remainingSeats", max != null ? Math.max(0, max - reserved) : null);
+        message.put("cancelled", Boolean.TRUE.equals(seats.getCancelled()));
+        return message;
+    }
+
+    private void offer(Subscriber subscriber, Map<String, Object> seats) {
+        offer(subscriber, SEATS_EVENT, seats);
+    }
+
+    private void offer(Subscriber subscriber, String name, Map<String, Object> data) {
+        offer(subscriber, SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+    }
+
+    private void offer(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        if (subscriber.closed) {
+            return;
+        }
+        if (!subscriber.buffer.offer(event)) {
+            log.debug("Подписчик не успевает читать поток мероприятий и отключается");
+            drop(subscriber);
+            return;
+        }
+        if (subscriber.draining.compareAndSet(false, true)) {
+            senders.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        subscriber.sender = Thread.currentThread();
+        try {
+            SseEmitter.SseEventBuilder event;
+            while (!subscriber.closed && (event = subscriber.buffer.poll()) != null) {
+                subscriber.sendStarted = System.nanoTime();
+                sending.add(subscriber);
+                try {
+                    subscriber.emitter.send(event);
+                } finally {
+                    sending.remove(subscriber);
+                    subscriber.sendStarted = 0;
+                }
+                sent.increment();
+            }
+        } catch (IOException | IllegalStateException e) {
+            remove(subscriber);
+            return;
+        } finally {
+            subscriber.sender = null;
+            subscriber.draining.set(false);
+            if (subscriber.stalled.get()) {
+                // Зависшая запись вернулась: поток на замену больше не нужен
+                Thread.interrupted();
+                resizeSenders(-1);
+                completeQuietly(subscriber);
+            }
+        }
+        // Сообщение могло прийти после опустошения буфера, но до снятия флага
+        if (!subscriber.buffer.isEmpty() && subscriber.draining.compareAndSet(false, true)) {
+            senders.execute(() -> drain(subscriber));
+        }
+    }
+
+    /**
+     * Отключает подписчиков, чья запись висит дольше таймаута, и добавляет
+     * по потоку отправки на каждый до возврата записи.
+     */
+    private void dropStalled() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : sending) {
+            long started = subscriber.sendStarted;
+            if (started == 0 || now - started < sendTimeoutNanos || !subscriber.stalled.compareAndSet(false, true)) {
+                continue;
+            }
+            log.debug("Запись в поток мероприятий висит дольше {} мс, подписчик отключается",
+                    TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos));
+            stalls.increment();
+            if (remove(subscriber)) {
+                dropped.increment();
+            }
+            resizeSenders(1);
+            Thread sender = subscriber.sender;
+            if (sender != null) {
+                sender.interrupt();
+            }
+        }
+    }
+
+    private void resizeSenders(int delta) {
+        synchronized (senders) {
+            int size = senders.getMaximumPoolSize() + delta;
+            if (delta > 0) {
+                senders.setMaximumPoolSize(size);
+                senders.setCorePoolSize(size);
+            } else {
+                senders.setCorePoolSize(size);
+                senders.setMaximumPoolSize(size);
+            }
+        }
+    }
+
+    private static void completeQuietly(Subscriber subscriber) {
+        try {
+            subscriber.emitter.complete();
+        } catch (RuntimeException e) {
+            log.debug("Не удалось закрыть поток зависшего подписчика", e);
+        }
+    }
+
+    private void drop(Subscriber subscriber) {
+        if (remove(subscriber)) {
+            dropped.increment();
+            subscriber.emitter.complete();
+        }
+    }
+
+    private boolean remove(Subscriber subscriber) {
+        if (subscriber.closed) {
+            return false;
+        }
+        synchronized (subscriber) {
+            if (subscriber.closed) {
+                return false;
+            }
+            subscriber.closed = true;
+        }
+        for (Long eventId : subscriber.eventIds) {
+            subscribersByEvent.computeIfPresent(eventId, (id, set) -> {
+                set.remove(subscriber);
+                return set.isEmpty() ? null : set;
+            });
+        }
+        subscriber.buffer.clear();
+        subscribers.decrementAndGet();
+        return true;
+    }
+}
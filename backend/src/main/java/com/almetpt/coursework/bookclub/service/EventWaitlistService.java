@@ -0,0 +1,186 @@
+package com.almetpt.coursework.bookclub.service;
+
+import com.almetpt.coursework.bookclub.model.ApplicationStatus;
+import com.almetpt.coursework.bookclub.model.EventApplication;
+import com.almetpt.coursework.bookclub.model.EventWaitlistEntry;
+import com.almetpt.coursework.bookclub.repository.EventApplicationRepository;
+import com.almetpt.coursework.bookclub.repository.EventRepository;
+import com.almetpt.coursework.bookclub.repository.EventWaitlistRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Лист ожидания мероприятий.
+ * <p>
+ * Заявка, отклоненная из-за нехватки мест, встает в конец очереди
+ * мероприятия. Освободившееся место в той же транзакции отдается голове
+ * очереди, а одобренным так участникам уходит одна рассылка. Любое изменение
+ * очереди сначала блокирует строку мероприятия, поэтому очередь мероприятия
+ * меняется строго по одному, а заявка, вставшая в очередь одновременно с
+ * отменой, не пропустит освободившееся место.
+ */
+@Service
+@Slf4j
+public class EventWaitlistService {
+
+    private final EventWaitlistRepository eventWaitlistRepository;
+    private final EventRepository eventRepository;
+    private final EventApplicationRepository eventApplicationRepository;
+    private final EventSeatService eventSeatService;
+    private final MailOutboxService mailOutboxService;
+    private final MailTemplateService mailTemplateService;
+    private final EventUpdateBroadcaster eventUpdateBroadcaster;
+    private final EventTicketService eventTicketService;
+    private final EventCheckInService eventCheckInService;
+
+    @Value("${events.waitlist.enabled:true}")
+    private boolean enabled = true;
+
+    public EventWaitlistService(EventWaitlistRepository eventWaitlistRepository,
+                                EventRepository eventRepository,
+                                EventApplicationRepository eventApplicationRepository,
+                                EventSeatService eventSeatService,
+                                MailOutboxService mailOutboxService,
+                                MailTemplateService mailTemplateService,
+                                EventUpdateBroadcaster eventUpdateBroadcaster,
+                                EventTicketService eventTicketService,
+                                EventCheckInService eventCheckInService) {
+        this.eventWaitlistRepository = eventWaitlistRepository;
+        this.eventRepository = eventRepository;
+        this.eventApplicationRepository = eventApplicationRepository;
+        this.eventSeatService = eventSeatService;
+        this.mailOutboxService = mailOutboxService;
+        this.mailTemplateService = mailTemplateService;
+        this.eventUpdateBroadcaster = eventUpdateBroadcaster;
+        this.eventTicketService = eventTicketService;
+        this.eventCheckInService = eventCheckInService;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Ставит отклоненную заявку в очередь. Если место освободилось, пока
+     * заявка отклонялась, оно занимается сразу.
+     *
+     * @return {@code true}, если заявка одобрена вместо постановки в очередь
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean joinOrTakeFreedSeat(EventApplication application) {
+        Long eventId = application.getEvent().getId();
+        eventRepository.addToWaitlistTail(eventId, 1);
+        if (eventSeatService.tryReserve(eventId)) {
+            eventRepository.addToWaitlistTail(eventId, -1);
+            application.setStatus(ApplicationStatus.APPROVED);
+            application.setRejectionReason(null);
+            eventApplicationRepository.save(application);
+            return true;
+        }
+
+        EventWaitlistEntry entry = new EventWaitlistEntry();
+        entry.setApplicationId(application.getId());
+        entry.setEventId(eventId);
+        entry.setUserId(application.getUser().getId());
+        entry.setTicket(eventRepository.findWaitlistTail(eventId));
+        entry.setCreatedWhen(LocalDateTime.now());
+        eventWaitlistRepository.save(entry);
+        log.info("Заявка {} поставлена в лист ожидания мероприятия {} под номером {}",
+                application.getId(), eventId, entry.getTicket());
+        return false;
+    }
+
+    /**
+     * Убирает заявку из очереди, если она там есть.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void leave(Long applicationId) {
+        Optional<Long> eventId = eventWaitlistRepository.findEventId(applicationId);
+        if (eventId.isEmpty()) {
+            return;
+        }
+        eventRepository.addToWaitlistTail(eventId.get(), -1);
+        // Номер читается под блокировкой: до нее очередь могла сдвинуться
+        Optional<Long> ticket = eventWaitlistRepository.findTicket(applicationId);
+        if (ticket.isEmpty()) {
+            eventRepository.addToWaitlistTail(eventId.get(), 1);
+            return;
+        }
+        eventWaitlistRepository.deleteEntry(applicationId);
+        eventWaitlistRepository.shiftAfter(eventId.get(), ticket.get());
+        log.info("Заявка {} покинула лист ожидания мероприятия {}", applicationId, eventId.get());
+    }
+
+    /**
+     * Отдает свободные места мероприятия заявкам из головы очереди.
+     *
+     * @return число одобренных заявок
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public int promote(Long eventId) {
+        List<String> recipients = new ArrayList<>();
+        String title = null;
+        while (eventWaitlistRepository.existsByEventId(eventId) && eventSeatService.tryReserve(eventId)) {
+            // Строка мероприятия уже заблокирована бронированием места
+            long head = eventRepository.findWaitlistHead(eventId);
+            Optional<EventWaitlistEntry> next = eventWaitlistRepository.findByEventIdAndTicket(eventId, head + 1);
+            if (next.isEmpty()) {
+                eventSeatService.release(eventId);
+                break;
+            }
+            EventWaitlistEntry entry = next.get();
+            eventWaitlistRepository.delete(entry);
+            eventRepository.advanceWaitlistHead(eventId);
+
+            EventApplication application = eventApplicationRepository.findById(entry.getApplicationId())
+                    .orElseThrow(() -> new IllegalStateException(
+                            "Заявка " + entry.getApplicationId() + " из листа ожидания не найдена"));
+            application.setStatus(ApplicationStatus.APPROVED);
+            application.setRejectionReason(null);
+            application.setUpdatedWhen(LocalDateTime.now());
+            eventTicketService.issue(application);
+            eventApplicationRepository.save(application);
+            eventCheckInService.applicationChanged(eventId, application.getId(), true);
+            eventUpdateBroadcaster.applicationChanged(application.getId(), eventId,
+                    application.getUser().getId(), ApplicationStatus.APPROVED.name());
+            recipients.add(application.getUser().getEmail());
+            title = application.getEvent().getTitle();
+        }
+        if (!recipients.isEmpty()) {
+            mailOutboxService.enqueueAll("waitlist-promoted:" + eventId, recipients, "Заявка одобрена",
+                    mailTemplateService.render(MailTemplateService.WAITLIST_PROMOTED, Map.of("title", title)));
+            log.info("Мероприятие {}: из листа ожидания одобрено заявок {}", eventId, recipients.size());
+        }
+        return recipients.size();
+    }
+
+    /**
+     * Очищает очередь отмененного мероприятия.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void clear(Long eventId) {
+        eventRepository.resetWaitlist(eventId);
+        eventWaitlistRepository.deleteByEventId(eventId);
+    }
+
+    /**
+     * Место заявки в очереди, начиная с 1: два чтения по ключу, без подсчета строк.
+     *
+     * @return пусто, если заявки нет в очереди или она принадлежит другому пользователю
+     */
+    @Transactional(readOnly = true)
+    public Optional<Long> getPosition(Long applicationId, Long userId) {
+        return eventWaitlistRepository.findById(applicationId)
+                .filter(entry -> entry.getUserId().equals(userId))
+                .map(entry -> entry.getTicket() - eventRepository.findWaitlistHead(entry.getEventId()));
+    }
+}
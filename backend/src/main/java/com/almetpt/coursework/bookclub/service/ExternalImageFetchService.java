@@ -0,0 +1,308 @@
+package com.almetpt.coursework.bookclub.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Загрузка внешних изображений (обложек по URL).
+ * <p>
+ * Все запросы идут через один {@link HttpClient} с пулом соединений и
+ * таймаутами. Загрузки выполняет фиксированное число рабочих потоков с
+ * ограниченной очередью: при переполнении задача отклоняется с
+ * {@link RejectedExecutionException}, а не создает новые потоки и соединения.
+ * Одновременные запросы одного URL объединяются в одну загрузку.
+ * <p>
+ * {@code request-timeout-ms} ограничивает всю загрузку, включая чтение
+ * тела: таймаут {@link HttpRequest} покрывает только ожидание заголовков, и
+ * сервер, отдающий тело по байту, иначе занял бы рабочий поток навсегда.
+ */
+@Service
+@Slf4j
+public class ExternalImageFetchService {
+
+    private final HttpClient httpClient;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+    private final Duration requestTimeout;
+    private final long awaitTimeoutMillis;
+    private final long maxBytes;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public ExternalImageFetchService(@Value("${image.fetch.max-concurrency:4}") int maxConcurrency,
+                                     @Value("${image.fetch.queue-capacity:64}") int queueCapacity,
+                                     @Value("${image.fetch.connect-timeout-ms:3000}") long connectTimeoutMillis,
+                                     @Value("${image.fetch.request-timeout-ms:10000}") long requestTimeoutMillis,
+                                     @Value("${image.fetch.await-timeout-ms:15000}") long awaitTimeoutMillis,
+                                     @Value("${image.fetch.max-bytes:10485760}") long maxBytes) {
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMillis);
+        this.awaitTimeoutMillis = awaitTimeoutMillis;
+        this.maxBytes = maxBytes;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-fetch-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        log.info("Загрузка внешних изображений: {} потоков, очередь {}, таймаут запроса {} мс",
+                maxConcurrency, queueCapacity, requestTimeoutMillis);
+    }
+
+    /**
+     * Ставит загрузку в очередь. Если этот URL уже загружается, возвращает
+     * результат текущей загрузки.
+     *
+     * @return данные изображения; при переполнении очереди future завершается
+     *         с {@link RejectedExecutionException}
+     * @throws IllegalArgumentException если URL некорректный или не http(s)
+     */
+    public CompletableFuture<byte[]> fetch(String url) {
+        URI uri = toUri(url);
+        String key = uri.toString();
+
+        CompletableFuture<byte[]> created = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            deduplicated.increment();
+            log.debug("Загрузка {} уже выполняется, ожидаем ее результат", key);
+            return existing.copy();
+        }
+
+        // Ключ снимается до завершения future: ожидающие копии просыпаются раньше зависимых действий
+        try {
+            executor.execute(() -> {
+                try {
+                    byte[] data = download(uri);
+                    inFlight.remove(key, created);
+                    created.complete(data);
+                    completed.increment();
+                } catch (Exception e) {
+                    failed.increment();
+                    inFlight.remove(key, created);
+                    created.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            log.warn("Очередь загрузки изображений переполнена, запрос {} отклонен", key);
+            inFlight.remove(key, created);
+            created.completeExceptionally(e);
+        }
+        return created.copy();
+    }
+
+    /**
+     * Загружает изображение и ждет результата.
+     *
+     * @throws IOException                если загрузка не удалась или не уложилась в таймаут
+     * @throws RejectedExecutionException если очередь загрузок переполнена
+     */
+    public byte[] fetchNow(String url) throws IOException {
+        try {
+            return fetch(url).get(awaitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RejectedExecutionException rejectedException) {
+                throw rejectedException;
+            }
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Не удалось загрузить изображение с URL: " + url, cause);
+        } catch (TimeoutException e) {
+            throw new IOException("Превышено время ожидания загрузки изображения с URL: " + url, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Загрузка изображения прервана: " + url, e);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("active", executor.getActiveCount());
+        result.put("queued", executor.getQueue().size());
+        result.put("inFlightUrls", inFlight.size());
+        result.put("completed", completed.sum());
+        result.put("failed", failed.sum());
+        result.put("deduplicated", deduplicated.sum());
+        result.put("rejected", rejected.sum());
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private byte[] download(URI uri) throws IOException, InterruptedException {
+        log.info("Загрузка изображения с URL: {}", uri);
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(requestTimeout)
+                .header(HttpHeaders.ACCEPT, "image/*")
+                .GET()
+                .build();
+
+        CompletableFuture<HttpResponse<byte[]>> exchange = httpClient.sendAsync(request, info -> {
+            if (info.statusCode() / 100 != 2) {
+                return HttpResponse.BodySubscribers.replacing(new byte[0]);
+            }
+            long contentLength = info.headers().firstValueAsLong(HttpHeaders.CONTENT_LENGTH).orElse(-1);
+            return new LimitedBodySubscriber(uri, contentLength, maxBytes);
+        });
+        HttpResponse<byte[]> response;
+        try {
+            response = exchange.get(requestTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            exchange.cancel(true);
+            throw new IOException("Превышено время загрузки изображения с URL: " + uri, e);
+        } catch (InterruptedException e) {
+            exchange.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Не удалось загрузить изображение с URL: " + uri, e.getCause());
+        }
+
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("Сервер вернул статус " + response.statusCode() + " для URL: " + uri);
+        }
+        byte[] data = response.body();
+        if (data.length == 0) {
+            throw new IOException("Загружено пустое изображение с URL: " + uri);
+        }
+        log.info("Успешно загружено изображение размером {} байт с URL: {}", data.length, uri);
+        return data;
+    }
+
+    private static URI toUri(String url) {
+        if (url == null || url.isBlank()) {
+            throw new IllegalArgumentException("URL изображения не задан");
+        }
+        try {
+            URI uri = new URI(url.trim());
+            String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase(Locale.ROOT) : "";
+            if (!scheme.equals("http") && !scheme.equals("https") || uri.getHost() == null) {
+                throw new IllegalArgumentException("Поддерживаются только http(s) URL изображений: " + url);
+            }
+            return uri;
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Некорректный URL изображения: " + url, e);
+        }
+    }
+
+    /**
+     * Собирает тело ответа в массив и обрывает загрузку, как только оно
+     * превысит лимит. Content-Length может отсутствовать, поэтому лимит
+     * проверяется и по мере чтения.
+     */
+    private static final class LimitedBodySubscriber implements HttpResponse.BodySubscriber<byte[]> {
+
+        private final HttpResponse.BodySubscriber<byte[]> delegate = HttpResponse.BodySubscribers.ofByteArray();
+        private final CompletableFuture<byte[]> body = new CompletableFuture<>();
+        private final URI uri;
+        private final long contentLength;
+        private final long maxBytes;
+        private Flow.Subscription subscription;
+        private long received;
+
+        LimitedBodySubscriber(URI uri, long contentLength, long maxBytes) {
+            this.uri = uri;
+            this.contentLength = contentLength;
+            this.maxBytes = maxBytes;
+            delegate.getBody().whenComplete((data, error) -> {
+                if (error != null) {
+                    body.completeExceptionally(error);
+                } else {
+                    body.complete(data);
+                }
+            });
+        }
+
+        @Override
+        public CompletionStage<byte[]> getBody() {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (contentLength > maxBytes) {
+                tooLarge();
+                return;
+            }
+            delegate.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            if (body.isDone()) {
+                return;
+            }
+            for (ByteBuffer buffer : buffers) {
+                received += buffer.remaining();
+            }
+            if (received > maxBytes) {
+                tooLarge();
+                return;
+            }
+            delegate.onNext(buffers);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            delegate.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            delegate.onComplete();
+        }
+
+        private void tooLarge() {
+            subscription.cancel();
+            body.completeExceptionally(new IOException("Изображение по URL " + uri + " больше " + maxBytes + " байт"));
+        }
+    }
+}
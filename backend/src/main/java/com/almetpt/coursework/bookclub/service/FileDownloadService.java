@@ -0,0 +1,143 @@
+package com.almetpt.coursework.bookclub.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HexFormat;
+
+/**
+ * Формирует ответы для скачивания файлов из хранилища.
+ * <p>
+ * Каждый ответ получает строгий ETag (хеш содержимого из контентного ключа,
+ * либо размер + время изменения для старых файлов) и Last-Modified.
+ * Условные запросы с {@code If-None-Match}/{@code If-Modified-Since}
+ * получают 304 без тела. Заголовок {@code Range} (в том числе несколько
+ * диапазонов) обрабатывается Spring MVC для тел типа {@link Resource}:
+ * ответ 206, при нескольких диапазонах - multipart/byteranges.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FileDownloadService {
+
+    private final FileStorageService fileStorageService;
+
+    public ResponseEntity<Resource> serveStoredFile(String storageKey,
+                                                   MediaType contentType,
+                                                   CacheControl cacheControl,
+                                                   ContentDisposition contentDisposition,
+                                                   WebRequest request) throws IOException {
+        Resource resource = storageKey != null ? fileStorageService.loadAsResource(storageKey) : null;
+        if (resource == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return serve(resource, computeETag(storageKey, resource), resource.lastModified(),
+                contentType, cacheControl, contentDisposition, request);
+    }
+
+    public ResponseEntity<Resource> serveCover(CoverImageCache.CachedCover cover,
+                                              CacheControl cacheControl,
+                                              WebRequest request) throws IOException {
+        MediaType contentType = MediaType.parseMediaType(cover.contentType());
+        if (!cover.isInMemory()) {
+            return serveStoredFile(cover.storageKey(), contentType, cacheControl, null, request);
+        }
+        return serve(new ByteArrayResource(cover.data()), cover.eTag(), cover.lastModified(),
+                contentType, cacheControl, null, request);
+    }
+
+    /**
+     * Строгий ETag файла хранилища: хеш из контентного ключа,
+     * для старых файлов - размер и время изменения.
+     */
+    public static String computeETag(String storageKey, Resource resource) throws IOException {
+        String contentHash = FileStorageService.extractContentHash(storageKey);
+        if (contentHash != null) {
+            return contentHash;
+        }
+        return Long.toHexString(resource.contentLength()) + "-" + Long.toHexString(resource.lastModified());
+    }
+
+    public static String computeETag(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Алгоритм SHA-256 недоступен", e);
+        }
+    }
+
+    private ResponseEntity<Resource> serve(Resource resource,
+                                           String eTag,
+                                           long lastModified,
+                                           MediaType contentType,
+                                           CacheControl cacheControl,
+                                           ContentDisposition contentDisposition,
+                                           WebRequest request) throws IOException {
+        String quotedETag = "\"" + eTag + "\"";
+
+        if (request.checkNotModified(quotedETag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(quotedETag)
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(contentType)
+                .cacheControl(cacheControl)
+                .eTag(quotedETag)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (lastModified > 0) {
+            builder.lastModified(lastModified);
+        }
+        if (contentDisposition != null) {
+            builder.header(HttpHeaders.CONTENT_DISPOSITION, contentDisposition.toString());
+        }
+
+        // If-Range не совпал: файл изменился с момента первой загрузки, поэтому
+        // отдаем его целиком. Для InputStreamResource Spring не применяет Range.
+        if (request.getHeader(HttpHeaders.RANGE) != null
+                && !isIfRangeSatisfied(request.getHeader(HttpHeaders.IF_RANGE), quotedETag, lastModified)) {
+            log.debug("Условие If-Range не выполнено, файл будет отправлен полностью");
+            return builder.contentLength(resource.contentLength())
+                    .body(new InputStreamResource(resource.getInputStream()));
+        }
+
+        return builder.body(resource);
+    }
+
+    private static boolean isIfRangeSatisfied(String ifRange, String quotedETag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // Для Range допускается только строгое сравнение
+            return ifRange.equals(quotedETag);
+        }
+        try {
+            long ifRangeMillis = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME)
+                    .toInstant().toEpochMilli();
+            return lastModified > 0 && lastModified / 1000 == ifRangeMillis / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+}
@@ -1,64 +1,215 @@
 package com.almetpt.coursework.bookclub.service;
 
+import com.almetpt.coursework.bookclub.repository.BookRepository;
+import com.almetpt.coursework.bookclub.repository.ProductRepository;
+import com.almetpt.coursework.bookclub.utils.TransactionCallbacks;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.util.UUID;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+/**
+ * Файловое хранилище с адресацией по содержимому.
+ * <p>
+ * Ключ файла имеет вид {@code ab/cd/<sha256>.ext}: первые два байта хеша
+ * задают подкаталоги, чтобы в одной директории не скапливались тысячи файлов.
+ * Одинаковое содержимое хранится на диске один раз. Старые ключи (плоские
+ * UUID-имена) по-прежнему читаются и удаляются.
+ * <p>
+ * Из-за дедупликации файл нельзя удалять в запросе: проверка ссылок и
+ * удаление не атомарны, а загрузка того же содержимого в другой
+ * транзакции может как раз ссылаться на этот ключ. Поэтому
+ * {@link #deleteFile} только освобождает ключ после коммита, а
+ * {@link #sweepReleased} удаляет его спустя {@code file.storage.delete-grace-ms},
+ * заново проверив ссылки. Повторная загрузка обновляет время изменения
+ * файла, и такой файл очистка пропускает. Очередь очистки хранится в
+ * памяти: ключи, освобожденные перед остановкой, остаются на диске.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class FileStorageService {
 
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final String TEMP_DIRECTORY = ".tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Pattern EXTENSION_PATTERN = Pattern.compile("[a-z0-9]{1,10}");
+    private static final Pattern CONTENT_KEY_PATTERN =
+            Pattern.compile("[0-9a-f]{2}/[0-9a-f]{2}/([0-9a-f]{64}(?:-[a-z0-9]{1,16})?)(\\.[a-z0-9]{1,10})?");
+    private static final Pattern SUFFIX_PATTERN = Pattern.compile("[a-z0-9]{1,16}");
+    private static final HexFormat HEX = HexFormat.of();
+    private static final int LOCK_STRIPES = 64;
+
+    private final BookRepository bookRepository;
+    private final ProductRepository productRepository;
+
+    // Освобожденные ключи и время освобождения
+    private final Map<String, Long> released = new ConcurrentHashMap<>();
+    // Запись повторного содержимого и удаление того же ключа не идут одновременно
+    private final Object[] keyLocks = newLocks();
+
     @Value("${file.upload.directory:${user.home}/bookclub/uploads}")
     private String uploadDirectory;
 
+    @Value("${file.storage.delete-grace-ms:600000}")
+    private long deleteGraceMillis = 600_000;
+
     public String saveFile(MultipartFile file) throws IOException {
         if (file.isEmpty()) {
             throw new IOException("Не удалось сохранить пустой файл");
         }
+        try (InputStream inputStream = file.getInputStream()) {
+            return saveStream(inputStream, extractExtension(file.getOriginalFilename()));
+        }
+    }
 
-        // Генерируем уникальное имя файла, сохраняя расширение
-        String originalFilename = file.getOriginalFilename();
-        String extension = "";
-        if (originalFilename != null && originalFilename.contains(".")) {
-            extension = originalFilename.substring(originalFilename.lastIndexOf("."));
+    public String saveBytes(byte[] data, String extension) throws IOException {
+        if (data == null || data.length == 0) {
+            throw new IOException("Не удалось сохранить пустой файл");
         }
+        return saveStream(new ByteArrayInputStream(data), extension);
+    }
 
-        String filename = UUID.randomUUID().toString() + extension;
+    /**
+     * Потоково записывает данные во временный файл, одновременно считая SHA-256,
+     * и затем атомарно переносит файл на место его контентного ключа.
+     * Если файл с таким содержимым уже есть, временный файл просто удаляется.
+     *
+     * @param extension расширение без точки или с ней; может быть {@code null}
+     * @return ключ сохраненного файла
+     */
+    public String saveStream(InputStream inputStream, String extension) throws IOException {
+        Path root = getRootPath();
+        Path tempDirectory = root.resolve(TEMP_DIRECTORY);
+        Files.createDirectories(tempDirectory);
 
-        // Создаем директорию, если она не существует
-        Path uploadPath = Paths.get(uploadDirectory);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
-            log.info("Создана директория для загрузки: {}", uploadPath);
+        Path tempFile = Files.createTempFile(tempDirectory, "upload-", ".part");
+        try {
+            MessageDigest digest = newDigest();
+            long size;
+            try (ReadableByteChannel source = Channels.newChannel(inputStream);
+                 FileChannel target = FileChannel.open(tempFile, StandardOpenOption.WRITE,
+                         StandardOpenOption.TRUNCATE_EXISTING)) {
+                size = copyDigesting(source, target, digest);
+            }
+            if (size == 0) {
+                throw new IOException("Не удалось сохранить пустой файл");
+            }
+
+            String key = buildKey(HEX.formatHex(digest.digest()), normalizeExtension(extension));
+            Path destination = root.resolve(key);
+            synchronized (lockFor(key)) {
+                if (Files.exists(destination)) {
+                    // Новое время изменения не дает очистке удалить файл, пока ссылка на него не закоммичена
+                    Files.setLastModifiedTime(destination, FileTime.fromMillis(System.currentTimeMillis()));
+                    log.info("Файл с таким содержимым уже сохранен, повторная запись пропущена: {}", key);
+                    return key;
+                }
+
+                Files.createDirectories(destination.getParent());
+                try {
+                    Files.move(tempFile, destination, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempFile, destination, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            log.info("Файл сохранен: {} ({} байт)", key, size);
+            return key;
+        } finally {
+            Files.deleteIfExists(tempFile);
         }
+    }
 
-        // Сохраняем файл
-        Path destinationFile = uploadPath.resolve(filename);
-        try (InputStream inputStream = file.getInputStream()) {
-            Files.copy(inputStream, destinationFile, StandardCopyOption.REPLACE_EXISTING);
-            log.info("Файл сохранен: {}", filename);
-            return filename;
+    /**
+     * Сохраняет производный файл (например, уменьшенную копию изображения)
+     * под ключом из {@link #derivedKey}. Содержимое производного файла
+     * однозначно определяется исходным, поэтому существующий файл просто
+     * перезаписывается.
+     */
+    public void saveDerived(String derivedKey, byte[] data) throws IOException {
+        Path destination = resolve(derivedKey);
+        Path tempDirectory = getRootPath().resolve(TEMP_DIRECTORY);
+        Files.createDirectories(tempDirectory);
+        Files.createDirectories(destination.getParent());
+
+        Path tempFile = Files.createTempFile(tempDirectory, "derived-", ".part");
+        try {
+            Files.write(tempFile, data);
+            try {
+                Files.move(tempFile, destination, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, destination, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    public boolean exists(String filename) {
+        try {
+            return filename != null && Files.isRegularFile(resolve(filename));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return размер файла в байтах или -1, если файла нет
+     */
+    public long size(String filename) {
+        try {
+            return filename != null ? Files.size(resolve(filename)) : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Путь к существующему файлу для потокового чтения, например при
+     * отправке вложения письма, или {@code null}, если файла нет.
+     */
+    public Path findPath(String filename) {
+        try {
+            Path file = resolve(filename);
+            return Files.isRegularFile(file) ? file : null;
+        } catch (IOException e) {
+            return null;
         }
     }
 
     public Resource loadAsResource(String filename) {
         try {
-            Path file = Paths.get(uploadDirectory).resolve(filename);
+            Path file = resolve(filename);
             Resource resource = new FileSystemResource(file);
-            if (resource.exists() || resource.isReadable()) {
+            if (resource.exists() && resource.isReadable()) {
                 return resource;
             } else {
                 throw new IOException("Не удалось прочитать файл: " + filename);
@@ -69,31 +220,178 @@ public class FileStorageService {
         }
     }
 
-    // Добавляем метод getFileData для получения байтовых данных файла
-    public byte[] getFileData(String filename) throws IOException {
-        try {
-            Path filePath = Path.of(uploadDirectory).resolve(filename).normalize();
-            log.info("Загрузка файла из: {}", filePath);
+    /**
+     * Освобождает файл, на который запись перестала ссылаться. Внутри
+     * транзакции ключ освобождается после коммита, при откате файл
+     * остается. Сам файл удаляет {@link #sweepReleased}, если на него
+     * больше не ссылается ни одна книга или продукт.
+     */
+    public void deleteFile(String filename) {
+        if (filename == null) {
+            return;
+        }
+        TransactionCallbacks.afterCommit(() -> released.put(filename, System.currentTimeMillis()));
+    }
+
+    @Scheduled(fixedDelayString = "${file.storage.sweep-interval-ms:60000}",
+            initialDelayString = "${file.storage.sweep-interval-ms:60000}")
+    public void sweepReleased() {
+        sweepReleased(System.currentTimeMillis());
+    }
 
-            if (!Files.exists(filePath)) {
-                log.error("Файл не найден: {}", filePath);
-                throw new IOException("Файл не найден: " + filename);
+    /**
+     * Удаляет освобожденные не позже {@code nowMillis - delete-grace-ms}
+     * файлы вместе с производными, если на них по-прежнему нет ссылок.
+     *
+     * @return число удаленных файлов
+     */
+    public int sweepReleased(long nowMillis) {
+        int deleted = 0;
+        for (Map.Entry<String, Long> entry : released.entrySet()) {
+            String filename = entry.getKey();
+            long releasedAt = entry.getValue();
+            if (nowMillis - releasedAt < deleteGraceMillis || !released.remove(filename, releasedAt)) {
+                continue;
+            }
+            if (isReferenced(filename)) {
+                log.info("Файл {} используется другими записями, удаление пропущено", filename);
+                continue;
+            }
+            try {
+                Path file = resolve(filename);
+                synchronized (lockFor(filename)) {
+                    if (Files.exists(file) && Files.getLastModifiedTime(file).toMillis() > releasedAt) {
+                        // Файл снова загрузили после освобождения: ждем, пока закоммитится новая ссылка
+                        released.putIfAbsent(filename, nowMillis);
+                        continue;
+                    }
+                    if (Files.deleteIfExists(file)) {
+                        deleted++;
+                        log.info("Файл удален: {}", filename);
+                    }
+                    deleteDerivedFiles(file);
+                }
+            } catch (IOException e) {
+                log.error("Ошибка удаления файла: {}", e.getMessage());
             }
+        }
+        return deleted;
+    }
 
-            return Files.readAllBytes(filePath);
-        } catch (IOException e) {
-            log.error("Ошибка при чтении файла {}: {}", filename, e.getMessage());
-            throw e;
+    /**
+     * Ключ производного файла рядом с исходным: {@code ab/cd/<sha256>-<suffix>.<ext>}.
+     * Для старых плоских имен - {@code <имя>-<suffix>.<ext>}.
+     */
+    public static String derivedKey(String sourceKey, String suffix, String extension) {
+        if (sourceKey == null || !SUFFIX_PATTERN.matcher(suffix).matches()) {
+            throw new IllegalArgumentException("Некорректный ключ производного файла: " + sourceKey + ", " + suffix);
         }
+        int slash = sourceKey.lastIndexOf('/');
+        int dot = sourceKey.lastIndexOf('.');
+        String base = dot > slash ? sourceKey.substring(0, dot) : sourceKey;
+        return base + "-" + suffix + "." + normalizeExtension(extension);
     }
 
-    public void deleteFile(String filename) {
+    /**
+     * Возвращает SHA-256 содержимого, зашитый в контентный ключ (для
+     * производных файлов - вместе с суффиксом), или {@code null} для
+     * старых плоских имен файлов.
+     */
+    public static String extractContentHash(String key) {
+        if (key == null) {
+            return null;
+        }
+        Matcher matcher = CONTENT_KEY_PATTERN.matcher(key);
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+
+    private boolean isReferenced(String filename) {
+        return bookRepository.existsByCoverImageFilename(filename)
+                || productRepository.existsByCoverImageFilenameOrElectronicProductFilename(filename, filename);
+    }
+
+    private void deleteDerivedFiles(Path file) throws IOException {
+        Path directory = file.getParent();
+        if (directory == null || !Files.isDirectory(directory)) {
+            return;
+        }
+        String name = file.getFileName().toString();
+        String base = name.contains(".") ? name.substring(0, name.lastIndexOf('.')) : name;
+        try (DirectoryStream<Path> derived = Files.newDirectoryStream(directory, base + "-*")) {
+            for (Path path : derived) {
+                Files.deleteIfExists(path);
+                log.info("Производный файл удален: {}", getRootPath().relativize(path));
+            }
+        }
+    }
+
+    private Object lockFor(String key) {
+        return keyLocks[Math.floorMod(key.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static Object[] newLocks() {
+        Object[] locks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        return locks;
+    }
+
+    private Path resolve(String filename) throws IOException {
+        Path root = getRootPath();
+        Path file = root.resolve(filename).normalize();
+        if (!file.startsWith(root)) {
+            throw new IOException("Недопустимый путь к файлу: " + filename);
+        }
+        return file;
+    }
+
+    private Path getRootPath() {
+        return Paths.get(uploadDirectory).toAbsolutePath().normalize();
+    }
+
+    private static long copyDigesting(ReadableByteChannel source, FileChannel target, MessageDigest digest)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long total = 0;
+        while (source.read(buffer) != -1) {
+            buffer.flip();
+            digest.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                total += target.write(buffer);
+            }
+            buffer.clear();
+        }
+        return total;
+    }
+
+    private static String buildKey(String hash, String extension) {
+        String name = extension.isEmpty() ? hash : hash + "." + extension;
+        return hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + name;
+    }
+
+    private static String extractExtension(String originalFilename) {
+        if (originalFilename == null || !originalFilename.contains(".")) {
+            return "";
+        }
+        return originalFilename.substring(originalFilename.lastIndexOf('.') + 1);
+    }
+
+    private static String normalizeExtension(String extension) {
+        if (extension == null) {
+            return "";
+        }
+        String normalized = extension.startsWith(".") ? extension.substring(1) : extension;
+        normalized = normalized.toLowerCase(Locale.ROOT);
+        // Расширение берется из имени файла клиента, поэтому пропускаем только безопасные символы
+        return EXTENSION_PATTERN.matcher(normalized).matches() ? normalized : "";
+    }
+
+    private static MessageDigest newDigest() {
         try {
-            Path file = Paths.get(uploadDirectory).resolve(filename);
-            Files.deleteIfExists(file);
-            log.info("Файл удален: {}", filename);
-        } catch (IOException e) {
-            log.error("Ошибка удаления файла: {}", e.getMessage());
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Алгоритм " + DIGEST_ALGORITHM + " недоступен", e);
         }
     }
 }
@@ -0,0 +1,265 @@
+package com.almetpt.coursework.bookclub.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Уменьшенные копии изображений (обложек и аватаров).
+ * <p>
+ * Исходник декодируется один раз (для больших изображений - с
+ * прореживанием при чтении, чтобы не держать в памяти полный растр),
+ * после чего из него каскадом строятся размеры {@link ImageSize}: каждый
+ * следующий масштабируется из предыдущего. Результат кодируется в JPEG и
+ * сохраняется под собственным ключом рядом с исходным файлом.
+ * Поддерживаются форматы, которые умеет читать ImageIO (JPEG, PNG, GIF, BMP);
+ * для остальных отдается исходный файл.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ImageProcessingService {
+
+    public enum ImageSize {
+        THUMB("thumb", 160),
+        SMALL("small", 320),
+        WEB("web", 1280),
+        ORIGINAL("original", 0);
+
+        private final String param;
+        private final int maxDimension;
+
+        ImageSize(String param, int maxDimension) {
+            this.param = param;
+            this.maxDimension = maxDimension;
+        }
+
+        public String getParam() {
+            return param;
+        }
+
+        public int getMaxDimension() {
+            return maxDimension;
+        }
+
+        /**
+         * Разбирает значение параметра {@code ?size=}. Пустое значение - исходный файл.
+         */
+        public static ImageSize fromParam(String value) {
+            if (value == null || value.isBlank()) {
+                return ORIGINAL;
+            }
+            String normalized = value.trim().toLowerCase(Locale.ROOT);
+            return Arrays.stream(values())
+                    .filter(size -> size.param.equals(normalized))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Неизвестный размер изображения: " + value
+                            + ". Допустимые значения: " + Arrays.stream(values())
+                            .map(ImageSize::getParam)
+                            .collect(Collectors.joining(", "))));
+        }
+    }
+
+    private static final String RENDITION_EXTENSION = "jpg";
+    // От большего к меньшему: каждый размер масштабируется из предыдущего
+    private static final List<ImageSize> RENDITIONS = List.of(ImageSize.WEB, ImageSize.SMALL, ImageSize.THUMB);
+
+    private final FileStorageService fileStorageService;
+
+    @Value("${image.processing.jpeg-quality:0.82}")
+    private float jpegQuality = 0.82f;
+
+    @Value("${image.processing.max-source-pixels:100000000}")
+    private long maxSourcePixels = 100_000_000L;
+
+    /**
+     * Строит все размеры для файла хранилища, если их еще нет. Ошибки
+     * обработки не прерывают загрузку: в худшем случае отдается исходник.
+     */
+    public void generateRenditions(String storageKey) {
+        if (storageKey == null || renditionsExist(storageKey)) {
+            return;
+        }
+        try {
+            Resource resource = fileStorageService.loadAsResource(storageKey);
+            if (resource == null) {
+                return;
+            }
+            BufferedImage source;
+            try (ImageInputStream input = ImageIO.createImageInputStream(resource.getFile())) {
+                source = decode(input, ImageSize.WEB.getMaxDimension());
+            }
+            if (source == null) {
+                log.info("Файл {} не является поддерживаемым изображением, уменьшенные копии не создаются",
+                        storageKey);
+                return;
+            }
+
+            BufferedImage current = source;
+            for (ImageSize size : RENDITIONS) {
+                current = scaleToFit(current, size.getMaxDimension());
+                fileStorageService.saveDerived(renditionKey(storageKey, size), encodeJpeg(current));
+            }
+            log.info("Созданы уменьшенные копии изображения {} ({}x{})",
+                    storageKey, source.getWidth(), source.getHeight());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Не удалось создать уменьшенные копии изображения {}: {}", storageKey, e.getMessage());
+        }
+    }
+
+    /**
+     * Возвращает ключ файла нужного размера, при необходимости создавая его
+     * (для файлов, загруженных до появления уменьшенных копий).
+     *
+     * @return ключ или {@code null}, если файл не удалось обработать
+     */
+    public String getOrCreateRendition(String storageKey, ImageSize size) {
+        if (size == ImageSize.ORIGINAL) {
+            return storageKey;
+        }
+        String key = renditionKey(storageKey, size);
+        if (!fileStorageService.exists(key)) {
+            generateRenditions(storageKey);
+        }
+        return fileStorageService.exists(key) ? key : null;
+    }
+
+    /**
+     * Масштабирует изображение из памяти (для обложек, хранящихся в БД).
+     *
+     * @return JPEG или {@code null}, если данные не являются поддерживаемым изображением
+     */
+    public byte[] resize(byte[] data, ImageSize size) {
+        if (size == ImageSize.ORIGINAL) {
+            return data;
+        }
+        return renderJpeg(new ByteArrayInputStream(data), size.getMaxDimension());
+    }
+
+    /**
+     * Декодирует изображение и перекодирует его в JPEG с ограничением
+     * большей стороны.
+     *
+     * @return JPEG или {@code null}, если данные не являются поддерживаемым изображением
+     */
+    public byte[] renderJpeg(InputStream inputStream, int maxDimension) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(inputStream)) {
+            BufferedImage source = decode(input, maxDimension);
+            return source != null ? encodeJpeg(scaleToFit(source, maxDimension)) : null;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Не удалось обработать изображение: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    public static String renditionKey(String storageKey, ImageSize size) {
+        return FileStorageService.derivedKey(storageKey, size.getParam(), RENDITION_EXTENSION);
+    }
+
+    private boolean renditionsExist(String storageKey) {
+        return RENDITIONS.stream().allMatch(size -> fileStorageService.exists(renditionKey(storageKey, size)));
+    }
+
+    private BufferedImage decode(ImageInputStream input, int targetMaxDimension) throws IOException {
+        if (input == null) {
+            return null;
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            return null;
+        }
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(input, true, true);
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            if ((long) width * height > maxSourcePixels) {
+                throw new IOException("Изображение слишком большое: " + width + "x" + height);
+            }
+
+            // Прореживание при чтении: растр в памяти не больше чем вдвое крупнее нужного размера
+            ImageReadParam param = reader.getDefaultReadParam();
+            int subsampling = Math.max(1, Math.max(width, height) / (targetMaxDimension * 2));
+            if (subsampling > 1) {
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            }
+            return reader.read(0, param);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    private static BufferedImage scaleToFit(BufferedImage source, int maxDimension) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        // Уменьшение шагами не больше чем вдвое дает заметно меньше артефактов, чем один шаг
+        BufferedImage current = source;
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            current = draw(current, width, height);
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height) {
+        // JPEG не поддерживает прозрачность, поэтому фон заливается белым
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOutput = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(imageOutput);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            // Прогрессивный JPEG быстрее показывает превью на медленном соединении
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return output.toByteArray();
+    }
+}
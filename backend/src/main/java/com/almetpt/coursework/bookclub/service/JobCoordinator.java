@@ -0,0 +1,348 @@
+package com.almetpt.coursework.bookclub.service;
+
+import com.almetpt.coursework.bookclub.model.JobLock;
+import com.almetpt.coursework.bookclub.model.JobRun;
+import com.almetpt.coursework.bookclub.model.JobRunStatus;
+import com.almetpt.coursework.bookclub.model.JobTrigger;
+import com.almetpt.coursework.bookclub.repository.JobLockRepository;
+import com.almetpt.coursework.bookclub.repository.JobRunRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.webjars.NotFoundException;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Согласованный запуск фоновых задач на нескольких экземплярах приложения.
+ * <p>
+ * Перед запуском задача берет аренду в {@code job_locks} на время своего
+ * таймаута; экземпляры, не получившие аренду, запуск пропускают. Аренда
+ * держится не меньше {@code jobs.lock.min-hold-ms}, чтобы экземпляр с
+ * отстающими часами не повторил короткую задачу в ту же минуту. Каждый
+ * запуск пишется в {@code job_runs}; задача, не уложившаяся в таймаут,
+ * прерывается. Пока задача выполняется, аренда продлевается каждую треть
+ * таймаута, в том числе после таймаута, если задача не отреагировала на
+ * прерывание: аренда отпускается только после фактической остановки, а
+ * при падении экземпляра истекает сама.
+ */
+@Service
+@Slf4j
+public class JobCoordinator {
+
+    private static final int MAX_TEXT_LENGTH = 1000;
+
+    private record JobDefinition(String name, long timeoutMillis, Supplier<?> task) {
+    }
+
+    private final JobLockRepository jobLockRepository;
+    private final JobRunRepository jobRunRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final String instanceId;
+    private final long minHoldMillis;
+    private final int historyRetentionDays;
+    private final Map<String, JobDefinition> jobs = new ConcurrentHashMap<>();
+    private final Map<String, Long> localRuns = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+
+    public JobCoordinator(JobLockRepository jobLockRepository,
+                          JobRunRepository jobRunRepository,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${jobs.instance-id:}") String instanceId,
+                          @Value("${jobs.lock.min-hold-ms:30000}") long minHoldMillis,
+                          @Value("${jobs.history.retention-days:90}") int historyRetentionDays) {
+        this.jobLockRepository = jobLockRepository;
+        this.jobRunRepository = jobRunRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // По умолчанию pid@host: различается у экземпляров и на одной машине
+        this.instanceId = instanceId.isBlank() ? ManagementFactory.getRuntimeMXBean().getName() : instanceId;
+        this.minHoldMillis = minHoldMillis;
+        this.historyRetentionDays = historyRetentionDays;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "job-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("Координатор фоновых задач запущен, экземпляр {}", this.instanceId);
+    }
+
+    /**
+     * Регистрирует задачу. Ее результат записывается в историю строкой.
+     *
+     * @param timeoutMillis предельное время выполнения и срок аренды
+     * @throws IllegalArgumentException при неположительном таймауте
+     * @throws IllegalStateException    если задача с таким именем уже есть
+     */
+    public void register(String name, long timeoutMillis, Supplier<?> task) {
+        if (timeoutMillis < 1) {
+            throw new IllegalArgumentException("Таймаут задачи " + name + " должен быть положительным");
+        }
+        if (jobs.putIfAbsent(name, new JobDefinition(name, timeoutMillis, task)) != null) {
+            throw new IllegalStateException("Задача " + name + " уже зарегистрирована");
+        }
+    }
+
+    /**
+     * Запускает задачу в фоне, если удалось взять аренду.
+     *
+     * @param triggeredBy кто запустил вручную; {@code null} для расписания
+     * @return запись о запуске или пустой результат, если задача уже
+     * выполняется на этом или другом экземпляре
+     * @throws NotFoundException если задача не зарегистрирована
+     */
+    public Optional<JobRun> trigger(String name, JobTrigger trigger, String triggeredBy) {
+        return launch(name, trigger, triggeredBy, false);
+    }
+
+    /**
+     * Как {@link #trigger}, но ждет завершения запуска в вызывающем потоке.
+     *
+     * @return завершенный запуск или пустой результат, если задача уже выполняется
+     * @throws NotFoundException если задача не зарегистрирована
+     */
+    public Optional<JobRun> runAndWait(String name, JobTrigger trigger, String triggeredBy) {
+        return launch(name, trigger, triggeredBy, true);
+    }
+
+    private Optional<JobRun> launch(String name, JobTrigger trigger, String triggeredBy, boolean wait) {
+        JobDefinition job = jobs.get(name);
+        if (job == null) {
+            throw new NotFoundException("Задача не найдена: " + name);
+        }
+        String token = UUID.randomUUID().toString();
+        LocalDateTime now = LocalDateTime.now();
+        if (!tryAcquire(name, token, now, now.plusNanos(TimeUnit.MILLISECONDS.toNanos(job.timeoutMillis())))) {
+            log.info("Задача {} уже выполняется другим экземпляром, запуск пропущен", name);
+            return Optional.empty();
+        }
+
+        JobRun run = transactionTemplate.execute(status -> {
+            int abandoned = jobRunRepository.abandonRunning(name, now);
+            if (abandoned > 0) {
+                log.warn("Задача {}: {} незавершенных запусков помечены как прерванные", name, abandoned);
+            }
+            JobRun created = new JobRun();
+            created.setJobName(name);
+            created.setTrigger(trigger);
+            created.setStatus(JobRunStatus.RUNNING);
+            created.setInstanceId(instanceId);
+            created.setTriggeredBy(triggeredBy);
+            created.setStartedWhen(now);
+            return jobRunRepository.save(created);
+        });
+        localRuns.put(name, run.getId());
+        log.info("Задача {} запущена ({}), запуск {}", name, trigger, run.getId());
+        if (wait) {
+            execute(job, run, token);
+            return Optional.of(jobRunRepository.findById(run.getId()).orElse(run));
+        }
+        executor.execute(() -> execute(job, run, token));
+        return Optional.of(run);
+    }
+
+    public List<Map<String, Object>> getStatus() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        jobs.values().stream().sorted((a, b) -> a.name().compareTo(b.name())).forEach(job -> {
+            Map<String, Object> status = new LinkedHashMap<>();
+            JobLock lock = jobLockRepository.findById(job.name()).orElse(null);
+            boolean locked = lock != null && lock.getLockedUntil().isAfter(LocalDateTime.now());
+            List<JobRun> lastRun = jobRunRepository.findByJobNameOrderByStartedWhenDescIdDesc(job.name(), Limit.of(1));
+            status.put("name", job.name());
+            status.put("timeoutMs", job.timeoutMillis());
+            status.put("runningHere", localRuns.containsKey(job.name()));
+            status.put("lockedBy", locked ? lock.getLockedBy() : null);
+            status.put("lockedUntil", locked ? lock.getLockedUntil() : null);
+            status.put("lastRun", lastRun.isEmpty() ? null : lastRun.get(0));
+            result.add(status);
+        });
+        return result;
+    }
+
+    /**
+     * @throws NotFoundException если задача не зарегистрирована
+     */
+    public List<JobRun> getRuns(String name, int limit) {
+        if (!jobs.containsKey(name)) {
+            throw new NotFoundException("Задача не найдена: " + name);
+        }
+        return jobRunRepository.findByJobNameOrderByStartedWhenDescIdDesc(name, Limit.of(limit));
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Прерванные запуски пометит следующий экземпляр, получивший аренду
+        executor.shutdownNow();
+    }
+
+    private boolean tryAcquire(String name, String token, LocalDateTime now, LocalDateTime until) {
+        Integer updated = transactionTemplate.execute(status ->
+                jobLockRepository.acquireExpired(name, until, now, instanceId, token));
+        if (updated != null && updated > 0) {
+            return true;
+        }
+        if (jobLockRepository.existsById(name)) {
+            return false;
+        }
+        try {
+            // Отдельная транзакция: в PostgreSQL ошибка вставки делает текущую транзакцию непригодной
+            transactionTemplate.executeWithoutResult(status ->
+                    jobLockRepository.insertLock(name, until, now, instanceId, token));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    private void execute(JobDefinition job, JobRun run, String token) {
+        long started = System.nanoTime();
+        JobRunStatus status = JobRunStatus.SUCCEEDED;
+        String result = null;
+        String error = null;
+        CountDownLatch stopped = new CountDownLatch(1);
+        Future<?> future = executor.submit(() -> {
+            try {
+                return job.task().get();
+            } finally {
+                stopped.countDown();
+            }
+        });
+        try {
+            Object value = awaitRenewing(job, token, future, started);
+            result = value != null ? String.valueOf(value) : null;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            status = JobRunStatus.TIMED_OUT;
+            error = "Превышено время выполнения " + job.timeoutMillis() + " мс";
+        } catch (ExecutionException e) {
+            status = JobRunStatus.FAILED;
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            error = cause.getClass().getSimpleName() + ": " + cause.getMessage();
+            log.error("Задача {} завершилась ошибкой", job.name(), cause);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            status = JobRunStatus.ABANDONED;
+            error = "Выполнение прервано при остановке приложения";
+        }
+
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        LocalDateTime finished = LocalDateTime.now();
+        localRuns.remove(job.name(), run.getId());
+        try {
+            JobRunStatus finalStatus = status;
+            String finalResult = truncate(result);
+            String finalError = truncate(error);
+            transactionTemplate.executeWithoutResult(tx -> {
+                jobRunRepository.finish(run.getId(), finalStatus, finished, durationMillis, finalResult, finalError);
+                jobRunRepository.deleteStartedBefore(finished.minusDays(historyRetentionDays));
+            });
+        } catch (RuntimeException e) {
+            log.error("Не удалось сохранить итог запуска {} задачи {}", run.getId(), job.name(), e);
+        }
+        log.info("Задача {} завершена со статусом {} за {} мс", job.name(), status, durationMillis);
+        if (stopped.getCount() == 0) {
+            release(job, run, token);
+        } else {
+            // Задача не отреагировала на прерывание: аренда держится, пока она не остановится
+            try {
+                executor.execute(() -> holdUntilStopped(job, run, token, stopped));
+            } catch (RejectedExecutionException e) {
+                log.warn("Приложение останавливается, аренда задачи {} истечет сама", job.name());
+            }
+        }
+    }
+
+    /**
+     * Ждет результата задачи до таймаута, продлевая аренду.
+     *
+     * @throws TimeoutException если таймаут истек
+     */
+    private Object awaitRenewing(JobDefinition job, String token, Future<?> future, long started)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(job.timeoutMillis());
+        while (true) {
+            long left = timeoutNanos - (System.nanoTime() - started);
+            if (left <= 0) {
+                throw new TimeoutException();
+            }
+            try {
+                return future.get(Math.min(left, renewIntervalNanos(job)), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                extendLease(job, token);
+            }
+        }
+    }
+
+    private void holdUntilStopped(JobDefinition job, JobRun run, String token, CountDownLatch stopped) {
+        try {
+            while (!stopped.await(renewIntervalNanos(job), TimeUnit.NANOSECONDS)) {
+                extendLease(job, token);
+            }
+            log.info("Задача {} остановилась после таймаута, аренда отпущена", job.name());
+            release(job, run, token);
+        } catch (InterruptedException e) {
+            // Остановка приложения: аренда истечет сама
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void extendLease(JobDefinition job, String token) {
+        LocalDateTime until = LocalDateTime.now().plusNanos(TimeUnit.MILLISECONDS.toNanos(job.timeoutMillis()));
+        try {
+            Integer extended = transactionTemplate.execute(tx -> jobLockRepository.extend(job.name(), token, until));
+            if (extended == null || extended == 0) {
+                log.warn("Аренда задачи {} перешла к другому экземпляру во время выполнения", job.name());
+            }
+        } catch (RuntimeException e) {
+            log.error("Не удалось продлить аренду задачи {}", job.name(), e);
+        }
+    }
+
+    private void release(JobDefinition job, JobRun run, String token) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime holdUntil = run.getStartedWhen().plusNanos(TimeUnit.MILLISECONDS.toNanos(minHoldMillis));
+        LocalDateTime releaseAt = holdUntil.isAfter(now) ? holdUntil : now;
+        try {
+            transactionTemplate.executeWithoutResult(tx -> jobLockRepository.release(job.name(), token, releaseAt));
+        } catch (RuntimeException e) {
+            log.error("Не удалось отпустить аренду задачи {}", job.name(), e);
+        }
+    }
+
+    private static long renewIntervalNanos(JobDefinition job) {
+        return Math.max(1, TimeUnit.MILLISECONDS.toNanos(job.timeoutMillis()) / 3);
+    }
+
+    private static String truncate(String value) {
+        return value != null && value.length() > MAX_TEXT_LENGTH ? value.substring(0, MAX_TEXT_LENGTH) : value;
+    }
+}
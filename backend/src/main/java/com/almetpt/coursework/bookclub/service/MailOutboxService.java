@@ -0,0 +1,488 @@
+package com.almetpt.coursework.bookclub.service;
+
+import com.almetpt.coursework.bookclub.model.MailOutboxMessage;
+import com.almetpt.coursework.bookclub.model.MailOutboxStatus;
+import com.almetpt.coursework.bookclub.repository.MailOutboxRepository;
+import jakarta.activation.FileDataSource;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Очередь исходящей почты (transactional outbox).
+ * <p>
+ * {@link #enqueue} только сохраняет письмо в {@code mail_outbox} в текущей
+ * транзакции вызывающего кода: если она откатится, письмо не уйдет, а
+ * обмен с SMTP не держит соединение с БД и блокировки. {@link #enqueueAll}
+ * пишет рассылку по многим адресам JDBC-пачками. {@link #processDue}
+ * забирает пачку готовых писем меткой захвата, делит ее на SMTP-сессии по
+ * {@code session-size} писем (одно соединение на сессию) и отправляет
+ * сессии параллельно пулом потоков {@code mail-outbox-N}. Неудачная попытка откладывает письмо с
+ * экспоненциальной задержкой; после {@code max-attempts} попыток или при
+ * заведомо неисправимой ошибке (адрес, формат) письмо переходит в DEAD.
+ * Письма, застрявшие в SENDING дольше {@code sending-timeout-ms}, например
+ * после остановки приложения, возвращаются в очередь.
+ */
+@Service
+@Slf4j
+public class MailOutboxService {
+
+    /**
+     * Вложение: имя файла в хранилище и имя, под которым его увидит получатель.
+     */
+    public record Attachment(String storedFilename, String displayName) {
+    }
+
+    static final int MAX_ERROR_LENGTH = 1000;
+
+    private static final int INSERT_BATCH_SIZE = 100;
+
+    private static final String RECIPIENT_SEPARATOR = ",";
+    private static final String ATTACHMENT_SEPARATOR = "\n";
+    private static final String ATTACHMENT_NAME_SEPARATOR = "\t";
+
+    private final MailOutboxRepository mailOutboxRepository;
+    private final JavaMailSender javaMailSender;
+    private final FileStorageService fileStorageService;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final ThreadPoolExecutor executor;
+    private final String from;
+    private final int batchSize;
+    private final int sessionSize;
+    private final int maxAttempts;
+    private final long backoffBaseMillis;
+    private final long backoffMaxMillis;
+    private final long sendingTimeoutMillis;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder dead = new LongAdder();
+    private final LongAdder sessions = new LongAdder();
+    private final LongAdder sendNanos = new LongAdder();
+
+    public MailOutboxService(MailOutboxRepository mailOutboxRepository,
+                             JavaMailSender javaMailSender,
+                             FileStorageService fileStorageService,
+                             PlatformTransactionManager transactionManager,
+                             EntityManager entityManager,
+                             @Value("${mail.outbox.from:spring.project.42@mail.ru}") String from,
+                             @Value("${mail.outbox.threads:4}") int threads,
+                             @Value("${mail.outbox.batch-size:50}") int batchSize,
+                             @Value("${mail.outbox.session-size:20}") int sessionSize,
+                             @Value("${mail.outbox.max-attempts:6}") int maxAttempts,
+                             @Value("${mail.outbox.backoff-base-ms:30000}") long backoffBaseMillis,
+                             @Value("${mail.outbox.backoff-max-ms:3600000}") long backoffMaxMillis,
+                             @Value("${mail.outbox.sending-timeout-ms:600000}") long sendingTimeoutMillis) {
+        if (threads < 1 || batchSize < 1 || sessionSize < 1 || maxAttempts < 1 || backoffBaseMillis < 0) {
+            throw new IllegalArgumentException("Параметры очереди почты должны быть положительными");
+        }
+        this.mailOutboxRepository = mailOutboxRepository;
+        this.javaMailSender = javaMailSender;
+        this.fileStorageService = fileStorageService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.entityManager = entityManager;
+        this.from = from;
+        this.batchSize = batchSize;
+        this.sessionSize = sessionSize;
+        this.maxAttempts = maxAttempts;
+        this.backoffBaseMillis = backoffBaseMillis;
+        this.backoffMaxMillis = Math.max(backoffMaxMillis, backoffBaseMillis);
+        this.sendingTimeoutMillis = sendingTimeoutMillis;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "mail-outbox-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        log.info("Очередь почты: {} потоков, пачка {}, сессия {}, попыток {}, задержка {}..{} мс",
+                threads, batchSize, sessionSize, maxAttempts, backoffBaseMillis, this.backoffMaxMillis);
+    }
+
+    @Transactional
+    public Long enqueue(String recipient, String subject, String body) {
+        return enqueue(List.of(recipient), subject, body, List.of());
+    }
+
+    @Transactional
+    public Long enqueue(Collection<String> recipients, String subject, String body) {
+        return enqueue(recipients, subject, body, List.of());
+    }
+
+    /**
+     * Ставит письмо в очередь в транзакции вызывающего кода.
+     *
+     * @return id письма в очереди
+     * @throws IllegalArgumentException если нет получателей
+     */
+    @Transactional
+    public Long enqueue(Collection<String> recipients, String subject, String body, List<Attachment> attachments) {
+        if (recipients == null || recipients.isEmpty()) {
+            throw new IllegalArgumentException("Не указаны получатели письма");
+        }
+        MailOutboxMessage message = newMessage(String.join(RECIPIENT_SEPARATOR, recipients), subject, body,
+                null, LocalDateTime.now());
+        message.setAttachments(joinAttachments(attachments));
+        Long id = mailOutboxRepository.save(message).getId();
+        enqueued.increment();
+        log.debug("Письмо '{}' поставлено в очередь под номером {}", subject, id);
+        return id;
+    }
+
+    /**
+     * Убирает из очереди письмо, поставленное в текущей транзакции, когда
+     * оно оказалось не нужно.
+     */
+    @Transactional
+    public void discard(Long id) {
+        mailOutboxRepository.deleteById(id);
+        enqueued.decrement();
+        log.debug("Письмо {} убрано из очереди", id);
+    }
+
+    /**
+     * Ставит в очередь рассылку: отдельное письмо каждому адресу, все с
+     * ключом {@code groupKey}. Строки вставляются JDBC-пачками в
+     * транзакции вызывающего кода. После каждой пачки отсоединяются только
+     * вставленные письма: сущности вызывающего кода остаются управляемыми.
+     *
+     * @return число писем
+     */
+    @Transactional
+    public int enqueueAll(String groupKey, Collection<String> recipients, String subject, String body) {
+        if (recipients.isEmpty()) {
+            return 0;
+        }
+        Session session = entityManager.unwrap(Session.class);
+        Integer previousBatchSize = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(INSERT_BATCH_SIZE);
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            int count = 0;
+            List<MailOutboxMessage> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+            for (String recipient : recipients) {
+                MailOutboxMessage message = newMessage(recipient, subject, body, groupKey, now);
+                entityManager.persist(message);
+                batch.add(message);
+                count++;
+                if (batch.size() == INSERT_BATCH_SIZE) {
+                    flushAndDetach(batch);
+                }
+            }
+            flushAndDetach(batch);
+            enqueued.add(count);
+            log.info("Рассылка {} '{}': в очередь поставлено {} писем", groupKey, subject, count);
+            return count;
+        } finally {
+            session.setJdbcBatchSize(previousBatchSize);
+        }
+    }
+
+    private void flushAndDetach(List<MailOutboxMessage> batch) {
+        entityManager.flush();
+        batch.forEach(entityManager::detach);
+        batch.clear();
+    }
+
+    /**
+     * Ход рассылки: число писем с ключом {@code groupKey} по статусам и всего.
+     */
+    public Map<String, Long> getGroupProgress(String groupKey) {
+        Map<MailOutboxStatus, Long> byStatus = toStatusMap(mailOutboxRepository.countByStatusForGroup(groupKey));
+        Map<String, Long> result = new LinkedHashMap<>();
+        long total = 0;
+        for (Map.Entry<MailOutboxStatus, Long> entry : byStatus.entrySet()) {
+            result.put(entry.getKey().name().toLowerCase(Locale.ROOT), entry.getValue());
+            total += entry.getValue();
+        }
+        result.put("total", total);
+        return result;
+    }
+
+    public int processDue() {
+        return processDue(LocalDateTime.now());
+    }
+
+    /**
+     * Отправляет письма, срок попытки которых наступил к {@code now}, пока
+     * очередь не опустеет. Возвращается после завершения всех отправок.
+     *
+     * @return число обработанных писем (доставленных и неудачных)
+     */
+    public int processDue(LocalDateTime now) {
+        Integer released = transactionTemplate.execute(status ->
+                mailOutboxRepository.releaseStale(now.minusNanos(TimeUnit.MILLISECONDS.toNanos(sendingTimeoutMillis))));
+        if (released != null && released > 0) {
+            log.warn("В очередь почты возвращено {} зависших писем", released);
+        }
+
+        int total = 0;
+        while (true) {
+            String token = UUID.randomUUID().toString();
+            List<MailOutboxMessage> batch = transactionTemplate.execute(status -> {
+                List<Long> ids = mailOutboxRepository.findDueIds(now, Limit.of(batchSize));
+                if (ids.isEmpty() || mailOutboxRepository.claim(ids, token, LocalDateTime.now()) == 0) {
+                    return List.of();
+                }
+                return mailOutboxRepository.findByClaimToken(token);
+            });
+            if (batch == null || batch.isEmpty()) {
+                return total;
+            }
+            List<CompletableFuture<Void>> deliveries = new ArrayList<>();
+            for (int start = 0; start < batch.size(); start += sessionSize) {
+                List<MailOutboxMessage> chunk = batch.subList(start, Math.min(start + sessionSize, batch.size()));
+                deliveries.add(CompletableFuture.runAsync(() -> deliverSession(chunk, token, now), executor));
+            }
+            CompletableFuture.allOf(deliveries.toArray(CompletableFuture[]::new)).join();
+            total += batch.size();
+            if (batch.size() < batchSize) {
+                return total;
+            }
+        }
+    }
+
+    /**
+     * Возвращает недоставленные письма в очередь со сброшенным счетчиком попыток.
+     *
+     * @return число писем
+     */
+    public int requeueDead() {
+        Integer count = transactionTemplate.execute(status -> mailOutboxRepository.requeueDead(LocalDateTime.now()));
+        log.info("В очередь почты возвращено {} недоставленных писем", count);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Удаляет доставленные письма, отправленные раньше {@code cutoff}.
+     *
+     * @return число удаленных писем
+     */
+    public int purgeSent(LocalDateTime cutoff) {
+        Integer count = transactionTemplate.execute(status -> mailOutboxRepository.deleteSentBefore(cutoff));
+        log.info("Из очереди почты удалено {} доставленных писем старше {}", count, cutoff);
+        return count != null ? count : 0;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<MailOutboxStatus, Long> byStatus = toStatusMap(mailOutboxRepository.countByStatus());
+        long sentCount = sent.sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("pending", byStatus.get(MailOutboxStatus.PENDING));
+        result.put("sending", byStatus.get(MailOutboxStatus.SENDING));
+        result.put("sentStored", byStatus.get(MailOutboxStatus.SENT));
+        result.put("deadStored", byStatus.get(MailOutboxStatus.DEAD));
+        result.put("enqueued", enqueued.sum());
+        result.put("sent", sentCount);
+        result.put("retried", retried.sum());
+        result.put("dead", dead.sum());
+        result.put("sessions", sessions.sum());
+        result.put("avgSendMillis", sentCount > 0 ? sendNanos.sum() / sentCount / 1_000_000 : 0);
+        result.put("activeWorkers", executor.getActiveCount());
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Незавершенные письма останутся в SENDING и вернутся в очередь по таймауту
+        executor.shutdownNow();
+    }
+
+    // Одна SMTP-сессия: письма готовятся по отдельности и уходят одним вызовом через одно соединение
+    private void deliverSession(List<MailOutboxMessage> chunk, String token, LocalDateTime now) {
+        Map<MimeMessage, MailOutboxMessage> prepared = new LinkedHashMap<>();
+        for (MailOutboxMessage message : chunk) {
+            try {
+                prepared.put(prepare(message), message);
+            } catch (MessagingException | MailException e) {
+                fail(message, token, now, e, true);
+            } catch (RuntimeException e) {
+                log.error("Ошибка подготовки письма {}", message.getId(), e);
+                fail(message, token, now, e, true);
+            }
+        }
+        if (prepared.isEmpty()) {
+            return;
+        }
+
+        long started = System.nanoTime();
+        Map<Object, Exception> failures = Map.of();
+        try {
+            javaMailSender.send(prepared.keySet().toArray(MimeMessage[]::new));
+        } catch (MailSendException e) {
+            // Без списка отказов ошибка относится ко всей сессии
+            failures = e.getFailedMessages().isEmpty() ? allFailed(prepared, e) : e.getFailedMessages();
+        } catch (MailException e) {
+            failures = allFailed(prepared, e);
+        } catch (RuntimeException e) {
+            log.error("Ошибка SMTP-сессии на {} писем", prepared.size(), e);
+            failures = allFailed(prepared, e);
+        }
+        sessions.increment();
+
+        List<Long> sentIds = new ArrayList<>(prepared.size());
+        for (Map.Entry<MimeMessage, MailOutboxMessage> entry : prepared.entrySet()) {
+            Exception error = failures.get(entry.getKey());
+            if (error != null) {
+                fail(entry.getValue(), token, now, error, error instanceof MailParseException);
+            } else {
+                sentIds.add(entry.getValue().getId());
+            }
+        }
+        if (!sentIds.isEmpty()) {
+            sendNanos.add(System.nanoTime() - started);
+            sent.add(sentIds.size());
+            transactionTemplate.executeWithoutResult(status ->
+                    mailOutboxRepository.markSent(sentIds, token, LocalDateTime.now()));
+            log.info("Отправлено {} из {} писем за сессию", sentIds.size(), prepared.size());
+        }
+    }
+
+    private MimeMessage prepare(MailOutboxMessage message) throws MessagingException {
+        MimeMessage mimeMessage = javaMailSender.createMimeMessage();
+        List<Attachment> attachments = splitAttachments(message.getAttachments());
+        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, !attachments.isEmpty(), "UTF-8");
+        helper.setFrom(from);
+        helper.setTo(message.getRecipients().split(RECIPIENT_SEPARATOR));
+        helper.setSubject(message.getSubject());
+        helper.setText(message.getBody(), false);
+        for (Attachment attachment : attachments) {
+            Path file = fileStorageService.findPath(attachment.storedFilename());
+            if (file == null) {
+                log.warn("Вложение {} письма {} не найдено и пропущено", attachment.storedFilename(), message.getId());
+                continue;
+            }
+            // Файл читается с диска прямо в сокет при отправке, а не загружается в память целиком
+            FileDataSource dataSource = new FileDataSource(file.toFile());
+            dataSource.setFileTypeMap(helper.getFileTypeMap());
+            helper.addAttachment(attachment.displayName(), dataSource);
+        }
+        return mimeMessage;
+    }
+
+    private static Map<Object, Exception> allFailed(Map<MimeMessage, MailOutboxMessage> prepared, Exception error) {
+        Map<Object, Exception> result = new IdentityHashMap<>();
+        for (MimeMessage mimeMessage : prepared.keySet()) {
+            result.put(mimeMessage, error);
+        }
+        return result;
+    }
+
+    private void fail(MailOutboxMessage message, String token, LocalDateTime now, Exception error, boolean permanent) {
+        int attempt = message.getAttempts() + 1;
+        boolean giveUp = permanent || attempt >= maxAttempts;
+        MailOutboxStatus status = giveUp ? MailOutboxStatus.DEAD : MailOutboxStatus.PENDING;
+        LocalDateTime nextAttemptAt = giveUp ? now : now.plusNanos(TimeUnit.MILLISECONDS.toNanos(backoffMillis(attempt)));
+        String reason = truncate(error.getClass().getSimpleName() + ": " + error.getMessage());
+        transactionTemplate.executeWithoutResult(s ->
+                mailOutboxRepository.markFailed(message.getId(), token, status, nextAttemptAt, reason));
+        if (giveUp) {
+            dead.increment();
+            log.error("Письмо {} не доставлено после {} попыток: {}", message.getId(), attempt, reason);
+        } else {
+            retried.increment();
+            log.warn("Попытка {} отправки письма {} не удалась, следующая в {}: {}",
+                    attempt, message.getId(), nextAttemptAt, reason);
+        }
+    }
+
+    // base * 2^(attempt-1), но не больше max
+    long backoffMillis(int attempt) {
+        int shift = Math.min(attempt - 1, 30);
+        long delay = backoffBaseMillis << shift;
+        return delay < 0 || delay > backoffMaxMillis ? backoffMaxMillis : delay;
+    }
+
+    private static MailOutboxMessage newMessage(String recipients, String subject, String body,
+                                                String groupKey, LocalDateTime now) {
+        MailOutboxMessage message = new MailOutboxMessage();
+        message.setRecipients(recipients);
+        message.setSubject(subject);
+        message.setBody(body);
+        message.setGroupKey(groupKey);
+        message.setStatus(MailOutboxStatus.PENDING);
+        message.setNextAttemptAt(now);
+        message.setCreatedWhen(now);
+        return message;
+    }
+
+    private static Map<MailOutboxStatus, Long> toStatusMap(List<Object[]> rows) {
+        Map<MailOutboxStatus, Long> result = new EnumMap<>(MailOutboxStatus.class);
+        for (MailOutboxStatus status : MailOutboxStatus.values()) {
+            result.put(status, 0L);
+        }
+        for (Object[] row : rows) {
+            result.put((MailOutboxStatus) row[0], ((Number) row[1]).longValue());
+        }
+        return result;
+    }
+
+    private static String joinAttachments(List<Attachment> attachments) {
+        if (attachments == null || attachments.isEmpty()) {
+            return null;
+        }
+        List<String> lines = new ArrayList<>(attachments.size());
+        for (Attachment attachment : attachments) {
+            lines.add(attachment.storedFilename() + ATTACHMENT_NAME_SEPARATOR + attachment.displayName());
+        }
+        return String.join(ATTACHMENT_SEPARATOR, lines);
+    }
+
+    private static List<Attachment> splitAttachments(String value) {
+        if (value == null || value.isEmpty()) {
+            return List.of();
+        }
+        List<Attachment> result = new ArrayList<>();
+        for (String line : value.split(ATTACHMENT_SEPARATOR)) {
+            int tab = line.indexOf(ATTACHMENT_NAME_SEPARATOR);
+            result.add(tab < 0
+                    ? new Attachment(line, line)
+                    : new Attachment(line.substring(0, tab), line.substring(tab + 1)));
+        }
+        return result;
+    }
+
+    private static String truncate(String value) {
+        if (value == null || value.length() <= MAX_ERROR_LENGTH) {
+            return value;
+        }
+        return value.substring(0, MAX_ERROR_LENGTH - 3) + "...";
+    }
+}
@@ -0,0 +1,63 @@
+package com.almetpt.coursework.bookclub.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Тексты писем по шаблонам Thymeleaf из {@code templates/mail/*.txt}.
+ * <p>
+ * Отдельный движок в текстовом режиме, не связанный с веб-представлениями.
+ * Разобранные шаблоны кешируются движком, выражения SpEL компилируются в
+ * байткод после первых вызовов, поэтому повторная отрисовка не читает и не
+ * разбирает файл. Рассылка на много адресов отрисовывает текст один раз.
+ */
+@Service
+@Slf4j
+public class MailTemplateService {
+
+    public static final String ORDER_CONFIRMATION = "order-confirmation";
+    public static final String EVENT_CANCELLED = "event-cancelled";
+    public static final String EVENT_RESCHEDULED = "event-rescheduled";
+    public static final String APPLICATION_APPROVED = "application-approved";
+    public static final String WAITLIST_PROMOTED = "waitlist-promoted";
+    public static final String EVENT_REMINDER = "event-reminder";
+    public static final String PASSWORD_RESET = "password-reset";
+    public static final String CONTACT = "contact";
+    public static final String DEBTORS = "debtors";
+
+    private static final Locale MAIL_LOCALE = Locale.forLanguageTag("ru");
+
+    private final SpringTemplateEngine templateEngine;
+
+    public MailTemplateService(@Value("${mail.templates.cache:true}") boolean cacheable) {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/mail/");
+        resolver.setSuffix(".txt");
+        resolver.setTemplateMode(TemplateMode.TEXT);
+        resolver.setCharacterEncoding("UTF-8");
+        resolver.setCacheable(cacheable);
+        resolver.setCheckExistence(true);
+
+        this.templateEngine = new SpringTemplateEngine();
+        this.templateEngine.setTemplateResolver(resolver);
+        this.templateEngine.setEnableSpringELCompiler(true);
+        log.info("Шаблоны писем: кеширование {}", cacheable ? "включено" : "выключено");
+    }
+
+    /**
+     * @throws org.thymeleaf.exceptions.TemplateInputException если шаблона нет
+     */
+    public String render(String template, Map<String, ?> variables) {
+        Context context = new Context(MAIL_LOCALE);
+        variables.forEach(context::setVariable);
+        return templateEngine.process(template, context);
+    }
+}
@@ -0,0 +1,263 @@
+package com.almetpt.coursework.bookclub.service;
+
+import com.almetpt.coursework.bookclub.dto.ChartDataDTO;
+import com.almetpt.coursework.bookclub.model.Metric;
+import com.almetpt.coursework.bookclub.model.MetricCounter;
+import com.almetpt.coursework.bookclub.model.MetricGranularity;
+import com.almetpt.coursework.bookclub.repository.MetricCounterRepository;
+import com.almetpt.coursework.bookclub.utils.TransactionCallbacks;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Счетчики панели администратора (таблица {@code metric_counters}).
+ * <p>
+ * Изменения сущностей приходят из {@link com.almetpt.coursework.bookclub.config.MetricsRollupListener},
+ * копятся в буфере текущей транзакции и после ее фиксации применяются одной
+ * короткой транзакцией: по строке на затронутую корзину. Откаченные изменения
+ * счетчики не трогают. Если запись счетчика не удалась, ошибка только
+ * логируется - расхождение исправит {@link #rebuild()}, который пересчитывает
+ * счетчики по исходным таблицам (при старте на пустой таблице и по расписанию).
+ * <p>
+ * Чтение: общая статистика - строки TOTAL, график - не больше {@link #MAX_BUCKETS}
+ * строк, независимо от размера исходных таблиц.
+ */
+@Service
+@Slf4j
+public class MetricsRollupService {
+
+    public static final int MAX_BUCKETS = 366;
+
+    private static final DateTimeFormatter DAY_LABEL = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+    private static final DateTimeFormatter MONTH_LABEL = DateTimeFormatter.ofPattern("yyyy-MM");
+
+    // Одинаковый порядок обновления строк во всех транзакциях - без взаимных блокировок
+    private static final Comparator<CounterKey> KEY_ORDER = Comparator
+            .comparing(CounterKey::metric)
+            .thenComparing(CounterKey::granularity)
+            .thenComparing(CounterKey::bucketStart);
+
+    /**
+     * Корзина счетчика.
+     */
+    public record CounterKey(Metric metric, MetricGranularity granularity, LocalDate bucketStart) {
+    }
+
+    private final MetricCounterRepository counterRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate newTransactionTemplate;
+
+    public MetricsRollupService(MetricCounterRepository counterRepository,
+                                JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager) {
+        this.counterRepository = counterRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Учитывает изменение сущности показателя. Запись учитывается, если она
+     * существует и не помечена удаленной; для вставки старого состояния нет,
+     * для удаления - нового.
+     */
+    public void recordChange(Metric metric,
+                             boolean oldCounted, LocalDateTime oldCreatedWhen,
+                             boolean newCounted, LocalDateTime newCreatedWhen) {
+        if (oldCounted == newCounted && (!newCounted || sameDay(oldCreatedWhen, newCreatedWhen))) {
+            return;
+        }
+        boolean deferred = TransactionSynchronizationManager.isSynchronizationActive();
+        Map<CounterKey, Long> deltas = deferred ? transactionDeltas() : new HashMap<>();
+        if (oldCounted) {
+            addContribution(deltas, metric, oldCreatedWhen, -1);
+        }
+        if (newCounted) {
+            addContribution(deltas, metric, newCreatedWhen, 1);
+        }
+        if (!deferred) {
+            apply(deltas);
+        }
+    }
+
+    /**
+     * Неудаленные записи каждого показателя.
+     */
+    public Map<Metric, Long> getTotals() {
+        Map<Metric, Long> totals = new EnumMap<>(Metric.class);
+        for (Metric metric : Metric.values()) {
+            totals.put(metric, 0L);
+        }
+        for (MetricCounter counter : counterRepository.findByGranularity(MetricGranularity.TOTAL)) {
+            totals.put(counter.getMetric(), counter.getValue());
+        }
+        return totals;
+    }
+
+    /**
+     * Значения показателя за последние {@code buckets} дней или месяцев,
+     * включая текущий. Пустые корзины заполняются нулями.
+     */
+    public ChartDataDTO getSeries(Metric metric, MetricGranularity granularity, int buckets) {
+        if (granularity == MetricGranularity.TOTAL) {
+            throw new IllegalArgumentException("Для графика нужна гранулярность DAY или MONTH");
+        }
+        if (buckets < 1 || buckets > MAX_BUCKETS) {
+            throw new IllegalArgumentException("Число корзин должно быть от 1 до " + MAX_BUCKETS + ": " + buckets);
+        }
+        LocalDate last = granularity.bucketStart(LocalDate.now());
+        LocalDate first = granularity.plus(last, -(buckets - 1));
+
+        Map<LocalDate, Long> values = new HashMap<>();
+        for (MetricCounter counter : counterRepository
+                .findByMetricAndGranularityAndBucketStartBetweenOrderByBucketStart(metric, granularity, first, last)) {
+            values.put(counter.getBucketStart(), counter.getValue());
+        }
+
+        DateTimeFormatter format = granularity == MetricGranularity.DAY ? DAY_LABEL : MONTH_LABEL;
+        List<String> labels = new ArrayList<>(buckets);
+        List<Long> data = new ArrayList<>(buckets);
+        for (int i = 0; i < buckets; i++) {
+            LocalDate bucket = granularity.plus(first, i);
+            labels.add(bucket.format(format));
+            data.add(values.getOrDefault(bucket, 0L));
+        }
+        return new ChartDataDTO(labels, data);
+    }
+
+    public boolean isEmpty() {
+        return counterRepository.count() == 0;
+    }
+
+    /**
+     * Пересчитывает все счетчики по исходным таблицам: один агрегат по дням на
+     * таблицу, месяцы и итог складываются из дней. Каждый показатель заменяется
+     * в отдельной транзакции.
+     *
+     * @return число записанных строк счетчиков
+     */
+    public int rebuild() {
+        int rows = 0;
+        for (Metric metric : Metric.values()) {
+            Integer written = transactionTemplate.execute(status -> rebuild(metric));
+            rows += written != null ? written : 0;
+        }
+        log.info("Счетчики панели администратора пересчитаны: {} строк", rows);
+        return rows;
+    }
+
+    private int rebuild(Metric metric) {
+        Map<CounterKey, Long> counters = new HashMap<>();
+        // Имя таблицы - константа перечисления, а не пользовательский ввод
+        jdbcTemplate.query("SELECT CAST(created_when AS DATE) AS created_day, COUNT(*) AS cnt FROM "
+                        + metric.getTable() + " WHERE is_deleted = false GROUP BY CAST(created_when AS DATE)",
+                rs -> {
+                    Date day = rs.getDate("created_day");
+                    addContribution(counters, metric, day != null ? day.toLocalDate().atStartOfDay() : null,
+                            rs.getLong("cnt"));
+                });
+
+        counterRepository.deleteByMetric(metric);
+        List<MetricCounter> rows = new ArrayList<>(counters.size());
+        for (Map.Entry<CounterKey, Long> entry : counters.entrySet()) {
+            CounterKey key = entry.getKey();
+            rows.add(new MetricCounter(key.metric(), key.granularity(), key.bucketStart(), entry.getValue()));
+        }
+        counterRepository.saveAll(rows);
+        return rows.size();
+    }
+
+    // Запись без даты создания попадает только в итог
+    private static void addContribution(Map<CounterKey, Long> deltas, Metric metric,
+                                        LocalDateTime createdWhen, long delta) {
+        if (createdWhen != null) {
+            LocalDate day = createdWhen.toLocalDate();
+            deltas.merge(new CounterKey(metric, MetricGranularity.DAY, day), delta, Long::sum);
+            deltas.merge(new CounterKey(metric, MetricGranularity.MONTH, MetricGranularity.MONTH.bucketStart(day)),
+                    delta, Long::sum);
+        }
+        deltas.merge(new CounterKey(metric, MetricGranularity.TOTAL, MetricGranularity.TOTAL_BUCKET), delta, Long::sum);
+    }
+
+    private static boolean sameDay(LocalDateTime first, LocalDateTime second) {
+        if (first == null || second == null) {
+            return first == second;
+        }
+        return first.toLocalDate().equals(second.toLocalDate());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<CounterKey, Long> transactionDeltas() {
+        Map<CounterKey, Long> deltas = (Map<CounterKey, Long>) TransactionSynchronizationManager.getResource(this);
+        if (deltas != null) {
+            return deltas;
+        }
+        Map<CounterKey, Long> created = new LinkedHashMap<>();
+        TransactionSynchronizationManager.bindResource(this, created);
+        TransactionCallbacks.afterCompletion(status -> {
+            TransactionSynchronizationManager.unbindResourceIfPossible(this);
+            if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                apply(created);
+            }
+        });
+        return created;
+    }
+
+    private void apply(Map<CounterKey, Long> deltas) {
+        List<Map.Entry<CounterKey, Long>> changes = new ArrayList<>(deltas.size());
+        for (Map.Entry<CounterKey, Long> entry : deltas.entrySet()) {
+            if (entry.getValue() != 0) {
+                changes.add(entry);
+            }
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+        changes.sort(Map.Entry.comparingByKey(KEY_ORDER));
+        try {
+            applyInNewTransaction(changes);
+        } catch (DataIntegrityViolationException e) {
+            // Параллельная транзакция создала ту же корзину - теперь строка есть, повторяем
+            try {
+                applyInNewTransaction(changes);
+            } catch (RuntimeException retryError) {
+                log.error("Не удалось обновить счетчики {}", deltas, retryError);
+            }
+        } catch (RuntimeException e) {
+            log.error("Не удалось обновить счетчики {}", deltas, e);
+        }
+    }
+
+    private void applyInNewTransaction(List<Map.Entry<CounterKey, Long>> changes) {
+        newTransactionTemplate.executeWithoutResult(status -> {
+            for (Map.Entry<CounterKey, Long> change : changes) {
+                CounterKey key = change.getKey();
+                if (counterRepository.increment(key.metric(), key.granularity(), key.bucketStart(), change.getValue()) == 0) {
+                    counterRepository.saveAndFlush(new MetricCounter(
+                            key.metric(), key.granularity(), key.bucketStart(), change.getValue()));
+                }
+            }
+        });
+    }
+}
@@ -6,15 +6,10 @@ import com.almetpt.coursework.bookclub.mapper.OrderMapper;
 import com.almetpt.coursework.bookclub.model.*;
 import com.almetpt.coursework.bookclub.repository.OrderRepository;
 import com.almetpt.coursework.bookclub.repository.UserRepository;
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource; 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -22,10 +17,12 @@ import org.webjars.NotFoundException;
 
 // import java.io.File; // Больше не нужен для FileSystemResource напрямую
 import java.math.BigDecimal;
-// import java.time.LocalDateTime; // Не используется напрямую здесь
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @Slf4j
@@ -36,21 +33,32 @@ public class OrderService extends GenericService<Order, OrderDTO> {
     private final CartService cartService;
     private final UserRepository userRepository;
     private final FileStorageService fileStorageService; // Добавлено
+    private final MailOutboxService mailOutboxService;
+    private final MailTemplateService mailTemplateService;
+    private final DownloadLinkService downloadLinkService;
 
-    @Autowired
-    private JavaMailSender emailSender;
+    // Файлы крупнее лимита, а также не влезающие в общий объем письма, уходят ссылкой
+    @Value("${mail.attachments.max-bytes:5242880}")
+    private long maxAttachmentBytes;
+
+    @Value("${mail.attachments.max-total-bytes:15728640}")
+    private long maxTotalAttachmentBytes;
 
     public OrderService(OrderRepository orderRepository, OrderMapper orderMapper, CartService cartService,
-            UserRepository userRepository, JavaMailSender emailSender, FileStorageService fileStorageService) { // Добавлено
+            UserRepository userRepository, MailOutboxService mailOutboxService, FileStorageService fileStorageService, // Добавлено
+            MailTemplateService mailTemplateService, DownloadLinkService downloadLinkService) {
         super(orderRepository, orderMapper);
         this.orderRepository = orderRepository;
         this.orderMapper = orderMapper;
         this.cartService = cartService;
         this.userRepository = userRepository;
-        this.emailSender = emailSender;
+        this.mailOutboxService = mailOutboxService;
         this.fileStorageService = fileStorageService; // Добавлено
+        this.mailTemplateService = mailTemplateService;
+        this.downloadLinkService = downloadLinkService;
     }
 
+    @Transactional(readOnly = true)
     public Page<OrderDTO> getOrdersByUser(Pageable pageable) {
         String userEmail = SecurityContextHolder.getContext().getAuthentication().getName();
         User user = userRepository.findUserByEmailAndIsDeletedFalse(userEmail);
@@ -59,9 +67,20 @@ public class OrderService extends GenericService<Order, OrderDTO> {
         }
 
         Page<Order> orders = orderRepository.findByUser(user, pageable);
-        return orders.map(orderMapper::toDTO);
+        if (orders.isEmpty()) {
+            return orders.map(orderMapper::toDTO);
+        }
+        // Продукты всей страницы - одним запросом вместо отдельного на каждый заказ.
+        // Заказы уже в контексте сохранения, поэтому fetch join инициализирует их коллекции
+        List<Long> ids = orders.map(Order::getId).getContent();
+        Map<Long, Order> withProducts = new HashMap<>();
+        for (Order order : orderRepository.findWithProductsByIdIn(ids)) {
+            withProducts.put(order.getId(), order);
+        }
+        return orders.map(order -> orderMapper.toDTO(withProducts.getOrDefault(order.getId(), order)));
     }
 
+    @Transactional(readOnly = true)
     public List<OrderDTO> getOrdersByUser() {
         String userEmail = SecurityContextHolder.getContext().getAuthentication().getName();
         User user = userRepository.findUserByEmailAndIsDeletedFalse(userEmail);
@@ -105,12 +124,7 @@ public class OrderService extends GenericService<Order, OrderDTO> {
             cart.getProducts().clear(); // Очищаем список продуктов в сущности корзины
             cartService.saveCart(cart); // Сохраняем изменения в корзине (теперь она пуста)
 
-            try {
-                sendOrderConfirmationEmail(savedOrder);
-            } catch (MessagingException e) {
-                log.error("Failed to send order confirmation email for order {}: {}", savedOrder.getId(), e.getMessage());
-                // Не прерываем выполнение метода из-за ошибки отправки письма, заказ уже создан
-            }
+            enqueueOrderConfirmationEmail(savedOrder);
 
             return orderMapper.toDTO(savedOrder);
         } catch (Exception e) {
@@ -133,88 +147,68 @@ public class OrderService extends GenericService<Order, OrderDTO> {
         return orderMapper.toDTO(orderRepository.save(order));
     }
 
-    @SuppressWarnings("null")
-    private void sendOrderConfirmationEmail(Order order) throws MessagingException {
+    // Письмо пишется в очередь в транзакции заказа и уходит только после ее фиксации
+    private void enqueueOrderConfirmationEmail(Order order) {
         if (order == null || order.getUser() == null || order.getUser().getEmail() == null) {
             log.error("Cannot send email: order, user, or email is undefined for order ID (if available): {}", order != null ? order.getId() : "N/A");
             return;
         }
 
-        try {
-            MimeMessage message = emailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-            helper.setFrom("spring.project.42@mail.ru"); // Убедитесь, что этот email может отправлять почту
-            helper.setTo(order.getUser().getEmail());
-            helper.setSubject("Подтверждение заказа #" + order.getId());
-
-            StringBuilder messageText = new StringBuilder();
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
-
-            messageText.append("Благодарим вас за заказ в Книжной Гавани!");
-            messageText.append("\n\n");
-            messageText.append("Номер заказа: #").append(order.getId()).append("\n");
-            messageText.append("Дата заказа: ").append(order.getCreatedWhen().format(formatter)).append("\n");
-            messageText.append("Общая сумма: ").append(order.getTotal()).append(" ₽\n\n");
-            messageText.append("Состав заказа:\n");
-
-            if (order.getProducts() != null && !order.getProducts().isEmpty()) {
-                for (Product product : order.getProducts()) {
-                    if (product != null) {
-                        String productName = product.getName() != null ? product.getName() : "Неизвестный товар";
-                        String productPrice = product.getPrice() != null ? product.getPrice().toString() : "0.00";
-                        String productCategory = product.getCategory() != null ? product.getCategory().getDescription() : ""; // Используем описание
-
-                        messageText.append("- ").append(productName)
-                                .append(" (").append(productCategory).append("): ")
-                                .append(productPrice).append(" ₽\n");
-                    }
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
+
+        List<Map<String, String>> items = new ArrayList<>();
+        if (order.getProducts() != null) {
+            for (Product product : order.getProducts()) {
+                if (product != null) {
+                    items.add(Map.of(
+                            "name", product.getName() != null ? product.getName() : "Неизвестный товар",
+                            "category", product.getCategory() != null ? product.getCategory().getDescription() : "", // Используем описание
+                            "price", product.getPrice() != null ? product.getPrice().toString() : "0.00"));
                 }
-            } else {
-                messageText.append("- Товары не указаны\n");
             }
-            
-            messageText.append("\n"); // Добавляем пустую строку перед секцией вложений
-
-            boolean hasElectronicProducts = false;
-            if (order.getProducts() != null) {
-                for (Product product : order.getProducts()) {
-                    // Проверяем, есть ли у продукта электронный файл и имя файла
-                    if (product != null && product.hasElectronicFile() && product.getElectronicProductFilename() != null && !product.getElectronicProductFilename().isEmpty()) {
-                        try {
-                            Resource resource = fileStorageService.loadAsResource(product.getElectronicProductFilename());
-                            if (resource.exists() && resource.isReadable()) {
-                                String attachmentName = product.getOriginalElectronicProductFilename() != null
-                                        ? product.getOriginalElectronicProductFilename()
-                                        : resource.getFilename(); // Используем имя файла из ресурса, если оригинальное недоступно
-                                helper.addAttachment(attachmentName, resource);
-                                hasElectronicProducts = true;
-                                log.info("Attachment added: {} for order {}", attachmentName, order.getId());
-                            } else {
-                                log.warn("Electronic file resource not found or not readable: {} for product ID {}", product.getElectronicProductFilename(), product.getId());
-                            }
-                        } catch (Exception e) {
-                            log.error("Error attaching electronic file {} for product ID {}: {}", product.getElectronicProductFilename(), product.getId(), e.getMessage());
-                        }
+        }
+
+        // Файлы читаются при отправке, в очереди хранятся только их имена;
+        // крупные файлы не раздувают письмо и отправляются подписанной ссылкой
+        List<MailOutboxService.Attachment> attachments = new ArrayList<>();
+        List<Map<String, String>> links = new ArrayList<>();
+        LocalDateTime linksExpireAt = null;
+        long attachedBytes = 0;
+        if (order.getProducts() != null) {
+            for (Product product : order.getProducts()) {
+                if (product != null && product.hasElectronicFile() && product.getElectronicProductFilename() != null && !product.getElectronicProductFilename().isEmpty()) {
+                    long size = fileStorageService.size(product.getElectronicProductFilename());
+                    if (size < 0) {
+                        log.warn("Electronic file resource not found or not readable: {} for product ID {}", product.getElectronicProductFilename(), product.getId());
+                        continue;
+                    }
+                    String attachmentName = product.getOriginalElectronicProductFilename() != null
+                            ? product.getOriginalElectronicProductFilename()
+                            : product.getElectronicProductFilename();
+                    if (size <= maxAttachmentBytes && attachedBytes + size <= maxTotalAttachmentBytes) {
+                        attachments.add(new MailOutboxService.Attachment(product.getElectronicProductFilename(), attachmentName));
+                        attachedBytes += size;
+                    } else {
+                        DownloadLinkService.SignedLink link = downloadLinkService.create(product.getId(), order.getId());
+                        links.add(Map.of("name", attachmentName, "url", link.url()));
+                        linksExpireAt = link.expiresAt();
                     }
                 }
             }
-
-            if (hasElectronicProducts) {
-                 messageText.append("Ваши электронные товары прикреплены к этому письму.\n");
-            } else {
-                messageText.append("В вашем заказе нет электронных товаров для прикрепления.\n");
-            }
-
-            helper.setText(messageText.toString(), false); // Устанавливаем текст письма
-
-            emailSender.send(message);
-            log.info("Order confirmation email #{} sent successfully to {}", order.getId(), order.getUser().getEmail());
-        } catch (MessagingException e) {
-            log.error("MessagingException while sending order confirmation for order #{}: {}", order.getId(), e.getMessage(), e);
-            throw e; // Перебрасываем, чтобы вызывающий метод знал об ошибке
-        } catch (Exception e) {
-            log.error("Unexpected error while sending order confirmation for order #{}: {}", order.getId(), e.getMessage(), e);
-            // Не перебрасываем другие исключения, чтобы не откатывать основную транзакцию
         }
+
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("orderId", order.getId());
+        variables.put("createdWhen", order.getCreatedWhen().format(formatter));
+        variables.put("total", order.getTotal());
+        variables.put("items", items);
+        variables.put("attachedCount", attachments.size());
+        variables.put("links", links);
+        variables.put("linksExpireAt", linksExpireAt != null ? linksExpireAt.format(formatter) : "");
+        String messageText = mailTemplateService.render(MailTemplateService.ORDER_CONFIRMATION, variables);
+
+        mailOutboxService.enqueue(List.of(order.getUser().getEmail()), "Подтверждение заказа #" + order.getId(),
+                messageText, attachments);
+        log.info("Order confirmation email #{} queued for {} with {} attachments and {} download links", order.getId(), order.getUser().getEmail(), attachments.size(), links.size());
     }
 }
@@ -3,52 +3,81 @@ package com.almetpt.coursework.bookclub.service;
 import com.almetpt.coursework.bookclub.dto.ProductImageDTO;
 import com.almetpt.coursework.bookclub.dto.ProductImageUploadDTO;
 import com.almetpt.coursework.bookclub.model.Product;
+import com.almetpt.coursework.bookclub.repository.ImageBlobRepository;
 import com.almetpt.coursework.bookclub.repository.ProductRepository;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import org.webjars.NotFoundException;
 
 import java.io.IOException;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class ProductImageService {
 
     private final ProductRepository productRepository;
+    private final ImageBlobRepository imageBlobRepository;
     private final FileStorageService fileStorageService;
+    private final CoverImageCache coverImageCache;
+    private final ImageProcessingService imageProcessingService;
+    private final TransactionTemplate transactionTemplate;
+
+    public ProductImageService(ProductRepository productRepository,
+                               ImageBlobRepository imageBlobRepository,
+                               FileStorageService fileStorageService,
+                               CoverImageCache coverImageCache,
+                               ImageProcessingService imageProcessingService,
+                               PlatformTransactionManager transactionManager) {
+        this.productRepository = productRepository;
+        this.imageBlobRepository = imageBlobRepository;
+        this.fileStorageService = fileStorageService;
+        this.coverImageCache = coverImageCache;
+        this.imageProcessingService = imageProcessingService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
 
-    @Transactional
     public ProductImageDTO uploadImage(Long productId, MultipartFile file) throws IOException {
         log.debug("Загрузка изображения для продукта с ID: {}", productId);
-        Product product = getProductById(productId);
-
-        // Если у продукта уже было загруженное изображение, удаляем его
-        if (product.getCoverImageFilename() != null) {
-            fileStorageService.deleteFile(product.getCoverImageFilename());
-        }
-
-        // Сохраняем новое изображение
+        // Файл и его уменьшенные копии готовим до транзакции: обработка изображения не держит соединение с БД
         String filename = fileStorageService.saveFile(file);
-        product.setCoverImageFilename(filename);
-        // Сохраняем оригинальное имя файла
-        product.setOriginalCoverImageFilename(file.getOriginalFilename());
-        // Если ранее была установлена URL-ссылка, удаляем её
-        product.setCoverImageUrl(null);
-        product.setCoverImageData(null);
-        productRepository.save(product);
-
-        return new ProductImageDTO(
-                product.getId(),
-                product.getCoverImageUrl(),
-                product.getCoverImageFilename(),
-                product.hasLocalImage(),
-                product.getOriginalCoverImageFilename()
-        );
+        imageProcessingService.generateRenditions(filename);
+
+        try {
+            return transactionTemplate.execute(status -> {
+                Product product = getProductById(productId);
+                String previousFilename = product.getCoverImageFilename();
+                product.setCoverImageFilename(filename);
+                // Сохраняем оригинальное имя файла
+                product.setOriginalCoverImageFilename(file.getOriginalFilename());
+                // Если ранее была установлена URL-ссылка, удаляем её
+                product.setCoverImageUrl(null);
+                product.setCoverImageData(null);
+                productRepository.save(product);
+                coverImageCache.invalidate(CoverImageCache.OwnerType.PRODUCT, productId);
+
+                // Старый файл удаляем только после того, как продукт перестал на него ссылаться
+                if (previousFilename != null && !previousFilename.equals(filename)) {
+                    fileStorageService.deleteFile(previousFilename);
+                }
+
+                return new ProductImageDTO(
+                        product.getId(),
+                        product.getCoverImageUrl(),
+                        product.getCoverImageFilename(),
+                        product.hasLocalImage(),
+                        product.getOriginalCoverImageFilename()
+                );
+            });
+        } catch (RuntimeException e) {
+            // Обложка не сохранилась: новый файл никому не нужен (удаление проверяет ссылки на него)
+            fileStorageService.deleteFile(filename);
+            throw e;
+        }
     }
 
     @Transactional
@@ -57,15 +86,14 @@ public class ProductImageService {
         // Устанавливаем URL изображения
         product.setCoverImageUrl(dto.getImageUrl());
         // Если ранее было загруженное изображение, удаляем его
-        if (product.getCoverImageFilename() != null) {
-            fileStorageService.deleteFile(product.getCoverImageFilename());
-            product.setCoverImageFilename(null);
-        }
-
+        String previousFilename = product.getCoverImageFilename();
+        product.setCoverImageFilename(null);
         product.setCoverImageData(null);
         // Оригинального имени файла нет, так как загружаем по URL
         product.setOriginalCoverImageFilename(null);
         productRepository.save(product);
+        coverImageCache.invalidate(CoverImageCache.OwnerType.PRODUCT, product.getId());
+        fileStorageService.deleteFile(previousFilename);
 
         return new ProductImageDTO(
                 product.getId(),
@@ -79,18 +107,19 @@ public class ProductImageService {
     @Transactional
     public ProductImageDTO uploadImageData(Long productId, MultipartFile file) throws IOException {
         Product product = getProductById(productId);
-        // Если у продукта уже было загруженное файловое изображение, удаляем его
-        if (product.getCoverImageFilename() != null) {
-            fileStorageService.deleteFile(product.getCoverImageFilename());
-            product.setCoverImageFilename(null);
-        }
+        String previousFilename = product.getCoverImageFilename();
 
         // Сохраняем бинарные данные изображения
+        product.setCoverImageFilename(null);
         product.setCoverImageData(file.getBytes());
         product.setCoverImageUrl(null);
         // Сохраняем оригинальное имя файла
         product.setOriginalCoverImageFilename(file.getOriginalFilename());
         productRepository.save(product);
+        coverImageCache.invalidate(CoverImageCache.OwnerType.PRODUCT, productId);
+
+        // Если у продукта уже было загруженное файловое изображение, удаляем его
+        fileStorageService.deleteFile(previousFilename);
 
         return new ProductImageDTO(
                 product.getId(),
@@ -101,26 +130,27 @@ public class ProductImageService {
         );
     }
 
-    public Resource getProductCoverImage(Long productId) {
-        Product product = getProductById(productId);
-        if (product.getCoverImageFilename() != null) {
-            return fileStorageService.loadAsResource(product.getCoverImageFilename());
-        }
-        return null;
+    /**
+     * Возвращает обложку продукта нужного размера через кеш обложек.
+     *
+     * @return обложка или {@code null}, если локальной обложки нет
+     */
+    public CoverImageCache.CachedCover getProductCover(Long productId, ImageProcessingService.ImageSize size) {
+        return coverImageCache.get(CoverImageCache.OwnerType.PRODUCT, productId, size,
+                () -> loadProductCover(productId, size));
     }
 
-    public byte[] getProductCoverImageData(Long productId) throws IOException {
-        log.debug("Получение данных изображения для продукта с ID: {}", productId);
+    public Resource getProductCoverImage(Long productId) {
         Product product = getProductById(productId);
         if (product.getCoverImageFilename() != null) {
-            return fileStorageService.getFileData(product.getCoverImageFilename());
+            return fileStorageService.loadAsResource(product.getCoverImageFilename());
         }
         return null;
     }
 
     public byte[] getProductCoverImageDataFromDB(Long productId) {
         Product product = getProductById(productId);
-        return product.getCoverImageData();
+        return imageBlobRepository.loadData(product.getCoverImageBlob());
     }
 
     public ProductImageDTO getProductImageInfo(Long productId) {
@@ -134,6 +164,30 @@ public class ProductImageService {
         );
     }
 
+    // Загрузка обложки при промахе кеша. Внешние URL клиент загружает сам
+    private CoverImageCache.CachedCover loadProductCover(Long productId, ImageProcessingService.ImageSize size) {
+        Product product = getProductById(productId);
+        try {
+            if (product.getCoverImageFilename() != null) {
+                CoverImageCache.CachedCover cover = coverImageCache.fromStorage(product.getCoverImageFilename(), size);
+                if (cover != null) {
+                    return cover;
+                }
+                log.warn("Локальный файл обложки {} для продукта с id={} не найден",
+                        product.getCoverImageFilename(), productId);
+            }
+        } catch (IOException e) {
+            log.error("Ошибка чтения файла обложки {} для продукта с id={}",
+                    product.getCoverImageFilename(), productId, e);
+        }
+
+        byte[] coverImageData = imageBlobRepository.loadData(product.getCoverImageBlob());
+        if (coverImageData != null && coverImageData.length > 0) {
+            return coverImageCache.fromBytes(coverImageData, product.getOriginalCoverImageFilename(), size);
+        }
+        return null;
+    }
+
     private Product getProductById(Long id) {
         return productRepository.findById(id)
                 .orElseThrow(() -> new NotFoundException("Продукт с id " + id + " не найден"));
@@ -1,10 +1,12 @@
 package com.almetpt.coursework.bookclub.service;
 
 import com.almetpt.coursework.bookclub.dto.ProductDTO;
+import com.almetpt.coursework.bookclub.dto.ProductListingDTO;
 import com.almetpt.coursework.bookclub.mapper.ProductMapper;
 import com.almetpt.coursework.bookclub.model.Product;
 import com.almetpt.coursework.bookclub.model.ProductCategory;
 import com.almetpt.coursework.bookclub.repository.ProductRepository;
+import com.almetpt.coursework.bookclub.utils.TransactionCallbacks;
 import jakarta.transaction.Transactional;
 import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
@@ -15,6 +17,7 @@ import org.springframework.web.multipart.MultipartFile;
 import org.webjars.NotFoundException;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 @Service
@@ -24,30 +27,61 @@ public class ProductService extends GenericService<Product, ProductDTO> {
     private final ProductMapper productMapper;
     // private final ProductImageService productImageService;
     private final FileStorageService fileStorageService; // For direct file operations
+    private final CoverImageCache coverImageCache;
+    private final ImageProcessingService imageProcessingService;
 
     public ProductService(ProductRepository productRepository,
                           ProductMapper productMapper,
                           ProductImageService productImageService,
-                          FileStorageService fileStorageService) {
+                          FileStorageService fileStorageService,
+                          CoverImageCache coverImageCache,
+                          ImageProcessingService imageProcessingService) {
         super(productRepository, productMapper);
         this.productRepository = productRepository;
         this.productMapper = productMapper;
         // this.productImageService = productImageService;
         this.fileStorageService = fileStorageService;
+        this.coverImageCache = coverImageCache;
+        this.imageProcessingService = imageProcessingService;
+    }
+
+    @Override
+    public ProductDTO update(ProductDTO updatedObject) {
+        ProductDTO result = super.update(updatedObject);
+        // DTO может менять поля обложки, поэтому закешированная обложка сбрасывается
+        coverImageCache.invalidate(CoverImageCache.OwnerType.PRODUCT, result.getId());
+        return result;
+    }
+
+    @Override
+    public ProductDTO partialUpdate(ProductDTO patchObject) {
+        ProductDTO result = super.partialUpdate(patchObject);
+        coverImageCache.invalidate(CoverImageCache.OwnerType.PRODUCT, result.getId());
+        return result;
     }
 
     public Page<ProductDTO> searchProducts(String name, String categoryName, Pageable pageable) {
-        ProductCategory category = null;
+        ProductCategory category = parseCategory(categoryName);
+        if (name == null) name = "";
+        Page<Product> page = productRepository.findAllByNameAndCategory(name, category, pageable);
+        List<ProductDTO> dtos = productMapper.toDTOs(page.getContent());
+        return new PageImpl<>(dtos, pageable, page.getTotalElements());
+    }
+
+    // Режим каталога: строки читаются проекцией, сущности и маппер не используются
+    public Page<ProductListingDTO> searchProductListing(String name, String categoryName, Pageable pageable) {
+        return productRepository.findListingByNameAndCategory(
+                name != null ? name : "", parseCategory(categoryName), pageable);
+    }
+
+    private static ProductCategory parseCategory(String categoryName) {
         if (categoryName != null && !categoryName.isEmpty() && !"all".equalsIgnoreCase(categoryName)) {
             try {
-                category = ProductCategory.valueOf(categoryName.toUpperCase());
+                return ProductCategory.valueOf(categoryName.toUpperCase());
             } catch (IllegalArgumentException ignored) {
             }
         }
-        if (name == null) name = "";
-        Page<Product> page = productRepository.findAllByNameAndCategory(name, category, pageable);
-        List<ProductDTO> dtos = productMapper.toDTOs(page.getContent());
-        return new PageImpl<>(dtos, pageable, page.getTotalElements());
+        return null;
     }
 
     @Transactional
@@ -56,6 +90,7 @@ public class ProductService extends GenericService<Product, ProductDTO> {
 
         if (coverFile != null && !coverFile.isEmpty()) {
             String coverFilename = fileStorageService.saveFile(coverFile);
+            generateRenditionsAfterCommit(coverFilename);
             product.setCoverImageFilename(coverFilename);
             product.setOriginalCoverImageFilename(coverFile.getOriginalFilename());
             product.setCoverImageUrl(null); // Clear URL if file is uploaded
@@ -89,12 +124,14 @@ public class ProductService extends GenericService<Product, ProductDTO> {
         product.setCategory(productDTO.getCategory());
         // isDeleted and audit fields are handled by GenericModel/Service
 
+        // Files are shared between records after deduplication, so old files are
+        // released only after the product no longer references them
+        List<String> replacedFiles = new ArrayList<>();
+
         if (coverFile != null && !coverFile.isEmpty()) {
-            // Delete old cover file if exists
-            if (product.getCoverImageFilename() != null) {
-                fileStorageService.deleteFile(product.getCoverImageFilename());
-            }
+            replacedFiles.add(product.getCoverImageFilename());
             String coverFilename = fileStorageService.saveFile(coverFile);
+            generateRenditionsAfterCommit(coverFilename);
             product.setCoverImageFilename(coverFilename);
             product.setOriginalCoverImageFilename(coverFile.getOriginalFilename());
             product.setCoverImageUrl(null);
@@ -102,7 +139,7 @@ public class ProductService extends GenericService<Product, ProductDTO> {
         } else if (productDTO.getCoverImageUrl() != null && !productDTO.getCoverImageUrl().isEmpty()) {
             // If URL is provided and no new file, update URL and clear local file
             if (product.getCoverImageFilename() != null) {
-                fileStorageService.deleteFile(product.getCoverImageFilename());
+                replacedFiles.add(product.getCoverImageFilename());
                 product.setCoverImageFilename(null);
                 product.setOriginalCoverImageFilename(null);
             }
@@ -112,7 +149,7 @@ public class ProductService extends GenericService<Product, ProductDTO> {
         // If coverUrl is explicitly set to empty and no file is uploaded, clear existing cover
         else if ((productDTO.getCoverImageUrl() == null || productDTO.getCoverImageUrl().isEmpty()) && coverFile == null) {
              if (product.getCoverImageFilename() != null) {
-                fileStorageService.deleteFile(product.getCoverImageFilename());
+                replacedFiles.add(product.getCoverImageFilename());
                 product.setCoverImageFilename(null);
                 product.setOriginalCoverImageFilename(null);
             }
@@ -122,16 +159,15 @@ public class ProductService extends GenericService<Product, ProductDTO> {
 
 
         if (electronicFile != null && !electronicFile.isEmpty()) {
-            // Delete old electronic file if exists
-            if (product.getElectronicProductFilename() != null) {
-                fileStorageService.deleteFile(product.getElectronicProductFilename());
-            }
+            replacedFiles.add(product.getElectronicProductFilename());
             String electronicFilename = fileStorageService.saveFile(electronicFile);
             product.setElectronicProductFilename(electronicFilename);
             product.setOriginalElectronicProductFilename(electronicFile.getOriginalFilename());
         }
 
         Product updatedProduct = productRepository.save(product);
+        coverImageCache.invalidate(CoverImageCache.OwnerType.PRODUCT, productId);
+        replacedFiles.forEach(fileStorageService::deleteFile);
         return productMapper.toDTO(updatedProduct);
     }
         
@@ -153,4 +189,9 @@ public class ProductService extends GenericService<Product, ProductDTO> {
     public boolean canDeleteProduct(Long productId) {
         return true;
     }
+
+    // Resizing is CPU-bound, so it runs after commit instead of holding the transaction open
+    private void generateRenditionsAfterCommit(String filename) {
+        TransactionCallbacks.afterCommit(() -> imageProcessingService.generateRenditions(filename));
+    }
 }
@@ -2,93 +2,51 @@ package com.almetpt.coursework.bookclub.service;
     
 import com.almetpt.coursework.bookclub.dto.ChartDataDTO;
 import com.almetpt.coursework.bookclub.dto.EventStatisticsDTO;
-import com.almetpt.coursework.bookclub.model.Event;
+import com.almetpt.coursework.bookclub.model.Metric;
+import com.almetpt.coursework.bookclub.model.MetricGranularity;
 import com.almetpt.coursework.bookclub.repository.EventRepository;
 // import com.almetpt.coursework.bookclub.repository.OrderRepository; // Not directly used in user's snippet for this service
 // import com.almetpt.coursework.bookclub.repository.UserRepository; // Not directly used in user's snippet for this service
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
     
-import java.util.ArrayList;
-import java.util.List;
+import java.time.LocalDateTime;
 import java.util.Map;
     
 @Service
 public class StatisticsService {
     
-    private final JdbcTemplate jdbcTemplate;
+    private final MetricsRollupService metricsRollupService;
     private final EventRepository eventRepository;
         
-    public StatisticsService(JdbcTemplate jdbcTemplate, EventRepository eventRepository) {
-        this.jdbcTemplate = jdbcTemplate;
+    public StatisticsService(MetricsRollupService metricsRollupService, EventRepository eventRepository) {
+        this.metricsRollupService = metricsRollupService;
         this.eventRepository = eventRepository;
     }
         
-    public ChartDataDTO getUsersRegistrationChart() {
-        String sql = "SELECT TO_CHAR(created_when, 'YYYY-MM') as month, COUNT(*) as count " +
-                "FROM users " +
-                "WHERE is_deleted = false " +
-                "GROUP BY TO_CHAR(created_when, 'YYYY-MM') " +
-                "ORDER BY month ASC " +
-                "LIMIT 12";
-            
-        List<Map<String, Object>> rows = jdbcTemplate.queryForList(sql);
-            
-        List<String> labels = new ArrayList<>();
-        List<Long> data = new ArrayList<>();
-            
-        for (Map<String, Object> row : rows) {
-            labels.add((String) row.get("month"));
-            data.add(((Number) row.get("count")).longValue());
-        }
-            
-        return new ChartDataDTO(labels, data);
+    // Регистрации по месяцам или дням - из счетчиков, без агрегирования users
+    public ChartDataDTO getUsersRegistrationChart(MetricGranularity granularity, int buckets) {
+        return metricsRollupService.getSeries(Metric.USERS, granularity, buckets);
     }
         
-    public ChartDataDTO getOrdersChart() {
-        String sql = "SELECT TO_CHAR(created_when, 'YYYY-MM') as month, COUNT(*) as count " +
-                "FROM orders " +
-                "WHERE is_deleted = false " +
-                "GROUP BY TO_CHAR(created_when, 'YYYY-MM') " +
-                "ORDER BY month ASC " +
-                "LIMIT 12";
-            
-        List<Map<String, Object>> rows = jdbcTemplate.queryForList(sql);
-            
-        List<String> labels = new ArrayList<>();
-        List<Long> data = new ArrayList<>();
-            
-        for (Map<String, Object> row : rows) {
-            labels.add((String) row.get("month"));
-            data.add(((Number) row.get("count")).longValue());
-        }
-            
-        return new ChartDataDTO(labels, data);
+    public ChartDataDTO getOrdersChart(MetricGranularity granularity, int buckets) {
+        return metricsRollupService.getSeries(Metric.ORDERS, granularity, buckets);
     }
-        
-    public List<EventStatisticsDTO> getEventsStatistics() {
-        List<Event> events = eventRepository.findAllByIsDeletedFalse();
-        List<EventStatisticsDTO> result = new ArrayList<>();
-            
-        for (Event event : events) {
-            int approvedApplications = eventRepository.countApprovedApplications(event.getId());
-            int totalApplications = eventRepository.countTotalApplications(event.getId());
-            double fillPercentage = event.getMaxParticipants() != null && event.getMaxParticipants() > 0 ?
-                (double) approvedApplications / event.getMaxParticipants() * 100 : 0;
-                
-            EventStatisticsDTO dto = new EventStatisticsDTO(
-                event.getId(),
-                event.getTitle(),
-                event.getEventType(),
-                event.getMaxParticipants() != null ? event.getMaxParticipants() : 0,
-                approvedApplications,
-                totalApplications,
-                fillPercentage
-            );
-                
-            result.add(dto);
+
+    public Map<Metric, Long> getTotals() {
+        return metricsRollupService.getTotals();
+    }
+
+    /**
+     * Статистика заявок по мероприятиям за период. Отмененные мероприятия
+     * включаются только по запросу.
+     */
+    public Page<EventStatisticsDTO> getEventsStatistics(LocalDateTime dateFrom, LocalDateTime dateTo,
+                                                        boolean includeCancelled, Pageable pageable) {
+        if (dateFrom != null && dateTo != null && dateFrom.isAfter(dateTo)) {
+            throw new IllegalArgumentException("Начало периода позже его окончания: " + dateFrom + " > " + dateTo);
         }
-            
-        return result;
+        return eventRepository.findEventStatistics(includeCancelled, dateFrom, dateTo, pageable);
     }
 }
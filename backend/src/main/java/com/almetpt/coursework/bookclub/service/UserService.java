@@ -4,19 +4,18 @@ import com.almetpt.coursework.bookclub.constants.MailConstants;
 import com.almetpt.coursework.bookclub.dto.RegisterDTO;
 import com.almetpt.coursework.bookclub.dto.RoleDTO;
 import com.almetpt.coursework.bookclub.dto.UserDTO;
+import com.almetpt.coursework.bookclub.exception.MyDeleteException;
 import com.almetpt.coursework.bookclub.mapper.GenericMapper;
 import com.almetpt.coursework.bookclub.model.Role;
 import com.almetpt.coursework.bookclub.model.User;
 import com.almetpt.coursework.bookclub.repository.GenericRepository;
 import com.almetpt.coursework.bookclub.repository.UserRepository;
-import com.almetpt.coursework.bookclub.utils.MailUtils;
+import com.almetpt.coursework.bookclub.service.userdetails.UserPrincipalCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -29,12 +28,15 @@ import org.springframework.web.multipart.MultipartFile;
 import org.webjars.NotFoundException;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
 
 @Slf4j
@@ -42,13 +44,19 @@ import java.util.UUID;
 public class UserService extends GenericService<User, UserDTO> {
 
     private final BCryptPasswordEncoder bCryptPasswordEncoder;
-    private final JavaMailSender javaMailSender;
+    private final MailOutboxService mailOutboxService;
+    private final MailTemplateService mailTemplateService;
     private final CartService cartService;
     private final UserRepository userRepository;
+    private final ImageProcessingService imageProcessingService;
+    private final UserPrincipalCache userPrincipalCache;
 
     @Value("${file.upload.directory:${user.home}/bookclub/uploads}")
     private String uploadDirectoryRoot;
 
+    @Value("${image.processing.avatar-size:512}")
+    private int avatarSize;
+
     @Value(MailConstants.FRONTEND_BASE_URL_PROPERTY)
     private String frontendBaseUrl;
 
@@ -70,14 +78,20 @@ public class UserService extends GenericService<User, UserDTO> {
                                                            // instance)
             GenericMapper<User, UserDTO> mapper, // This is for GenericService
             BCryptPasswordEncoder bCryptPasswordEncoder,
-            JavaMailSender javaMailSender,
+            MailOutboxService mailOutboxService,
+            MailTemplateService mailTemplateService,
             CartService cartService,
-            UserRepository userRepository) { // Specific UserRepository for user-related queries
+            UserRepository userRepository, // Specific UserRepository for user-related queries
+            ImageProcessingService imageProcessingService,
+            UserPrincipalCache userPrincipalCache) {
         super(repository, mapper);
         this.bCryptPasswordEncoder = bCryptPasswordEncoder;
-        this.javaMailSender = javaMailSender;
+        this.mailOutboxService = mailOutboxService;
+        this.mailTemplateService = mailTemplateService;
         this.cartService = cartService;
         this.userRepository = userRepository;
+        this.imageProcessingService = imageProcessingService;
+        this.userPrincipalCache = userPrincipalCache;
     }
 
     @Transactional
@@ -139,17 +153,14 @@ public class UserService extends GenericService<User, UserDTO> {
         user.setUpdatedBy("SYSTEM_PASSWORD_RESET_INIT");
         userRepository.save(user);
 
-        String emailBody = String.format(
-                MailConstants.MAIL_MESSAGE_FOR_PASSWORD_RESET_LINK_TEMPLATE,
-                frontendBaseUrl,
-                token);
+        String emailBody = mailTemplateService.render(MailTemplateService.PASSWORD_RESET,
+                Map.of("frontendBaseUrl", frontendBaseUrl, "token", token));
 
-        SimpleMailMessage mailMessage = MailUtils.createMailMessage(
+        mailOutboxService.enqueue(
                 user.getEmail(),
                 MailConstants.MAIL_SUBJECT_FOR_PASSWORD_RESET,
                 emailBody);
-        javaMailSender.send(mailMessage);
-        log.info("Письмо для сброса пароля отправлено на email: {} с токеном.", email);
+        log.info("Письмо для сброса пароля поставлено в очередь для email: {}", email);
     }
 
     @Override
@@ -158,6 +169,8 @@ public class UserService extends GenericService<User, UserDTO> {
         User existingUser = userRepository.findById(dto.getId())
                 .orElseThrow(() -> new NotFoundException("Пользователь с ID " + dto.getId() + " не найден"));
 
+        boolean emailChanged = !Objects.equals(existingUser.getEmail(), dto.getEmail());
+
         // Обновляем только нужные поля
         existingUser.setEmail(dto.getEmail());
         existingUser.setFirstName(dto.getFirstName());
@@ -168,11 +181,17 @@ public class UserService extends GenericService<User, UserDTO> {
         existingUser.setBirthDate(dto.getBirthDate());
 
         // Обновляем роль, если она указана
+        boolean roleChanged = false;
         if (dto.getRole() != null && dto.getRole().getId() != null) {
+            roleChanged = existingUser.getRole() == null
+                    || !Objects.equals(existingUser.getRole().getId(), dto.getRole().getId());
             Role role = new Role();
             role.setId(dto.getRole().getId());
             existingUser.setRole(role);
         }
+        if (emailChanged || roleChanged) {
+            revokeTokens(existingUser);
+        }
 
         // Обновляем аудит-поля
         setAuditFields(existingUser, false);
@@ -232,6 +251,7 @@ public class UserService extends GenericService<User, UserDTO> {
 
         user.setPassword(bCryptPasswordEncoder.encode(newPassword));
         user.setChangePasswordToken(null);
+        revokeTokens(user);
         user.setUpdatedWhen(LocalDateTime.now());
         user.setUpdatedBy("SYSTEM_PASSWORD_RESET_SUCCESS");
         userRepository.save(user);
@@ -299,6 +319,9 @@ public class UserService extends GenericService<User, UserDTO> {
             Role role = new Role(); // Placeholder, requires fetching actual Role entity
             role.setId(userDTO.getRole().getId());
             // role.setName(userDTO.getRole().getName()); // Если имя тоже есть в DTO
+            if (currentUser.getRole() == null || !Objects.equals(currentUser.getRole().getId(), role.getId())) {
+                revokeTokens(currentUser);
+            }
             currentUser.setRole(role);
         }
         setAuditFields(currentUser, false); // Обновляем updatedBy/updatedWhen
@@ -318,6 +341,7 @@ public class UserService extends GenericService<User, UserDTO> {
             throw new IllegalArgumentException("Новый пароль должен содержать не менее 6 символов.");
         }
         user.setPassword(bCryptPasswordEncoder.encode(newPassword));
+        revokeTokens(user);
         user.setUpdatedWhen(LocalDateTime.now());
         user.setUpdatedBy(email); // Аутентифицированный пользователь сам себя обновляет
         userRepository.save(user);
@@ -342,9 +366,18 @@ public class UserService extends GenericService<User, UserDTO> {
         }
 
         try {
+            // Аватар показывается маленьким, поэтому исходник перекодируется в JPEG
+            // ограниченного размера. Форматы, которые ImageIO не читает, сохраняются как есть
+            byte[] avatarJpeg;
+            try (InputStream inputStream = file.getInputStream()) {
+                avatarJpeg = imageProcessingService.renderJpeg(inputStream, avatarSize);
+            }
+
             String originalFilename = file.getOriginalFilename();
             String fileExtension = "";
-            if (originalFilename != null) {
+            if (avatarJpeg != null) {
+                fileExtension = "jpg";
+            } else if (originalFilename != null) {
                 fileExtension = StringUtils.getFilenameExtension(originalFilename);
             }
             String newFileName = UUID.randomUUID().toString()
@@ -378,7 +411,13 @@ public class UserService extends GenericService<User, UserDTO> {
             }
 
             Path newFilePath = avatarUploadPath.resolve(newFileName);
-            Files.copy(file.getInputStream(), newFilePath, StandardCopyOption.REPLACE_EXISTING);
+            if (avatarJpeg != null) {
+                Files.write(newFilePath, avatarJpeg);
+            } else {
+                try (InputStream inputStream = file.getInputStream()) {
+                    Files.copy(inputStream, newFilePath, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
             log.info("Новый аватар успешно сохранен: {}", newFilePath.toAbsolutePath());
 
             String avatarAccessUrl = "/uploads/avatars/" + newFileName;
@@ -399,6 +438,18 @@ public class UserService extends GenericService<User, UserDTO> {
         }
     }
 
+    @Override
+    public void deleteSoft(final Long id) throws MyDeleteException {
+        super.deleteSoft(id);
+        userPrincipalCache.invalidate(id);
+    }
+
+    // Выданные ранее JWT перестают приниматься, кеш сбрасывается после коммита
+    private void revokeTokens(User user) {
+        user.setTokenVersion(user.getTokenVersion() + 1);
+        userPrincipalCache.invalidate(user.getId());
+    }
+
     protected NotFoundException createNotFoundException(Long id) {
         return new NotFoundException("Пользователь с ID " + id + " не найден.");
     }
@@ -24,11 +24,20 @@ public class CustomUserDetails implements UserDetails {
     private final Boolean accountNotExpired;
     private final Boolean accountNotLocked;
     private final Boolean credentialsNonExpired;
+    private final int tokenVersion;
 
     public CustomUserDetails(final Integer id,
                              final String email,
                              final String password,
                              final Collection<? extends GrantedAuthority> authorities) {
+        this(id, email, password, authorities, 0);
+    }
+
+    public CustomUserDetails(final Integer id,
+                             final String email,
+                             final String password,
+                             final Collection<? extends GrantedAuthority> authorities,
+                             final int tokenVersion) {
         this.id = id;
         this.email = email;
         this.password = password;
@@ -37,6 +46,7 @@ public class CustomUserDetails implements UserDetails {
         this.accountNotLocked = true;
         this.credentialsNonExpired = true;
         this.enabled = true;
+        this.tokenVersion = tokenVersion;
     }
 
     @Override
@@ -78,6 +88,15 @@ public class CustomUserDetails implements UserDetails {
         return id;
     }
 
+    public int getTokenVersion() {
+        return tokenVersion;
+    }
+
+    // Копия для контекста безопасности запроса: хеш пароля там не нужен
+    public CustomUserDetails withoutPassword() {
+        return new CustomUserDetails(id, email, null, authorities, tokenVersion);
+    }
+
     @Override
     public String toString() {
         try {
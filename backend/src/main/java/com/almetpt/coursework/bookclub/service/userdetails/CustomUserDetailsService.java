@@ -44,12 +44,26 @@ public class CustomUserDetailsService implements UserDetailsService {
             if (user == null) {
                 throw new UsernameNotFoundException("Пользователь с email: " + email + " не найден");
             }
-
-            List<SimpleGrantedAuthority> authorities = new ArrayList<>();
-            authorities.add(new SimpleGrantedAuthority(user.getRole().getId() == 1L
-                    ? "ROLE_" + UserRoleConstants.USER
-                    : "ROLE_" + UserRoleConstants.ORGANIZER));
-            return new CustomUserDetails(user.getId().intValue(), email, user.getPassword(), authorities);
+            return toUserDetails(user);
         }
     }
+
+    /**
+     * Загрузка по id из JWT: после смены email старый адрес может принадлежать другому пользователю.
+     */
+    public CustomUserDetails loadUserById(Integer id) throws UsernameNotFoundException {
+        User user = userRepository.findById(id.longValue())
+                .filter(found -> !found.isDeleted())
+                .orElseThrow(() -> new UsernameNotFoundException("Пользователь с id: " + id + " не найден"));
+        return toUserDetails(user);
+    }
+
+    private CustomUserDetails toUserDetails(User user) {
+        List<SimpleGrantedAuthority> authorities = new ArrayList<>();
+        authorities.add(new SimpleGrantedAuthority(user.getRole().getId() == 1L
+                ? "ROLE_" + UserRoleConstants.USER
+                : "ROLE_" + UserRoleConstants.ORGANIZER));
+        return new CustomUserDetails(user.getId().intValue(), user.getEmail(), user.getPassword(), authorities,
+                user.getTokenVersion());
+    }
 }
\ No newline at end of file
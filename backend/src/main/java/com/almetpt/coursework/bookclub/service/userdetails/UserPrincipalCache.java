@@ -0,0 +1,105 @@
+package com.almetpt.coursework.bookclub.service.userdetails;
+
+import com.almetpt.coursework.bookclub.utils.TransactionCallbacks;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Кеш пользователей, прошедших проверку JWT, по id пользователя.
+ * <p>
+ * Запись хранит версию токенов пользователя из БД; фильтр принимает токен,
+ * только если версия в нем совпадает. Смена пароля, роли или email
+ * увеличивает версию и сбрасывает запись после коммита на этом экземпляре,
+ * остальные экземпляры увидят новую версию не позже чем через TTL.
+ * <p>
+ * Загрузка идет через {@link Cache#get}, поэтому параллельные промахи по
+ * одному пользователю читают БД один раз. Каждая запись помнит номер, с
+ * которого началась ее загрузка; запись, начатая до последнего сброса этого
+ * пользователя, отбрасывается и загружается заново. Отсутствие пользователя
+ * тоже кешируется, чтобы токен удаленного пользователя не ходил в БД на
+ * каждом запросе.
+ */
+@Component
+@Slf4j
+public class UserPrincipalCache {
+
+    private final Cache<Integer, Entry> cache;
+    // Номер последнего сброса по пользователю; живет не дольше самих записей
+    private final Cache<Integer, Long> invalidations;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public UserPrincipalCache(@Value("${jwt.principal-cache.ttl-ms:60000}") long ttlMillis,
+                              @Value("${jwt.principal-cache.max-size:10000}") long maxSize) {
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        this.invalidations = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .maximumSize(maxSize)
+                .build();
+        log.info("Кеш пользователей JWT: TTL {} мс, не более {} записей", ttlMillis, maxSize);
+    }
+
+    /**
+     * @param loader загрузка из БД; {@code null} означает, что пользователя нет,
+     *               и тоже кешируется
+     * @return пользователь или {@code null}, если его нет
+     */
+    public CustomUserDetails get(Integer userId, Supplier<CustomUserDetails> loader) {
+        Entry entry = cache.get(userId, key -> {
+            long loadedAt = sequence.get();
+            return new Entry(Optional.ofNullable(loader.get()), loadedAt);
+        });
+        Long invalidatedAt = invalidations.getIfPresent(userId);
+        if (invalidatedAt != null && entry.loadedAt() < invalidatedAt) {
+            // Загрузка началась до сброса и могла прочитать старую версию
+            cache.asMap().remove(userId, entry);
+            return get(userId, loader);
+        }
+        return entry.principal().orElse(null);
+    }
+
+    /**
+     * Сбрасывает пользователя. Внутри транзакции сброс выполняется после
+     * коммита, чтобы параллельный запрос не закешировал старую версию.
+     */
+    public void invalidate(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        Integer key = userId.intValue();
+        TransactionCallbacks.afterCommit(() -> evict(key));
+    }
+
+    private void evict(Integer key) {
+        invalidations.put(key, sequence.incrementAndGet());
+        cache.invalidate(key);
+    }
+
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("entries", cache.estimatedSize());
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        return result;
+    }
+
+    private record Entry(Optional<CustomUserDetails> principal, long loadedAt) {
+    }
+}
@@ -0,0 +1,37 @@
+package com.almetpt.coursework.bookclub.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Построчная запись CSV (RFC 4180) в переданный {@link Writer}.
+ * Значения с запятой, кавычкой или переводом строки берутся в кавычки,
+ * null пишется пустым полем. Буферизация и закрытие - на вызывающем коде.
+ */
+public class CsvWriter {
+
+    private final Writer writer;
+
+    public CsvWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    public void writeRow(Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                writer.write(escape(values[i].toString()));
+            }
+        }
+        writer.write('\n');
+    }
+
+    public static String escape(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
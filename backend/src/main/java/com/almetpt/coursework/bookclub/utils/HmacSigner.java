@@ -0,0 +1,77 @@
+package com.almetpt.coursework.bookclub.utils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * Подпись строк HMAC-SHA256 для ссылок и токенов, которые проверяются без
+ * обращения к БД. Подпись - base64url без выравнивания; сравнение при
+ * проверке выполняется за постоянное время.
+ * <p>
+ * Каждое назначение подписи использует свой ключ: если отдельный секрет не
+ * задан, ключ выводится из общего секрета и имени назначения, чтобы подпись
+ * одного протокола не подходила для другого.
+ */
+public final class HmacSigner {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+
+    /**
+     * @throws IllegalArgumentException если секрет пустой
+     */
+    public HmacSigner(String secret) {
+        this(requireSecret(secret).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private HmacSigner(byte[] key) {
+        this.key = new SecretKeySpec(key, ALGORITHM);
+    }
+
+    /**
+     * Подпись для одного назначения. Отдельный секрет используется как есть,
+     * иначе ключ - HMAC-SHA256 общего секрета от имени назначения.
+     *
+     * @param secret отдельный секрет назначения, может быть пустым
+     * @throws IllegalArgumentException если не задан ни один секрет
+     */
+    public static HmacSigner forPurpose(String secret, String masterSecret, String purpose) {
+        if (secret != null && !secret.isBlank()) {
+            return new HmacSigner(secret);
+        }
+        byte[] derived = Base64.getUrlDecoder().decode(new HmacSigner(masterSecret).sign("purpose:" + purpose));
+        return new HmacSigner(derived);
+    }
+
+    public String sign(String payload) {
+        try {
+            // Mac не потокобезопасен, поэтому создается на каждый вызов
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            byte[] signature = mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Не удалось вычислить подпись", e);
+        }
+    }
+
+    public boolean verify(String payload, String signature) {
+        if (signature == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(sign(payload).getBytes(StandardCharsets.US_ASCII),
+                signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String requireSecret(String secret) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalArgumentException("Секрет для подписи не задан");
+        }
+        return secret;
+    }
+}
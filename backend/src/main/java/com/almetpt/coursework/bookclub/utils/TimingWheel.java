@@ -0,0 +1,174 @@
+package com.almetpt.coursework.bookclub.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Иерархическое колесо таймеров.
+ * <p>
+ * Уровень {@code i} делит время на ячейки по {@code tick * size^i} мс, поэтому
+ * добавление и отмена таймера стоят O(1) при любом их числе, а продвижение
+ * колеса на такт разбирает одну ячейку нижнего уровня. Когда нижний уровень
+ * проходит полный оборот, ячейка следующего уровня раскладывается по нижним.
+ * Срабатывание точно до такта нижнего уровня. Отмененные таймеры удаляются,
+ * когда колесо доходит до их ячейки.
+ * <p>
+ * Класс не потокобезопасен: вызывающий код синхронизирует доступ сам.
+ *
+ * @param <T> данные таймера
+ */
+public final class TimingWheel<T> {
+
+    public static final class Timer<T> {
+        private final long deadline;
+        private final T payload;
+        private boolean cancelled;
+
+        private Timer(long deadline, T payload) {
+            this.deadline = deadline;
+            this.payload = payload;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        public T getPayload() {
+            return payload;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private final long tickMillis;
+    private final int size;
+    private final long[] levelTick;
+    private final List<List<Timer<T>>[]> levels = new ArrayList<>();
+    private long currentTime;
+    private int pending;
+
+    /**
+     * @param tickMillis такт нижнего уровня
+     * @param size       ячеек на уровне
+     * @param levelCount уровней; колесо вмещает {@code tick * size^levelCount} мс
+     * @param startTime  время начала отсчета, мс
+     * @throws IllegalArgumentException если размеры не положительные
+     */
+    public TimingWheel(long tickMillis, int size, int levelCount, long startTime) {
+        if (tickMillis < 1 || size < 2 || levelCount < 1) {
+            throw new IllegalArgumentException("Размеры колеса таймеров должны быть положительными");
+        }
+        this.tickMillis = tickMillis;
+        this.size = size;
+        this.levelTick = new long[levelCount];
+        long tick = tickMillis;
+        for (int level = 0; level < levelCount; level++) {
+            levelTick[level] = tick;
+            @SuppressWarnings("unchecked")
+            List<Timer<T>>[] buckets = new List[size];
+            levels.add(buckets);
+            tick = Math.multiplyExact(tick, size);
+        }
+        this.currentTime = startTime - Math.floorMod(startTime, tickMillis);
+    }
+
+    /**
+     * @return наибольшая задержка, которую вмещает колесо, мс
+     */
+    public long getSpanMillis() {
+        return levelTick[levelTick.length - 1] * size;
+    }
+
+    public long getCurrentTime() {
+        return currentTime;
+    }
+
+    public int getPending() {
+        return pending;
+    }
+
+    /**
+     * Добавляет таймер. Уже наступивший срок срабатывает при следующем {@link #advance}.
+     *
+     * @throws IllegalArgumentException если срок дальше, чем вмещает колесо
+     */
+    public Timer<T> add(long deadline, T payload) {
+        Timer<T> timer = new Timer<>(deadline, payload);
+        place(timer);
+        pending++;
+        return timer;
+    }
+
+    public void cancel(Timer<T> timer) {
+        if (!timer.cancelled) {
+            timer.cancelled = true;
+            pending--;
+        }
+    }
+
+    /**
+     * Продвигает колесо до {@code now} и передает сработавшие таймеры по возрастанию такта.
+     *
+     * @return число сработавших таймеров
+     */
+    public int advance(long now, Consumer<Timer<T>> expired) {
+        int fired = 0;
+        while (currentTime + tickMillis <= now) {
+            List<Timer<T>> due = take(0, currentTime);
+            currentTime += tickMillis;
+            for (int level = levelTick.length - 1; level > 0; level--) {
+                if (currentTime % levelTick[level] == 0) {
+                    List<Timer<T>> cascade = take(level, currentTime);
+                    if (cascade != null) {
+                        cascade.forEach(this::place);
+                    }
+                }
+            }
+            if (due == null) {
+                continue;
+            }
+            for (Timer<T> timer : due) {
+                if (!timer.cancelled) {
+                    timer.cancelled = true;
+                    pending--;
+                    fired++;
+                    expired.accept(timer);
+                }
+            }
+        }
+        return fired;
+    }
+
+    private void place(Timer<T> timer) {
+        if (timer.cancelled) {
+            return;
+        }
+        // Просроченный таймер попадает в текущую ячейку и срабатывает на ближайшем такте
+        long deadline = Math.max(timer.deadline, currentTime);
+        for (int level = 0; level < levelTick.length; level++) {
+            long tick = levelTick[level];
+            long levelStart = currentTime - Math.floorMod(currentTime, tick);
+            if (deadline < levelStart + tick * size) {
+                int index = (int) Math.floorMod(Math.floorDiv(deadline, tick), (long) size);
+                List<Timer<T>>[] buckets = levels.get(level);
+                if (buckets[index] == null) {
+                    buckets[index] = new ArrayList<>();
+                }
+                buckets[index].add(timer);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Срок таймера дальше, чем вмещает колесо: " + timer.deadline);
+    }
+
+    private List<Timer<T>> take(int level, long time) {
+        int index = (int) Math.floorMod(Math.floorDiv(time, levelTick[level]), (long) size);
+        List<Timer<T>>[] buckets = levels.get(level);
+        List<Timer<T>> bucket = buckets[index];
+        buckets[index] = null;
+        return bucket;
+    }
+}
@@ -0,0 +1,51 @@
+package com.almetpt.coursework.bookclub.utils;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Действия, привязанные к завершению текущей транзакции.
+ * <p>
+ * Сбросы кешей, рассылки и удаление файлов выполняются только после коммита:
+ * при откате изменения остаются прежними, а параллельный запрос не успевает
+ * прочитать незакоммиченные данные.
+ */
+public final class TransactionCallbacks {
+
+    private TransactionCallbacks() {
+    }
+
+    /**
+     * Выполняет действие после коммита текущей транзакции, а без транзакции -
+     * сразу. При откате действие не выполняется.
+     */
+    public static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Выполняет действие после завершения текущей транзакции с ее статусом
+     * ({@link TransactionSynchronization#STATUS_COMMITTED} и другие).
+     *
+     * @throws IllegalStateException если синхронизация транзакций не активна
+     */
+    public static void afterCompletion(IntConsumer action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                action.accept(status);
+            }
+        });
+    }
+}
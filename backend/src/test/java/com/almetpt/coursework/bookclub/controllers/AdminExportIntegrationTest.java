@@ -0,0 +1,192 @@
+package com.almetpt.coursework.bookclub.controllers;
+
+import com.almetpt.coursework.bookclub.model.AuditEntry;
+import com.almetpt.coursework.bookclub.model.Order;
+import com.almetpt.coursework.bookclub.model.OrderStatus;
+import com.almetpt.coursework.bookclub.model.Product;
+import com.almetpt.coursework.bookclub.model.ProductCategory;
+import com.almetpt.coursework.bookclub.model.User;
+import com.almetpt.coursework.bookclub.repository.AuditRepository;
+import com.almetpt.coursework.bookclub.repository.OrderRepository;
+import com.almetpt.coursework.bookclub.repository.ProductRepository;
+import com.almetpt.coursework.bookclub.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@WithMockUser(roles = "ADMIN")
+public class AdminExportIntegrationTest {
+
+    private static final String EMAIL = "export@example.com";
+    private static final LocalDateTime AUDIT_TIME = LocalDateTime.of(2019, 6, 1, 10, 0);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private AuditRepository auditRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final List<Long> orderIds = new ArrayList<>();
+    private final List<Long> productIds = new ArrayList<>();
+    private final List<Long> auditIds = new ArrayList<>();
+    private Long userId;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setEmail(EMAIL);
+        user.setPassword("secret");
+        user.setFirstName("Иван, \"Ваня\"");
+        user.setBirthDate(LocalDate.of(1990, 1, 1));
+        user.setCreatedWhen(LocalDateTime.now());
+        user = userRepository.save(user);
+        userId = user.getId();
+
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Product product = new Product();
+            product.setName("Export product " + i);
+            product.setPrice(new BigDecimal("7.50"));
+            product.setCategory(ProductCategory.E_BOOK);
+            product.setCreatedWhen(LocalDateTime.now());
+            products.add(productRepository.save(product));
+            productIds.add(products.get(i).getId());
+        }
+
+        // Заказ с двумя товарами и заказ без товаров
+        for (int i = 0; i < 2; i++) {
+            Order order = new Order();
+            order.setUser(user);
+            order.setStatus(OrderStatus.PENDING);
+            order.setTotal(new BigDecimal("15.00"));
+            order.setProducts(i == 0 ? new ArrayList<>(products) : new ArrayList<>());
+            order.setCreatedWhen(LocalDateTime.now());
+            orderIds.add(orderRepository.save(order).getId());
+        }
+
+        for (int i = 0; i < 3; i++) {
+            auditIds.add(auditRepository.save(AuditEntry.builder()
+                    .actionType("VIEW")
+                    .userEmail(EMAIL)
+                    .timestamp(AUDIT_TIME.plusMinutes(i))
+                    .details("row " + i)
+                    .build()).getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        auditRepository.deleteAllById(auditIds);
+        orderRepository.deleteAllById(orderIds);
+        productRepository.deleteAllById(productIds);
+        userRepository.deleteById(userId);
+    }
+
+    @Test
+    void auditNdjson_ShouldStreamRangeInTimeOrder() throws Exception {
+        MvcResult result = stream(get("/api/rest/admin/export/audit")
+                .param("dateFrom", AUDIT_TIME.toString())
+                .param("dateTo", AUDIT_TIME.plusMinutes(2).toString()));
+
+        assertTrue(result.getResponse().getContentType().startsWith("application/x-ndjson"));
+        assertTrue(result.getResponse().getHeader("Content-Disposition").contains("audit-"));
+        List<JsonNode> rows = ndjson(result);
+        // Граница dateTo не включается
+        assertEquals(2, rows.size());
+        assertEquals(auditIds.get(0), rows.get(0).get("id").asLong());
+        assertEquals(auditIds.get(1), rows.get(1).get("id").asLong());
+        assertEquals("row 1", rows.get(1).get("details").asText());
+    }
+
+    @Test
+    void ordersNdjson_ShouldGroupProductsPerOrder() throws Exception {
+        List<JsonNode> orders = ndjson(stream(get("/api/rest/admin/export/orders"))).stream()
+                .filter(order -> orderIds.contains(order.get("id").asLong()))
+                .toList();
+
+        assertEquals(2, orders.size());
+        assertEquals(EMAIL, orders.get(0).get("userEmail").asText());
+        assertEquals(2, orders.get(0).get("products").size());
+        List<String> names = new ArrayList<>();
+        orders.get(0).get("products").forEach(product -> names.add(product.get("name").asText()));
+        assertEquals(List.of("Export product 0", "Export product 1"), names.stream().sorted().toList());
+        assertEquals(0, orders.get(1).get("products").size());
+    }
+
+    @Test
+    void usersCsv_ShouldEscapeValuesAndOmitPassword() throws Exception {
+        MvcResult result = stream(get("/api/rest/admin/export/users").param("format", "csv"));
+
+        assertTrue(result.getResponse().getContentType().startsWith("text/csv"));
+        String[] lines = result.getResponse().getContentAsString(StandardCharsets.UTF_8).split("\n");
+        assertEquals("id,email,first_name,last_name,patronymic,phone,address,birth_date,role,created_when,deleted", lines[0]);
+        String line = List.of(lines).stream().filter(l -> l.contains(EMAIL)).findFirst().orElseThrow();
+        assertTrue(line.startsWith(userId + "," + EMAIL + ",\"Иван, \"\"Ваня\"\"\","), line);
+        assertFalse(line.contains("secret"));
+    }
+
+    @Test
+    void unknownFormat_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/rest/admin/export/orders").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private MvcResult stream(RequestBuilder request) throws Exception {
+        MvcResult started = mockMvc.perform(request)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("Content-Disposition"))
+                .andReturn();
+    }
+
+    private List<JsonNode> ndjson(MvcResult result) throws Exception {
+        String body = result.getResponse().getContentAsString(StandardCharsets.UTF_8);
+        assertTrue(body.endsWith("\n"), "Каждая запись NDJSON должна заканчиваться переводом строки");
+        List<JsonNode> rows = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            rows.add(objectMapper.readTree(line));
+        }
+        return rows;
+    }
+}
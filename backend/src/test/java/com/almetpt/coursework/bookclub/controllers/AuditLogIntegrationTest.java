@@ -0,0 +1,72 @@
+package com.almetpt.coursework.bookclub.controllers;
+
+import com.almetpt.coursework.bookclub.model.AuditEntry;
+import com.almetpt.coursework.bookclub.repository.AuditRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class AuditLogIntegrationTest {
+
+    private static final String ADMIN_EMAIL = "audit-writer-admin@test.com";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AuditRepository auditRepository;
+
+    @AfterEach
+    void tearDown() {
+        auditRepository.deleteAll(findEntries());
+    }
+
+    @Test
+    @WithMockUser(username = ADMIN_EMAIL, roles = "ADMIN")
+    void controllerCall_ShouldBeWrittenByBackgroundWriter() throws Exception {
+        mockMvc.perform(get("/api/rest/books/listing"))
+                .andExpect(status().isOk());
+
+        List<AuditEntry> entries = awaitEntries();
+        assertEquals(1, entries.size());
+        AuditEntry entry = entries.get(0);
+        assertEquals("VIEW", entry.getActionType());
+        assertEquals("BOOK", entry.getResourceType());
+        assertNotNull(entry.getTimestamp());
+        assertTrue(entry.getDetails().contains("Method: getBookListing"), entry.getDetails());
+
+        mockMvc.perform(get("/api/rest/admin/stats/audit-writer"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.dropped").value(0));
+    }
+
+    private List<AuditEntry> awaitEntries() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        List<AuditEntry> entries = findEntries();
+        while (entries.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            entries = findEntries();
+        }
+        return entries;
+    }
+
+    private List<AuditEntry> findEntries() {
+        return auditRepository.findByUserEmail(ADMIN_EMAIL, PageRequest.of(0, 100)).getContent();
+    }
+}
@@ -0,0 +1,155 @@
+package com.almetpt.coursework.bookclub.controllers;
+
+import com.almetpt.coursework.bookclub.model.AuditEntry;
+import com.almetpt.coursework.bookclub.repository.AuditRepository;
+import com.almetpt.coursework.bookclub.service.AuditPartitionService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class AuditStorageIntegrationTest {
+
+    private static final String EMAIL = "audit-storage@test.com";
+    private static final LocalDateTime BASE = LocalDateTime.of(2021, 3, 10, 12, 0);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AuditRepository auditRepository;
+
+    @Autowired
+    private AuditPartitionService auditPartitionService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final List<Long> ids = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // Две пары записей с одинаковым временем проверяют порядок по id внутри одной секунды
+        LocalDateTime[] timestamps = {
+                BASE, BASE, BASE.plusMinutes(1), BASE.plusMinutes(2), BASE.plusMinutes(2), BASE.plusMinutes(3), BASE.plusMonths(1)
+        };
+        for (int i = 0; i < timestamps.length; i++) {
+            ids.add(auditRepository.save(AuditEntry.builder()
+                    .actionType(i % 2 == 0 ? "VIEW" : "UPDATE")
+                    .resourceType("BOOK")
+                    .resourceId((long) i)
+                    .userEmail(EMAIL)
+                    .timestamp(timestamps[i])
+                    .details("entry " + i + ", with \"quotes\"")
+                    .build()).getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        auditRepository.deleteAllById(ids);
+        ids.clear();
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void keysetPages_ShouldReturnEveryEntryOnceNewestFirst() throws Exception {
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            MockHttpServletRequestBuilder request = get("/api/rest/audit")
+                    .param("userEmail", EMAIL)
+                    .param("size", "2");
+            if (cursor != null) {
+                request.param("cursor", cursor);
+            }
+            JsonNode page = read(request);
+            page.get("content").forEach(entry -> seen.add(entry.get("id").asLong()));
+            cursor = page.get("hasNext").asBoolean() ? page.get("nextCursor").asText() : null;
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(4, pages);
+        // По убыванию (timestamp, id): при равном времени сначала больший id
+        List<Long> expected = List.of(ids.get(6), ids.get(5), ids.get(4), ids.get(3), ids.get(2), ids.get(1), ids.get(0));
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void filters_ShouldCombineOnlyGivenConditions() throws Exception {
+        JsonNode page = read(get("/api/rest/audit")
+                .param("userEmail", EMAIL)
+                .param("actionType", "UPDATE")
+                .param("dateTo", BASE.plusMinutes(2).toString())
+                .param("size", "10"));
+
+        assertFalse(page.get("hasNext").asBoolean());
+        assertEquals(2, page.get("content").size());
+        assertEquals(ids.get(3), page.get("content").get(0).get("id").asLong());
+        assertEquals(ids.get(1), page.get("content").get(1).get("id").asLong());
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void invalidCursorOrSize_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/rest/audit").param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/rest/audit").param("size", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void retention_ShouldArchiveAndRemoveMonthsBeforeCutoff(@TempDir Path archive) throws Exception {
+        Map<String, Object> report = auditPartitionService.applyRetention(YearMonth.from(BASE.plusMonths(1)), archive);
+
+        assertEquals(List.of("2021-03"), report.get("months"));
+        assertEquals(6L, report.get("rows"));
+        assertEquals(List.of(ids.get(6)), auditRepository.findAllById(ids).stream().map(AuditEntry::getId).toList());
+
+        Path file = archive.resolve("audit_entries_2021-03.csv.gz");
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            List<String> lines = reader.lines().toList();
+            assertEquals("id,action_type,resource_type,resource_id,user_email,timestamp,details", lines.get(0));
+            assertEquals(7, lines.size());
+            assertTrue(lines.get(1).endsWith(",\"entry 0, with \"\"quotes\"\"\""), lines.get(1));
+        }
+    }
+
+    private JsonNode read(MockHttpServletRequestBuilder request) throws Exception {
+        String body = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        return objectMapper.readTree(body);
+    }
+}
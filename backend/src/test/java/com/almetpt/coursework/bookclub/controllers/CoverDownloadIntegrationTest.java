@@ -0,0 +1,239 @@
+package com.almetpt.coursework.bookclub.controllers;
+
+import com.almetpt.coursework.bookclub.model.Book;
+import com.almetpt.coursework.bookclub.repository.BookRepository;
+import com.almetpt.coursework.bookclub.service.FileStorageService;
+import com.almetpt.coursework.bookclub.service.ImageProcessingService;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class CoverDownloadIntegrationTest {
+
+    private static final int CATALOG_SIZE = 24;
+    private static final int COVER_SIZE = 48 * 1024;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private ImageProcessingService imageProcessingService;
+
+    private final List<Long> bookIds = new ArrayList<>();
+
+    // Шумное изображение, похожее на фотографию: PNG такого размера весит мегабайты
+    private static byte[] photo(int width, int height) throws Exception {
+        Random random = new Random(width);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int base = (x * 255 / width) << 16 | (y * 255 / height) << 8;
+                image.setRGB(x, y, base | random.nextInt(64));
+            }
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", output);
+        return output.toByteArray();
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        bookIds.clear();
+        Random random = new Random(42);
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            byte[] cover = new byte[COVER_SIZE];
+            random.nextBytes(cover);
+
+            Book book = new Book();
+            book.setTitle("Book " + i);
+            book.setAuthor("Author " + i);
+            book.setCreatedWhen(LocalDateTime.now());
+            book.setCoverImageFilename(fileStorageService.saveBytes(cover, "jpg"));
+            bookIds.add(bookRepository.save(book).getId());
+        }
+    }
+
+    @Test
+    void repeatCatalogBrowsing_ShouldTransferOnlyHeaders() throws Exception {
+        List<String> eTags = new ArrayList<>();
+        long firstVisitBytes = 0;
+        for (Long id : bookIds) {
+            MockHttpServletResponse response = mockMvc.perform(get("/api/rest/books/{id}/cover", id))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse();
+            assertNotNull(response.getHeader(HttpHeaders.ETAG));
+            assertNotNull(response.getHeader(HttpHeaders.LAST_MODIFIED));
+            eTags.add(response.getHeader(HttpHeaders.ETAG));
+            firstVisitBytes += response.getContentAsByteArray().length;
+        }
+
+        long repeatVisitBytes = 0;
+        int notModified = 0;
+        for (int i = 0; i < bookIds.size(); i++) {
+            MockHttpServletResponse response = mockMvc.perform(get("/api/rest/books/{id}/cover", bookIds.get(i))
+                            .header(HttpHeaders.IF_NONE_MATCH, eTags.get(i)))
+                    .andReturn().getResponse();
+            if (response.getStatus() == HttpStatus.NOT_MODIFIED.value()) {
+                notModified++;
+            }
+            repeatVisitBytes += response.getContentAsByteArray().length;
+        }
+
+        // Каждая обложка повторного визита подтверждается по ETag без тела
+        assertEquals((long) CATALOG_SIZE * COVER_SIZE, firstVisitBytes);
+        assertEquals(1.0, (double) notModified / CATALOG_SIZE);
+        assertEquals(0, repeatVisitBytes);
+    }
+
+    @Test
+    void getCover_WithIfModifiedSince_ShouldReturnNotModified() throws Exception {
+        String lastModified = mockMvc.perform(get("/api/rest/books/{id}/cover", bookIds.get(0)))
+                .andReturn().getResponse().getHeader(HttpHeaders.LAST_MODIFIED);
+
+        mockMvc.perform(get("/api/rest/books/{id}/cover", bookIds.get(0))
+                        .header(HttpHeaders.IF_MODIFIED_SINCE, lastModified))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void getCover_WithRange_ShouldReturnPartialContent() throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(get("/api/rest/books/{id}/cover", bookIds.get(0))
+                        .header(HttpHeaders.RANGE, "bytes=0-1023"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 0-1023/" + COVER_SIZE))
+                .andReturn().getResponse();
+
+        assertEquals(1024, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void getCover_WithSeveralRanges_ShouldReturnMultipartByteRanges() throws Exception {
+        mockMvc.perform(get("/api/rest/books/{id}/cover", bookIds.get(0))
+                        .header(HttpHeaders.RANGE, "bytes=0-9,100-199"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, startsWith("multipart/byteranges")));
+    }
+
+    @Test
+    void getCover_WithRemoteUrl_ShouldDownloadOnceAndStoreLocally() throws Exception {
+        byte[] remoteCover = new byte[COVER_SIZE];
+        new Random(7).nextBytes(remoteCover);
+        AtomicInteger hits = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/cover.jpg", exchange -> {
+            hits.incrementAndGet();
+            exchange.getResponseHeaders().add(HttpHeaders.CONTENT_TYPE, "image/jpeg");
+            exchange.sendResponseHeaders(200, remoteCover.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(remoteCover);
+            }
+        });
+        server.start();
+        try {
+            Book book = new Book();
+            book.setTitle("Remote");
+            book.setAuthor("Author");
+            book.setCreatedWhen(LocalDateTime.now());
+            book.setCoverImageUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/cover.jpg");
+            Long id = bookRepository.save(book).getId();
+
+            for (int i = 0; i < 3; i++) {
+                MockHttpServletResponse response = mockMvc.perform(get("/api/rest/books/{id}/cover", id))
+                        .andExpect(status().isOk())
+                        .andReturn().getResponse();
+                assertArrayEquals(remoteCover, response.getContentAsByteArray());
+            }
+
+            assertEquals(1, hits.get());
+            assertNotNull(bookRepository.findById(id).orElseThrow().getCoverImageFilename());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void catalogGrid_WithSmallSize_ShouldTransferFarLess() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Book book = new Book();
+            book.setTitle("Photo " + i);
+            book.setAuthor("Author");
+            book.setCreatedWhen(LocalDateTime.now());
+            String key = fileStorageService.saveBytes(photo(1000 + i, 1500), "png");
+            imageProcessingService.generateRenditions(key);
+            book.setCoverImageFilename(key);
+            ids.add(bookRepository.save(book).getId());
+        }
+
+        long originalBytes = 0;
+        long smallBytes = 0;
+        for (Long id : ids) {
+            originalBytes += mockMvc.perform(get("/api/rest/books/{id}/cover", id))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsByteArray().length;
+            smallBytes += mockMvc.perform(get("/api/rest/books/{id}/cover", id).param("size", "small"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "image/jpeg"))
+                    .andReturn().getResponse().getContentAsByteArray().length;
+        }
+
+        // Миниатюры сетки весят как минимум на порядок меньше оригиналов
+        assertTrue(smallBytes > 0);
+        assertTrue(smallBytes * 10 < originalBytes,
+                "size=small: " + smallBytes + " байт против " + originalBytes + " байт оригиналов");
+    }
+
+    @Test
+    void getCover_WithUnknownSize_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/rest/books/{id}/cover", bookIds.get(0)).param("size", "huge"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getCover_WithStaleIfRange_ShouldReturnWholeFile() throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(get("/api/rest/books/{id}/cover", bookIds.get(0))
+                        .header(HttpHeaders.RANGE, "bytes=0-1023")
+                        .header(HttpHeaders.IF_RANGE, "\"outdated\""))
+                .andExpect(status().isOk())
+                .andReturn().getResponse();
+
+        assertEquals(COVER_SIZE, response.getContentAsByteArray().length);
+    }
+}
@@ -0,0 +1,159 @@
+package com.almetpt.coursework.bookclub.controllers;
+
+import com.almetpt.coursework.bookclub.model.ApplicationStatus;
+import com.almetpt.coursework.bookclub.model.Event;
+import com.almetpt.coursework.bookclub.model.EventApplication;
+import com.almetpt.coursework.bookclub.model.User;
+import com.almetpt.coursework.bookclub.repository.EventApplicationRepository;
+import com.almetpt.coursework.bookclub.repository.EventRepository;
+import com.almetpt.coursework.bookclub.repository.JobWatermarkRepository;
+import com.almetpt.coursework.bookclub.repository.UserRepository;
+import com.almetpt.coursework.bookclub.service.EventAttendanceScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class EventAttendanceSchedulerIntegrationTest {
+
+    // Даты в прошлом, раньше любых мероприятий других тестов
+    private static final LocalDateTime FIRST_EVENT = LocalDateTime.of(2001, 1, 1, 18, 0);
+    private static final LocalDateTime CUTOFF = LocalDateTime.of(2001, 1, 10, 0, 0);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EventAttendanceScheduler eventAttendanceScheduler;
+
+    @Autowired
+    private JobWatermarkRepository jobWatermarkRepository;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private EventApplicationRepository eventApplicationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private final List<Long> eventIds = new ArrayList<>();
+    private final List<Long> userIds = new ArrayList<>();
+    private final List<Long> applicationIds = new ArrayList<>();
+    private Long attendedId;
+    private Long rejectedId;
+    private Long laterId;
+
+    @BeforeEach
+    void setUp() {
+        jobWatermarkRepository.deleteAll();
+        ReflectionTestUtils.setField(eventAttendanceScheduler, "chunkSize", 2);
+
+        // Пять прошедших мероприятий по одной неявке и одно после границы
+        for (int i = 0; i < 5; i++) {
+            Event event = createEvent(FIRST_EVENT.plusDays(i));
+            applicationIds.add(createApplication(event, ApplicationStatus.APPROVED, false));
+        }
+        attendedId = createApplication(eventRepository.findById(eventIds.get(0)).orElseThrow(),
+                ApplicationStatus.APPROVED, true);
+        rejectedId = createApplication(eventRepository.findById(eventIds.get(1)).orElseThrow(),
+                ApplicationStatus.REJECTED, false);
+        laterId = createApplication(createEvent(CUTOFF.plusDays(5)), ApplicationStatus.APPROVED, false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.setField(eventAttendanceScheduler, "chunkSize", 500);
+        jobWatermarkRepository.deleteAll();
+        eventApplicationRepository.deleteAllById(applicationIds);
+        eventApplicationRepository.deleteAllById(List.of(attendedId, rejectedId, laterId));
+        eventRepository.deleteAllById(eventIds);
+        userRepository.deleteAllById(userIds);
+    }
+
+    @Test
+    @WithMockUser(username = "attendance-admin@test.com", roles = "ADMIN")
+    void markMissedEvents_ShouldProcessOnlyEventsAfterWatermark() throws Exception {
+        assertEquals(5, eventAttendanceScheduler.markMissedEvents(CUTOFF));
+
+        for (Long id : applicationIds) {
+            assertTrue(eventApplicationRepository.findById(id).orElseThrow().isMissed());
+        }
+        assertFalse(eventApplicationRepository.findById(attendedId).orElseThrow().isMissed());
+        assertFalse(eventApplicationRepository.findById(rejectedId).orElseThrow().isMissed());
+        assertFalse(eventApplicationRepository.findById(laterId).orElseThrow().isMissed());
+
+        mockMvc.perform(get("/api/rest/admin/stats/event-attendance"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.watermarkEventId").value(eventIds.get(4)))
+                .andExpect(jsonPath("$.lastRunApplications").value(5));
+
+        // Повторный запуск не возвращается к уже пройденным мероприятиям
+        assertEquals(0, eventAttendanceScheduler.markMissedEvents(CUTOFF));
+        assertEquals(0, eventAttendanceScheduler.getStats().get("lastRunEvents"));
+
+        // После сдвига границы обрабатывается только новое мероприятие
+        assertEquals(1, eventAttendanceScheduler.markMissedEvents(CUTOFF.plusDays(10)));
+        assertTrue(eventApplicationRepository.findById(laterId).orElseThrow().isMissed());
+    }
+
+    @Test
+    void markMissedEvents_AfterLostWatermark_ShouldNotMarkTwice() {
+        assertEquals(5, eventAttendanceScheduler.markMissedEvents(CUTOFF));
+
+        // Как после сбоя до фиксации позиции: пачки проходятся заново без изменений
+        jobWatermarkRepository.deleteAll();
+
+        assertEquals(0, eventAttendanceScheduler.markMissedEvents(CUTOFF));
+        assertEquals(eventIds.get(4), jobWatermarkRepository.findAll().get(0).getPositionId());
+    }
+
+    private Event createEvent(LocalDateTime date) {
+        Event event = new Event();
+        event.setTitle("Встреча " + date);
+        event.setDate(date);
+        event.setMaxParticipants(10);
+        event.setCreatedWhen(LocalDateTime.now());
+        event = eventRepository.save(event);
+        eventIds.add(event.getId());
+        return event;
+    }
+
+    private Long createApplication(Event event, ApplicationStatus status, boolean attended) {
+        User user = new User();
+        user.setEmail("attendance-" + userIds.size() + "@test.com");
+        user.setPassword("secret");
+        user.setBirthDate(LocalDate.of(1990, 1, 1));
+        user.setCreatedWhen(LocalDateTime.now());
+        user = userRepository.save(user);
+        userIds.add(user.getId());
+
+        EventApplication application = new EventApplication();
+        application.setUser(user);
+        application.setEvent(event);
+        application.setStatus(status);
+        application.setAttended(attended);
+        application.setCreatedWhen(LocalDateTime.now());
+        return eventApplicationRepository.save(application).getId();
+    }
+}
@@ -0,0 +1,205 @@
+package com.almetpt.coursework.bookclub.controllers;
+
+import com.almetpt.coursework.bookclub.dto.EventApplicationDTO;
+import com.almetpt.coursework.bookclub.model.Event;
+import com.almetpt.coursework.bookclub.model.User;
+import com.almetpt.coursework.bookclub.repository.EventApplicationRepository;
+import com.almetpt.coursework.bookclub.repository.EventRepository;
+import com.almetpt.coursework.bookclub.repository.MailOutboxRepository;
+import com.almetpt.coursework.bookclub.repository.UserRepository;
+import com.almetpt.coursework.bookclub.service.EventApplicationService;
+import com.almetpt.coursework.bookclub.service.EventCheckInService;
+import com.almetpt.coursework.bookclub.utils.HmacSigner;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Фоновая запись отметок отключена: тест пишет пачку сам
+@SpringBootTest(properties = "events.check-in.flush-ms=3600000")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class EventCheckInIntegrationTest {
+
+    private static final int CAPACITY = 4;
+    private static final int SCANS_PER_TICKET = 25;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EventApplicationService eventApplicationService;
+
+    @Autowired
+    private EventCheckInService eventCheckInService;
+
+    @Autowired
+    private EventApplicationRepository eventApplicationRepository;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MailOutboxRepository mailOutboxRepository;
+
+    @Value("${jwt.secret}")
+    private String jwtSecret;
+
+    private Long eventId;
+    private final List<User> users = new ArrayList<>();
+    private final List<Long> applicationIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Event event = new Event();
+        event.setTitle("Литературная гостиная");
+        event.setDate(LocalDateTime.now().plusHours(1));
+        event.setMaxParticipants(CAPACITY);
+        event.setCreatedWhen(LocalDateTime.now());
+        eventId = eventRepository.save(event).getId();
+
+        for (int i = 0; i <= CAPACITY; i++) {
+            User user = new User();
+            user.setEmail("check-in-" + i + "@test.com");
+            user.setPassword("secret");
+            user.setBirthDate(LocalDate.of(1990, 1, 1));
+            user.setCreatedWhen(LocalDateTime.now());
+            users.add(userRepository.save(user));
+        }
+        for (User user : users) {
+            applicationIds.add(apply(user).getId());
+        }
+        SecurityContextHolder.clearContext();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        mailOutboxRepository.deleteAll();
+        eventApplicationRepository.deleteAllById(applicationIds);
+        eventRepository.deleteById(eventId);
+        userRepository.deleteAll(users);
+    }
+
+    @Test
+    void checkIn_ShouldAdmitEachTicketOnceAndFlushAttendanceInBatch() throws Exception {
+        List<String> tickets = new ArrayList<>();
+        for (int i = 0; i < CAPACITY; i++) {
+            tickets.add(ticketOf(i));
+        }
+        // Заявка сверх мест отклонена, билета у нее нет
+        mockMvc.perform(get("/api/rest/event-applications/{id}/ticket", applicationIds.get(CAPACITY))
+                        .with(user(users.get(CAPACITY).getEmail())))
+                .andExpect(status().isNotFound());
+
+        long loadsBefore = (Long) eventCheckInService.getStats().get("loads");
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        ConcurrentLinkedQueue<EventCheckInService.CheckIn> results = new ConcurrentLinkedQueue<>();
+        try {
+            for (int scan = 0; scan < SCANS_PER_TICKET; scan++) {
+                for (int i = 0; i < CAPACITY - 1; i++) {
+                    String ticket = tickets.get(i);
+                    executor.execute(() -> results.add(eventCheckInService.checkIn(eventId, ticket)));
+                }
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(CAPACITY - 1, results.stream()
+                .filter(result -> result.result() == EventCheckInService.Result.ADMITTED).count());
+        assertEquals((CAPACITY - 1) * (SCANS_PER_TICKET - 1), results.stream()
+                .filter(result -> result.result() == EventCheckInService.Result.ALREADY_CHECKED_IN).count());
+        assertEquals(loadsBefore + 1, eventCheckInService.getStats().get("loads"));
+
+        // Отметки копятся в памяти и пишутся одной пачкой
+        assertFalse(attended(0));
+        assertEquals(CAPACITY - 1, eventCheckInService.flush());
+        for (int i = 0; i < CAPACITY - 1; i++) {
+            assertTrue(attended(i));
+        }
+        assertFalse(attended(CAPACITY - 1));
+
+        mockMvc.perform(post("/api/rest/events/{eventId}/check-in", eventId)
+                        .param("ticket", tickets.get(0))
+                        .with(user("organizer@test.com").roles("ORGANIZER")))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.result").value("ALREADY_CHECKED_IN"));
+        String forged = tickets.get(1).substring(0, tickets.get(1).lastIndexOf('.') + 1) + "AAAA";
+        mockMvc.perform(post("/api/rest/events/{eventId}/check-in", eventId)
+                        .param("ticket", forged)
+                        .with(user("organizer@test.com").roles("ORGANIZER")))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.result").value("INVALID"));
+        // Ключ билетов выводится из jwt.secret, но не равен ему
+        String payload = tickets.get(1).substring(0, tickets.get(1).lastIndexOf('.'));
+        String signedWithJwtSecret = payload + "." + new HmacSigner(jwtSecret).sign(payload);
+        assertEquals(EventCheckInService.Result.INVALID,
+                eventCheckInService.checkIn(eventId, signedWithJwtSecret).result());
+        mockMvc.perform(post("/api/rest/events/{eventId}/check-in", eventId + 1)
+                        .param("ticket", tickets.get(1))
+                        .with(user("organizer@test.com").roles("ORGANIZER")))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.result").value("WRONG_EVENT"));
+        mockMvc.perform(post("/api/rest/events/{eventId}/check-in", eventId)
+                        .param("ticket", tickets.get(1))
+                        .with(user(users.get(1).getEmail())))
+                .andExpect(status().isForbidden());
+
+        // Отмененная после загрузки списка заявка не проходит, хотя подпись билета верна
+        assertTrue(eventApplicationService.cancelByUser(applicationIds.get(CAPACITY - 1), users.get(CAPACITY - 1).getId()));
+        assertEquals(EventCheckInService.Result.NOT_APPROVED,
+                eventCheckInService.checkIn(eventId, tickets.get(CAPACITY - 1)).result());
+    }
+
+    private String ticketOf(int applicant) throws Exception {
+        String body = mockMvc.perform(get("/api/rest/event-applications/{id}/ticket", applicationIds.get(applicant))
+                        .with(user(users.get(applicant).getEmail())))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String ticket = body.replaceAll(".*\"ticket\":\"([^\"]+)\".*", "$1");
+        assertEquals(eventApplicationRepository.findById(applicationIds.get(applicant)).orElseThrow().getQrCode(), ticket);
+        return ticket;
+    }
+
+    private boolean attended(int applicant) {
+        return eventApplicationRepository.findById(applicationIds.get(applicant)).orElseThrow().isAttended();
+    }
+
+    private EventApplicationDTO apply(User user) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new TestingAuthenticationToken(user.getEmail(), null, "ROLE_USER"));
+        EventApplicationDTO dto = new EventApplicationDTO();
+        dto.setUserId(user.getId());
+        dto.setEventId(eventId);
+        return eventApplicationService.create(dto);
+    }
+}
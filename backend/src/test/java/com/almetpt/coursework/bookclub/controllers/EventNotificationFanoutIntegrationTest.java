@@ -0,0 +1,177 @@
+package com.almetpt.coursework.bookclub.controllers;
+
+import com.almetpt.coursework.bookclub.model.ApplicationStatus;
+import com.almetpt.coursework.bookclub.model.Event;
+import com.almetpt.coursework.bookclub.model.EventApplication;
+import com.almetpt.coursework.bookclub.model.User;
+import com.almetpt.coursework.bookclub.repository.EventApplicationRepository;
+import com.almetpt.coursework.bookclub.repository.EventRepository;
+import com.almetpt.coursework.bookclub.repository.MailOutboxRepository;
+import com.almetpt.coursework.bookclub.repository.UserRepository;
+import com.almetpt.coursework.bookclub.service.EventService;
+import com.almetpt.coursework.bookclub.service.MailOutboxService;
+import com.icegreen.greenmail.configuration.GreenMailConfiguration;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class EventNotificationFanoutIntegrationTest {
+
+    private static final int PARTICIPANTS = 500;
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP)
+            .withConfiguration(GreenMailConfiguration.aConfig().withUser("test", "test"))
+            .withPerMethodLifecycle(true);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private MailOutboxService mailOutboxService;
+
+    @Autowired
+    private MailOutboxRepository mailOutboxRepository;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private EventApplicationRepository eventApplicationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private Long eventId;
+    private final List<Long> userIds = new ArrayList<>();
+    private final List<Long> applicationIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        mailOutboxRepository.deleteAll();
+
+        Event event = new Event();
+        event.setTitle("Большая встреча");
+        event.setDate(LocalDateTime.now().plusDays(10));
+        event.setMaxParticipants(PARTICIPANTS);
+        event.setCreatedWhen(LocalDateTime.now());
+        event = eventRepository.save(event);
+        eventId = event.getId();
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < PARTICIPANTS; i++) {
+            User user = new User();
+            user.setEmail("fanout-" + i + "@test.com");
+            user.setPassword("secret");
+            user.setBirthDate(LocalDate.of(1990, 1, 1));
+            user.setCreatedWhen(LocalDateTime.now());
+            users.add(user);
+        }
+        List<EventApplication> applications = new ArrayList<>();
+        for (User user : userRepository.saveAll(users)) {
+            userIds.add(user.getId());
+            EventApplication application = new EventApplication();
+            application.setUser(user);
+            application.setEvent(event);
+            application.setStatus(ApplicationStatus.APPROVED);
+            application.setCreatedWhen(LocalDateTime.now());
+            applications.add(application);
+        }
+        for (EventApplication application : eventApplicationRepository.saveAll(applications)) {
+            applicationIds.add(application.getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        mailOutboxRepository.deleteAll();
+        eventApplicationRepository.deleteAllById(applicationIds);
+        eventRepository.deleteById(eventId);
+        userRepository.deleteAllById(userIds);
+    }
+
+    @Test
+    @WithMockUser(username = "fanout-admin@test.com", roles = "ADMIN")
+    void cancelEvent_ShouldRejectInBulkAndDeliverOneMailPerParticipant() throws Exception {
+        long sessionsBefore = (Long) mailOutboxService.getStats().get("sessions");
+
+        eventService.cancelEvent(eventId, "Зал закрыт");
+
+        assertEquals(0, eventApplicationRepository.countApprovedApplicationsForEvent(eventId));
+        EventApplication rejected = eventApplicationRepository.findById(applicationIds.get(0)).orElseThrow();
+        assertEquals(ApplicationStatus.REJECTED, rejected.getStatus());
+        assertEquals(EventApplication.RejectionReason.EVENT_CANCELLED, rejected.getRejectionReason());
+
+        mockMvc.perform(get("/api/rest/events/{id}/notifications", eventId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cancelled.pending").value(PARTICIPANTS))
+                .andExpect(jsonPath("$.cancelled.total").value(PARTICIPANTS))
+                .andExpect(jsonPath("$.rescheduled.total").value(0));
+
+        assertEquals(PARTICIPANTS, mailOutboxService.processDue());
+
+        assertEquals(PARTICIPANTS, greenMail.getReceivedMessages().length);
+        assertEquals(1, greenMail.getReceivedMessagesForDomain("fanout-0@test.com").length);
+        // Письма уходят пачками через общее соединение, а не по одному
+        long sessions = (Long) mailOutboxService.getStats().get("sessions") - sessionsBefore;
+        assertTrue(sessions > 1 && sessions < PARTICIPANTS, "SMTP-сессий: " + sessions);
+
+        mockMvc.perform(get("/api/rest/events/{id}/notifications", eventId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cancelled.pending").value(0))
+                .andExpect(jsonPath("$.cancelled.sent").value(PARTICIPANTS));
+    }
+
+    @Test
+    @WithMockUser(username = "fanout-admin@test.com", roles = "ADMIN")
+    void withdrawnApplicant_ShouldNotBeNotifiedOrRejected() {
+        EventApplication withdrawn = eventApplicationRepository.findById(applicationIds.get(0)).orElseThrow();
+        withdrawn.setDeleted(true);
+        eventApplicationRepository.save(withdrawn);
+
+        eventService.rescheduleEvent(eventId, LocalDateTime.now().plusDays(20), "Перенос зала");
+        eventService.cancelEvent(eventId, "Зал закрыт");
+
+        // Отозвавший заявку участник не получает ни переноса, ни отмены
+        assertEquals(PARTICIPANTS - 1, eventService.getNotificationProgress(eventId).get("rescheduled").get("total"));
+        assertEquals(PARTICIPANTS - 1, eventService.getNotificationProgress(eventId).get("cancelled").get("total"));
+        assertEquals(ApplicationStatus.APPROVED,
+                eventApplicationRepository.findById(withdrawn.getId()).orElseThrow().getStatus());
+        assertEquals(EventApplication.RejectionReason.EVENT_CANCELLED,
+                eventApplicationRepository.findById(applicationIds.get(1)).orElseThrow().getRejectionReason());
+    }
+
+    @Test
+    @WithMockUser(username = "fanout-admin@test.com", roles = "ADMIN")
+    void rescheduleEvent_ShouldQueueMailWithoutChangingApplications() {
+        eventService.rescheduleEvent(eventId, LocalDateTime.now().plusDays(20), "Перенос зала");
+
+        assertEquals(PARTICIPANTS, eventApplicationRepository.countApprovedApplicationsForEvent(eventId));
+        assertEquals(PARTICIPANTS, eventService.getNotificationProgress(eventId).get("rescheduled").get("pending"));
+    }
+}
@@ -0,0 +1,160 @@
+package com.almetpt.coursework.bookclub.controllers;
+
+import com.almetpt.coursework.bookclub.model.ApplicationStatus;
+import com.almetpt.coursework.bookclub.model.Event;
+import com.almetpt.coursework.bookclub.model.EventApplication;
+import com.almetpt.coursework.bookclub.model.User;
+import com.almetpt.coursework.bookclub.repository.EventApplicationRepository;
+import com.almetpt.coursework.bookclub.repository.EventRepository;
+import com.almetpt.coursework.bookclub.repository.MailOutboxRepository;
+import com.almetpt.coursework.bookclub.repository.UserRepository;
+import com.almetpt.coursework.bookclub.service.EventReminderService;
+import com.almetpt.coursework.bookclub.service.EventService;
+import com.almetpt.coursework.bookclub.service.MailOutboxService;
+import com.almetpt.coursework.bookclub.service.MailTemplateService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class EventReminderIntegrationTest {
+
+    private static final long HOUR_MILLIS = 3_600_000;
+
+    @Autowired
+    private EventReminderService eventReminderService;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private EventApplicationRepository eventApplicationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MailOutboxRepository mailOutboxRepository;
+
+    @Autowired
+    private MailOutboxService mailOutboxService;
+
+    @Autowired
+    private MailTemplateService mailTemplateService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private LocalDateTime now;
+    private long nowMillis;
+    private Event tomorrow;
+    private Event soon;
+    private Event later;
+    private Event beyondHorizon;
+    private final List<User> users = new ArrayList<>();
+    private final List<EventApplication> applications = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        nowMillis = System.currentTimeMillis();
+        now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        tomorrow = event("Завтрашняя встреча", now.plusHours(23));
+        soon = event("Встреча через полчаса", now.plusMinutes(30));
+        later = event("Встреча через полтора дня", now.plusHours(36));
+        beyondHorizon = event("Дальняя встреча", now.plusHours(60));
+
+        for (int i = 0; i < 2; i++) {
+            User user = new User();
+            user.setEmail("reminder-" + i + "@test.com");
+            user.setPassword("secret");
+            user.setBirthDate(LocalDate.of(1990, 1, 1));
+            user.setCreatedWhen(LocalDateTime.now());
+            users.add(userRepository.save(user));
+        }
+        for (Event event : List.of(tomorrow, soon, later)) {
+            for (User user : users) {
+                EventApplication application = new EventApplication();
+                application.setUser(user);
+                application.setEvent(event);
+                application.setStatus(ApplicationStatus.APPROVED);
+                application.setCreatedWhen(LocalDateTime.now());
+                applications.add(eventApplicationRepository.save(application));
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        mailOutboxRepository.deleteAll();
+        eventApplicationRepository.deleteAll(applications);
+        eventRepository.deleteAll(List.of(tomorrow, soon, later, beyondHorizon));
+        userRepository.deleteAll(users);
+    }
+
+    @Test
+    void reminders_ShouldFireOnceFollowReschedulesAndSurviveRestart() {
+        eventReminderService.loadUpcoming(now);
+        assertEquals(later.getId(), eventReminderService.getStats().get("loadedEventId"));
+
+        // Просроченные при загрузке напоминания уходят на ближайшем такте
+        eventReminderService.fireDue(nowMillis + 2000);
+        assertEquals(2L, total(EventReminderService.Kind.DAY, tomorrow));
+        assertEquals(2L, total(EventReminderService.Kind.HOUR, soon));
+        // До начала меньше часа: напоминание за сутки опоздало и не отправляется
+        assertEquals(0L, total(EventReminderService.Kind.DAY, soon));
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new TestingAuthenticationToken("admin@test.com", null, "ROLE_ADMIN"));
+        eventService.rescheduleEvent(tomorrow.getId(), now.plusHours(25), "Зал занят");
+        eventService.cancelEvent(later.getId(), "Автор заболел");
+
+        // Перенос ставит напоминание за сутки к новой дате, отмена снимает таймеры
+        eventReminderService.fireDue(nowMillis + 13 * HOUR_MILLIS);
+        assertEquals(4L, total(EventReminderService.Kind.DAY, tomorrow));
+        assertEquals(0L, total(EventReminderService.Kind.DAY, later));
+
+        // Новый экземпляр собирает колесо заново и не повторяет отправленное
+        EventReminderService restarted = new EventReminderService(eventRepository, eventApplicationRepository,
+                mailOutboxService, mailTemplateService, transactionManager, 1000, 48);
+        assertEquals(2, restarted.loadUpcoming(now));
+        assertEquals(0, restarted.fireDue(nowMillis + 2 * HOUR_MILLIS));
+        assertEquals(4L, total(EventReminderService.Kind.DAY, tomorrow));
+        assertEquals(2L, total(EventReminderService.Kind.HOUR, soon));
+
+        // Позиция загрузки сдвигается вперед вместе с горизонтом
+        assertEquals(1, restarted.loadUpcoming(now.plusHours(13)));
+        assertEquals(beyondHorizon.getId(), restarted.getStats().get("loadedEventId"));
+    }
+
+    private long total(EventReminderService.Kind kind, Event event) {
+        return mailOutboxService.getGroupProgress(kind.groupKey(event.getId())).get("total");
+    }
+
+    private Event event(String title, LocalDateTime date) {
+        Event event = new Event();
+        event.setTitle(title);
+        event.setDate(date);
+        event.setMaxParticipants(10);
+        event.setCreatedWhen(LocalDateTime.now());
+        return eventRepository.save(event);
+    }
+}
@@ -0,0 +1,209 @@
+package com.almetpt.coursework.bookclub.controllers;
+
+import com.almetpt.coursework.bookclub.config.EventApplicationDeduplication;
+import com.almetpt.coursework.bookclub.dto.EventApplicationDTO;
+import com.almetpt.coursework.bookclub.model.ApplicationStatus;
+import com.almetpt.coursework.bookclub.model.Event;
+import com.almetpt.coursework.bookclub.model.EventApplication;
+import com.almetpt.coursework.bookclub.model.User;
+import com.almetpt.coursework.bookclub.repository.EventApplicationRepository;
+import com.almetpt.coursework.bookclub.repository.EventRepository;
+import com.almetpt.coursework.bookclub.repository.MailOutboxRepository;
+import com.almetpt.coursework.bookclub.repository.UserRepository;
+import com.almetpt.coursework.bookclub.service.EventApplicationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class EventSeatReservationIntegrationTest {
+
+    private static final int CAPACITY = 50;
+    private static final int APPLICANTS = 1000;
+
+    @Autowired
+    private EventApplicationService eventApplicationService;
+
+    @Autowired
+    private EventApplicationRepository eventApplicationRepository;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MailOutboxRepository mailOutboxRepository;
+
+    @Autowired
+    private EventApplicationDeduplication eventApplicationDeduplication;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long eventId;
+    private final List<User> users = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Event event = new Event();
+        event.setTitle("Встреча с автором");
+        event.setDate(LocalDateTime.now().plusDays(7));
+        event.setMaxParticipants(CAPACITY);
+        event.setCreatedWhen(LocalDateTime.now());
+        eventId = eventRepository.save(event).getId();
+
+        List<User> created = new ArrayList<>();
+        for (int i = 0; i < APPLICANTS; i++) {
+            User user = new User();
+            user.setEmail("seat-" + i + "@test.com");
+            user.setPassword("secret");
+            user.setBirthDate(LocalDate.of(1990, 1, 1));
+            user.setCreatedWhen(LocalDateTime.now());
+            created.add(user);
+        }
+        users.addAll(userRepository.saveAll(created));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        mailOutboxRepository.deleteAll();
+        eventApplicationRepository.deleteAll(eventApplicationRepository.findAll().stream()
+                .filter(application -> application.getEvent().getId().equals(eventId))
+                .toList());
+        eventRepository.deleteById(eventId);
+        userRepository.deleteAll(users);
+    }
+
+    @Test
+    void create_UnderBurst_ShouldNotOversell() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger approved = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        try {
+            for (User user : users) {
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                        EventApplicationDTO result = apply(user);
+                        if (ApplicationStatus.APPROVED.name().equals(result.getApplicationStatus())) {
+                            approved.incrementAndGet();
+                        } else {
+                            rejected.incrementAndGet();
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    } finally {
+                        SecurityContextHolder.clearContext();
+                    }
+                });
+            }
+            start.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(failures.isEmpty(), () -> "Ошибки заявок: " + failures.peek());
+        assertEquals(CAPACITY, approved.get());
+        assertEquals(APPLICANTS - CAPACITY, rejected.get());
+        assertEquals(CAPACITY, eventApplicationRepository.countApprovedApplicationsForEvent(eventId));
+        assertEquals(CAPACITY, eventRepository.findById(eventId).orElseThrow().getReservedSeats());
+    }
+
+    @Test
+    void create_ShouldRejectDuplicateAndReuseCancelledSeat() {
+        User first = users.get(0);
+        EventApplicationDTO application = apply(first);
+        assertEquals(ApplicationStatus.APPROVED.name(), application.getApplicationStatus());
+        assertThrows(IllegalStateException.class, () -> apply(first));
+
+        assertTrue(eventApplicationService.cancelByUser(application.getId(), first.getId()));
+        assertEquals(0, eventRepository.findById(eventId).orElseThrow().getReservedSeats());
+
+        // Повторная заявка после отмены восстанавливает ту же строку
+        EventApplicationDTO again = apply(first);
+        assertEquals(application.getId(), again.getId());
+        assertEquals(ApplicationStatus.APPROVED.name(), again.getApplicationStatus());
+        EventApplication stored = eventApplicationRepository.findById(again.getId()).orElseThrow();
+        assertFalse(stored.isDeleted());
+        assertEquals(1, eventRepository.findById(eventId).orElseThrow().getReservedSeats());
+    }
+
+    @Test
+    void deduplicate_ShouldKeepActiveApplicationPerUserAndEvent() {
+        Event event = eventRepository.findById(eventId).orElseThrow();
+        User first = users.get(0);
+        User second = users.get(1);
+
+        // Строки, оставшиеся с тех пор, когда повторные заявки были разрешены
+        jdbcTemplate.execute("ALTER TABLE event_applications DROP CONSTRAINT uk_event_applications_user_event");
+        try {
+            EventApplication withdrawn = legacyApplication(first, event, ApplicationStatus.APPROVED, true);
+            EventApplication active = legacyApplication(first, event, ApplicationStatus.APPROVED, false);
+            EventApplication newerWithdrawn = legacyApplication(first, event, ApplicationStatus.PENDING, true);
+            EventApplication rejected = legacyApplication(second, event, ApplicationStatus.REJECTED, true);
+            EventApplication approved = legacyApplication(second, event, ApplicationStatus.APPROVED, true);
+
+            assertEquals(3, eventApplicationDeduplication.deduplicate());
+            assertEquals(0, eventApplicationDeduplication.deduplicate());
+
+            List<Long> remaining = eventApplicationRepository.findAll().stream()
+                    .filter(application -> application.getEvent().getId().equals(eventId))
+                    .map(EventApplication::getId)
+                    .sorted()
+                    .toList();
+            assertEquals(List.of(active.getId(), approved.getId()), remaining);
+            assertFalse(eventApplicationRepository.existsById(withdrawn.getId()));
+            assertFalse(eventApplicationRepository.existsById(newerWithdrawn.getId()));
+            assertFalse(eventApplicationRepository.existsById(rejected.getId()));
+        } finally {
+            jdbcTemplate.execute("ALTER TABLE event_applications ADD CONSTRAINT uk_event_applications_user_event "
+                    + "UNIQUE (user_id, event_id)");
+        }
+    }
+
+    private EventApplication legacyApplication(User user, Event event, ApplicationStatus status, boolean deleted) {
+        EventApplication application = new EventApplication();
+        application.setUser(user);
+        application.setEvent(event);
+        application.setStatus(status);
+        application.setDeleted(deleted);
+        application.setCreatedWhen(LocalDateTime.now());
+        return eventApplicationRepository.save(application);
+    }
+
+    private EventApplicationDTO apply(User user) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new TestingAuthenticationToken(user.getEmail(), null, "ROLE_USER"));
+        EventApplicationDTO dto = new EventApplicationDTO();
+        dto.setUserId(user.getId());
+        dto.setEventId(eventId);
+        return eventApplicationService.create(dto);
+    }
+}
@@ -0,0 +1,164 @@
+package com.almetpt.coursework.bookclub.controllers;
+
+import com.almetpt.coursework.bookclub.model.ApplicationStatus;
+import com.almetpt.coursework.bookclub.model.Event;
+import com.almetpt.coursework.bookclub.model.EventApplication;
+import com.almetpt.coursework.bookclub.model.User;
+import com.almetpt.coursework.bookclub.repository.EventApplicationRepository;
+import com.almetpt.coursework.bookclub.repository.EventRepository;
+import com.almetpt.coursework.bookclub.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@WithMockUser(roles = "ADMIN")
+public class EventStatisticsIntegrationTest {
+
+    // Окно в далеком будущем, чтобы не пересекаться с данными других тестов
+    private static final LocalDateTime WINDOW_START = LocalDateTime.of(2090, 1, 1, 0, 0);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private EventApplicationRepository eventApplicationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final List<Long> eventIds = new ArrayList<>();
+    private final List<Long> applicationIds = new ArrayList<>();
+    private final List<Long> userIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Event popular = event("Stats popular", WINDOW_START.plusDays(1), 4, false);
+        event("Stats empty", WINDOW_START.plusDays(2), 10, false);
+        event("Stats cancelled", WINDOW_START.plusDays(3), 10, true);
+        event("Stats outside", WINDOW_START.plusYears(1), 10, false);
+
+        apply(popular, ApplicationStatus.APPROVED, false);
+        apply(popular, ApplicationStatus.APPROVED, false);
+        apply(popular, ApplicationStatus.PENDING, false);
+        // Удаленная заявка не учитывается
+        apply(popular, ApplicationStatus.APPROVED, true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        eventApplicationRepository.deleteAllById(applicationIds);
+        eventRepository.deleteAllById(eventIds);
+        userRepository.deleteAllById(userIds);
+    }
+
+    @Test
+    void eventStats_ShouldAggregateApplicationsWithinWindow() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        try {
+            mockMvc.perform(get("/api/rest/admin/stats/events")
+                            .param("dateFrom", WINDOW_START.toString())
+                            .param("dateTo", WINDOW_START.plusMonths(1).toString())
+                            .param("sort", "date,asc"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.totalElements").value(2))
+                    .andExpect(jsonPath("$.content", hasSize(2)))
+                    .andExpect(jsonPath("$.content[0].title").value("Stats popular"))
+                    .andExpect(jsonPath("$.content[0].approvedApplications").value(2))
+                    .andExpect(jsonPath("$.content[0].totalApplications").value(3))
+                    .andExpect(jsonPath("$.content[0].fillPercentage").value(50.0))
+                    .andExpect(jsonPath("$.content[1].title").value("Stats empty"))
+                    .andExpect(jsonPath("$.content[1].totalApplications").value(0))
+                    .andExpect(jsonPath("$.content[1].fillPercentage").value(0.0));
+
+            // Число запросов не зависит от количества мероприятий
+            assertTrue(statistics.getPrepareStatementCount() <= 2,
+                    "Слишком много запросов: " + statistics.getPrepareStatementCount());
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
+    @Test
+    void eventStats_ShouldPageAndOptionallyIncludeCancelled() throws Exception {
+        mockMvc.perform(get("/api/rest/admin/stats/events")
+                        .param("dateFrom", WINDOW_START.toString())
+                        .param("dateTo", WINDOW_START.plusMonths(1).toString())
+                        .param("includeCancelled", "true")
+                        .param("size", "2")
+                        .param("page", "1")
+                        .param("sort", "date,asc"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalElements").value(3))
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.content[0].title").value("Stats cancelled"));
+    }
+
+    @Test
+    void eventStats_WithInvertedWindow_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/rest/admin/stats/events")
+                        .param("dateFrom", WINDOW_START.plusDays(1).toString())
+                        .param("dateTo", WINDOW_START.toString()))
+                .andExpect(status().isBadRequest());
+    }
+
+    private Event event(String title, LocalDateTime date, int maxParticipants, boolean cancelled) {
+        Event event = new Event();
+        event.setTitle(title);
+        event.setDate(date);
+        event.setMaxParticipants(maxParticipants);
+        event.setCancelled(cancelled);
+        event.setCreatedWhen(LocalDateTime.now());
+        event = eventRepository.save(event);
+        eventIds.add(event.getId());
+        return event;
+    }
+
+    private void apply(Event event, ApplicationStatus status, boolean deleted) {
+        User user = new User();
+        user.setEmail("stats-" + applicationIds.size() + "@example.com");
+        user.setPassword("secret");
+        user.setBirthDate(LocalDate.of(1995, 3, 3));
+        user.setCreatedWhen(LocalDateTime.now());
+        user = userRepository.save(user);
+        userIds.add(user.getId());
+
+        EventApplication application = new EventApplication();
+        application.setUser(user);
+        application.setEvent(event);
+        application.setStatus(status);
+        application.setDeleted(deleted);
+        application.setCreatedWhen(LocalDateTime.now());
+        applicationIds.add(eventApplicationRepository.save(application).getId());
+    }
+}
@@ -0,0 +1,261 @@
+package com.almetpt.coursework.bookclub.controllers;
+
+import com.almetpt.coursework.bookclub.dto.EventApplicationDTO;
+import com.almetpt.coursework.bookclub.model.Event;
+import com.almetpt.coursework.bookclub.model.User;
+import com.almetpt.coursework.bookclub.repository.EventApplicationRepository;
+import com.almetpt.coursework.bookclub.repository.EventRepository;
+import com.almetpt.coursework.bookclub.repository.MailOutboxRepository;
+import com.almetpt.coursework.bookclub.repository.UserRepository;
+import com.almetpt.coursework.bookclub.service.EventApplicationService;
+import com.almetpt.coursework.bookclub.service.EventUpdateBroadcaster;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class EventStreamIntegrationTest {
+
+    private static final int SUBSCRIBERS = 100;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private EventApplicationService eventApplicationService;
+
+    @Autowired
+    private EventApplicationRepository eventApplicationRepository;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MailOutboxRepository mailOutboxRepository;
+
+    private Long eventId;
+    private User user;
+    private final List<Stream<String>> streams = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Event event = new Event();
+        event.setTitle("Книжный клуб");
+        event.setDate(LocalDateTime.now().plusDays(7));
+        event.setMaxParticipants(10);
+        event.setCreatedWhen(LocalDateTime.now());
+        eventId = eventRepository.save(event).getId();
+
+        user = new User();
+        user.setEmail("stream@test.com");
+        user.setPassword("secret");
+        user.setBirthDate(LocalDate.of(1990, 1, 1));
+        user.setCreatedWhen(LocalDateTime.now());
+        user = userRepository.save(user);
+    }
+
+    @AfterEach
+    void tearDown() {
+        streams.forEach(Stream::close);
+        SecurityContextHolder.clearContext();
+        mailOutboxRepository.deleteAll();
+        eventApplicationRepository.deleteAll(eventApplicationRepository.findAll().stream()
+                .filter(application -> application.getEvent().getId().equals(eventId))
+                .toList());
+        eventRepository.deleteById(eventId);
+        userRepository.delete(user);
+    }
+
+    @Test
+    void stream_ShouldDeliverSeatChangeToAllSubscribers() throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        HttpRequest request = HttpRequest.newBuilder(
+                        URI.create("http://localhost:" + port + "/api/rest/events/stream?ids=" + eventId))
+                .header("Accept", "text/event-stream")
+                .build();
+        ExecutorService readers = Executors.newFixedThreadPool(SUBSCRIBERS);
+        CountDownLatch snapshots = new CountDownLatch(SUBSCRIBERS);
+        CountDownLatch updates = new CountDownLatch(SUBSCRIBERS);
+        AtomicInteger failures = new AtomicInteger();
+        try {
+            for (int i = 0; i < SUBSCRIBERS; i++) {
+                HttpResponse<Stream<String>> response = client.send(request, HttpResponse.BodyHandlers.ofLines());
+                assertEquals(200, response.statusCode());
+                Stream<String> lines = response.body();
+                streams.add(lines);
+                readers.execute(() -> {
+                    try {
+                        Iterator<String> iterator = lines.iterator();
+                        boolean snapshot = false;
+                        while (iterator.hasNext()) {
+                            String line = iterator.next();
+                            if (!line.startsWith("data:")) {
+                                continue;
+                            }
+                            if (!snapshot && line.contains("\"reservedSeats\":0")) {
+                                snapshot = true;
+                                snapshots.countDown();
+                            } else if (snapshot && line.contains("\"reservedSeats\":1")) {
+                                assertTrue(line.contains("\"remainingSeats\":9"));
+                                updates.countDown();
+                                return;
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failures.incrementAndGet();
+                    }
+                });
+            }
+            assertTrue(snapshots.await(30, TimeUnit.SECONDS), "Не все подписчики получили снимок мест");
+
+            apply(user);
+
+            assertTrue(updates.await(30, TimeUnit.SECONDS), "Не все подписчики получили изменение мест");
+            assertEquals(0, failures.get());
+        } finally {
+            readers.shutdownNow();
+        }
+    }
+
+    @Test
+    void slowSubscriber_ShouldBeDroppedWhenBufferOverflows() throws Exception {
+        // Отдельный экземпляр с буфером на два сообщения и без фоновой рассылки
+        EventUpdateBroadcaster broadcaster = new EventUpdateBroadcaster(
+                eventRepository, 2, 60_000, 50, 3_600_000, 3_600_000, 1, 60_000);
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SseEmitter stuck = new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) {
+                sending.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        try {
+            broadcaster.register(stuck, List.of(eventId), null);
+            broadcaster.flush();
+            assertTrue(sending.await(10, TimeUnit.SECONDS));
+
+            // Снимок застрял в отправке: два изменения ложатся в буфер, третье его переполняет
+            for (int i = 0; i < 3; i++) {
+                broadcaster.seatsChanged(eventId);
+                broadcaster.flush();
+            }
+
+            assertEquals(1L, broadcaster.getStats().get("dropped"));
+            assertEquals(0, broadcaster.getStats().get("subscribers"));
+            assertEquals(0, broadcaster.getStats().get("events"));
+        } finally {
+            release.countDown();
+            broadcaster.shutdown();
+        }
+    }
+
+    @Test
+    void stalledSends_ShouldNotStarveOtherSubscribers() throws Exception {
+        // Два потока отправки, оба займут клиенты с зависшим сокетом
+        EventUpdateBroadcaster broadcaster = new EventUpdateBroadcaster(
+                eventRepository, 32, 60_000, 50, 3_600_000, 3_600_000, 2, 200);
+        CountDownLatch stuckSending = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        List<SseEmitter> stuck = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            stuck.add(new SseEmitter() {
+                @Override
+                public void send(SseEventBuilder builder) {
+                    stuckSending.countDown();
+                    // Запись в сокет не реагирует на прерывание
+                    while (true) {
+                        try {
+                            release.await();
+                            return;
+                        } catch (InterruptedException e) {
+                            // ждем дальше
+                        }
+                    }
+                }
+            });
+        }
+        CountDownLatch healthyReceived = new CountDownLatch(2);
+        SseEmitter healthy = new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) {
+                healthyReceived.countDown();
+            }
+        };
+        try {
+            stuck.forEach(emitter -> broadcaster.register(emitter, List.of(eventId), null));
+            broadcaster.register(healthy, List.of(eventId), null);
+            broadcaster.flush();
+            assertTrue(stuckSending.await(10, TimeUnit.SECONDS));
+
+            // Рассылки после таймаута записи отключают зависших и освобождают отправку для остальных
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (healthyReceived.getCount() > 1 && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+                broadcaster.flush();
+            }
+            broadcaster.seatsChanged(eventId);
+            broadcaster.flush();
+            assertTrue(healthyReceived.await(10, TimeUnit.SECONDS), "Исправный подписчик не получил изменения");
+
+            assertEquals(2L, broadcaster.getStats().get("stalled"));
+            assertEquals(1, broadcaster.getStats().get("subscribers"));
+            assertEquals(4, broadcaster.getStats().get("senderThreads"));
+
+            // Зависшие записи вернулись: потоки на замену больше не нужны
+            release.countDown();
+            deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!Integer.valueOf(2).equals(broadcaster.getStats().get("senderThreads"))
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(2, broadcaster.getStats().get("senderThreads"));
+        } finally {
+            release.countDown();
+            broadcaster.shutdown();
+        }
+    }
+
+    private EventApplicationDTO apply(User applicant) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new TestingAuthenticationToken(applicant.getEmail(), null, "ROLE_USER"));
+        EventApplicationDTO dto = new EventApplicationDTO();
+        dto.setUserId(applicant.getId());
+        dto.setEventId(eventId);
+        return eventApplicationService.create(dto);
+    }
+}
@@ -0,0 +1,155 @@
+package com.almetpt.coursework.bookclub.controllers;
+
+import com.almetpt.coursework.bookclub.dto.EventApplicationDTO;
+import com.almetpt.coursework.bookclub.model.ApplicationStatus;
+import com.almetpt.coursework.bookclub.model.Event;
+import com.almetpt.coursework.bookclub.model.EventApplication;
+import com.almetpt.coursework.bookclub.model.User;
+import com.almetpt.coursework.bookclub.repository.EventApplicationRepository;
+import com.almetpt.coursework.bookclub.repository.EventRepository;
+import com.almetpt.coursework.bookclub.repository.EventWaitlistRepository;
+import com.almetpt.coursework.bookclub.repository.MailOutboxRepository;
+import com.almetpt.coursework.bookclub.repository.UserRepository;
+import com.almetpt.coursework.bookclub.service.EventApplicationService;
+import com.almetpt.coursework.bookclub.service.MailOutboxService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class EventWaitlistIntegrationTest {
+
+    private static final int CAPACITY = 2;
+    private static final int APPLICANTS = 5;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EventApplicationService eventApplicationService;
+
+    @Autowired
+    private EventApplicationRepository eventApplicationRepository;
+
+    @Autowired
+    private EventWaitlistRepository eventWaitlistRepository;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MailOutboxRepository mailOutboxRepository;
+
+    @Autowired
+    private MailOutboxService mailOutboxService;
+
+    private Long eventId;
+    private final List<User> users = new ArrayList<>();
+    private final List<Long> applicationIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Event event = new Event();
+        event.setTitle("Вечер поэзии");
+        event.setDate(LocalDateTime.now().plusDays(7));
+        event.setMaxParticipants(CAPACITY);
+        event.setCreatedWhen(LocalDateTime.now());
+        eventId = eventRepository.save(event).getId();
+
+        for (int i = 0; i < APPLICANTS; i++) {
+            User user = new User();
+            user.setEmail("waitlist-" + i + "@test.com");
+            user.setPassword("secret");
+            user.setBirthDate(LocalDate.of(1990, 1, 1));
+            user.setCreatedWhen(LocalDateTime.now());
+            users.add(userRepository.save(user));
+        }
+        for (User user : users) {
+            applicationIds.add(apply(user).getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        mailOutboxRepository.deleteAll();
+        eventWaitlistRepository.deleteAll();
+        eventApplicationRepository.deleteAllById(applicationIds);
+        eventRepository.deleteById(eventId);
+        userRepository.deleteAll(users);
+    }
+
+    @Test
+    void cancel_ShouldPromoteHeadAndKeepPositionsExact() throws Exception {
+        assertEquals(ApplicationStatus.APPROVED, statusOf(0));
+        assertEquals(ApplicationStatus.APPROVED, statusOf(1));
+        assertEquals(EventApplication.RejectionReason.NO_CAPACITY,
+                eventApplicationRepository.findById(applicationIds.get(2)).orElseThrow().getRejectionReason());
+        assertPosition(2, 1);
+        assertPosition(3, 2);
+        assertPosition(4, 3);
+
+        // Выход из середины очереди сдвигает стоящих за ним
+        assertTrue(eventApplicationService.cancelByUser(applicationIds.get(3), users.get(3).getId()));
+        assertPosition(4, 2);
+        mockMvc.perform(get("/api/rest/event-applications/{id}/waitlist-position", applicationIds.get(3))
+                        .with(user(users.get(3).getEmail())))
+                .andExpect(status().isNotFound());
+
+        // Отмена одобренной заявки в той же транзакции отдает место голове очереди
+        assertTrue(eventApplicationService.cancelByUser(applicationIds.get(0), users.get(0).getId()));
+        assertEquals(ApplicationStatus.APPROVED, statusOf(2));
+        assertNull(eventApplicationRepository.findById(applicationIds.get(2)).orElseThrow().getRejectionReason());
+        assertPosition(4, 1);
+        assertEquals(CAPACITY, eventRepository.findById(eventId).orElseThrow().getReservedSeats());
+        assertEquals(1L, mailOutboxService.getGroupProgress("waitlist-promoted:" + eventId).get("total"));
+
+        // Чужую позицию узнать нельзя
+        mockMvc.perform(get("/api/rest/event-applications/{id}/waitlist-position", applicationIds.get(4))
+                        .with(user(users.get(1).getEmail())))
+                .andExpect(status().isNotFound());
+    }
+
+    private void assertPosition(int applicant, long position) throws Exception {
+        mockMvc.perform(get("/api/rest/event-applications/{id}/waitlist-position", applicationIds.get(applicant))
+                        .with(user(users.get(applicant).getEmail())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.position").value(position));
+    }
+
+    private ApplicationStatus statusOf(int applicant) {
+        return eventApplicationRepository.findById(applicationIds.get(applicant)).orElseThrow().getStatus();
+    }
+
+    private EventApplicationDTO apply(User user) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new TestingAuthenticationToken(user.getEmail(), null, "ROLE_USER"));
+        EventApplicationDTO dto = new EventApplicationDTO();
+        dto.setUserId(user.getId());
+        dto.setEventId(eventId);
+        return eventApplicationService.create(dto);
+    }
+}
@@ -0,0 +1,168 @@
+package com.almetpt.coursework.bookclub.controllers;
+
+import com.almetpt.coursework.bookclub.config.ImageBlobMigration;
+import com.almetpt.coursework.bookclub.dto.ProductDTO;
+import com.almetpt.coursework.bookclub.mapper.ProductMapper;
+import com.almetpt.coursework.bookclub.model.ImageBlob;
+import com.almetpt.coursework.bookclub.model.Product;
+import com.almetpt.coursework.bookclub.model.ProductCategory;
+import com.almetpt.coursework.bookclub.repository.ProductRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class ImageBlobStorageIntegrationTest {
+
+    private static final String NAME_PREFIX = "BlobStorage";
+    private static final int PAGE_SIZE = 50;
+    private static final int COVER_SIZE = 64 * 1024;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductMapper productMapper;
+
+    @Autowired
+    private ImageBlobMigration imageBlobMigration;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final List<Long> productIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            Product product = product(NAME_PREFIX + " " + i);
+            product.setCoverImageData(cover(i));
+            productIds.add(productRepository.save(product).getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAllById(productIds);
+        productIds.clear();
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    void searchPage_ShouldNotLoadImageBlobs() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        try {
+            mockMvc.perform(get("/api/rest/products/search")
+                            .param("name", NAME_PREFIX)
+                            .param("size", String.valueOf(PAGE_SIZE)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.content", hasSize(PAGE_SIZE)))
+                    .andExpect(jsonPath("$.content[0].hasLocalImage").value(true));
+
+            assertEquals(0, statistics.getEntityStatistics(ImageBlob.class.getName()).getLoadCount());
+            assertEquals(0, statistics.getEntityStatistics(ImageBlob.class.getName()).getFetchCount());
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
+    @Test
+    void mapping_ShouldKeepBlobProxiesUninitialized() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            List<Product> page = productRepository.findAllById(productIds);
+            List<ProductDTO> dtos = productMapper.toDTOs(page);
+
+            assertEquals(PAGE_SIZE, dtos.size());
+            assertTrue(dtos.stream().allMatch(ProductDTO::isHasLocalImage));
+            assertTrue(page.stream().noneMatch(product -> Hibernate.isInitialized(product.getCoverImageBlob())));
+        });
+    }
+
+    @Test
+    void cover_ShouldBeServedFromImageBlob() throws Exception {
+        mockMvc.perform(get("/api/rest/products/{id}/cover", productIds.get(3)))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(cover(3)));
+    }
+
+    @Test
+    void migrate_ShouldMoveLegacyColumnDataIntoImageBlobs() throws Exception {
+        Long legacyId = productRepository.save(product(NAME_PREFIX + " legacy")).getId();
+        productIds.add(legacyId);
+        byte[] legacyCover = cover(100);
+
+        jdbcTemplate.execute("ALTER TABLE products ADD COLUMN cover_image_data BLOB");
+        try {
+            jdbcTemplate.update("UPDATE products SET cover_image_data = ? WHERE id = ?", legacyCover, legacyId);
+
+            assertEquals(1, imageBlobMigration.migrate());
+            // Повторный запуск ничего не переносит
+            assertEquals(0, imageBlobMigration.migrate());
+            assertEquals(0, jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM products WHERE cover_image_data IS NOT NULL", Integer.class));
+        } finally {
+            jdbcTemplate.execute("ALTER TABLE products DROP COLUMN cover_image_data");
+        }
+
+        mockMvc.perform(get("/api/rest/products/{id}/cover", legacyId))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(legacyCover));
+    }
+
+    private static Product product(String name) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(new BigDecimal("9.99"));
+        product.setCategory(ProductCategory.E_BOOK);
+        product.setCreatedWhen(LocalDateTime.now());
+        return product;
+    }
+
+    private static byte[] cover(int seed) {
+        byte[] data = new byte[COVER_SIZE];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31 + seed);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,225 @@
+package com.almetpt.coursework.bookclub.controllers;
+
+import com.almetpt.coursework.bookclub.model.JobRun;
+import com.almetpt.coursework.bookclub.model.JobRunStatus;
+import com.almetpt.coursework.bookclub.model.JobTrigger;
+import com.almetpt.coursework.bookclub.repository.JobLockRepository;
+import com.almetpt.coursework.bookclub.repository.JobRunRepository;
+import com.almetpt.coursework.bookclub.service.EventAttendanceScheduler;
+import com.almetpt.coursework.bookclub.service.JobCoordinator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class JobCoordinatorIntegrationTest {
+
+    private static final String JOB = "test-job";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JobLockRepository jobLockRepository;
+
+    @Autowired
+    private JobRunRepository jobRunRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JobCoordinator jobCoordinator;
+
+    // Два экземпляра приложения над общей БД
+    private JobCoordinator nodeA;
+    private JobCoordinator nodeB;
+
+    @BeforeEach
+    void setUp() {
+        nodeA = new JobCoordinator(jobLockRepository, jobRunRepository, transactionManager, "node-a", 0, 90);
+        nodeB = new JobCoordinator(jobLockRepository, jobRunRepository, transactionManager, "node-b", 0, 90);
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.shutdown();
+        nodeB.shutdown();
+        jobRunRepository.deleteAll();
+        jobLockRepository.deleteAll();
+    }
+
+    @Test
+    void trigger_ShouldRunOnlyOnInstanceHoldingLease() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        nodeA.register(JOB, 10_000, () -> await(release));
+        nodeB.register(JOB, 10_000, () -> await(release));
+
+        Optional<JobRun> first = nodeA.trigger(JOB, JobTrigger.SCHEDULED, null);
+        assertTrue(first.isPresent());
+        assertTrue(nodeB.trigger(JOB, JobTrigger.SCHEDULED, null).isEmpty());
+        assertTrue(nodeA.trigger(JOB, JobTrigger.MANUAL, "admin@test.com").isEmpty());
+
+        release.countDown();
+        JobRun finished = awaitFinished(first.get().getId());
+        assertEquals(JobRunStatus.SUCCEEDED, finished.getStatus());
+        assertEquals("done", finished.getResult());
+        assertEquals("node-a", finished.getInstanceId());
+
+        // Аренда отпущена, следующий запуск достается другому экземпляру
+        Optional<JobRun> second = nodeB.trigger(JOB, JobTrigger.SCHEDULED, null);
+        assertTrue(second.isPresent());
+        assertEquals("node-b", awaitFinished(second.get().getId()).getInstanceId());
+    }
+
+    @Test
+    void trigger_ShouldRecordTimeoutAndFailure() throws Exception {
+        nodeA.register(JOB, 200, () -> await(new CountDownLatch(1)));
+        nodeA.register("test-failing", 10_000, () -> {
+            throw new IllegalStateException("сломалось");
+        });
+
+        JobRun timedOut = awaitFinished(nodeA.trigger(JOB, JobTrigger.SCHEDULED, null).orElseThrow().getId());
+        assertEquals(JobRunStatus.TIMED_OUT, timedOut.getStatus());
+
+        JobRun failed = awaitFinished(nodeA.trigger("test-failing", JobTrigger.SCHEDULED, null).orElseThrow().getId());
+        assertEquals(JobRunStatus.FAILED, failed.getStatus());
+        assertTrue(failed.getError().contains("сломалось"));
+    }
+
+    @Test
+    void trigger_AfterTimeout_ShouldHoldLeaseUntilJobStops() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch stopped = new CountDownLatch(1);
+        // Задача не реагирует на прерывание и работает дольше таймаута
+        nodeA.register(JOB, 200, () -> {
+            awaitUninterruptibly(release);
+            stopped.countDown();
+            return "done";
+        });
+        nodeB.register(JOB, 200, () -> "done");
+
+        JobRun timedOut = awaitFinished(nodeA.trigger(JOB, JobTrigger.SCHEDULED, null).orElseThrow().getId());
+        assertEquals(JobRunStatus.TIMED_OUT, timedOut.getStatus());
+        // Таймаут давно прошел, но задача еще работает: аренда продлевается
+        Thread.sleep(500);
+        assertTrue(nodeB.trigger(JOB, JobTrigger.SCHEDULED, null).isEmpty());
+
+        release.countDown();
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        Optional<JobRun> next = Optional.empty();
+        while (next.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+            next = nodeB.trigger(JOB, JobTrigger.SCHEDULED, null);
+        }
+        assertTrue(next.isPresent());
+        assertEquals(JobRunStatus.SUCCEEDED, awaitFinished(next.get().getId()).getStatus());
+    }
+
+    @Test
+    void trigger_AfterCrashedInstance_ShouldAbandonStaleRun() throws Exception {
+        nodeB.register(JOB, 10_000, () -> "done");
+
+        // Экземпляр упал посреди запуска: запись RUNNING и истекшая аренда
+        JobRun stale = new JobRun();
+        stale.setJobName(JOB);
+        stale.setTrigger(JobTrigger.SCHEDULED);
+        stale.setStatus(JobRunStatus.RUNNING);
+        stale.setInstanceId("node-a");
+        stale.setStartedWhen(LocalDateTime.now().minusHours(1));
+        stale = jobRunRepository.save(stale);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> jobLockRepository.insertLock(
+                JOB, LocalDateTime.now().minusMinutes(1), LocalDateTime.now().minusHours(1), "node-a", "stale"));
+
+        JobRun run = awaitFinished(nodeB.trigger(JOB, JobTrigger.SCHEDULED, null).orElseThrow().getId());
+
+        assertEquals(JobRunStatus.SUCCEEDED, run.getStatus());
+        assertEquals(JobRunStatus.ABANDONED, jobRunRepository.findById(stale.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    @WithMockUser(username = "jobs-admin@test.com", roles = "ADMIN")
+    void endpoints_ShouldListTriggerAndShowHistory() throws Exception {
+        mockMvc.perform(get("/api/rest/admin/jobs"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.jobs[?(@.name == 'debtor-reminders')]").exists())
+                .andExpect(jsonPath("$.jobs[?(@.name == 'event-attendance')]").exists());
+
+        mockMvc.perform(post("/api/rest/admin/jobs/{name}/trigger", EventAttendanceScheduler.JOB_NAME))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.trigger").value("MANUAL"))
+                .andExpect(jsonPath("$.triggeredBy").value("jobs-admin@test.com"));
+        // Аренда держится минимальное время даже после быстрого завершения
+        mockMvc.perform(post("/api/rest/admin/jobs/{name}/trigger", EventAttendanceScheduler.JOB_NAME))
+                .andExpect(status().isConflict());
+
+        List<JobRun> runs = jobCoordinator.getRuns(EventAttendanceScheduler.JOB_NAME, 1);
+        awaitFinished(runs.get(0).getId());
+        mockMvc.perform(get("/api/rest/admin/jobs/{name}/runs", EventAttendanceScheduler.JOB_NAME))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("SUCCEEDED"));
+
+        mockMvc.perform(post("/api/rest/admin/jobs/{name}/trigger", "missing"))
+                .andExpect(status().isNotFound());
+    }
+
+    private static String await(CountDownLatch latch) {
+        try {
+            latch.await(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "done";
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await(30, TimeUnit.SECONDS);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private JobRun awaitFinished(Long runId) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            JobRun run = jobRunRepository.findById(runId).orElseThrow();
+            if (run.getStatus() != JobRunStatus.RUNNING) {
+                return run;
+            }
+            Thread.sleep(20);
+        }
+        fail("Запуск " + runId + " не завершился");
+        return null;
+    }
+}
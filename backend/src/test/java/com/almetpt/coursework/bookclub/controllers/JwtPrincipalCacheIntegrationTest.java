@@ -0,0 +1,177 @@
+package com.almetpt.coursework.bookclub.controllers;
+
+import com.almetpt.coursework.bookclub.config.jwt.JWTTokenUtil;
+import com.almetpt.coursework.bookclub.model.Role;
+import com.almetpt.coursework.bookclub.model.User;
+import com.almetpt.coursework.bookclub.repository.RoleRepository;
+import com.almetpt.coursework.bookclub.repository.UserRepository;
+import com.almetpt.coursework.bookclub.service.userdetails.CustomUserDetails;
+import com.almetpt.coursework.bookclub.service.userdetails.CustomUserDetailsService;
+import com.almetpt.coursework.bookclub.service.userdetails.UserPrincipalCache;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class JwtPrincipalCacheIntegrationTest {
+
+    private static final String EMAIL = "jwt-cache@test.com";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private BCryptPasswordEncoder passwordEncoder;
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    @Autowired
+    private JWTTokenUtil jwtTokenUtil;
+
+    @Autowired
+    private UserPrincipalCache userPrincipalCache;
+
+    private Long roleId;
+    private Long userId;
+
+    @BeforeEach
+    void setUp() {
+        Role role = new Role();
+        role.setName("JWT_CACHE_TEST");
+        roleId = roleRepository.save(role).getId();
+
+        User user = new User();
+        user.setEmail(EMAIL);
+        user.setPassword(passwordEncoder.encode("old-secret"));
+        user.setBirthDate(LocalDate.of(1990, 1, 1));
+        user.setCreatedWhen(LocalDateTime.now());
+        user.setRole(role);
+        userId = userRepository.save(user).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        userPrincipalCache.invalidate(userId);
+        userRepository.deleteById(userId);
+        roleRepository.deleteById(roleId);
+    }
+
+    @Test
+    void repeatedRequests_ShouldBeServedFromCache() throws Exception {
+        Cookie jwt = issueCookie();
+        long hitsBefore = (long) userPrincipalCache.getStats().get("hitCount");
+
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(get("/api/rest/users/profile").cookie(jwt))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.email").value(EMAIL));
+        }
+
+        // Первый запрос загружает пользователя, остальные берут его из кеша
+        assertTrue((long) userPrincipalCache.getStats().get("hitCount") - hitsBefore >= 2);
+    }
+
+    @Test
+    void passwordChange_ShouldRevokeOldTokenAndReissueCookie() throws Exception {
+        Cookie oldJwt = issueCookie();
+        mockMvc.perform(get("/api/rest/users/profile").cookie(oldJwt)).andExpect(status().isOk());
+
+        Cookie newJwt = mockMvc.perform(put("/api/rest/users/profile/password").cookie(oldJwt)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"oldPassword\":\"old-secret\",\"newPassword\":\"new-secret\"}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getCookie("jwt");
+        assertNotNull(newJwt);
+        assertEquals(1, userRepository.findById(userId).orElseThrow().getTokenVersion());
+
+        mockMvc.perform(get("/api/rest/users/profile").cookie(oldJwt))
+                .andExpect(status().is4xxClientError());
+        mockMvc.perform(get("/api/rest/users/profile").cookie(newJwt))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void tamperedToken_ShouldBeRejected() throws Exception {
+        String token = issueCookie().getValue();
+        String tampered = token.substring(0, token.length() - 2)
+                + (token.endsWith("AA") ? "BB" : "AA");
+
+        mockMvc.perform(get("/api/rest/users/profile").cookie(new Cookie("jwt", tampered)))
+                .andExpect(status().is4xxClientError());
+    }
+
+    @Test
+    void deletedUser_ShouldBeRejectedWithoutReloading() throws Exception {
+        Cookie jwt = issueCookie();
+        User user = userRepository.findById(userId).orElseThrow();
+        user.setDeleted(true);
+        userRepository.save(user);
+
+        mockMvc.perform(get("/api/rest/users/profile").cookie(jwt))
+                .andExpect(status().is4xxClientError());
+        long hitsBefore = (long) userPrincipalCache.getStats().get("hitCount");
+        mockMvc.perform(get("/api/rest/users/profile").cookie(jwt))
+                .andExpect(status().is4xxClientError());
+
+        // Отсутствие пользователя закешировано: повторный запрос не читает БД
+        assertEquals(hitsBefore + 1, (long) userPrincipalCache.getStats().get("hitCount"));
+    }
+
+    @Test
+    void invalidationDuringLoad_ShouldDiscardStaleEntry() throws Exception {
+        Integer key = userId.intValue();
+        AtomicInteger loads = new AtomicInteger();
+        Thread invalidator = new Thread(() -> userPrincipalCache.invalidate(userId));
+
+        CustomUserDetails principal = userPrincipalCache.get(key, () -> {
+            int version = loads.getAndIncrement();
+            if (version == 0) {
+                // Версия меняется, пока первая загрузка еще не записана в кеш
+                invalidator.start();
+                try {
+                    invalidator.join(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return new CustomUserDetails(key, EMAIL, null, List.of(), version);
+        });
+        invalidator.join();
+
+        assertEquals(2, loads.get());
+        assertEquals(1, principal.getTokenVersion());
+        assertEquals(1, userPrincipalCache.get(key, () -> fail("запись должна браться из кеша")).getTokenVersion());
+    }
+
+    private Cookie issueCookie() {
+        return jwtTokenUtil.createJwtCookie(jwtTokenUtil.generateToken(userDetailsService.loadUserByEmail(EMAIL)));
+    }
+}
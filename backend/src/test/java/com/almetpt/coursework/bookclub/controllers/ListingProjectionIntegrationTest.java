@@ -0,0 +1,169 @@
+package com.almetpt.coursework.bookclub.controllers;
+
+import com.almetpt.coursework.bookclub.model.Book;
+import com.almetpt.coursework.bookclub.model.BookGenre;
+import com.almetpt.coursework.bookclub.model.Event;
+import com.almetpt.coursework.bookclub.model.Product;
+import com.almetpt.coursework.bookclub.model.ProductCategory;
+import com.almetpt.coursework.bookclub.repository.BookRepository;
+import com.almetpt.coursework.bookclub.repository.EventRepository;
+import com.almetpt.coursework.bookclub.repository.ProductRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class ListingProjectionIntegrationTest {
+
+    private static final String PREFIX = "Listing";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final List<Long> productIds = new ArrayList<>();
+    private final List<Long> bookIds = new ArrayList<>();
+    private final List<Long> eventIds = new ArrayList<>();
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 3; i++) {
+            Product product = new Product();
+            product.setName(PREFIX + " product " + i);
+            product.setDescription("Описание " + i);
+            product.setPrice(new BigDecimal("10.00"));
+            product.setCategory(i == 0 ? ProductCategory.AUDIO_BOOK : ProductCategory.E_BOOK);
+            product.setCreatedWhen(LocalDateTime.now());
+            if (i == 1) {
+                product.setCoverImageData(new byte[] { 1, 2, 3 });
+            }
+            productIds.add(productRepository.save(product).getId());
+        }
+
+        Book book = new Book();
+        book.setTitle(PREFIX + " book");
+        book.setAuthor("Автор");
+        book.setGenres(Set.of(BookGenre.FANTASY));
+        book.setCoverImageFilename("cover.jpg");
+        book.setCreatedWhen(LocalDateTime.now());
+        Book savedBook = bookRepository.save(book);
+        bookIds.add(savedBook.getId());
+
+        Book otherBook = new Book();
+        otherBook.setTitle(PREFIX + " other book");
+        otherBook.setAuthor("Автор");
+        otherBook.setGenres(Set.of(BookGenre.DRAMA));
+        otherBook.setCreatedWhen(LocalDateTime.now());
+        bookIds.add(bookRepository.save(otherBook).getId());
+
+        Event event = new Event();
+        event.setTitle(PREFIX + " event");
+        event.setDate(LocalDateTime.now().plusDays(7));
+        event.setMaxParticipants(20);
+        event.setBook(savedBook);
+        event.setCreatedWhen(LocalDateTime.now());
+        eventIds.add(eventRepository.save(event).getId());
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        statistics.setStatisticsEnabled(false);
+        eventRepository.deleteAllById(eventIds);
+        bookRepository.deleteAllById(bookIds);
+        productRepository.deleteAllById(productIds);
+    }
+
+    @Test
+    void productListing_ShouldFilterAndReturnCardFieldsWithoutLoadingEntities() throws Exception {
+        perform(get("/api/rest/products/listing")
+                .param("name", PREFIX)
+                .param("category", "E_BOOK")
+                .param("sort", "name"))
+                .andExpect(jsonPath("$.totalElements").value(2))
+                .andExpect(jsonPath("$.content", hasSize(2)))
+                .andExpect(jsonPath("$.content[0].name").value(PREFIX + " product 1"))
+                .andExpect(jsonPath("$.content[0].hasLocalImage").value(true))
+                .andExpect(jsonPath("$.content[1].hasLocalImage").value(false))
+                .andExpect(jsonPath("$.content[0].price").value(10.0));
+
+        assertNoEntitiesLoaded();
+    }
+
+    @Test
+    void bookListing_ShouldFilterByGenreWithoutLoadingEntities() throws Exception {
+        perform(get("/api/rest/books/listing")
+                .param("title", PREFIX)
+                .param("genre", "fantasy"))
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.content[0].title").value(PREFIX + " book"))
+                .andExpect(jsonPath("$.content[0].hasLocalImage").value(true))
+                .andExpect(jsonPath("$.content[0].reading").value(false));
+
+        assertNoEntitiesLoaded();
+    }
+
+    @Test
+    void bookListing_WithUnknownGenre_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/rest/books/listing").param("genre", "unknown"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void eventListing_ShouldReturnBookIdWithoutLoadingBook() throws Exception {
+        perform(get("/api/rest/events/listing")
+                .param("size", "1000"))
+                .andExpect(jsonPath("$.content[?(@.title == '" + PREFIX + " event')].bookId")
+                        .value(bookIds.get(0).intValue()));
+
+        assertNoEntitiesLoaded();
+    }
+
+    private ResultActions perform(RequestBuilder request) throws Exception {
+        return mockMvc.perform(request).andExpect(status().isOk());
+    }
+
+    private void assertNoEntitiesLoaded() {
+        assertEquals(0, statistics.getEntityLoadCount(), "Проекция не должна загружать сущности");
+        assertEquals(0, statistics.getCollectionLoadCount(), "Проекция не должна загружать коллекции");
+    }
+}
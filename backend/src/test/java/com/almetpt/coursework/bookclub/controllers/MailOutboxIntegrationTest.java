@@ -0,0 +1,191 @@
+package com.almetpt.coursework.bookclub.controllers;
+
+import com.almetpt.coursework.bookclub.constants.MailConstants;
+import com.almetpt.coursework.bookclub.model.MailOutboxMessage;
+import com.almetpt.coursework.bookclub.model.MailOutboxStatus;
+import com.almetpt.coursework.bookclub.model.User;
+import com.almetpt.coursework.bookclub.repository.MailOutboxRepository;
+import com.almetpt.coursework.bookclub.repository.UserRepository;
+import com.almetpt.coursework.bookclub.service.MailOutboxService;
+import com.icegreen.greenmail.configuration.GreenMailConfiguration;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class MailOutboxIntegrationTest {
+
+    // SMTP-заглушка на порту и с учетной записью из профиля test
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP)
+            .withConfiguration(GreenMailConfiguration.aConfig().withUser("test", "test"))
+            .withPerMethodLifecycle(true);
+
+    private static final String USER_EMAIL = "outbox-reader@test.com";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MailOutboxService mailOutboxService;
+
+    @Autowired
+    private MailOutboxRepository mailOutboxRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Long userId;
+
+    @BeforeEach
+    void setUp() {
+        // Письма, поставленные в очередь другими тестами, здесь не нужны
+        mailOutboxRepository.deleteAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        mailOutboxRepository.deleteAll();
+        if (userId != null) {
+            userRepository.deleteById(userId);
+        }
+    }
+
+    @Test
+    void passwordReset_ShouldBeQueuedAndDeliveredByWorker() throws Exception {
+        User user = new User();
+        user.setEmail(USER_EMAIL);
+        user.setPassword("secret");
+        user.setBirthDate(LocalDate.of(1990, 1, 1));
+        user.setCreatedWhen(LocalDateTime.now());
+        userId = userRepository.save(user).getId();
+
+        mockMvc.perform(post("/api/rest/auth/forgot-password")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\": \"" + USER_EMAIL + "\"}"))
+                .andExpect(status().isOk());
+
+        // Запрос только записал письмо в очередь
+        assertEquals(0, greenMail.getReceivedMessages().length);
+        List<MailOutboxMessage> queued = mailOutboxRepository.findAll();
+        assertEquals(1, queued.size());
+        assertEquals(MailOutboxStatus.PENDING, queued.get(0).getStatus());
+
+        assertEquals(1, mailOutboxService.processDue());
+
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertEquals(1, received.length);
+        assertEquals(MailConstants.MAIL_SUBJECT_FOR_PASSWORD_RESET, received[0].getSubject());
+        assertEquals(USER_EMAIL, received[0].getAllRecipients()[0].toString());
+        assertTrue(received[0].getContent().toString().contains("reset-password?token="));
+
+        MailOutboxMessage delivered = mailOutboxRepository.findAll().get(0);
+        assertEquals(MailOutboxStatus.SENT, delivered.getStatus());
+        assertEquals(1, delivered.getAttempts());
+        assertNotNull(delivered.getSentWhen());
+        assertNull(delivered.getClaimToken());
+
+        Map<String, Object> stats = mailOutboxService.getStats();
+        assertEquals(0L, stats.get("pending"));
+        assertEquals(1L, stats.get("sentStored"));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void unavailableServer_ShouldRetryWithBackoffThenDeadLetter() throws Exception {
+        greenMail.stop();
+        Long id = mailOutboxService.enqueue("reader@test.com", "Повтор", "Текст");
+        LocalDateTime now = LocalDateTime.now();
+
+        assertEquals(1, mailOutboxService.processDue(now));
+        MailOutboxMessage failed = mailOutboxRepository.findById(id).orElseThrow();
+        assertEquals(MailOutboxStatus.PENDING, failed.getStatus());
+        assertEquals(1, failed.getAttempts());
+        assertTrue(failed.getNextAttemptAt().isAfter(now));
+        assertNotNull(failed.getLastError());
+
+        // До истечения задержки письмо не берется
+        assertEquals(0, mailOutboxService.processDue(now));
+
+        LocalDateTime later = now;
+        while (mailOutboxRepository.findById(id).orElseThrow().getStatus() == MailOutboxStatus.PENDING) {
+            later = later.plusDays(1);
+            assertEquals(1, mailOutboxService.processDue(later));
+        }
+        MailOutboxMessage dead = mailOutboxRepository.findById(id).orElseThrow();
+        assertEquals(MailOutboxStatus.DEAD, dead.getStatus());
+        assertTrue(dead.getAttempts() > 1);
+
+        greenMail.start();
+        mockMvc.perform(post("/api/rest/admin/mail-outbox/requeue-dead"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.requeued").value(1));
+        assertEquals(1, mailOutboxService.processDue());
+        assertEquals(MailOutboxStatus.SENT, mailOutboxRepository.findById(id).orElseThrow().getStatus());
+        assertEquals(1, greenMail.getReceivedMessages().length);
+    }
+
+    @Test
+    void rolledBackTransaction_ShouldNotLeaveMailInOutbox() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            mailOutboxService.enqueue("reader@test.com", "Откат", "Текст");
+            status.setRollbackOnly();
+        });
+
+        assertEquals(0, mailOutboxRepository.count());
+        assertEquals(0, mailOutboxService.processDue());
+    }
+
+    @Test
+    void bulkEnqueue_ShouldKeepCallerEntitiesManaged() {
+        User user = new User();
+        user.setEmail(USER_EMAIL);
+        user.setPassword("secret");
+        user.setBirthDate(LocalDate.of(1990, 1, 1));
+        user.setCreatedWhen(LocalDateTime.now());
+        userId = userRepository.save(user).getId();
+        List<String> recipients = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            recipients.add("bulk-" + i + "@test.com");
+        }
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            User managed = userRepository.findById(userId).orElseThrow();
+            assertEquals(250, mailOutboxService.enqueueAll("bulk-test", recipients, "Рассылка", "Текст"));
+            // Изменение после постановки в очередь сохраняется при коммите
+            managed.setPassword("changed");
+        });
+
+        assertEquals("changed", userRepository.findById(userId).orElseThrow().getPassword());
+        assertEquals(250, mailOutboxService.getGroupProgress("bulk-test").get("total"));
+    }
+}
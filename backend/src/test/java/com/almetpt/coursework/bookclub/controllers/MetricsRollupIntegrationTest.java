@@ -0,0 +1,195 @@
+package com.almetpt.coursework.bookclub.controllers;
+
+import com.almetpt.coursework.bookclub.config.MetricsRollupBackfill;
+import com.almetpt.coursework.bookclub.model.JobRunStatus;
+import com.almetpt.coursework.bookclub.model.Metric;
+import com.almetpt.coursework.bookclub.model.User;
+import com.almetpt.coursework.bookclub.repository.BookRepository;
+import com.almetpt.coursework.bookclub.repository.EventRepository;
+import com.almetpt.coursework.bookclub.repository.JobLockRepository;
+import com.almetpt.coursework.bookclub.repository.OrderRepository;
+import com.almetpt.coursework.bookclub.repository.UserRepository;
+import com.almetpt.coursework.bookclub.service.JobCoordinator;
+import com.almetpt.coursework.bookclub.service.MetricsRollupService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@WithMockUser(roles = "ADMIN")
+public class MetricsRollupIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MetricsRollupService metricsRollupService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JobCoordinator jobCoordinator;
+
+    @Autowired
+    private JobLockRepository jobLockRepository;
+
+    private final List<Long> userIds = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAllById(userIds);
+        userIds.clear();
+    }
+
+    @Test
+    void counters_ShouldFollowInsertSoftDeleteAndDelete() {
+        metricsRollupService.rebuild();
+        long before = total(Metric.USERS);
+
+        User user = saveUser("rollup-1@example.com");
+        assertEquals(before + 1, total(Metric.USERS));
+
+        user.setDeleted(true);
+        userRepository.save(user);
+        assertEquals(before, total(Metric.USERS));
+
+        user.setDeleted(false);
+        userRepository.save(user);
+        assertEquals(before + 1, total(Metric.USERS));
+
+        userRepository.deleteById(user.getId());
+        userIds.remove(user.getId());
+        assertEquals(before, total(Metric.USERS));
+    }
+
+    @Test
+    void rolledBackInsert_ShouldNotChangeCounters() {
+        metricsRollupService.rebuild();
+        long before = total(Metric.USERS);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            User user = newUser("rollup-rollback@example.com");
+            userRepository.saveAndFlush(user);
+            status.setRollbackOnly();
+        });
+
+        assertEquals(before, total(Metric.USERS));
+    }
+
+    @Test
+    void dashboard_ShouldReadTotalsAndMonthlySeriesFromCounters() throws Exception {
+        metricsRollupService.rebuild();
+        saveUser("rollup-2@example.com");
+        saveUser("rollup-3@example.com");
+
+        mockMvc.perform(get("/api/rest/admin/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users").value(userRepository.countByIsDeletedFalse()))
+                .andExpect(jsonPath("$.books").value(bookRepository.countByIsDeletedFalse()))
+                .andExpect(jsonPath("$.orders").value(orderRepository.countByIsDeletedFalse()))
+                .andExpect(jsonPath("$.events").value(eventRepository.countByIsDeletedFalse()));
+
+        String currentMonth = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy-MM"));
+        mockMvc.perform(get("/api/rest/admin/stats/users-chart"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.labels", hasSize(12)))
+                .andExpect(jsonPath("$.labels[11]").value(currentMonth))
+                .andExpect(jsonPath("$.data[11]").value(greaterThanOrEqualTo(2)));
+
+        mockMvc.perform(get("/api/rest/admin/stats/orders-chart")
+                        .param("granularity", "DAY")
+                        .param("buckets", "30"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.labels", hasSize(30)));
+
+        mockMvc.perform(get("/api/rest/admin/stats/users-chart").param("buckets", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void rebuild_ShouldMatchSourceTables() throws Exception {
+        saveUser("rollup-4@example.com");
+
+        // Стартовое заполнение могло оставить аренду на минимальное время удержания
+        jobLockRepository.deleteById(MetricsRollupBackfill.JOB_NAME);
+        // Ручной пересчет идет через координатор задач, а не через /stats
+        mockMvc.perform(post("/api/rest/admin/jobs/{name}/trigger", MetricsRollupBackfill.JOB_NAME))
+                .andExpect(status().isAccepted());
+        awaitLastRun();
+
+        Map<Metric, Long> totals = metricsRollupService.getTotals();
+        assertEquals(userRepository.countByIsDeletedFalse(), totals.get(Metric.USERS));
+        assertEquals(bookRepository.countByIsDeletedFalse(), totals.get(Metric.BOOKS));
+    }
+
+    private void awaitLastRun() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            JobRunStatus status = jobCoordinator.getRuns(MetricsRollupBackfill.JOB_NAME, 1).get(0).getStatus();
+            if (status != JobRunStatus.RUNNING) {
+                assertEquals(JobRunStatus.SUCCEEDED, status);
+                return;
+            }
+            Thread.sleep(20);
+        }
+        fail("Пересчет счетчиков не завершился");
+    }
+
+    private long total(Metric metric) {
+        return metricsRollupService.getTotals().get(metric);
+    }
+
+    private User saveUser(String email) {
+        User user = userRepository.save(newUser(email));
+        userIds.add(user.getId());
+        return user;
+    }
+
+    private static User newUser(String email) {
+        User user = new User();
+        user.setEmail(email);
+        user.setPassword("secret");
+        user.setBirthDate(LocalDate.of(1992, 2, 2));
+        user.setCreatedWhen(LocalDateTime.now());
+        return user;
+    }
+}
@@ -0,0 +1,127 @@
+package com.almetpt.coursework.bookclub.controllers;
+
+import com.almetpt.coursework.bookclub.model.Order;
+import com.almetpt.coursework.bookclub.model.OrderStatus;
+import com.almetpt.coursework.bookclub.model.Product;
+import com.almetpt.coursework.bookclub.model.ProductCategory;
+import com.almetpt.coursework.bookclub.model.User;
+import com.almetpt.coursework.bookclub.repository.OrderRepository;
+import com.almetpt.coursework.bookclub.repository.ProductRepository;
+import com.almetpt.coursework.bookclub.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class OrderHistoryQueryIntegrationTest {
+
+    private static final String EMAIL = "order-history@example.com";
+    private static final int ORDERS = 12;
+    private static final int PAGE_SIZE = 10;
+    private static final int PRODUCTS_PER_ORDER = 3;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final List<Long> orderIds = new ArrayList<>();
+    private final List<Long> productIds = new ArrayList<>();
+    private Long userId;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setEmail(EMAIL);
+        user.setPassword("secret");
+        user.setBirthDate(LocalDate.of(1990, 1, 1));
+        user.setCreatedWhen(LocalDateTime.now());
+        user = userRepository.save(user);
+        userId = user.getId();
+
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS_PER_ORDER * 2; i++) {
+            Product product = new Product();
+            product.setName("History product " + i);
+            product.setPrice(new BigDecimal("5.00"));
+            product.setCategory(ProductCategory.E_BOOK);
+            product.setCreatedWhen(LocalDateTime.now());
+            products.add(productRepository.save(product));
+            productIds.add(products.get(i).getId());
+        }
+
+        for (int i = 0; i < ORDERS; i++) {
+            Order order = new Order();
+            order.setUser(user);
+            order.setStatus(OrderStatus.PENDING);
+            order.setTotal(new BigDecimal("15.00"));
+            order.setProducts(new ArrayList<>(products.subList(i % 2 * PRODUCTS_PER_ORDER,
+                    i % 2 * PRODUCTS_PER_ORDER + PRODUCTS_PER_ORDER)));
+            order.setCreatedWhen(LocalDateTime.now());
+            orderIds.add(orderRepository.save(order).getId());
+        }
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        statistics.setStatisticsEnabled(false);
+        orderRepository.deleteAllById(orderIds);
+        productRepository.deleteAllById(productIds);
+        userRepository.deleteById(userId);
+    }
+
+    @Test
+    @WithMockUser(username = EMAIL)
+    void myOrders_ShouldLoadPageWithBoundedNumberOfQueries() throws Exception {
+        mockMvc.perform(get("/api/rest/orders/my").param("size", String.valueOf(PAGE_SIZE)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalElements").value(ORDERS))
+                .andExpect(jsonPath("$.content", hasSize(PAGE_SIZE)))
+                .andExpect(jsonPath("$.content[0].userEmail").value(EMAIL))
+                .andExpect(jsonPath("$.content[0].products", hasSize(PRODUCTS_PER_ORDER)));
+
+        // Пользователь, страница заказов, count и продукты страницы - независимо от числа заказов
+        assertEquals(0, statistics.getCollectionFetchCount(), "Продукты не должны подгружаться по одному заказу");
+        assertTrue(statistics.getPrepareStatementCount() <= 6,
+                "Слишком много запросов: " + statistics.getPrepareStatementCount());
+    }
+}
@@ -0,0 +1,262 @@
+package com.almetpt.coursework.bookclub.mapper;
+
+import com.almetpt.coursework.bookclub.dto.BookDTO;
+import com.almetpt.coursework.bookclub.dto.CartDTO;
+import com.almetpt.coursework.bookclub.dto.EventDTO;
+import com.almetpt.coursework.bookclub.dto.OrderDTO;
+import com.almetpt.coursework.bookclub.dto.ProductDTO;
+import com.almetpt.coursework.bookclub.dto.SliderBookDTO;
+import com.almetpt.coursework.bookclub.dto.UserDTO;
+import com.almetpt.coursework.bookclub.model.Book;
+import com.almetpt.coursework.bookclub.model.BookGenre;
+import com.almetpt.coursework.bookclub.model.Cart;
+import com.almetpt.coursework.bookclub.model.Event;
+import com.almetpt.coursework.bookclub.model.GenericModel;
+import com.almetpt.coursework.bookclub.model.Order;
+import com.almetpt.coursework.bookclub.model.OrderStatus;
+import com.almetpt.coursework.bookclub.model.Product;
+import com.almetpt.coursework.bookclub.model.ProductCategory;
+import com.almetpt.coursework.bookclub.model.Role;
+import com.almetpt.coursework.bookclub.model.SliderBook;
+import com.almetpt.coursework.bookclub.model.User;
+import com.almetpt.coursework.bookclub.repository.BookRepository;
+import com.almetpt.coursework.bookclub.repository.ProductRepository;
+import com.almetpt.coursework.bookclub.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Ручные мапперы должны давать тот же результат, что и прежняя настройка
+ * ModelMapper ({@link ModelMapperBaseline}).
+ */
+public class MapperEquivalenceTest {
+
+    private static final LocalDateTime CREATED = LocalDateTime.of(2024, 5, 1, 10, 30);
+
+    private final ModelMapper baseline = ModelMapperBaseline.create();
+    private final BookRepository bookRepository = mock(BookRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final ProductRepository productRepository = mock(ProductRepository.class);
+
+    private ProductMapper productMapper;
+    private BookMapper bookMapper;
+    private EventMapper eventMapper;
+    private OrderMapper orderMapper;
+    private CartMapper cartMapper;
+    private SliderBookMapper sliderBookMapper;
+    private UserMapper userMapper;
+
+    @BeforeEach
+    void setUp() {
+        productMapper = new ProductMapper();
+        bookMapper = new BookMapper();
+        eventMapper = new EventMapper(bookRepository);
+        orderMapper = new OrderMapper(userRepository, productRepository, productMapper);
+        cartMapper = new CartMapper(userRepository, productRepository, productMapper);
+        sliderBookMapper = new SliderBookMapper(bookRepository);
+        userMapper = new UserMapper();
+    }
+
+    @Test
+    void product_ShouldMatchBaselineInBothDirections() {
+        Product product = product(1);
+        product.setCoverImageData(new byte[] { 1, 2, 3 });
+        product.setElectronicProductFilename("book.epub");
+        product.setOriginalElectronicProductFilename("Книга.epub");
+
+        ProductDTO dto = productMapper.toDTO(product);
+        assertThat(dto).usingRecursiveComparison().isEqualTo(baseline.map(product, ProductDTO.class));
+        assertTrue(dto.isHasLocalImage());
+        assertTrue(dto.isHasElectronicFile());
+
+        assertThat(productMapper.toEntity(dto)).usingRecursiveComparison()
+                .isEqualTo(baseline.map(dto, Product.class));
+    }
+
+    @Test
+    void book_ShouldMatchBaselineInBothDirections() {
+        Book book = book();
+        BookDTO dto = bookMapper.toDTO(book);
+
+        assertThat(dto).usingRecursiveComparison().isEqualTo(baseline.map(book, BookDTO.class));
+        assertTrue(dto.isReading());
+        assertThat(bookMapper.toEntity(dto)).usingRecursiveComparison()
+                .isEqualTo(baseline.map(dto, Book.class));
+    }
+
+    @Test
+    void event_ShouldMatchBaseline() {
+        Event event = new Event();
+        fillAudit(event, 7L);
+        event.setTitle("Встреча");
+        event.setEventType("MEETING");
+        event.setDate(CREATED.plusDays(3));
+        event.setDescription("Обсуждение");
+        event.setMaxParticipants(15);
+        event.setCancelled(true);
+        event.setCancellationReason("Перенос");
+        event.setBook(book());
+
+        EventDTO dto = eventMapper.toDTO(event);
+        assertThat(dto).usingRecursiveComparison().isEqualTo(baseline.map(event, EventDTO.class));
+        assertEquals(3L, dto.getBookId());
+    }
+
+    @Test
+    void order_ShouldMatchBaseline() {
+        Order order = new Order();
+        fillAudit(order, 11L);
+        order.setUser(user());
+        order.setStatus(OrderStatus.COMPLETED);
+        order.setTotal(new BigDecimal("60.00"));
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            products.add(product(i));
+        }
+        order.setProducts(products);
+
+        OrderDTO dto = orderMapper.toDTO(order);
+        assertThat(dto).usingRecursiveComparison().isEqualTo(baseline.map(order, OrderDTO.class));
+        assertEquals("COMPLETED", dto.getOrderStatus());
+        assertEquals(3, dto.getProducts().size());
+    }
+
+    @Test
+    void order_FromDTO_ShouldResolveReferencesAndDefaultInvalidStatus() {
+        User user = user();
+        Product product = product(1);
+        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+        when(productRepository.findAllById(Set.of(product.getId()))).thenReturn(List.of(product));
+
+        OrderDTO dto = new OrderDTO();
+        dto.setUserId(user.getId());
+        dto.setOrderStatus("unknown");
+        ProductDTO productDTO = productMapper.toDTO(product);
+        dto.setProducts(List.of(productDTO, productDTO));
+
+        Order order = orderMapper.toEntity(dto);
+        assertEquals(user, order.getUser());
+        assertEquals(OrderStatus.PENDING, order.getStatus());
+        assertEquals(List.of(product, product), order.getProducts());
+        verify(productRepository).findAllById(Set.of(product.getId()));
+        verify(productRepository, never()).findById(any());
+    }
+
+    @Test
+    void cart_ShouldMatchBaseline() {
+        Cart cart = new Cart();
+        fillAudit(cart, 12L);
+        cart.setUser(user());
+        cart.setProducts(new ArrayList<>(List.of(product(1), product(2))));
+
+        assertThat(cartMapper.toDTO(cart)).usingRecursiveComparison()
+                .isEqualTo(baseline.map(cart, CartDTO.class));
+    }
+
+    @Test
+    void sliderBook_ShouldMatchBaseline() {
+        SliderBook sliderBook = new SliderBook();
+        fillAudit(sliderBook, 13L);
+        sliderBook.setBook(book());
+        sliderBook.setCustomDescription("Выбор клуба");
+        sliderBook.setPosition(2);
+        sliderBook.setBackgroundImageUrl("https://example.com/bg.jpg");
+
+        SliderBookDTO dto = sliderBookMapper.toDTO(sliderBook);
+        assertThat(dto).usingRecursiveComparison().isEqualTo(baseline.map(sliderBook, SliderBookDTO.class));
+        assertEquals("Мастер и Маргарита", dto.getBookTitle());
+    }
+
+    @Test
+    void user_ShouldMatchBaselineInBothDirections() {
+        User user = user();
+        UserDTO dto = userMapper.toDTO(user);
+
+        assertThat(dto).usingRecursiveComparison().isEqualTo(baseline.map(user, UserDTO.class));
+        assertThat(userMapper.toEntity(dto)).usingRecursiveComparison()
+                .isEqualTo(baseline.map(dto, User.class));
+    }
+
+    @Test
+    void nullsAndLists_ShouldBeHandled() {
+        assertNull(productMapper.toDTO(null));
+        assertNull(productMapper.toEntity(null));
+        assertEquals(List.of(), productMapper.toDTOs(List.of()));
+        assertEquals(2, productMapper.toDTOs(List.of(product(1), product(2))).size());
+    }
+
+    private static Product product(int index) {
+        Product product = new Product();
+        fillAudit(product, 100L + index);
+        product.setName("Продукт " + index);
+        product.setDescription("Описание " + index);
+        product.setPrice(new BigDecimal("20.00"));
+        product.setCategory(ProductCategory.E_BOOK);
+        product.setCoverImageUrl("https://example.com/" + index + ".jpg");
+        product.setCoverImageFilename("cover-" + index + ".jpg");
+        product.setOriginalCoverImageFilename("Обложка " + index + ".jpg");
+        return product;
+    }
+
+    private static Book book() {
+        Book book = new Book();
+        fillAudit(book, 3L);
+        book.setTitle("Мастер и Маргарита");
+        book.setAuthor("Булгаков");
+        book.setDescription("Роман");
+        book.setGenres(Set.of(BookGenre.FANTASY, BookGenre.DRAMA));
+        book.setReading(true);
+        book.setCoverImageUrl("https://example.com/master.jpg");
+        book.setCoverImageFilename("master.jpg");
+        book.setCoverImageData(new byte[] { 4, 5 });
+        return book;
+    }
+
+    private static User user() {
+        Role role = new Role();
+        role.setId(2L);
+        role.setName("USER");
+
+        User user = new User();
+        fillAudit(user, 5L);
+        user.setEmail("reader@example.com");
+        user.setPassword("secret");
+        user.setFirstName("Иван");
+        user.setLastName("Петров");
+        user.setPatronymic("Сергеевич");
+        user.setPhone("+79990000000");
+        user.setAddress("Казань");
+        user.setBirthDate(LocalDate.of(1990, 4, 12));
+        user.setChangePasswordToken("token");
+        user.setRole(role);
+        return user;
+    }
+
+    private static void fillAudit(GenericModel model, Long id) {
+        model.setId(id);
+        model.setCreatedBy("admin");
+        model.setCreatedWhen(CREATED);
+        model.setDeletedBy("moderator");
+        model.setDeletedWhen(CREATED.plusDays(1));
+        model.setDeleted(true);
+    }
+}
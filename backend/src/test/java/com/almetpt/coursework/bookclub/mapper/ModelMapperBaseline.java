@@ -0,0 +1,129 @@
+package com.almetpt.coursework.bookclub.mapper;
+
+import com.almetpt.coursework.bookclub.dto.BookDTO;
+import com.almetpt.coursework.bookclub.dto.CartDTO;
+import com.almetpt.coursework.bookclub.dto.EventDTO;
+import com.almetpt.coursework.bookclub.dto.OrderDTO;
+import com.almetpt.coursework.bookclub.dto.ProductDTO;
+import com.almetpt.coursework.bookclub.dto.SliderBookDTO;
+import com.almetpt.coursework.bookclub.dto.UserDTO;
+import com.almetpt.coursework.bookclub.model.Book;
+import com.almetpt.coursework.bookclub.model.Cart;
+import com.almetpt.coursework.bookclub.model.Event;
+import com.almetpt.coursework.bookclub.model.Order;
+import com.almetpt.coursework.bookclub.model.Product;
+import com.almetpt.coursework.bookclub.model.SliderBook;
+import com.almetpt.coursework.bookclub.model.User;
+import org.modelmapper.ModelMapper;
+import org.modelmapper.config.Configuration.AccessLevel;
+import org.modelmapper.convention.MatchingStrategies;
+
+import java.util.Collections;
+
+/**
+ * Настройка ModelMapper, которой пользовались мапперы до перехода на ручное
+ * копирование полей. Служит эталоном в тестах эквивалентности и бенчмарке.
+ */
+public final class ModelMapperBaseline {
+
+    private ModelMapperBaseline() {
+    }
+
+    public static ModelMapper create() {
+        ModelMapper modelMapper = new ModelMapper();
+        modelMapper.getConfiguration()
+                .setMatchingStrategy(MatchingStrategies.STRICT)
+                .setFieldMatchingEnabled(true)
+                .setSkipNullEnabled(true)
+                .setFieldAccessLevel(AccessLevel.PRIVATE);
+
+        modelMapper.createTypeMap(Product.class, ProductDTO.class)
+                .addMappings(mapping -> {
+                    mapping.map(Product::getCoverImageUrl, ProductDTO::setCoverImageUrl);
+                    mapping.map(Product::getCoverImageFilename, ProductDTO::setCoverImageFilename);
+                    mapping.map(Product::getOriginalCoverImageFilename, ProductDTO::setOriginalCoverImageFilename);
+                    mapping.map(src -> src.hasLocalImage(), ProductDTO::setHasLocalImage);
+                    mapping.map(Product::getElectronicProductFilename, ProductDTO::setElectronicProductFilename);
+                    mapping.map(Product::getOriginalElectronicProductFilename, ProductDTO::setOriginalElectronicProductFilename);
+                    mapping.map(src -> src.hasElectronicFile(), ProductDTO::setHasElectronicFile);
+                });
+        modelMapper.createTypeMap(ProductDTO.class, Product.class)
+                .addMappings(mapping -> {
+                    mapping.map(ProductDTO::getCoverImageUrl, Product::setCoverImageUrl);
+                    mapping.map(ProductDTO::getCoverImageFilename, Product::setCoverImageFilename);
+                    mapping.map(ProductDTO::getOriginalCoverImageFilename, Product::setOriginalCoverImageFilename);
+                    mapping.map(ProductDTO::getElectronicProductFilename, Product::setElectronicProductFilename);
+                    mapping.map(ProductDTO::getOriginalElectronicProductFilename, Product::setOriginalElectronicProductFilename);
+                });
+
+        modelMapper.createTypeMap(Book.class, BookDTO.class)
+                .addMappings(mapping -> {
+                    mapping.map(Book::getCoverImageUrl, BookDTO::setCoverImageUrl);
+                    mapping.map(src -> src.hasLocalImage(), BookDTO::setHasLocalImage);
+                });
+        modelMapper.createTypeMap(BookDTO.class, Book.class)
+                .addMappings(mapping -> mapping.map(BookDTO::getCoverImageUrl, Book::setCoverImageUrl));
+
+        modelMapper.createTypeMap(Event.class, EventDTO.class)
+                .setPostConverter(context -> {
+                    Event source = context.getSource();
+                    context.getDestination().setBookId(source.getBook() != null ? source.getBook().getId() : null);
+                    return context.getDestination();
+                });
+
+        modelMapper.createTypeMap(Order.class, OrderDTO.class)
+                .addMappings(mapper -> {
+                    mapper.using(ctx -> {
+                        Order source = (Order) ctx.getSource();
+                        return source.getUser() != null ? source.getUser().getId() : null;
+                    }).map(src -> src, OrderDTO::setUserId);
+                    mapper.using(ctx -> {
+                        Order source = (Order) ctx.getSource();
+                        return source.getUser() != null ? source.getUser().getEmail() : null;
+                    }).map(src -> src, OrderDTO::setUserEmail);
+                    mapper.using(ctx -> {
+                        Order source = (Order) ctx.getSource();
+                        return source.getStatus() != null ? source.getStatus().name() : null;
+                    }).map(src -> src, OrderDTO::setOrderStatus);
+                })
+                .setPostConverter(context -> {
+                    Order source = context.getSource();
+                    OrderDTO destination = context.getDestination();
+                    destination.setProducts(source.getProducts() != null
+                            ? source.getProducts().stream()
+                                    .map(product -> modelMapper.map(product, ProductDTO.class))
+                                    .toList()
+                            : Collections.emptyList());
+                    return destination;
+                });
+
+        modelMapper.createTypeMap(Cart.class, CartDTO.class)
+                .addMappings(mapper -> mapper.using(ctx -> {
+                    Cart source = (Cart) ctx.getSource();
+                    return source.getUser() != null ? source.getUser().getId() : null;
+                }).map(src -> src, CartDTO::setUserId))
+                .setPostConverter(context -> {
+                    Cart source = context.getSource();
+                    if (source.getProducts() != null) {
+                        context.getDestination().setProducts(source.getProducts().stream()
+                                .map(product -> modelMapper.map(product, ProductDTO.class))
+                                .toList());
+                    }
+                    return context.getDestination();
+                });
+
+        modelMapper.createTypeMap(SliderBook.class, SliderBookDTO.class)
+                .addMappings(mapping -> {
+                    mapping.map(src -> src.getBook().getId(), SliderBookDTO::setBookId);
+                    mapping.map(src -> src.getBook().getTitle(), SliderBookDTO::setBookTitle);
+                    mapping.map(src -> src.getBook().getAuthor(), SliderBookDTO::setBookAuthor);
+                    mapping.map(src -> src.getBackgroundImageUrl(), SliderBookDTO::setBackgroundImageUrl);
+                    mapping.map(src -> src.hasLocalBackgroundImage(), SliderBookDTO::setHasLocalBackgroundImage);
+                    mapping.map(src -> src.getBook().getCoverImageUrl(), SliderBookDTO::setCoverImageUrl);
+                });
+
+        modelMapper.createTypeMap(User.class, UserDTO.class);
+        modelMapper.createTypeMap(UserDTO.class, User.class);
+        return modelMapper;
+    }
+}
@@ -0,0 +1,105 @@
+package com.almetpt.coursework.bookclub.service;
+
+import com.almetpt.coursework.bookclub.service.AuditLogWriter.AuditEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class AuditLogWriterTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private AuditLogWriter writer;
+
+    @AfterEach
+    void tearDown() {
+        if (writer != null) {
+            writer.shutdown();
+        }
+    }
+
+    @Test
+    void enqueue_WithDropPolicy_ShouldCountOverflow() {
+        writer = new AuditLogWriter(jdbcTemplate, 2, 10, 1000, "drop", 0);
+
+        assertTrue(writer.enqueue(event(1)));
+        assertTrue(writer.enqueue(event(2)));
+        assertFalse(writer.enqueue(event(3)));
+
+        assertEquals(2L, writer.getStats().get("enqueued"));
+        assertEquals(1L, writer.getStats().get("dropped"));
+        assertEquals(2, writer.getStats().get("queued"));
+    }
+
+    @Test
+    void flushPending_ShouldWriteInBatchesOfFlushSize() {
+        List<Integer> batchSizes = new ArrayList<>();
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(invocation -> {
+                    batchSizes.add(invocation.<Collection<?>>getArgument(1).size());
+                    return new int[0][];
+                });
+        writer = new AuditLogWriter(jdbcTemplate, 10, 2, 1000, "DROP", 0);
+        for (int i = 0; i < 5; i++) {
+            writer.enqueue(event(i));
+        }
+
+        assertEquals(5, writer.flushPending());
+
+        assertEquals(List.of(2, 2, 1), batchSizes);
+        assertEquals(5L, writer.getStats().get("written"));
+        assertEquals(3L, writer.getStats().get("batches"));
+    }
+
+    @Test
+    void flushPending_WhenInsertFails_ShouldCountFailedEvents() {
+        writer = new AuditLogWriter(jdbcTemplate, 10, 10, 1000, "DROP", 0);
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new DataAccessResourceFailureException("БД недоступна"));
+        writer.enqueue(event(1));
+        writer.enqueue(event(2));
+
+        assertEquals(0, writer.flushPending());
+        assertEquals(2L, writer.getStats().get("failed"));
+    }
+
+    @Test
+    void start_ShouldFlushInBackgroundWithinInterval() throws InterruptedException {
+        CountDownLatch written = new CountDownLatch(1);
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(invocation -> {
+                    written.countDown();
+                    return new int[0][];
+                });
+        writer = new AuditLogWriter(jdbcTemplate, 10, 100, 50, "BLOCK", 50);
+        writer.start();
+
+        writer.enqueue(event(1));
+
+        assertTrue(written.await(5, TimeUnit.SECONDS), "Пачка должна уйти по интервалу, не дожидаясь flush-size");
+    }
+
+    private static AuditEvent event(long id) {
+        return new AuditEvent("VIEW", "BOOK", id, "user@test.com", LocalDateTime.now(), "details " + id);
+    }
+}
@@ -0,0 +1,127 @@
+package com.almetpt.coursework.bookclub.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.FileSystemResource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class CoverImageCacheTest {
+
+    @Mock
+    private FileStorageService fileStorageService;
+
+    @Mock
+    private ImageProcessingService imageProcessingService;
+
+    private CoverImageCache coverImageCache;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() {
+        coverImageCache = new CoverImageCache(fileStorageService, imageProcessingService, 1024 * 1024, 1024, 2);
+    }
+
+    @Test
+    void get_ShouldLoadCoverOnlyOnce() {
+        AtomicInteger loads = new AtomicInteger();
+        CoverImageCache.CachedCover cover = coverImageCache.fromBytes(new byte[] { 1, 2, 3 }, "cover.png");
+
+        for (int i = 0; i < 5; i++) {
+            CoverImageCache.CachedCover result = coverImageCache.get(CoverImageCache.OwnerType.BOOK, 1L, () -> {
+                loads.incrementAndGet();
+                return cover;
+            });
+            assertSame(cover, result);
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals("image/png", cover.contentType());
+    }
+
+    @Test
+    void get_WithoutCover_ShouldCacheMissingResult() {
+        AtomicInteger loads = new AtomicInteger();
+
+        assertNull(coverImageCache.get(CoverImageCache.OwnerType.PRODUCT, 1L, () -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+        assertNull(coverImageCache.get(CoverImageCache.OwnerType.PRODUCT, 1L, () -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void invalidate_ShouldReloadOnlyChangedOwner() {
+        AtomicInteger loads = new AtomicInteger();
+        CoverImageCache.CachedCover cover = coverImageCache.fromBytes(new byte[] { 1 }, "cover.jpg");
+
+        coverImageCache.get(CoverImageCache.OwnerType.BOOK, 1L, () -> {
+            loads.incrementAndGet();
+            return cover;
+        });
+        coverImageCache.get(CoverImageCache.OwnerType.BOOK, 2L, () -> {
+            loads.incrementAndGet();
+            return cover;
+        });
+        coverImageCache.invalidate(CoverImageCache.OwnerType.BOOK, 1L);
+        coverImageCache.get(CoverImageCache.OwnerType.BOOK, 1L, () -> {
+            loads.incrementAndGet();
+            return cover;
+        });
+        coverImageCache.get(CoverImageCache.OwnerType.BOOK, 2L, () -> {
+            loads.incrementAndGet();
+            return cover;
+        });
+
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void invalidate_ManyOwners_ShouldKeepVersionsBoundedWithoutStaleCovers() {
+        CoverImageCache.CachedCover oldCover = coverImageCache.fromBytes(new byte[] { 1 }, "cover.jpg");
+        CoverImageCache.CachedCover newCover = coverImageCache.fromBytes(new byte[] { 2 }, "cover.jpg");
+        coverImageCache.get(CoverImageCache.OwnerType.BOOK, 1L, () -> oldCover);
+
+        coverImageCache.invalidate(CoverImageCache.OwnerType.BOOK, 1L);
+        for (long id = 2; id <= 100; id++) {
+            coverImageCache.invalidate(CoverImageCache.OwnerType.PRODUCT, id);
+        }
+
+        assertTrue((Long) coverImageCache.getStats().get("versionEntries") <= 2);
+        // Версия книги вытеснена, но старая обложка не возвращается
+        assertSame(newCover, coverImageCache.get(CoverImageCache.OwnerType.BOOK, 1L, () -> newCover));
+    }
+
+    @Test
+    void fromStorage_WithLargeFile_ShouldKeepOnlyStorageKey() throws Exception {
+        Path largeFile = Files.write(directory.resolve("large.jpg"), new byte[4096]);
+        Path smallFile = Files.write(directory.resolve("small.jpg"), new byte[16]);
+        when(fileStorageService.loadAsResource("large.jpg")).thenReturn(new FileSystemResource(largeFile));
+        when(fileStorageService.loadAsResource("small.jpg")).thenReturn(new FileSystemResource(smallFile));
+
+        CoverImageCache.CachedCover large = coverImageCache.fromStorage("large.jpg");
+        CoverImageCache.CachedCover small = coverImageCache.fromStorage("small.jpg");
+
+        assertFalse(large.isInMemory());
+        assertEquals("large.jpg", large.storageKey());
+        assertTrue(small.isInMemory());
+        assertEquals(16, small.data().length);
+    }
+}
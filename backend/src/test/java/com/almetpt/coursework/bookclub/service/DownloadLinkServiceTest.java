@@ -0,0 +1,57 @@
+package com.almetpt.coursework.bookclub.service;
+
+import com.almetpt.coursework.bookclub.utils.HmacSigner;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DownloadLinkServiceTest {
+
+    private static final String SECRET = "downloadLinkTestSecret";
+    private static final String JWT_SECRET = "jwtTestSecret";
+
+    private final DownloadLinkService downloadLinkService =
+            new DownloadLinkService(SECRET, JWT_SECRET, "http://localhost:8080/", 72);
+
+    @Test
+    void createdLink_ShouldBeValidOnlyForItsProductAndOrder() {
+        UriComponents link = UriComponentsBuilder.fromUriString(downloadLinkService.create(5L, 9L).url()).build();
+        long expires = Long.parseLong(link.getQueryParams().getFirst("expires"));
+        String signature = link.getQueryParams().getFirst("signature");
+
+        assertEquals("/api/rest/products/5/download-signed", link.getPath());
+        assertEquals("9", link.getQueryParams().getFirst("order"));
+        assertTrue(downloadLinkService.isValid(5L, 9L, expires, signature));
+        assertFalse(downloadLinkService.isValid(6L, 9L, expires, signature));
+        assertFalse(downloadLinkService.isValid(5L, 10L, expires, signature));
+        assertFalse(downloadLinkService.isValid(5L, 9L, expires + 1, signature));
+        assertFalse(downloadLinkService.isValid(5L, 9L, expires, null));
+    }
+
+    @Test
+    void expiredLink_ShouldBeRejectedEvenWithCorrectSignature() {
+        long expires = Instant.now().getEpochSecond() - 1;
+        String signature = new HmacSigner(SECRET).sign("5:9:" + expires);
+
+        assertFalse(downloadLinkService.isValid(5L, 9L, expires, signature));
+    }
+
+    @Test
+    void withoutDedicatedSecret_ShouldNotSignWithJwtSecret() {
+        DownloadLinkService derived = new DownloadLinkService("", JWT_SECRET, "http://localhost", 1);
+        UriComponents link = UriComponentsBuilder.fromUriString(derived.create(5L, 9L).url()).build();
+        long expires = Long.parseLong(link.getQueryParams().getFirst("expires"));
+
+        assertTrue(derived.isValid(5L, 9L, expires, link.getQueryParams().getFirst("signature")));
+        assertFalse(derived.isValid(5L, 9L, expires, new HmacSigner(JWT_SECRET).sign("5:9:" + expires)));
+    }
+
+    @Test
+    void blankSecret_ShouldBeRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new DownloadLinkService(" ", " ", "http://localhost", 1));
+    }
+}
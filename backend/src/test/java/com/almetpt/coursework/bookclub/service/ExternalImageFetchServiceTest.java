@@ -0,0 +1,149 @@
+package com.almetpt.coursework.bookclub.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExternalImageFetchServiceTest {
+
+    private static final byte[] IMAGE = new byte[] { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 1, 2, 3 };
+
+    private HttpServer server;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ExternalImageFetchService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/slow", exchange -> {
+            hits.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, IMAGE);
+        });
+        server.createContext("/image", exchange -> respond(exchange, 200, IMAGE));
+        server.createContext("/missing", exchange -> respond(exchange, 404, new byte[0]));
+        server.createContext("/huge", exchange -> respond(exchange, 200, new byte[4096]));
+        server.createContext("/trickle", exchange -> {
+            // Заголовки приходят сразу, а тело - по байту в 200 мс
+            exchange.getResponseHeaders().add("Content-Type", "image/jpeg");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (int i = 0; i < 100 && release.getCount() > 0; i++) {
+                    out.write(IMAGE[i % IMAGE.length]);
+                    out.flush();
+                    Thread.sleep(200);
+                }
+            } catch (IOException | InterruptedException ignored) {
+                // Клиент оборвал загрузку
+            }
+        });
+        server.start();
+
+        service = new ExternalImageFetchService(1, 1, 1000, 5000, 5000, 1024);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        service.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void fetch_SameUrlConcurrently_ShouldDownloadOnce() throws Exception {
+        List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(service.fetch(url("/slow")));
+        }
+        release.countDown();
+
+        for (CompletableFuture<byte[]> future : futures) {
+            assertArrayEquals(IMAGE, future.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, hits.get());
+        assertEquals(19L, service.getStats().get("deduplicated"));
+    }
+
+    @Test
+    void fetch_WhenQueueIsFull_ShouldRejectInsteadOfQueueingMore() throws Exception {
+        // Один поток занят, одна задача в очереди, третья отклоняется
+        CompletableFuture<byte[]> running = service.fetch(url("/slow?a"));
+        CompletableFuture<byte[]> queued = service.fetch(url("/slow?b"));
+        CompletableFuture<byte[]> overflow = service.fetch(url("/slow?c"));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> overflow.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        assertThrows(RejectedExecutionException.class, () -> service.fetchNow(url("/slow?c")));
+
+        release.countDown();
+        assertArrayEquals(IMAGE, running.get(5, TimeUnit.SECONDS));
+        assertArrayEquals(IMAGE, queued.get(5, TimeUnit.SECONDS));
+        assertEquals(2L, service.getStats().get("rejected"));
+    }
+
+    @Test
+    void fetchNow_WithErrorStatus_ShouldThrowIOException() {
+        assertThrows(IOException.class, () -> service.fetchNow(url("/missing")));
+    }
+
+    @Test
+    void fetchNow_WithTooLargeImage_ShouldThrowIOException() {
+        assertThrows(IOException.class, () -> service.fetchNow(url("/huge")));
+    }
+
+    @Test
+    void fetchNow_WithTricklingBody_ShouldGiveUpAtDeadlineAndFreeWorker() throws Exception {
+        ExternalImageFetchService fast = new ExternalImageFetchService(1, 1, 1000, 500, 5000, 1024);
+        try {
+            long started = System.nanoTime();
+            assertThrows(IOException.class, () -> fast.fetchNow(url("/trickle")));
+            assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(3));
+
+            // Рабочий поток освободился, а зависшая загрузка не раздается новым запросам
+            assertEquals(0, fast.getStats().get("inFlightUrls"));
+            assertArrayEquals(IMAGE, fast.fetchNow(url("/image")));
+        } finally {
+            fast.shutdown();
+        }
+    }
+
+    @Test
+    void fetch_WithNonHttpUrl_ShouldThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> service.fetch("file:///etc/passwd"));
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "image/jpeg");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
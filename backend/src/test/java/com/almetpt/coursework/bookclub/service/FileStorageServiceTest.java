@@ -0,0 +1,158 @@
+package com.almetpt.coursework.bookclub.service;
+
+import com.almetpt.coursework.bookclub.repository.BookRepository;
+import com.almetpt.coursework.bookclub.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.Resource;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class FileStorageServiceTest {
+
+    private static final long GRACE_MILLIS = 600_000;
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @InjectMocks
+    private FileStorageService fileStorageService;
+
+    @TempDir
+    Path uploadDirectory;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(fileStorageService, "uploadDirectory", uploadDirectory.toString());
+    }
+
+    @Test
+    void saveFile_ShouldStoreUnderShardedContentKey() throws Exception {
+        byte[] content = "cover".getBytes(StandardCharsets.UTF_8);
+
+        String key = fileStorageService.saveFile(new MockMultipartFile("file", "Cover.PNG", "image/png", content));
+
+        // sha256("cover")
+        String hash = "3fa405a8301ace34d11cf44a816080b8f0e49a48fbd048b8aef1543a8c58bdb6";
+        assertEquals("3f/a4/" + hash + ".png", key);
+        assertArrayEquals(content, Files.readAllBytes(uploadDirectory.resolve(key)));
+    }
+
+    @Test
+    void saveFile_WithSameContent_ShouldReuseExistingFile() throws Exception {
+        byte[] content = "same content".getBytes(StandardCharsets.UTF_8);
+
+        String first = fileStorageService.saveFile(new MockMultipartFile("file", "a.jpg", "image/jpeg", content));
+        String second = fileStorageService.saveBytes(content, ".jpg");
+
+        assertEquals(first, second);
+        try (Stream<Path> files = Files.walk(uploadDirectory)) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    void saveFile_WithUnsafeExtension_ShouldDropExtension() throws Exception {
+        String key = fileStorageService.saveFile(
+                new MockMultipartFile("file", "evil.jpg/../../x", "image/jpeg", new byte[] { 1, 2, 3 }));
+
+        assertTrue(key.matches("[0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f]{64}"), key);
+    }
+
+    @Test
+    void loadAsResource_ShouldResolveLegacyFlatFilename() throws Exception {
+        Files.write(uploadDirectory.resolve("legacy.jpg"), new byte[] { 42 });
+
+        Resource resource = fileStorageService.loadAsResource("legacy.jpg");
+
+        assertNotNull(resource);
+        assertEquals(1, resource.contentLength());
+        assertNull(fileStorageService.loadAsResource("../outside.jpg"));
+    }
+
+    @Test
+    void deleteFile_ShouldKeepFileReferencedByAnotherRecord() throws Exception {
+        String key = fileStorageService.saveBytes(new byte[] { 1, 2, 3 }, "jpg");
+        when(bookRepository.existsByCoverImageFilename(key)).thenReturn(true);
+
+        fileStorageService.deleteFile(key);
+
+        assertEquals(0, fileStorageService.sweepReleased(afterGrace()));
+        assertTrue(Files.exists(uploadDirectory.resolve(key)));
+    }
+
+    @Test
+    void deleteFile_ShouldRemoveUnreferencedFile() throws Exception {
+        String key = fileStorageService.saveBytes(new byte[] { 4, 5, 6 }, "jpg");
+        when(bookRepository.existsByCoverImageFilename(key)).thenReturn(false);
+        when(productRepository.existsByCoverImageFilenameOrElectronicProductFilename(key, key)).thenReturn(false);
+
+        fileStorageService.deleteFile(key);
+
+        // До истечения паузы файл остается на диске
+        assertEquals(0, fileStorageService.sweepReleased(System.currentTimeMillis()));
+        assertTrue(Files.exists(uploadDirectory.resolve(key)));
+        assertEquals(1, fileStorageService.sweepReleased(afterGrace()));
+        assertFalse(Files.exists(uploadDirectory.resolve(key)));
+    }
+
+    @Test
+    void deleteFile_WithRolledBackTransaction_ShouldKeepFile() throws Exception {
+        String key = fileStorageService.saveBytes(new byte[] { 7, 8, 9 }, "jpg");
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            fileStorageService.deleteFile(key);
+        } finally {
+            // Откат: синхронизации снимаются без afterCommit
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(0, fileStorageService.sweepReleased(afterGrace()));
+        assertTrue(Files.exists(uploadDirectory.resolve(key)));
+    }
+
+    @Test
+    void deleteFile_ReuploadedAfterRelease_ShouldWaitForNewReference() throws Exception {
+        byte[] content = new byte[] { 10, 11, 12 };
+        String key = fileStorageService.saveBytes(content, "jpg");
+        Files.setLastModifiedTime(uploadDirectory.resolve(key), FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+        when(bookRepository.existsByCoverImageFilename(key)).thenReturn(false);
+        when(productRepository.existsByCoverImageFilenameOrElectronicProductFilename(key, key)).thenReturn(false);
+
+        fileStorageService.deleteFile(key);
+        Thread.sleep(20);
+        // Другая транзакция загружает то же содержимое и еще не закоммитила ссылку
+        assertEquals(key, fileStorageService.saveBytes(content, "jpg"));
+
+        long sweep = afterGrace();
+        assertEquals(0, fileStorageService.sweepReleased(sweep));
+        assertTrue(Files.exists(uploadDirectory.resolve(key)));
+        // Ссылка так и не появилась: файл удаляется после новой паузы
+        assertEquals(1, fileStorageService.sweepReleased(sweep + GRACE_MILLIS));
+        assertFalse(Files.exists(uploadDirectory.resolve(key)));
+    }
+
+    private static long afterGrace() {
+        return System.currentTimeMillis() + GRACE_MILLIS;
+    }
+}
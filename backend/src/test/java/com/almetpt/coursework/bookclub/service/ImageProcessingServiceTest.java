@@ -0,0 +1,124 @@
+package com.almetpt.coursework.bookclub.service;
+
+import com.almetpt.coursework.bookclub.repository.BookRepository;
+import com.almetpt.coursework.bookclub.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ImageProcessingServiceTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @TempDir
+    Path uploadDirectory;
+
+    private FileStorageService fileStorageService;
+    private ImageProcessingService imageProcessingService;
+
+    @BeforeEach
+    void setUp() {
+        fileStorageService = new FileStorageService(bookRepository, productRepository);
+        ReflectionTestUtils.setField(fileStorageService, "uploadDirectory", uploadDirectory.toString());
+        imageProcessingService = new ImageProcessingService(fileStorageService);
+    }
+
+    @Test
+    void generateRenditions_ShouldStoreEverySizeUnderOwnKey() throws Exception {
+        String key = fileStorageService.saveBytes(png(2400, 1600), "png");
+
+        imageProcessingService.generateRenditions(key);
+
+        String hash = FileStorageService.extractContentHash(key);
+        assertEquals(key.replace(".png", "-thumb.jpg"),
+                ImageProcessingService.renditionKey(key, ImageProcessingService.ImageSize.THUMB));
+        assertDimensions(key, ImageProcessingService.ImageSize.WEB, 1280, 853);
+        assertDimensions(key, ImageProcessingService.ImageSize.SMALL, 320, 213);
+        assertDimensions(key, ImageProcessingService.ImageSize.THUMB, 160, 107);
+        assertEquals(hash + "-small",
+                FileStorageService.extractContentHash(
+                        ImageProcessingService.renditionKey(key, ImageProcessingService.ImageSize.SMALL)));
+    }
+
+    @Test
+    void getOrCreateRendition_WithNonImage_ShouldReturnNull() throws Exception {
+        String key = fileStorageService.saveBytes(new byte[] { 1, 2, 3, 4 }, "jpg");
+
+        assertNull(imageProcessingService.getOrCreateRendition(key, ImageProcessingService.ImageSize.SMALL));
+        assertEquals(key, imageProcessingService.getOrCreateRendition(key, ImageProcessingService.ImageSize.ORIGINAL));
+    }
+
+    @Test
+    void deleteFile_ShouldRemoveRenditions() throws Exception {
+        String key = fileStorageService.saveBytes(png(800, 600), "png");
+        imageProcessingService.generateRenditions(key);
+        when(bookRepository.existsByCoverImageFilename(key)).thenReturn(false);
+        when(productRepository.existsByCoverImageFilenameOrElectronicProductFilename(key, key)).thenReturn(false);
+
+        fileStorageService.deleteFile(key);
+        fileStorageService.sweepReleased(System.currentTimeMillis() + 600_000);
+
+        for (ImageProcessingService.ImageSize size : ImageProcessingService.ImageSize.values()) {
+            assertFalse(fileStorageService.exists(ImageProcessingService.renditionKey(key, size)));
+        }
+        assertFalse(fileStorageService.exists(key));
+    }
+
+    @Test
+    void renderJpeg_ShouldFlattenTransparencyAndLimitSize() throws Exception {
+        BufferedImage transparent = new BufferedImage(1000, 500, BufferedImage.TYPE_INT_ARGB);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(transparent, "png", output);
+
+        byte[] jpeg = imageProcessingService.renderJpeg(new ByteArrayInputStream(output.toByteArray()), 200);
+
+        BufferedImage result = ImageIO.read(new ByteArrayInputStream(jpeg));
+        assertEquals(200, result.getWidth());
+        assertEquals(100, result.getHeight());
+        // Прозрачный фон заливается белым (с поправкой на потери JPEG)
+        Color pixel = new Color(result.getRGB(100, 50));
+        assertTrue(pixel.getRed() > 245 && pixel.getGreen() > 245 && pixel.getBlue() > 245, pixel.toString());
+    }
+
+    private void assertDimensions(String key, ImageProcessingService.ImageSize size, int width, int height)
+            throws Exception {
+        Path file = uploadDirectory.resolve(ImageProcessingService.renditionKey(key, size));
+        BufferedImage image = ImageIO.read(file.toFile());
+        assertEquals(width, image.getWidth(), size.name());
+        assertEquals(height, image.getHeight(), size.name());
+        assertTrue(Files.size(file) < Files.size(uploadDirectory.resolve(key)));
+    }
+
+    static byte[] png(int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.BLUE, width, height, Color.ORANGE));
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", output);
+        return output.toByteArray();
+    }
+}
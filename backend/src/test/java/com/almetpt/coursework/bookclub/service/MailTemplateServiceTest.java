@@ -0,0 +1,62 @@
+package com.almetpt.coursework.bookclub.service;
+
+import org.junit.jupiter.api.Test;
+import org.thymeleaf.exceptions.TemplateInputException;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MailTemplateServiceTest {
+
+    private final MailTemplateService mailTemplateService = new MailTemplateService(true);
+
+    @Test
+    void orderConfirmation_ShouldListItemsAttachmentsAndLinks() {
+        String text = mailTemplateService.render(MailTemplateService.ORDER_CONFIRMATION, Map.of(
+                "orderId", 7,
+                "createdWhen", "01.02.2026 10:00",
+                "total", "300",
+                "items", List.of(
+                        Map.of("name", "Книга А", "category", "Электронная книга", "price", "100"),
+                        Map.of("name", "Книга Б", "category", "Электронная книга", "price", "200")),
+                "attachedCount", 1,
+                "links", List.of(Map.of("name", "Книга Б", "url", "http://localhost/download")),
+                "linksExpireAt", "04.02.2026 10:00"));
+
+        assertTrue(text.contains("Номер заказа: #7\n"), text);
+        assertTrue(text.contains("Состав заказа:\n- Книга А (Электронная книга): 100 ₽\n- Книга Б (Электронная книга): 200 ₽\n"), text);
+        assertTrue(text.contains("Ваши электронные товары прикреплены к этому письму.\n"), text);
+        assertTrue(text.contains("до 04.02.2026 10:00:\n- Книга Б: http://localhost/download\n"), text);
+        assertFalse(text.contains("нет электронных товаров"), text);
+    }
+
+    @Test
+    void orderConfirmation_WithoutElectronicProducts_ShouldSaySo() {
+        String text = mailTemplateService.render(MailTemplateService.ORDER_CONFIRMATION, Map.of(
+                "orderId", 8,
+                "createdWhen", "01.02.2026 10:00",
+                "total", "0",
+                "items", List.of(),
+                "attachedCount", 0,
+                "links", List.of(),
+                "linksExpireAt", ""));
+
+        assertTrue(text.contains("- Товары не указаны\n"), text);
+        assertTrue(text.contains("В вашем заказе нет электронных товаров для прикрепления."), text);
+        assertFalse(text.contains("прикреплены"), text);
+    }
+
+    @Test
+    void eventTemplate_ShouldSubstituteVariables() {
+        assertEquals("Мероприятие 'Встреча' отменено. Причина: Зал закрыт\n",
+                mailTemplateService.render(MailTemplateService.EVENT_CANCELLED,
+                        Map.of("title", "Встреча", "reason", "Зал закрыт")));
+    }
+
+    @Test
+    void missingTemplate_ShouldFail() {
+        assertThrows(TemplateInputException.class, () -> mailTemplateService.render("missing", Map.of()));
+    }
+}
@@ -0,0 +1,54 @@
+package com.almetpt.coursework.bookclub.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimingWheelTest {
+
+    @Test
+    void timers_ShouldFireOnTheirTickAcrossAllLevels() {
+        // Уровни по 1, 8, 64 и 512 мс: задержки до 3500 мс проходят через все
+        TimingWheel<Long> wheel = new TimingWheel<>(1, 8, 4, 1000);
+        Random random = new Random(42);
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            long deadline = 1000 + random.nextInt(3500);
+            deadlines.add(deadline);
+            wheel.add(deadline, deadline);
+        }
+        TimingWheel.Timer<Long> cancelled = wheel.add(3000, -1L);
+        wheel.cancel(cancelled);
+        assertEquals(deadlines.size(), wheel.getPending());
+
+        List<Long> firedAt = new ArrayList<>();
+        for (long now = 1000; now <= 4510; now += 7) {
+            long current = now;
+            wheel.advance(now, timer -> {
+                // Срабатывает не раньше срока и не позже такта, в котором срок наступил
+                assertTrue(timer.getDeadline() < current, () -> "Рано: " + timer.getDeadline() + " в " + current);
+                assertTrue(timer.getDeadline() >= current - 7, () -> "Поздно: " + timer.getDeadline() + " в " + current);
+                firedAt.add(timer.getPayload());
+            });
+        }
+        assertEquals(deadlines.size(), firedAt.size());
+        assertFalse(firedAt.contains(-1L));
+        assertEquals(0, wheel.getPending());
+    }
+
+    @Test
+    void overdueTimer_ShouldFireOnNextAdvanceAndTooDistantShouldBeRejected() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 64, 2, 0);
+        wheel.advance(10_000, timer -> fail());
+        wheel.add(5_000, "overdue");
+        List<String> fired = new ArrayList<>();
+        assertEquals(1, wheel.advance(11_000, timer -> fired.add(timer.getPayload())));
+        assertEquals(List.of("overdue"), fired);
+
+        assertThrows(IllegalArgumentException.class, () -> wheel.add(wheel.getSpanMillis() * 2, "far"));
+    }
+}
@@ -0,0 +1,68 @@
+package com.almetpt.coursework.bookclub.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionCallbacksTest {
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void afterCommit_WithoutTransaction_ShouldRunImmediately() {
+        List<String> calls = new ArrayList<>();
+
+        TransactionCallbacks.afterCommit(() -> calls.add("run"));
+
+        assertEquals(List.of("run"), calls);
+    }
+
+    @Test
+    void afterCommit_ShouldRunOnlyWhenTransactionCommits() {
+        List<String> calls = new ArrayList<>();
+
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionCallbacks.afterCommit(() -> calls.add("committed"));
+        assertTrue(calls.isEmpty());
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        assertEquals(List.of("committed"), calls);
+
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionCallbacks.afterCommit(() -> calls.add("rolled back"));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertEquals(List.of("committed"), calls);
+    }
+
+    @Test
+    void afterCompletion_ShouldReceiveStatus() {
+        List<Integer> statuses = new ArrayList<>();
+
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionCallbacks.afterCompletion(statuses::add);
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertEquals(List.of(TransactionSynchronization.STATUS_ROLLED_BACK), statuses);
+        assertThrows(IllegalStateException.class, () -> TransactionCallbacks.afterCompletion(statuses::add));
+    }
+
+    // Так завершает транзакцию AbstractPlatformTransactionManager
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        if (status == TransactionSynchronization.STATUS_COMMITTED) {
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        }
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+}
@@ -78,7 +78,7 @@ const Dashboard = () => {
 
         // Fetch event statistics
         const eventsStatsRes = await axios.get(`${API_URL}/admin/stats/events`, { withCredentials: true });
-        setEventStatsData(eventsStatsRes.data);
+        setEventStatsData(eventsStatsRes.data.content);
 
         setLoading(false);
       } catch (error) {
@@ -105,9 +105,11 @@ const DetailModal = ({ isOpen, onClose, title, content, actionType, resourceType
 const ActionManage = () => {
   const [auditEntries, setAuditEntries] = useState([]);
   const [loading, setLoading] = useState(true);
+  // Курсоры начала уже открытых страниц: cursors[page] - курсор страницы page
   const [page, setPage] = useState(0);
+  const [cursors, setCursors] = useState([null]);
   const [size, setSize] = useState(10);
-  const [totalPages, setTotalPages] = useState(1);
+  const [hasNext, setHasNext] = useState(false);
   const [filter, setFilter] = useState({
     actionType: '',
     userEmail: '',
@@ -190,14 +192,16 @@ const ActionManage = () => {
     return actionStr;
   };
 
-  const fetchAuditEntries = async (currentPage = page, currentSize = size, currentFilter = filter) => {
+  const fetchAuditEntries = async (currentPage = page, currentSize = size, currentFilter = filter, currentCursors = cursors) => {
     try {
       setLoading(true);
       const params = new URLSearchParams({
-        page: currentPage,
         size: currentSize
       });
 
+      const cursor = currentCursors[currentPage];
+      if (cursor) params.append('cursor', cursor);
+
       if (currentFilter.actionType) params.append('actionType', currentFilter.actionType);
       if (currentFilter.userEmail) params.append('userEmail', currentFilter.userEmail);
       if (currentFilter.dateFrom) params.append('dateFrom', currentFilter.dateFrom + 'T00:00:00');
@@ -208,7 +212,12 @@ const ActionManage = () => {
       });
 
       setAuditEntries(response.data.content);
-      setTotalPages(response.data.totalPages);
+      setHasNext(response.data.hasNext);
+      if (response.data.hasNext) {
+        const nextCursors = currentCursors.slice(0, currentPage + 1);
+        nextCursors.push(response.data.nextCursor);
+        setCursors(nextCursors);
+      }
       setLoading(false);
     } catch (error) {
       console.error('Ошибка загрузки данных аудита:', error);
@@ -218,7 +227,7 @@ const ActionManage = () => {
   };
 
   useEffect(() => {
-    fetchAuditEntries(page, size, filter);
+    fetchAuditEntries(page, size, filter, cursors);
   }, [page, size]);
 
   const handleFilterChange = (e) => {
@@ -229,14 +238,16 @@ const ActionManage = () => {
   const handleFilterSubmit = (e) => {
     e.preventDefault();
     setPage(0);
-    fetchAuditEntries(0, size, filter);
+    setCursors([null]);
+    fetchAuditEntries(0, size, filter, [null]);
   };
 
   const handleClearFilter = () => {
     const newFilter = { actionType: '', userEmail: '', dateFrom: '', dateTo: '' };
     setFilter(newFilter);
     setPage(0);
-    fetchAuditEntries(0, size, newFilter);
+    setCursors([null]);
+    fetchAuditEntries(0, size, newFilter, [null]);
   };
 
   const actionTypesForFilter = [
@@ -365,7 +376,7 @@ const ActionManage = () => {
             </table>
           </div>
 
-          {totalPages > 1 && (
+          {(page > 0 || hasNext) && (
             <div className="mt-6 flex justify-center items-center space-x-2">
               <button
                 onClick={() => setPage(prev => Math.max(0, prev - 1))}
@@ -374,10 +385,10 @@ const ActionManage = () => {
               >
                 <FaChevronLeft className="mr-1" /> Назад
               </button>
-              <span className="text-gray-300">Страница {page + 1} из {totalPages}</span>
+              <span className="text-gray-300">Страница {page + 1}</span>
               <button
-                onClick={() => setPage(prev => Math.min(totalPages - 1, prev + 1))}
-                disabled={page === totalPages - 1 || totalPages === 0}
+                onClick={() => setPage(prev => prev + 1)}
+                disabled={!hasNext}
                 className="px-4 py-2 bg-gray-600 hover:bg-gray-500 text-white rounded-md disabled:opacity-50 flex items-center"
               >
                 Вперед <FaChevronRight className="ml-1" />
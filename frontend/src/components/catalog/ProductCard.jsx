@@ -13,7 +13,7 @@ const ProductCard = ({
 
   let imageSource = DEFAULT_PRODUCT_IMAGE;
   if (hasLocalImage && originalCoverImageFilename) {
-    imageSource = `${API_URL}/products/${id}/cover?t=${new Date().getTime()}`;
+    imageSource = `${API_URL}/products/${id}/cover?size=small`;
   } else if (coverImageUrl) {
     imageSource = coverImageUrl;
   }
@@ -31,14 +31,11 @@ const BookCard = ({ book }) => {
         const imageInfo = await infoResponse.json();
         console.log('Информация об изображении:', imageInfo);
 
-        // Добавляем временную метку для предотвращения кэширования
-        const timestamp = new Date().getTime();
-
         if (imageInfo.coverImageUrl) {
           console.log(`Установка URL изображения: ${imageInfo.coverImageUrl}`);
           setImageUrl(imageInfo.coverImageUrl);
         } else if (imageInfo.hasLocalImage || imageInfo.coverImageFilename) {
-          const coverUrl = `${API_URL}/books/${book.id}/cover?t=${timestamp}`;
+          const coverUrl = `${API_URL}/books/${book.id}/cover?size=small`;
           console.log(`Установка локального изображения: ${coverUrl}`);
           setImageUrl(coverUrl);
         } else {
@@ -168,7 +168,7 @@ const Slider = ({ backgroundUrl = null }) => {
             <div className="slides">
               {books.map((book, index) => {
                 // Используем URL бэкенда для загрузки обложки
-                const coverUrl = `${API_URL}/books/${book.id}/cover`;
+                const coverUrl = `${API_URL}/books/${book.id}/cover?size=web`;
                 console.log(`Trying to load image for book ${book.id}: ${coverUrl}`); // Логирование для отладки
 
                 return (
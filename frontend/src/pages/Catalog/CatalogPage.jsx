@@ -33,7 +33,7 @@ const CatalogPage = observer(() => {
   const fetchProducts = async () => {
     setLoading(true);
     try {
-      let url = `/products/search?page=${currentPage}&size=${pageSize}`;
+      let url = `/products/listing?page=${currentPage}&size=${pageSize}`;
       if (searchTerm) url += `&name=${encodeURIComponent(searchTerm)}`;
       if (filter !== 'all') url += `&category=${encodeURIComponent(filter)}`;
       const response = await apiClient.get(url);